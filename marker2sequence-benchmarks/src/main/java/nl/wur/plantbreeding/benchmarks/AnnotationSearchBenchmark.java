@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.benchmarks;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import java.util.concurrent.TimeUnit;
+import nl.wur.plantbreeding.logic.marker2seq.AnnotationSearch;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2SeqUtils;
+import nl.wur.plantbreeding.testkit.SparqlStandIn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the keyword search of the annotation page on the model of an
+ * interval, with a single keyword and with OR and AND combinations.
+ * The search describes the genes of the model from the sparql endpoint
+ * given by the m2s.benchmark.endpoint system property, or from a
+ * SparqlStandIn serving the same generated interval when it is not set; the
+ * time measured includes these calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnnotationSearchBenchmark {
+
+    /** Number of markers and genes of the interval. */
+    @Param({"10", "100", "1000"})
+    public int size;
+    /** Keywords searched. */
+    @Param({"kinase", "kinase OR ethylene", "kinase AND protein"})
+    public String keyword;
+    /** Name of the system property giving the sparql endpoint. */
+    public static final String ENDPOINT = "m2s.benchmark.endpoint";
+    /** The AnnotationSearch running the search. */
+    private final AnnotationSearch search = new AnnotationSearch(
+            Marker2SeqUtils.GetBaseGraphFromTheme("tomato", ""));
+    /** Model of the interval. */
+    private Model model;
+    /** Local endpoint used when none is given, null otherwise. */
+    private SparqlStandIn standin;
+
+    /**
+     * Build the model of the interval.
+     * @throws Exception when the model can not be built
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        model = Fixtures.intervalModel(size);
+        final String endpoint = System.getProperty(ENDPOINT);
+        if (endpoint != null && !endpoint.isEmpty()) {
+            search.setEndpoint(endpoint);
+        } else {
+            standin = new SparqlStandIn(0, 4);
+            standin.load(Fixtures.generator(size));
+            standin.start();
+            search.setEndpoint(standin.getEndpoint());
+        }
+    }
+
+    /**
+     * Stop the local endpoint.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (standin != null) {
+            standin.stop();
+        }
+    }
+
+    /**
+     * Time AnnotationSearch.searchModel.
+     * @return the model of the genes found
+     */
+    @Benchmark
+    public Model searchModel() {
+        return search.searchModel(model, keyword);
+    }
+}
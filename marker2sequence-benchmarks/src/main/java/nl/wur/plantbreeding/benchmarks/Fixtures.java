@@ -0,0 +1,219 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+
+package nl.wur.plantbreeding.benchmarks;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import nl.wur.plantbreeding.testkit.DatasetGenerator;
+import nl.wur.plantbreeding.testkit.GeneratorSettings;
+import nl.wur.plantbreeding.testkit.ModelSink;
+
+/**
+ * Datasets used by the benchmarks, generated for a given size so that the
+ * benchmarks do not depend on the sparql endpoint or on the web-services:
+ * the BioMoby responses of the web-services (as written by SoapClient), the
+ * model of an interval as stored on the endpoint (markers, genes, GO terms)
+ * and the genetic map and sequences drawn on the alignment picture.
+ * The datasets come from the DatasetGenerator of the testkit, the same size
+ * always gives the same dataset.
+ */
+public final class Fixtures {
+
+    /** Namespace of the markers. */
+    public static final String MARKER = DatasetGenerator.MARKER;
+    /** Namespace of the genes. */
+    public static final String GENE = DatasetGenerator.GENE;
+    /** Namespace of the positions. */
+    public static final String POSITION = DatasetGenerator.POSITION;
+    /** Namespace of the scaffolds. */
+    public static final String SCAFFOLD = DatasetGenerator.SCAFFOLD;
+    /** Namespace of the GO properties. */
+    public static final String OBO = DatasetGenerator.OBO;
+    /** Mean number of markers placed on each sequence (scaffold). */
+    public static final int MARKERS_PER_SEQUENCE = 10;
+    /** Number of different GO terms of the model. */
+    private static final int GO_TERMS = 50;
+
+    /**
+     * Default private constructor.
+     */
+    private Fixtures() { }
+
+    /**
+     * Return the generator of an interval of one chromosome holding the
+     * given number of markers and genes, all the markers being placed on
+     * the scaffolds.
+     * @param size the number of markers and of genes
+     * @return the DatasetGenerator
+     */
+    public static DatasetGenerator generator(final int size) {
+        final GeneratorSettings settings = new GeneratorSettings();
+        settings.setChromosomes(1);
+        settings.setChromosomeLength(Math.max(1, size) * 1000);
+        settings.setScaffoldsPerChromosome(Math.max(1,
+                size / MARKERS_PER_SEQUENCE));
+        settings.setGenes(size);
+        settings.setMarkers(size);
+        settings.setUnplacedMarkers(0);
+        settings.setGoTerms(GO_TERMS);
+        return new DatasetGenerator(settings);
+    }
+
+    /**
+     * Return the response of the getMarkersForRegion web-service listing
+     * the given number of genetic markers.
+     * @param size the number of markers
+     * @return the BioMoby XML document
+     * @throws IOException never, the document is built in memory
+     */
+    public static String markerResponse(final int size) throws IOException {
+        final DatasetGenerator generator = generator(size);
+        final StringBuilder sb = new StringBuilder();
+        DatasetGenerator.writeMarkerResponse(generator.getMarkers(1, 0,
+                generator.getSettings().getMapLength()), sb);
+        return sb.toString();
+    }
+
+    /**
+     * Return the response of the Sifter web-service listing the given number
+     * of GO terms.
+     * @param size the number of GO terms
+     * @return the BioMoby XML document
+     */
+    public static String sifterResponse(final int size) {
+        final DatasetGenerator generator = generator(size);
+        final StringBuilder sb = new StringBuilder(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<moby:MOBY xmlns:moby=\"http://www.biomoby.org/moby\">\n"
+                + "<moby:mobyContent>\n"
+                + "<moby:mobyData moby:queryID=\"sip_1_\">\n"
+                + "<moby:Collection moby:articleName=\"output\">\n");
+        for (int i = 0; i < size; i++) {
+            sb.append("<moby:Simple>\n<moby:Annotated_GO_Term "
+                    + "moby:namespace=\"GO\" moby:id=\"")
+                    .append(generator.getGoId(i)).append("\">\n")
+                    .append("  <moby:String moby:namespace=\"\" moby:id=\"\""
+                    + " moby:articleName=\"Definition\">")
+                    .append(generator.getGoLabel(i)).append("</moby:String>\n")
+                    .append("  <moby:String moby:namespace=\"\" moby:id=\"\""
+                    + " moby:articleName=\"process\">")
+                    .append(generator.getGoNamespace(i))
+                    .append("</moby:String>\n")
+                    .append("  <moby:String moby:namespace=\"\" moby:id=\"\""
+                    + " moby:articleName=\"detailed_description\">"
+                    + "Sifter ").append(i % 7 / 7.0)
+                    .append("</moby:String>\n")
+                    .append("</moby:Annotated_GO_Term>\n</moby:Simple>\n");
+        }
+        return sb.append("</moby:Collection>\n</moby:mobyData>\n"
+                + "</moby:mobyContent>\n</moby:MOBY>\n").toString();
+    }
+
+    /**
+     * Write the given document in a temporary file, deleted when the JVM
+     * exits.
+     * @param document the XML document
+     * @return the file written
+     * @throws IOException when the file can not be written
+     */
+    public static File write(final String document) throws IOException {
+        final File file = File.createTempFile("m2s-bench-", ".xml");
+        file.deleteOnExit();
+        final Writer out = new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8");
+        try {
+            out.write(document);
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Return the model of an interval holding the given number of markers
+     * and genes: the markers are placed on the scaffolds, the genes have
+     * their position, description and GO terms.
+     * @param size the number of markers and of genes
+     * @return the Jena Model of the interval
+     * @throws IOException never, the model is built in memory
+     */
+    public static Model intervalModel(final int size) throws IOException {
+        final ModelSink sink = new ModelSink(DatasetGenerator.ITAG_GRAPH,
+                DatasetGenerator.GO_GRAPH);
+        generator(size).generate(sink);
+        return sink.getModel();
+    }
+
+    /**
+     * Return a genetic map of the given number of markers.
+     * @param size the number of markers
+     * @return the list of GeneticMarkers
+     */
+    public static List<GeneticMarkers> geneticMap(final int size) {
+        return generator(size).getGeneticMap(1);
+    }
+
+    /**
+     * Return the sequences holding the markers of the given genetic map.
+     * @param map a genetic map returned by geneticMap()
+     * @return the list of MarkerSequence
+     * @throws Exception when a position can not be set
+     */
+    public static List<MarkerSequence> sequences(
+            final List<GeneticMarkers> map) throws Exception {
+        final DatasetGenerator generator = generator(map.size());
+        final List<MarkerSequence> sequences = new ArrayList<MarkerSequence>();
+        List<Markerws> current = null;
+        String scaffold = null;
+        for (GeneticMarkers gm : map) {
+            final Markerws marker = generator.getMarker(
+                    generator.getMarkerIndex(gm.getName()));
+            if (!marker.getScafoldname().equals(scaffold)) {
+                scaffold = marker.getScafoldname();
+                current = new ArrayList<Markerws>();
+                final MarkerSequence sequence = new MarkerSequence(null, null,
+                        current);
+                sequence.setName(scaffold);
+                sequences.add(sequence);
+            }
+            current.add(marker);
+        }
+        return sequences;
+    }
+
+    /**
+     * Return the name of a marker.
+     * @param index the index of the marker
+     * @return the name of the marker
+     */
+    public static String markerName(final int index) {
+        return DatasetGenerator.getMarkerName(index);
+    }
+}
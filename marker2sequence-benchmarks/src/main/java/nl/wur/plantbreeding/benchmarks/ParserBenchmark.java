@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.benchmarks;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.logic.saxparser.ParserXMLMarkers;
+import nl.wur.plantbreeding.logic.saxparser.ParserXMLMarkersToSW;
+import nl.wur.plantbreeding.logic.saxparser.ParserXMLSifterAnnotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the SAX parsers on the responses of the BioMoby web-services, read
+ * from files as they are in the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    /** Number of markers or GO terms in the responses. */
+    @Param({"10", "1000", "10000"})
+    public int size;
+    /** Uri of the response of the getMarkersForRegion web-service. */
+    private String markers;
+    /** Uri of the response of the Sifter web-service. */
+    private String sifter;
+
+    /**
+     * Write the responses.
+     * @throws Exception when the files can not be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        markers = Fixtures.write(Fixtures.markerResponse(size))
+                .toURI().toString();
+        sifter = Fixtures.write(Fixtures.sifterResponse(size))
+                .toURI().toString();
+    }
+
+    /**
+     * Time ParserXMLMarkers: markers read in GeneticMarkers.
+     * @return the markers read
+     * @throws Exception when the response can not be parsed
+     */
+    @Benchmark
+    public List<GeneticMarkers> markers() throws Exception {
+        final ParserXMLMarkers parser = new ParserXMLMarkers();
+        parser.parseDocument(markers);
+        return parser.getMarkers();
+    }
+
+    /**
+     * Time ParserXMLMarkersToSW: markers added to a model, as Marker2seq
+     * does.
+     * @return the model built
+     * @throws Exception when the response can not be parsed
+     */
+    @Benchmark
+    public Model markersToModel() throws Exception {
+        final ParserXMLMarkersToSW parser = new ParserXMLMarkersToSW();
+        parser.setModel(ModelFactory.createDefaultModel());
+        parser.setUri(Fixtures.MARKER);
+        parser.setMotif("moby:GeneticMarker");
+        parser.parseDocument(markers);
+        return parser.getModel();
+    }
+
+    /**
+     * Time ParserXMLSifterAnnotation.
+     * @return the GO terms read
+     * @throws Exception when the response can not be parsed
+     */
+    @Benchmark
+    public List<Annotation> sifter() throws Exception {
+        final ParserXMLSifterAnnotation parser =
+                new ParserXMLSifterAnnotation();
+        parser.parseDocument(sifter);
+        return parser.getAnnotations();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import nl.wur.plantbreeding.logic.jfreechart.PieChart;
+import org.jfree.data.general.PieDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the creation of the datasets of the GO pie charts, from the list of
+ * the GO terms of the genes and from a distribution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PieChartBenchmark {
+
+    /** Maximum number of sections of the charts, as on the web pages. */
+    private static final int SECTIONS = 10;
+    /** Number of GO terms in the list. */
+    @Param({"100", "10000", "100000"})
+    public int size;
+    /** The PieChart creating the datasets. */
+    private final PieChart piechart = new PieChart();
+    /** GO terms of the genes, a few terms being much more frequent. */
+    private List<String> terms;
+    /** Distribution of the GO terms. */
+    private HashMap<String, Integer> distribution;
+
+    /**
+     * Build the list and the distribution of the GO terms.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(size);
+        final int vocabulary = Math.max(20, size / 10);
+        terms = new ArrayList<String>(size);
+        distribution = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            // Skewed towards the first terms, as the GO annotations are
+            final double r = random.nextDouble();
+            final String term = "GO term " + (int) (r * r * vocabulary);
+            terms.add(term);
+            final Integer count = distribution.get(term);
+            distribution.put(term, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Time PieChart.createDataset on a list of terms.
+     * @return the dataset
+     */
+    @Benchmark
+    public PieDataset fromList() {
+        return piechart.createDataset(terms, SECTIONS);
+    }
+
+    /**
+     * Time PieChart.createDataset on a distribution.
+     * @return the dataset
+     */
+    @Benchmark
+    public PieDataset fromDistribution() {
+        return piechart.createDataset(distribution, SECTIONS);
+    }
+
+    /**
+     * Time PieChart.createDataset on a distribution, all the sections kept.
+     * @return the dataset
+     */
+    @Benchmark
+    public PieDataset fromDistributionAllSections() {
+        return piechart.createDataset(distribution);
+    }
+}
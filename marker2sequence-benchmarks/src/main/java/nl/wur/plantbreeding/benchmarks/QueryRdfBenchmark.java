@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.benchmarks;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import nl.wur.plantbreeding.logic.swtools.QueryRdf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the projections of the model of an interval run locally by
+ * QueryRdf to fill the result tables and the alignment picture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryRdfBenchmark {
+
+    /** Number of markers and genes of the interval. */
+    @Param({"10", "100", "1000"})
+    public int size;
+    /** The QueryRdf object used to run the queries. */
+    private final QueryRdf query = new QueryRdf();
+    /** Model of the interval. */
+    private Model model;
+
+    /**
+     * Build the model of the interval.
+     * @throws Exception when the model can not be built
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        model = Fixtures.intervalModel(size);
+    }
+
+    /**
+     * Time QueryRdf.getAnnotationList.
+     * @return the genes of the interval
+     */
+    @Benchmark
+    public List<Annotation> annotationList() {
+        return query.getAnnotationList(model);
+    }
+
+    /**
+     * Time QueryRdf.getPhysicalMap.
+     * @return the markers placed on the scaffolds
+     */
+    @Benchmark
+    public List<Markerws> physicalMap() {
+        return query.getPhysicalMap(model);
+    }
+
+    /**
+     * Time QueryRdf.getGeneticMap.
+     * @return the genetic map of the interval
+     */
+    @Benchmark
+    public List<GeneticMarkers> geneticMap() {
+        return query.getGeneticMap(model);
+    }
+
+    /**
+     * Time QueryRdf.getMarkerSequence.
+     * @return the scaffolds with their markers
+     */
+    @Benchmark
+    public List<MarkerSequence> markerSequence() {
+        return query.getMarkerSequence(model);
+    }
+}
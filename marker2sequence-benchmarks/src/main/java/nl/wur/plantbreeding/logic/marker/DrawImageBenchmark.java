@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import nl.wur.plantbreeding.benchmarks.Fixtures;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import org.biomoby.shared.MobyException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times Marker2seqGraphics.drawImage alone (the picture and the sequences
+ * are prepared once, as AlignmentRenderer does) and the whole
+ * AlignmentRenderer.render. It lives in the package of the renderer to
+ * prepare the picture the same way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DrawImageBenchmark {
+
+    /** Number of markers of the genetic map. */
+    @Param({"10", "1000", "10000"})
+    public int size;
+    /** The renderer preparing the picture. */
+    private final AlignmentRenderer renderer = new AlignmentRenderer();
+    /** Genetic map of the interval. */
+    private List<GeneticMarkers> map;
+    /** Sequences with their markers, their extreme markers set. */
+    private List<MarkerSequence> sequences;
+    /** Highlighted markers. */
+    private List<String> entries;
+    /** The picture drawn into. */
+    private BufferedImage image;
+    /** Graphics of the picture. */
+    private Graphics2D graphics;
+
+    /**
+     * Build the genetic map, the sequences and the picture.
+     * @throws Exception when the sequences can not be built
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        map = Fixtures.geneticMap(size);
+        sequences = Fixtures.sequences(map);
+        entries = new ArrayList<String>();
+        entries.add(Fixtures.markerName(size / 2));
+        for (MarkerSequence ms : sequences) {
+            renderer.setExtremeMarkers(ms);
+        }
+        final int heigth = renderer.getHeigth(new Marker2seqGraphics(), map,
+                sequences, AlignmentRenderer.getLegend());
+        image = new BufferedImage(Marker2seqGraphics.PICTUREWIDTH, heigth,
+                BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    /**
+     * Release the graphics of the picture.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    /**
+     * Time Marker2seqGraphics.drawImage.
+     * @return the html map of the picture
+     * @throws MobyException when the position of a marker can not be read
+     */
+    @Benchmark
+    public List<String> drawImage() throws MobyException {
+        graphics.setColor(Color.white);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        final Marker2seqGraphics graphic = new Marker2seqGraphics();
+        graphic.drawImage(map, sequences, graphics,
+                new HashMap<String, Color>(AlignmentRenderer.getLegend()),
+                entries);
+        return graphic.getMap();
+    }
+
+    /**
+     * Time AlignmentRenderer.render (picture allocated and drawn).
+     * @return the picture and its html map
+     * @throws MobyException when the position of a marker can not be read
+     */
+    @Benchmark
+    public AlignmentImage render() throws MobyException {
+        return renderer.render(map, sequences, entries);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+/**
+ * Runs the marker2sequence-web war in an embedded Jetty.
+ * The context-params of its web.xml can be overridden, for instance to use
+ * the stand-ins instead of the real sparql endpoint and web-services; they
+ * are written in an override descriptor applied after the web.xml.
+ */
+public class EmbeddedWebApp {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            EmbeddedWebApp.class.getName());
+    /** The war (or exploded war directory) deployed. */
+    private final File war;
+    /** Context path of the web application. */
+    private final String contextPath;
+    /** Context-params overriding the ones of the web.xml. */
+    private final Map<String, String> parameters =
+            new LinkedHashMap<String, String>();
+    /** Tracker of the HTTP sessions. */
+    private final SessionTracker sessions = new SessionTracker();
+    /** The server, null when stopped. */
+    private Server server;
+    /** The connector of the server. */
+    private SelectChannelConnector connector;
+    /** The override descriptor written at start-up. */
+    private File descriptor;
+
+    /**
+     * Constructor.
+     * @param warfile the war or exploded war directory to deploy
+     * @param path the context path, ie: /marker2sequence
+     */
+    public EmbeddedWebApp(final File warfile, final String path) {
+        this.war = warfile;
+        this.contextPath = path;
+    }
+
+    /**
+     * Override a context-param of the web.xml.
+     * @param name the name of the param
+     * @param value its value
+     */
+    public final void setInitParameter(final String name,
+            final String value) {
+        parameters.put(name, value);
+    }
+
+    /**
+     * Start the server and deploy the web application.
+     * @param port the port to listen to, 0 for any free port
+     * @param threads the maximum number of threads of the server
+     * @throws Exception when the server or the application fails to start
+     */
+    public final synchronized void start(final int port, final int threads)
+            throws Exception {
+        if (!war.exists()) {
+            throw new IOException("No war at " + war
+                    + ", build marker2sequence-web first");
+        }
+        descriptor = File.createTempFile("override-web", ".xml");
+        writeDescriptor(parameters, descriptor);
+
+        server = new Server();
+        server.setThreadPool(new QueuedThreadPool(threads));
+        connector = new SelectChannelConnector();
+        connector.setPort(port);
+        server.addConnector(connector);
+
+        final WebAppContext webapp = new WebAppContext();
+        webapp.setContextPath(contextPath);
+        webapp.setWar(war.getAbsolutePath());
+        webapp.setOverrideDescriptor(descriptor.getAbsolutePath());
+        webapp.addEventListener(sessions);
+        server.setHandler(webapp);
+        server.start();
+        LOG.log(Level.INFO, "Web application listening on {0}",
+                this.getUrl());
+    }
+
+    /**
+     * Stop the server.
+     * @throws Exception when the server fails to stop
+     */
+    public final synchronized void stop() throws Exception {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+        if (descriptor != null && !descriptor.delete()) {
+            descriptor.deleteOnExit();
+        }
+    }
+
+    /**
+     * Return the url of the web application.
+     * @return the url, without trailing slash
+     */
+    public final synchronized String getUrl() {
+        final String path = contextPath.endsWith("/")
+                ? contextPath.substring(0, contextPath.length() - 1)
+                : contextPath;
+        return "http://localhost:" + connector.getLocalPort() + path;
+    }
+
+    /**
+     * Return the tracker of the HTTP sessions of the application.
+     * @return the SessionTracker
+     */
+    public final SessionTracker getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Write an override descriptor setting the given context-params.
+     * @param params the context-params
+     * @param file the descriptor written
+     * @throws IOException when the file can not be written
+     */
+    static void writeDescriptor(final Map<String, String> params,
+            final File file) throws IOException {
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8");
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<web-app version=\"3.0\""
+                    + " xmlns=\"http://java.sun.com/xml/ns/javaee\">\n");
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                out.write("    <context-param>\n        <param-name>"
+                        + escape(entry.getKey()) + "</param-name>\n"
+                        + "        <param-value>" + escape(entry.getValue())
+                        + "</param-value>\n    </context-param>\n");
+            }
+            out.write("</web-app>\n");
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Escape the XML special characters of a text.
+     * @param text the text
+     * @return the escaped text
+     */
+    private static String escape(final String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;")
+                .replace(">", "&gt;");
+    }
+}
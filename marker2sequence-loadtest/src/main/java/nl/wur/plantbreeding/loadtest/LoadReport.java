@@ -0,0 +1,323 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.loadtest;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import nl.wur.plantbreeding.loadtest.TrafficMix.Operation;
+
+/**
+ * Results of a load test: throughput and latency of each operation, heap
+ * used by the JVM and size of the HTTP sessions.
+ * The requests are recorded by the virtual users while the test runs, the
+ * heap and the sessions are measured by LoadTest.
+ */
+public class LoadReport {
+
+    /** Statistics of each operation. */
+    private final Map<Operation, OperationStats> operations =
+            new EnumMap<Operation, OperationStats>(Operation.class);
+    /** Length (in milliseconds) of the measurement. */
+    private long duration = 0;
+    /** Highest heap usage (in bytes) seen during the measurement. */
+    private long peakHeap = 0;
+    /** Heap usage (in bytes) after a full GC at the end of the test. */
+    private long heapAfterGc = 0;
+    /** Number of HTTP sessions alive at the end of the test. */
+    private int sessions = 0;
+    /** Serialized size (in bytes) of all the HTTP sessions. */
+    private long sessionBytes = 0;
+    /** Name of the session attributes which could not be serialized. */
+    private final Set<String> unserializable = new TreeSet<String>();
+
+    /**
+     * Constructor.
+     */
+    public LoadReport() {
+        for (Operation op : Operation.values()) {
+            operations.put(op, new OperationStats());
+        }
+    }
+
+    /**
+     * Record one request.
+     * @param op the operation requested
+     * @param nanos the time (in nanoseconds) the response took
+     * @param bytes the size of the response
+     * @param ok false if the request failed
+     */
+    public final void record(final Operation op, final long nanos,
+            final long bytes, final boolean ok) {
+        operations.get(op).add(nanos, bytes, ok);
+    }
+
+    /**
+     * Record the current heap usage, keeping the highest one.
+     */
+    public final synchronized void sampleHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        peakHeap = Math.max(peakHeap,
+                runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Set the heap usage measured after a full GC.
+     * @param bytes the heap used, in bytes
+     */
+    public final synchronized void setHeapAfterGc(final long bytes) {
+        this.heapAfterGc = bytes;
+    }
+
+    /**
+     * Set the length of the measurement.
+     * @param millis the length in milliseconds
+     */
+    public final synchronized void setDuration(final long millis) {
+        this.duration = millis;
+    }
+
+    /**
+     * Add the size of one HTTP session.
+     * @param bytes the serialized size of its attributes
+     * @param attributes the name of its attributes which could not be
+     * serialized
+     */
+    public final synchronized void addSession(final long bytes,
+            final Set<String> attributes) {
+        sessions++;
+        sessionBytes += bytes;
+        unserializable.addAll(attributes);
+    }
+
+    /**
+     * Return the number of requests made for an operation.
+     * @param op the operation, null for all the operations
+     * @return the number of requests
+     */
+    public final long getRequests(final Operation op) {
+        long count = 0;
+        for (Map.Entry<Operation, OperationStats> entry
+                : operations.entrySet()) {
+            if (op == null || op == entry.getKey()) {
+                count += entry.getValue().getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of failed requests of an operation.
+     * @param op the operation, null for all the operations
+     * @return the number of failed requests
+     */
+    public final long getErrors(final Operation op) {
+        long count = 0;
+        for (Map.Entry<Operation, OperationStats> entry
+                : operations.entrySet()) {
+            if (op == null || op == entry.getKey()) {
+                count += entry.getValue().getErrors();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of requests per second of an operation.
+     * @param op the operation, null for all the operations
+     * @return the throughput, 0 if the duration is not known
+     */
+    public final synchronized double getThroughput(final Operation op) {
+        if (duration <= 0) {
+            return 0;
+        }
+        return this.getRequests(op) * 1000.0 / duration;
+    }
+
+    /**
+     * Return a percentile of the latency of an operation.
+     * @param op the operation, null for all the operations
+     * @param percent the percentile, between 0 and 100
+     * @return the latency in milliseconds, 0 if there was no request
+     */
+    public final double getPercentile(final Operation op,
+            final double percent) {
+        final long[] sorted = this.getLatencies(op);
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1] / 1e6;
+    }
+
+    /**
+     * Return the mean latency of an operation.
+     * @param op the operation, null for all the operations
+     * @return the latency in milliseconds, 0 if there was no request
+     */
+    public final double getMean(final Operation op) {
+        final long[] latencies = this.getLatencies(op);
+        if (latencies.length == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (long latency : latencies) {
+            sum += latency;
+        }
+        return sum / latencies.length / 1e6;
+    }
+
+    /**
+     * Return the sorted latencies of an operation.
+     * @param op the operation, null for all the operations
+     * @return the latencies in nanoseconds, sorted
+     */
+    private long[] getLatencies(final Operation op) {
+        long[] all = new long[0];
+        for (Map.Entry<Operation, OperationStats> entry
+                : operations.entrySet()) {
+            if (op == null || op == entry.getKey()) {
+                final long[] latencies = entry.getValue().getLatencies();
+                final int from = all.length;
+                all = Arrays.copyOf(all, from + latencies.length);
+                System.arraycopy(latencies, 0, all, from, latencies.length);
+            }
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    /**
+     * Print the report.
+     * @param out where the report is printed
+     */
+    public final synchronized void print(final PrintStream out) {
+        out.printf("%-22s %8s %6s %8s %8s %8s %8s %8s %8s %8s%n",
+                "operation", "requests", "errors", "req/s", "mean",
+                "p50", "p90", "p99", "max", "kB/req");
+        for (Operation op : Operation.values()) {
+            if (this.getRequests(op) > 0) {
+                this.printLine(out, op.getName(), op);
+            }
+        }
+        this.printLine(out, "all", null);
+        out.printf("duration %.1fs, latencies in ms%n", duration / 1000.0);
+        out.printf("heap: peak %.1f MB, after GC %.1f MB%n",
+                peakHeap / 1048576.0, heapAfterGc / 1048576.0);
+        out.printf("sessions: %d, %.1f kB in total, %.1f kB per session%n",
+                sessions, sessionBytes / 1024.0,
+                sessions == 0 ? 0 : sessionBytes / 1024.0 / sessions);
+        if (!unserializable.isEmpty()) {
+            out.println("session attributes not serializable: "
+                    + unserializable);
+        }
+    }
+
+    /**
+     * Print the line of one operation.
+     * @param out where the line is printed
+     * @param name the name of the line
+     * @param op the operation, null for all the operations
+     */
+    private void printLine(final PrintStream out, final String name,
+            final Operation op) {
+        long bytes = 0;
+        for (Map.Entry<Operation, OperationStats> entry
+                : operations.entrySet()) {
+            if (op == null || op == entry.getKey()) {
+                bytes += entry.getValue().getBytes();
+            }
+        }
+        final long count = this.getRequests(op);
+        out.printf("%-22s %8d %6d %8.2f %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f%n",
+                name, count, this.getErrors(op), this.getThroughput(op),
+                this.getMean(op), this.getPercentile(op, 50),
+                this.getPercentile(op, 90), this.getPercentile(op, 99),
+                this.getPercentile(op, 100),
+                count == 0 ? 0 : bytes / 1024.0 / count);
+    }
+
+    /**
+     * Requests recorded for one operation.
+     */
+    private static final class OperationStats {
+
+        /** Latency (in nanoseconds) of each request. */
+        private long[] latencies = new long[1024];
+        /** Number of requests. */
+        private int count = 0;
+        /** Number of failed requests. */
+        private int errors = 0;
+        /** Total size of the responses. */
+        private long bytes = 0;
+
+        /**
+         * Record one request.
+         * @param nanos the time the response took
+         * @param size the size of the response
+         * @param ok false if the request failed
+         */
+        private synchronized void add(final long nanos, final long size,
+                final boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            bytes += size;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        /**
+         * Return the latencies recorded.
+         * @return a copy of the latencies, in nanoseconds
+         */
+        private synchronized long[] getLatencies() {
+            return Arrays.copyOf(latencies, count);
+        }
+
+        /**
+         * Return the number of requests.
+         * @return the number of requests
+         */
+        private synchronized int getCount() {
+            return count;
+        }
+
+        /**
+         * Return the number of failed requests.
+         * @return the number of failed requests
+         */
+        private synchronized int getErrors() {
+            return errors;
+        }
+
+        /**
+         * Return the total size of the responses.
+         * @return the size in bytes
+         */
+        private synchronized long getBytes() {
+            return bytes;
+        }
+    }
+}
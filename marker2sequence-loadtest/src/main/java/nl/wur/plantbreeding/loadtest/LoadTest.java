@@ -0,0 +1,398 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.loadtest;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.testkit.DatasetGenerator;
+import nl.wur.plantbreeding.testkit.GeneratorSettings;
+import nl.wur.plantbreeding.testkit.SoapStandIn;
+import nl.wur.plantbreeding.testkit.SparqlStandIn;
+
+/**
+ * End-to-end load test of the web application: the war runs in an embedded
+ * Jetty against a SparqlStandIn and a SoapStandIn serving the same
+ * generated dataset, and virtual users send it a mix of marker2seq,
+ * annotation and keyword search requests.
+ * The requests sent during the warm-up are not recorded. As everything runs
+ * in the same JVM the heap reported includes the stand-ins and the dataset,
+ * run the test once with no user to get this baseline.
+ */
+public class LoadTest {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            LoadTest.class.getName());
+    /** The war deployed. */
+    private final File war;
+    /** Settings of the dataset served by the stand-ins. */
+    private final GeneratorSettings dataset;
+    /** Context path of the web application. */
+    private String contextPath = "/marker2sequence";
+    /** Port of the web application, 0 for any free port. */
+    private int port = 0;
+    /** Maximum number of threads of the servlet container. */
+    private int serverThreads = 50;
+    /** Number of virtual users. */
+    private int users = 10;
+    /** Length (in seconds) of the warm-up. */
+    private int warmup = 10;
+    /** Length (in seconds) of the measurement. */
+    private int duration = 60;
+    /** Mean time (in milliseconds) a user waits between two requests. */
+    private long thinkTime = 0;
+    /** Number of requests of a user before it opens a new session. */
+    private int visitLength = 10;
+    /** Number of markers between the two markers of an interval. */
+    private int span = 5;
+    /** Read timeout (in milliseconds) of the requests. */
+    private int timeout = 120000;
+    /** Mix of the requests. */
+    private TrafficMix mix = new TrafficMix(TrafficMix.DEFAULT);
+    /** Whether the BioMoby web-services are called. */
+    private boolean bioMoby = true;
+    /** Latency (in milliseconds) added by the sparql stand-in. */
+    private long sparqlLatency = 0;
+    /** Latency (in milliseconds) added by the SOAP stand-in. */
+    private long soapLatency = 0;
+
+    /**
+     * Constructor.
+     * @param warfile the war or exploded war directory to deploy
+     * @param settings the settings of the dataset served by the stand-ins
+     */
+    public LoadTest(final File warfile, final GeneratorSettings settings) {
+        this.war = warfile;
+        this.dataset = settings;
+    }
+
+    /**
+     * Start the stand-ins and the web application, run the test and stop
+     * them.
+     * @return the LoadReport of the test
+     * @throws Exception when the web application fails to start
+     */
+    public final LoadReport run() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(dataset);
+        final SparqlStandIn sparql = new SparqlStandIn(0, serverThreads);
+        sparql.load(generator);
+        sparql.setLatency(sparqlLatency / 2, sparqlLatency * 3 / 2);
+        final SoapStandIn soap = new SoapStandIn(0, serverThreads);
+        soap.setGenerator(generator);
+        soap.setLatency(soapLatency / 2, soapLatency * 3 / 2);
+
+        final EmbeddedWebApp webapp = new EmbeddedWebApp(war, contextPath);
+        webapp.setInitParameter("BioMoby", bioMoby ? "True" : "False");
+        try {
+            sparql.start();
+            soap.start();
+            // The urls are only known once the stand-ins listen
+            webapp.setInitParameter("sparqlserver", sparql.getEndpoint());
+            webapp.setInitParameter("markerServiceUrl", soap.getBaseUrl());
+            webapp.setInitParameter("sifterServiceUrl", soap.getBaseUrl());
+            webapp.setInitParameter("plantdbServiceUrl", soap.getBaseUrl());
+            webapp.start(port, serverThreads);
+            final LoadReport report = this.drive(webapp, generator);
+            LOG.log(Level.INFO, "{0}", sparql);
+            LOG.log(Level.INFO, "{0}", soap);
+            return report;
+        }
+        finally {
+            webapp.stop();
+            soap.stop();
+            sparql.stop();
+        }
+    }
+
+    /**
+     * Run the virtual users against a started web application.
+     * @param webapp the web application
+     * @param generator the generator of the dataset served
+     * @return the LoadReport of the test
+     * @throws InterruptedException if the test is interrupted
+     */
+    final LoadReport drive(final EmbeddedWebApp webapp,
+            final DatasetGenerator generator) throws InterruptedException {
+        final LoadReport report = new LoadReport();
+        final long from = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(warmup);
+        final long until = from + TimeUnit.SECONDS.toNanos(duration);
+        final ExecutorService threads = Executors.newFixedThreadPool(
+                Math.max(1, users));
+        for (int i = 0; i < users; i++) {
+            threads.execute(new VirtualUser(webapp.getUrl(), generator, this,
+                    report, dataset.getSeed() + i, from, until));
+        }
+        threads.shutdown();
+        LOG.log(Level.INFO, "{0} users, warm-up {1}s, measure {2}s, mix {3}",
+                new Object[]{users, warmup, duration, mix});
+        while (!threads.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() >= from) {
+                report.sampleHeap();
+            }
+            if (System.nanoTime() > until + TimeUnit.MILLISECONDS.toNanos(
+                    timeout)) {
+                LOG.warning("Users still running after the timeout");
+                threads.shutdownNow();
+                break;
+            }
+        }
+        report.setDuration(TimeUnit.SECONDS.toMillis(duration));
+        System.gc();
+        report.setHeapAfterGc(ManagementFactory.getMemoryMXBean()
+                .getHeapMemoryUsage().getUsed());
+        webapp.getSessions().measure(report);
+        return report;
+    }
+
+    /**
+     * Get the context path of the web application.
+     * @return the context path
+     */
+    public final String getContextPath() {
+        return contextPath;
+    }
+
+    /**
+     * Set the context path of the web application.
+     * @param path the context path, ie: /marker2sequence
+     */
+    public final void setContextPath(final String path) {
+        this.contextPath = path;
+    }
+
+    /**
+     * Set the port of the web application.
+     * @param value the port, 0 for any free port
+     */
+    public final void setPort(final int value) {
+        this.port = value;
+    }
+
+    /**
+     * Set the maximum number of threads of the servlet container and of
+     * each stand-in.
+     * @param value the number of threads
+     */
+    public final void setServerThreads(final int value) {
+        this.serverThreads = value;
+    }
+
+    /**
+     * Set the number of virtual users.
+     * @param value the number of users, each one runs in its own thread
+     */
+    public final void setUsers(final int value) {
+        this.users = value;
+    }
+
+    /**
+     * Set the length of the warm-up.
+     * @param seconds the length in seconds
+     */
+    public final void setWarmup(final int seconds) {
+        this.warmup = seconds;
+    }
+
+    /**
+     * Set the length of the measurement.
+     * @param seconds the length in seconds
+     */
+    public final void setDuration(final int seconds) {
+        this.duration = seconds;
+    }
+
+    /**
+     * Get the mean time a user waits between two requests.
+     * @return the time in milliseconds
+     */
+    public final long getThinkTime() {
+        return thinkTime;
+    }
+
+    /**
+     * Set the mean time a user waits between two requests.
+     * @param millis the time in milliseconds, 0 for no wait
+     */
+    public final void setThinkTime(final long millis) {
+        this.thinkTime = millis;
+    }
+
+    /**
+     * Get the number of requests of a user before it opens a new session.
+     * @return the number of requests per session
+     */
+    public final int getVisitLength() {
+        return visitLength;
+    }
+
+    /**
+     * Set the number of requests of a user before it opens a new session.
+     * @param value the number of requests per session
+     */
+    public final void setVisitLength(final int value) {
+        this.visitLength = value;
+    }
+
+    /**
+     * Get the number of markers between the two markers of an interval.
+     * @return the number of markers
+     */
+    public final int getSpan() {
+        return span;
+    }
+
+    /**
+     * Set the number of markers between the two markers of an interval.
+     * @param value the number of markers, the larger the interval the more
+     * genes it holds
+     */
+    public final void setSpan(final int value) {
+        this.span = value;
+    }
+
+    /**
+     * Get the read timeout of the requests.
+     * @return the timeout in milliseconds
+     */
+    public final int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set the read timeout of the requests.
+     * @param millis the timeout in milliseconds
+     */
+    public final void setTimeout(final int millis) {
+        this.timeout = millis;
+    }
+
+    /**
+     * Get the mix of the requests.
+     * @return the TrafficMix
+     */
+    public final TrafficMix getMix() {
+        return mix;
+    }
+
+    /**
+     * Set the mix of the requests.
+     * @param trafficmix the TrafficMix
+     */
+    public final void setMix(final TrafficMix trafficmix) {
+        this.mix = trafficmix;
+    }
+
+    /**
+     * Set whether the BioMoby web-services (SOAP stand-in) are called.
+     * @param value false to only use the sparql endpoint
+     */
+    public final void setBioMoby(final boolean value) {
+        this.bioMoby = value;
+    }
+
+    /**
+     * Set the mean latency added by the sparql stand-in.
+     * @param millis the latency in milliseconds
+     */
+    public final void setSparqlLatency(final long millis) {
+        this.sparqlLatency = millis;
+    }
+
+    /**
+     * Set the mean latency added by the SOAP stand-in.
+     * @param millis the latency in milliseconds
+     */
+    public final void setSoapLatency(final long millis) {
+        this.soapLatency = millis;
+    }
+
+    /**
+     * Run a load test and print its report.
+     * Usage: LoadTest [-users n] [-duration s] [-warmup s] [-think ms]
+     * [-visit n] [-mix operation=weight,...] [-scale factor] [-span n]
+     * [-threads n] [-port port] [-context path] [-sparqlLatency ms]
+     * [-soapLatency ms] [-nobiomoby] war
+     * @param args the command line arguments
+     * @throws Exception when the web application fails to start
+     */
+    public static void main(final String[] args) throws Exception {
+        File warfile = new File(
+                "marker2sequence-web/target/marker2sequence-web.war");
+        double scale = 0.05;
+        final String[] options = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            if ("-scale".equals(args[i]) && i + 1 < args.length) {
+                scale = Double.parseDouble(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                options[i] = args[i];
+                if (!"-nobiomoby".equals(args[i]) && i + 1 < args.length) {
+                    options[i + 1] = args[++i];
+                }
+            } else {
+                warfile = new File(args[i]);
+            }
+        }
+        final LoadTest test = new LoadTest(warfile,
+                new GeneratorSettings().scale(scale));
+        for (int i = 0; i < options.length; i++) {
+            if (options[i] == null || !options[i].startsWith("-")) {
+                continue;
+            }
+            final String value = i + 1 < options.length ? options[i + 1]
+                    : null;
+            if ("-users".equals(options[i])) {
+                test.setUsers(Integer.parseInt(value));
+            } else if ("-duration".equals(options[i])) {
+                test.setDuration(Integer.parseInt(value));
+            } else if ("-warmup".equals(options[i])) {
+                test.setWarmup(Integer.parseInt(value));
+            } else if ("-think".equals(options[i])) {
+                test.setThinkTime(Long.parseLong(value));
+            } else if ("-visit".equals(options[i])) {
+                test.setVisitLength(Integer.parseInt(value));
+            } else if ("-mix".equals(options[i])) {
+                test.setMix(new TrafficMix(value));
+            } else if ("-span".equals(options[i])) {
+                test.setSpan(Integer.parseInt(value));
+            } else if ("-threads".equals(options[i])) {
+                test.setServerThreads(Integer.parseInt(value));
+            } else if ("-port".equals(options[i])) {
+                test.setPort(Integer.parseInt(value));
+            } else if ("-context".equals(options[i])) {
+                test.setContextPath(value);
+            } else if ("-sparqlLatency".equals(options[i])) {
+                test.setSparqlLatency(Long.parseLong(value));
+            } else if ("-soapLatency".equals(options[i])) {
+                test.setSoapLatency(Long.parseLong(value));
+            } else if ("-nobiomoby".equals(options[i])) {
+                test.setBioMoby(false);
+            } else {
+                throw new IllegalArgumentException("Unknown option "
+                        + options[i]);
+            }
+        }
+        test.run().print(System.out);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.loadtest;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+
+/**
+ * Keeps track of the HTTP sessions of the web application so that their
+ * size can be measured: each attribute is serialized, as the container
+ * would do to persist or replicate the session.
+ */
+public class SessionTracker implements HttpSessionListener {
+
+    /** The sessions alive, per id. */
+    private final Map<String, HttpSession> sessions =
+            new ConcurrentHashMap<String, HttpSession>();
+
+    @Override
+    public final void sessionCreated(final HttpSessionEvent event) {
+        sessions.put(event.getSession().getId(), event.getSession());
+    }
+
+    @Override
+    public final void sessionDestroyed(final HttpSessionEvent event) {
+        sessions.remove(event.getSession().getId());
+    }
+
+    /**
+     * Return the number of sessions alive.
+     * @return the number of sessions
+     */
+    public final int getCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Measure the sessions alive and add them to a report.
+     * @param report the LoadReport
+     */
+    public final void measure(final LoadReport report) {
+        for (HttpSession session : sessions.values()) {
+            final Set<String> failed = new TreeSet<String>();
+            long bytes = 0;
+            try {
+                final Enumeration<?> names = session.getAttributeNames();
+                while (names.hasMoreElements()) {
+                    final String name = (String) names.nextElement();
+                    final long size = sizeOf(session.getAttribute(name));
+                    if (size < 0) {
+                        failed.add(name);
+                    } else {
+                        bytes += size;
+                    }
+                }
+            }
+            catch (IllegalStateException ex) {
+                // Invalidated while being measured
+                continue;
+            }
+            report.addSession(bytes, failed);
+        }
+    }
+
+    /**
+     * Return the serialized size of an object.
+     * @param value the object
+     * @return its size in bytes, -1 if it can not be serialized
+     */
+    static long sizeOf(final Object value) {
+        final CountingStream counter = new CountingStream();
+        try {
+            final ObjectOutputStream out = new ObjectOutputStream(counter);
+            out.writeObject(value);
+            out.close();
+        }
+        catch (IOException ex) {
+            return -1;
+        }
+        return counter.count;
+    }
+
+    /**
+     * Output stream counting the bytes written to it.
+     */
+    private static final class CountingStream extends OutputStream {
+
+        /** Number of bytes written. */
+        private long count = 0;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+}
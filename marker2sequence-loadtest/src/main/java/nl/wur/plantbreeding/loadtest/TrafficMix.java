@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Relative frequency of the requests sent by the virtual users, given as a
+ * list of operation=weight (ie: "marker2seq=2,annotation=5").
+ */
+public class TrafficMix {
+
+    /** Mix of a user looking at a few intervals and their genes. */
+    public static final String DEFAULT = "marker2seq=2,annotation=5,"
+            + "searchAnnotation=2,searchWholeAnnotation=1";
+
+    /** The operations of the web application loaded. */
+    public enum Operation {
+        /** Genes and markers of an interval (runs the whole pipeline). */
+        MARKER2SEQ("marker2seq", false),
+        /** Annotation of one gene (Sifter, PlantDB and sparql). */
+        ANNOTATION("annotation", false),
+        /** Keyword search in the interval of the session. */
+        SEARCH_ANNOTATION("searchAnnotation", true),
+        /** Keyword search in the whole genome annotation. */
+        SEARCH_WHOLE_ANNOTATION("searchWholeAnnotation", false);
+
+        /** Name of the operation, as in the struts action path. */
+        private final String name;
+        /** Whether the operation needs the result of a marker2seq. */
+        private final boolean needsResult;
+
+        /**
+         * Constructor.
+         * @param actionname name of the struts action
+         * @param result whether the operation reads the result of the
+         * session
+         */
+        private Operation(final String actionname, final boolean result) {
+            this.name = actionname;
+            this.needsResult = result;
+        }
+
+        /**
+         * Return the name of the operation.
+         * @return the name of the struts action
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Return the path of the action, relative to the web application.
+         * @return the path of the struts action
+         */
+        public String getPath() {
+            return "/marker2seq/" + name + ".do";
+        }
+
+        /**
+         * Return whether the operation needs the result of a previous
+         * marker2seq in the same session.
+         * @return true if a marker2seq must be run first
+         */
+        public boolean needsResult() {
+            return needsResult;
+        }
+
+        /**
+         * Return the operation of the given name.
+         * @param actionname the name of the struts action
+         * @return the Operation
+         * @throws IllegalArgumentException if there is no such operation
+         */
+        public static Operation forName(final String actionname) {
+            for (Operation op : values()) {
+                if (op.name.equalsIgnoreCase(actionname)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation: "
+                    + actionname);
+        }
+    }
+
+    /** Weight of each operation. */
+    private final Map<Operation, Integer> weights =
+            new EnumMap<Operation, Integer>(Operation.class);
+    /** Sum of the weights. */
+    private int total = 0;
+
+    /**
+     * Constructor.
+     * @param mix the mix as a comma separated list of operation=weight
+     * @throws IllegalArgumentException if the mix can not be read
+     */
+    public TrafficMix(final String mix) {
+        for (String entry : mix.split(",")) {
+            final String[] pair = entry.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: "
+                        + entry);
+            }
+            final int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight: "
+                        + entry);
+            }
+            weights.put(Operation.forName(pair[0].trim()), weight);
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Empty mix: " + mix);
+        }
+    }
+
+    /**
+     * Draw the next operation.
+     * @param random the random generator of the virtual user
+     * @return an Operation, drawn according to the weights
+     */
+    public final Operation next(final Random random) {
+        int draw = random.nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            draw -= entry.getValue();
+            if (draw < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Weights changed");
+    }
+
+    /**
+     * Return the mix, in the format read by the constructor.
+     * @return a comma separated list of operation=weight
+     */
+    @Override
+    public final String toString() {
+        final StringBuilder out = new StringBuilder();
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            if (out.length() > 0) {
+                out.append(',');
+            }
+            out.append(entry.getKey().getName()).append('=')
+                    .append(entry.getValue());
+        }
+        return out.toString();
+    }
+}
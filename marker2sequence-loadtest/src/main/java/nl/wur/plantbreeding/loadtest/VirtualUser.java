@@ -0,0 +1,271 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.loadtest.TrafficMix.Operation;
+import nl.wur.plantbreeding.testkit.DatasetGenerator;
+import nl.wur.plantbreeding.testkit.GeneratorSettings;
+
+/**
+ * One user of the web application: it keeps its HTTP session for a visit
+ * of a few requests, drawn from the TrafficMix, and starts a new session
+ * afterwards. The markers, genes and keywords requested are taken from the
+ * dataset served by the stand-ins, so that the requests find something.
+ */
+public class VirtualUser implements Runnable {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            VirtualUser.class.getName());
+    /** Name of the session cookie of the servlet container. */
+    private static final String SESSION_COOKIE = "JSESSIONID=";
+    /** Url of the web application. */
+    private final String baseurl;
+    /** Generator of the dataset served. */
+    private final DatasetGenerator generator;
+    /** Settings of the load test. */
+    private final LoadTest test;
+    /** Where the requests are recorded. */
+    private final LoadReport report;
+    /** Random generator of this user. */
+    private final Random random;
+    /** Time (System.nanoTime) from which the requests are recorded. */
+    private final long measureFrom;
+    /** Time (System.nanoTime) at which the user stops. */
+    private final long stopAt;
+    /** Session cookie, null before the first request of a visit. */
+    private String cookie = null;
+    /** Whether the session holds the result of a marker2seq. */
+    private boolean hasResult = false;
+    /** Chromosome of the last interval requested. */
+    private int chromosome = 1;
+
+    /**
+     * Constructor.
+     * @param url the url of the web application
+     * @param datasetgenerator the generator of the dataset served
+     * @param loadtest the settings of the load test
+     * @param loadreport where the requests are recorded
+     * @param seed the seed of the random generator of this user
+     * @param from the time (System.nanoTime) from which the requests are
+     * recorded
+     * @param until the time (System.nanoTime) at which the user stops
+     */
+    public VirtualUser(final String url,
+            final DatasetGenerator datasetgenerator, final LoadTest loadtest,
+            final LoadReport loadreport, final long seed, final long from,
+            final long until) {
+        this.baseurl = url;
+        this.generator = datasetgenerator;
+        this.test = loadtest;
+        this.report = loadreport;
+        this.random = new Random(seed);
+        this.measureFrom = from;
+        this.stopAt = until;
+    }
+
+    /**
+     * Send requests until the end of the test.
+     */
+    @Override
+    public final void run() {
+        int sent = 0;
+        while (System.nanoTime() < stopAt
+                && !Thread.currentThread().isInterrupted()) {
+            if (sent == test.getVisitLength()) {
+                // End of the visit, the next request opens a new session
+                cookie = null;
+                hasResult = false;
+                sent = 0;
+            }
+            Operation op = test.getMix().next(random);
+            if (op.needsResult() && !hasResult) {
+                op = Operation.MARKER2SEQ;
+            }
+            final long start = System.nanoTime();
+            long bytes = 0;
+            boolean ok = false;
+            try {
+                bytes = this.get(op.getPath() + this.getQuery(op));
+                ok = true;
+            }
+            catch (IOException ex) {
+                LOG.log(Level.FINE, "{0} failed: {1}",
+                        new Object[]{op.getName(), ex.getMessage()});
+            }
+            if (start >= measureFrom) {
+                report.record(op, System.nanoTime() - start, bytes, ok);
+            }
+            if (op == Operation.MARKER2SEQ) {
+                hasResult = ok;
+            }
+            sent++;
+            this.think();
+        }
+    }
+
+    /**
+     * Return the parameters of a request.
+     * @param op the operation requested
+     * @return the query string, starting with ?
+     */
+    private String getQuery(final Operation op) {
+        switch (op) {
+            case MARKER2SEQ:
+                return "?markers=" + encode(this.randomInterval());
+            case ANNOTATION:
+                return "?geneid=" + encode(generator.getGene(
+                        this.randomGene()).getName());
+            case SEARCH_ANNOTATION:
+                return "?keyword=" + encode(this.randomKeyword())
+                        + "&graph=go"
+                        + (random.nextBoolean() ? "&restricted=1" : "");
+            default:
+                return "?keyword=" + encode(this.randomKeyword());
+        }
+    }
+
+    /**
+     * Draw the interval of a marker2seq request: two markers of a random
+     * chromosome, span markers apart.
+     * @return the comma separated names of the two markers
+     */
+    private String randomInterval() {
+        final GeneratorSettings settings = generator.getSettings();
+        chromosome = 1 + random.nextInt(settings.getChromosomes());
+        final int mpc = settings.getMarkersPerChromosome();
+        final int count = Math.min(mpc,
+                settings.getMarkers() - (chromosome - 1) * mpc);
+        final int span = Math.max(1, Math.min(test.getSpan(), count - 1));
+        final int first = (chromosome - 1) * mpc
+                + random.nextInt(Math.max(1, count - span));
+        return DatasetGenerator.getMarkerName(first) + ","
+                + DatasetGenerator.getMarkerName(first + span);
+    }
+
+    /**
+     * Return a gene of the chromosome of the last interval requested.
+     * @return the index of the gene
+     */
+    private int randomGene() {
+        final GeneratorSettings settings = generator.getSettings();
+        final int gpc = settings.getGenesPerChromosome();
+        final int first = (chromosome - 1) * gpc;
+        return first + random.nextInt(Math.max(1, Math.min(gpc,
+                settings.getGenes() - first)));
+    }
+
+    /**
+     * Return a word of the description of a gene.
+     * @return a keyword found in the annotation
+     */
+    private String randomKeyword() {
+        final String description = generator.getGene(random.nextInt(
+                generator.getSettings().getGenes())).getDescription();
+        return description.split(" ")[0];
+    }
+
+    /**
+     * Request a page of the web application, keeping the session cookie.
+     * @param path the path and query of the page
+     * @return the size of the response
+     * @throws IOException when the request fails or the server answers
+     * with an error
+     */
+    private long get(final String path) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(
+                baseurl + path).openConnection();
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(test.getTimeout());
+        if (cookie != null) {
+            connection.setRequestProperty("Cookie", cookie);
+        }
+        final int status = connection.getResponseCode();
+        final List<String> cookies =
+                connection.getHeaderFields().get("Set-Cookie");
+        if (cookies != null) {
+            for (String set : cookies) {
+                if (set.startsWith(SESSION_COOKIE)) {
+                    cookie = set.split(";")[0];
+                }
+            }
+        }
+        final InputStream in = status >= 400 ? connection.getErrorStream()
+                : connection.getInputStream();
+        long bytes = 0;
+        if (in != null) {
+            try {
+                final byte[] buffer = new byte[8192];
+                int n = in.read(buffer);
+                while (n >= 0) {
+                    bytes += n;
+                    n = in.read(buffer);
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        if (status >= 400) {
+            throw new IOException("HTTP " + status + " for " + path);
+        }
+        return bytes;
+    }
+
+    /**
+     * Wait between two requests, drawn uniformly between 0 and twice the
+     * think time.
+     */
+    private void think() {
+        final long think = test.getThinkTime();
+        if (think <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep((long) (random.nextDouble() * 2 * think));
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Url encode a parameter.
+     * @param value the parameter
+     * @return the encoded parameter
+     */
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
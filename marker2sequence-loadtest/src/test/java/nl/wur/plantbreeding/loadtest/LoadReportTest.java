@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Random;
+import nl.wur.plantbreeding.loadtest.TrafficMix.Operation;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoadReportTest {
+
+    /**
+     * Test the percentiles and throughput computed from recorded requests.
+     */
+    @Test
+    public void testReport() {
+        final LoadReport report = new LoadReport();
+        for (int i = 1; i <= 100; i++) {
+            report.record(Operation.ANNOTATION, i * 1000000L, 1024, true);
+        }
+        report.record(Operation.MARKER2SEQ, 500000000L, 2048, false);
+        report.setDuration(10000);
+        report.addSession(4096, Collections.singleton("result"));
+
+        assertEquals(101, report.getRequests(null));
+        assertEquals(100, report.getRequests(Operation.ANNOTATION));
+        assertEquals(1, report.getErrors(null));
+        assertEquals(10.0, report.getThroughput(Operation.ANNOTATION), 1e-9);
+        assertEquals(50.0, report.getPercentile(Operation.ANNOTATION, 50),
+                1e-9);
+        assertEquals(99.0, report.getPercentile(Operation.ANNOTATION, 99),
+                1e-9);
+        assertEquals(500.0, report.getPercentile(null, 100), 1e-9);
+        assertEquals(50.5, report.getMean(Operation.ANNOTATION), 1e-9);
+        assertEquals(0.0, report.getPercentile(
+                Operation.SEARCH_ANNOTATION, 50), 1e-9);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out));
+        assertTrue(out.toString().contains("annotation"));
+        assertTrue(out.toString().contains("result"));
+    }
+
+    /**
+     * Test the parsing of a mix and the weighted draw of the operations.
+     */
+    @Test
+    public void testTrafficMix() {
+        final TrafficMix mix = new TrafficMix("marker2seq=1,annotation=3");
+        final Random random = new Random(42);
+        int annotation = 0;
+        for (int i = 0; i < 4000; i++) {
+            final Operation op = mix.next(random);
+            assertTrue(op == Operation.MARKER2SEQ
+                    || op == Operation.ANNOTATION);
+            if (op == Operation.ANNOTATION) {
+                annotation++;
+            }
+        }
+        assertTrue(annotation > 2800 && annotation < 3200);
+        assertEquals("/marker2seq/searchAnnotation.do",
+                Operation.forName("searchAnnotation").getPath());
+        assertTrue(Operation.SEARCH_ANNOTATION.needsResult());
+        assertFalse(Operation.SEARCH_WHOLE_ANNOTATION.needsResult());
+    }
+}
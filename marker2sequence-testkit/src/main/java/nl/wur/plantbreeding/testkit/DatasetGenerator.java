@@ -0,0 +1,802 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.Markerws;
+
+/**
+ * Generates a synthetic genome with the shapes the application expects from
+ * the sparql endpoint and from the BioMoby web-services: the genes and
+ * genetic markers of the ITAG graph (GENE#, MARKER#, POSITION#, SCAFFOLD#),
+ * the Gene Ontology, the UniProt proteins with their pathways and citations
+ * and the protein-protein interactions.
+ * The statements are streamed to a TripleSink so that datasets up to 100
+ * times the size of tomato can be written without holding them in memory.
+ * Each entity is drawn from its own random generator derived from the seed,
+ * so the same settings always give the same dataset and any marker or gene
+ * can be computed on its own (as the stand-in services do).
+ */
+public class DatasetGenerator {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            DatasetGenerator.class.getName());
+    /** Graph holding the genes and markers. */
+    public static final String ITAG_GRAPH = "http://itag2.pbr.wur.nl/";
+    /** Graph holding the Gene Ontology. */
+    public static final String GO_GRAPH = "http://go.pbr.wur.nl/";
+    /** Graph holding the UniProt proteins. */
+    public static final String UNIPROT_GRAPH = "http://uniprot.pbr.wur.nl/";
+    /** Graph holding the protein-protein interactions. */
+    public static final String INTACT_GRAPH = "http://intact.pbr.wur.nl/";
+    /** Namespace of the markers. */
+    public static final String MARKER = "http://pbr.wur.nl/MARKER#";
+    /** Namespace of the genes. */
+    public static final String GENE = "http://pbr.wur.nl/GENE#";
+    /** Namespace of the positions. */
+    public static final String POSITION = "http://pbr.wur.nl/POSITION#";
+    /** Namespace of the scaffolds. */
+    public static final String SCAFFOLD = "http://pbr.wur.nl/SCAFFOLD#";
+    /** Namespace of the GO terms. */
+    public static final String GO = "http://purl.org/obo/owl/GO#";
+    /** Namespace of the GO properties. */
+    public static final String OBO =
+            "http://www.geneontology.org/formats/oboInOwl#";
+    /** Namespace of the UniProt properties. */
+    public static final String UNIPROT_CORE = "http://purl.uniprot.org/core/";
+    /** Namespace of the UniProt proteins. */
+    public static final String UNIPROT = "http://purl.uniprot.org/uniprot/";
+    /** Namespace of the UniPathway pathways. */
+    public static final String UNIPATHWAY =
+            "http://purl.uniprot.org/unipathway/";
+    /** Namespace of the citations. */
+    public static final String CITATIONS =
+            "http://purl.uniprot.org/citations/";
+    /** Namespace of the PubMed articles. */
+    public static final String PUBMED = "http://purl.uniprot.org/pubmed/";
+    /** Namespace of the SKOS properties. */
+    private static final String SKOS = "http://www.w3.org/2004/02/skos/core#";
+    /** The rdf:type property. */
+    private static final String RDF_TYPE =
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    /** Namespace of the RDFS properties. */
+    private static final String RDFS = "http://www.w3.org/2000/01/rdf-schema#";
+    /** Datatype of the booleans. */
+    private static final String XSD_BOOLEAN =
+            "http://www.w3.org/2001/XMLSchema#boolean";
+    /** Words used in the descriptions of the genes, GO terms and pathways. */
+    private static final String[] WORDS = {"kinase", "transporter",
+        "binding", "ripening", "transcription factor", "ethylene",
+        "oxidoreductase", "membrane", "receptor", "phosphatase",
+        "auxin", "cytochrome P450", "hydrolase", "zinc finger",
+        "disease resistance", "heat shock", "peroxidase", "ribosomal",
+        "glycosyltransferase", "lipid", "chloroplast", "ubiquitin",
+        "sugar", "calcium"};
+    /** Suffix of the GO terms of each namespace. */
+    private static final String[] GO_SUFFIX = {"process", "activity",
+        "complex"};
+    /** The GO namespaces, the three first terms are their roots. */
+    private static final String[] GO_NAMESPACES = {"biological_process",
+        "molecular_function", "cellular_component"};
+    /** Name of the genes, giving their chromosome and rank. */
+    private static final Pattern GENE_NAME = Pattern.compile(
+            "Solyc(\\d{2})g(\\d{6})\\.2\\.1");
+    /** Prefixes of the marker names. */
+    private static final String[] MARKER_PREFIX = {"TG", "T", "C2_At",
+        "SSR", "cLET"};
+    /** Kind of entity a random generator is drawn for. */
+    private static final int MARKERS = 1, GENES = 2, TERMS = 3, PROTEINS = 4,
+            ANNOTATIONS = 5, LABELS = 6, PATHWAYS = 7;
+
+    /** The settings of the dataset. */
+    private final GeneratorSettings settings;
+
+    /**
+     * Constructor.
+     * @param generatorsettings the settings of the dataset (copied)
+     */
+    public DatasetGenerator(final GeneratorSettings generatorsettings) {
+        if (generatorsettings.getChromosomeLength()
+                < generatorsettings.getScaffoldsPerChromosome()) {
+            throw new IllegalArgumentException("More scaffolds than bases: "
+                    + generatorsettings);
+        }
+        this.settings = generatorsettings.copy();
+    }
+
+    /**
+     * Return the settings of the dataset.
+     * @return a copy of the GeneratorSettings
+     */
+    public final GeneratorSettings getSettings() {
+        return settings.copy();
+    }
+
+    /**
+     * Write the whole dataset: the ontology, the markers and the genes with
+     * their proteins.
+     * @param sink the TripleSink receiving the statements (not closed)
+     * @throws IOException when the sink can not write a statement
+     */
+    public final void generate(final TripleSink sink) throws IOException {
+        this.generateOntology(sink);
+        for (int chr = 1; chr <= settings.getChromosomes(); chr++) {
+            this.generateChromosome(sink, chr);
+        }
+    }
+
+    /**
+     * Write the GO terms with their name, identifier, namespace, definition,
+     * synonyms and parents.
+     * @param sink the TripleSink receiving the statements
+     * @throws IOException when the sink can not write a statement
+     */
+    public final void generateOntology(final TripleSink sink)
+            throws IOException {
+        for (int t = 0; t < settings.getGoTerms(); t++) {
+            final String term = this.getGoUri(t);
+            sink.addLiteral(GO_GRAPH, term, RDFS + "label",
+                    this.getGoLabel(t), "en", null);
+            sink.addLiteral(GO_GRAPH, term, GO + "GoID",
+                    "GO:" + this.getGoId(t), null, null);
+            sink.addLiteral(GO_GRAPH, term, OBO + "hasOBONamespace",
+                    this.getGoNamespace(t), null, null);
+            sink.addResource(GO_GRAPH, term, OBO + "hasDefinition",
+                    term + "_def");
+            sink.addLiteral(GO_GRAPH, term + "_def", RDFS + "label",
+                    "Definition of " + this.getGoLabel(t), "en", null);
+            final Random rnd = this.random(TERMS, t);
+            for (int s = 0; s < settings.getSynonymsPerTerm(); s++) {
+                sink.addResource(GO_GRAPH, term, OBO + "hasExactSynonym",
+                        term + "_syn" + s);
+                sink.addLiteral(GO_GRAPH, term + "_syn" + s, RDFS + "label",
+                        pick(rnd) + " " + GO_SUFFIX[t % 3] + " " + (s + 1),
+                        "en", null);
+            }
+            for (int parent : this.getGoParents(t)) {
+                sink.addResource(GO_GRAPH, term, RDFS + "subClassOf",
+                        this.getGoUri(parent));
+            }
+        }
+    }
+
+    /**
+     * Write the markers and the genes of one chromosome.
+     * @param sink the TripleSink receiving the statements
+     * @param chr the chromosome, from 1 to the number of chromosomes
+     * @throws IOException when the sink can not write a statement
+     */
+    public final void generateChromosome(final TripleSink sink,
+            final int chr) throws IOException {
+        final int mpc = settings.getMarkersPerChromosome();
+        final int mlast = Math.min(settings.getMarkers(), chr * mpc);
+        for (int i = (chr - 1) * mpc; i < mlast; i++) {
+            this.writeMarker(sink, this.getMarker(i));
+        }
+        final int gpc = settings.getGenesPerChromosome();
+        final int glast = Math.min(settings.getGenes(), chr * gpc);
+        for (int g = (chr - 1) * gpc; g < glast; g++) {
+            this.writeGene(sink, g);
+        }
+    }
+
+    /**
+     * Write a marker as it is stored on the sparql endpoint.
+     * @param sink the TripleSink receiving the statements
+     * @param marker the marker
+     * @throws IOException when the sink can not write a statement
+     */
+    private void writeMarker(final TripleSink sink, final Markerws marker)
+            throws IOException {
+        final String uri = MARKER + marker.getSgnID();
+        sink.addLiteral(ITAG_GRAPH, uri, RDF_TYPE, MARKER, null, null);
+        sink.addLiteral(ITAG_GRAPH, uri, MARKER + "MarkerName",
+                marker.getName(), null, null);
+        sink.addLiteral(ITAG_GRAPH, uri, MARKER + "Chromosome",
+                String.valueOf(marker.getChromosomeNumber()), null, null);
+        sink.addLiteral(ITAG_GRAPH, uri, MARKER + "mapPosition",
+                String.valueOf(marker.getMapPosition()), null, null);
+        sink.addLiteral(ITAG_GRAPH, uri, MARKER + "SGN-ID",
+                marker.getSgnID(), null, null);
+        if (marker.getScafoldname() != null) {
+            final String position = POSITION + marker.getSgnID();
+            sink.addResource(ITAG_GRAPH, uri, MARKER + "Position", position);
+            this.writePosition(sink, position, marker);
+        }
+    }
+
+    /**
+     * Write a gene, its GO terms and its protein.
+     * @param sink the TripleSink receiving the statements
+     * @param index the index of the gene
+     * @throws IOException when the sink can not write a statement
+     */
+    private void writeGene(final TripleSink sink, final int index)
+            throws IOException {
+        final Annotation gene = this.getGene(index);
+        final String uri = GENE + gene.getName();
+        sink.addLiteral(ITAG_GRAPH, uri, RDF_TYPE, GENE, null, null);
+        sink.addLiteral(ITAG_GRAPH, uri, GENE + "FeatureName",
+                gene.getName(), null, null);
+        sink.addLiteral(ITAG_GRAPH, uri, GENE + "FeatureType",
+                gene.getType(), null, null);
+        sink.addLiteral(ITAG_GRAPH, uri, GENE + "Description",
+                gene.getDescription(), null, null);
+        final String position = POSITION + gene.getName();
+        sink.addResource(ITAG_GRAPH, uri, GENE + "Position", position);
+        this.writePosition(sink, position, gene);
+        for (int term : this.getGeneGoTerms(index)) {
+            sink.addResource(ITAG_GRAPH, uri, GENE + "Go",
+                    this.getGoUri(term));
+        }
+        if (this.hasProtein(index)) {
+            final String protein = this.getProteinUri(index);
+            sink.addResource(ITAG_GRAPH, uri, GENE + "Protein", protein);
+            this.writeProtein(sink, index, protein, gene.getDescription());
+        }
+    }
+
+    /**
+     * Write the position of a gene or marker on its scaffold.
+     * @param sink the TripleSink receiving the statements
+     * @param position the URI of the position
+     * @param feature the gene or marker
+     * @throws IOException when the sink can not write a statement
+     */
+    private void writePosition(final TripleSink sink, final String position,
+            final Annotation feature) throws IOException {
+        sink.addLiteral(ITAG_GRAPH, position, POSITION + "Start",
+                String.valueOf(feature.getStartPosition()), null, null);
+        sink.addLiteral(ITAG_GRAPH, position, POSITION + "Stop",
+                String.valueOf(feature.getEndPosition()), null, null);
+        sink.addResource(ITAG_GRAPH, position, POSITION + "Scaffold",
+                SCAFFOLD + feature.getScafoldname());
+    }
+
+    /**
+     * Write the UniProt entry of the protein of a gene: names, review
+     * status, pathways, citations and interactions.
+     * @param sink the TripleSink receiving the statements
+     * @param index the index of the gene
+     * @param protein the URI of the protein
+     * @param description the description of the gene
+     * @throws IOException when the sink can not write a statement
+     */
+    private void writeProtein(final TripleSink sink, final int index,
+            final String protein, final String description)
+            throws IOException {
+        final Random rnd = this.random(PROTEINS, index);
+        rnd.nextDouble(); // drawn by hasProtein
+        sink.addResource(UNIPROT_GRAPH, protein,
+                UNIPROT_CORE + "recommendedName", protein + "#rname");
+        sink.addLiteral(UNIPROT_GRAPH, protein + "#rname",
+                UNIPROT_CORE + "fullName", description, null, null);
+        if (rnd.nextDouble() < 0.3) {
+            sink.addResource(UNIPROT_GRAPH, protein,
+                    UNIPROT_CORE + "alternativeName", protein + "#aname");
+            sink.addLiteral(UNIPROT_GRAPH, protein + "#aname",
+                    UNIPROT_CORE + "fullName", pick(rnd) + " homolog",
+                    null, null);
+        }
+        sink.addLiteral(UNIPROT_GRAPH, protein, UNIPROT_CORE + "reviewed",
+                String.valueOf(rnd.nextDouble() < 0.2), null, XSD_BOOLEAN);
+        if (rnd.nextDouble() < settings.getPathwayFraction()) {
+            final int pathway = skewed(rnd, settings.getPathways());
+            final String annot = protein + "#pathway";
+            sink.addResource(UNIPROT_GRAPH, protein,
+                    UNIPROT_CORE + "annotation", annot);
+            sink.addResource(UNIPROT_GRAPH, annot, RDFS + "seeAlso",
+                    UNIPATHWAY + String.format("UPA%05d", pathway + 1));
+            sink.addLiteral(UNIPROT_GRAPH, annot, RDFS + "comment",
+                    this.getPathwayDescription(pathway), null, null);
+        }
+        final int citations = poisson(rnd, settings.getCitationsPerProtein());
+        for (int c = 0; c < citations; c++) {
+            final String pmid = String.valueOf(15000000 + rnd.nextInt(
+                    Math.max(1, settings.getGenes())));
+            final String citation = CITATIONS + pmid;
+            sink.addResource(UNIPROT_GRAPH, protein,
+                    UNIPROT_CORE + "citation", citation);
+            sink.addResource(UNIPROT_GRAPH, citation, SKOS + "exactMatch",
+                    PUBMED + pmid);
+            sink.addLiteral(UNIPROT_GRAPH, citation, UNIPROT_CORE + "title",
+                    "Characterization of a " + pick(rnd) + " in tomato",
+                    null, null);
+            sink.addLiteral(UNIPROT_GRAPH, PUBMED + pmid,
+                    UNIPROT_CORE + "title", "PubMed " + pmid, null, null);
+            sink.addLiteral(UNIPROT_GRAPH, PUBMED + pmid, RDFS + "comment",
+                    "Abstract of PubMed " + pmid, null, null);
+        }
+        final int interactions = poisson(rnd,
+                settings.getInteractionsPerProtein());
+        for (int k = 0; k < interactions; k++) {
+            final int other = rnd.nextInt(settings.getGenes());
+            if (other != index && this.hasProtein(other)) {
+                sink.addResource(INTACT_GRAPH, protein,
+                        UNIPROT_CORE + "Interact", this.getProteinUri(other));
+            }
+        }
+    }
+
+    /**
+     * Return a genetic marker with its position on the genetic map and, if
+     * it is placed, on the genome.
+     * @param index the index of the marker, from 0 to the number of markers
+     * @return the marker as a Markerws (scaffold name null if the marker is
+     * not placed on the genome)
+     */
+    public final Markerws getMarker(final int index) {
+        if (index < 0 || index >= settings.getMarkers()) {
+            throw new IndexOutOfBoundsException("No marker " + index);
+        }
+        final int mpc = settings.getMarkersPerChromosome();
+        final int chr = index / mpc + 1;
+        final int rank = index % mpc;
+        final Random rnd = this.random(MARKERS, index);
+        final double offset = rnd.nextDouble();
+        final Markerws marker = new Markerws();
+        marker.setName(getMarkerName(index));
+        marker.setSgnID("SGN-M" + (index + 1));
+        marker.setType("marker");
+        marker.setMapLocation(chr, (float) (Math.round((rank + offset)
+                * settings.getMapLength() / mpc * 100) / 100.0));
+        if (rnd.nextDouble() >= settings.getUnplacedMarkers()) {
+            final long bp = (long) ((rank + offset)
+                    * settings.getChromosomeLength() / mpc);
+            this.place(marker, chr, bp, 200 + rnd.nextInt(800));
+        }
+        return marker;
+    }
+
+    /**
+     * Return the name of a marker.
+     * @param index the index of the marker
+     * @return the name of the marker
+     */
+    public static String getMarkerName(final int index) {
+        return MARKER_PREFIX[index % MARKER_PREFIX.length] + index;
+    }
+
+    /**
+     * Return the index of the marker of the given name.
+     * @param name the name of a marker
+     * @return the index of the marker, -1 if no marker has this name
+     */
+    public final int getMarkerIndex(final String name) {
+        int cut = name.length();
+        while (cut > 0 && Character.isDigit(name.charAt(cut - 1))) {
+            cut--;
+        }
+        if (cut == name.length() || name.length() - cut > 9) {
+            return -1;
+        }
+        final int index = Integer.parseInt(name.substring(cut));
+        if (index < settings.getMarkers()
+                && getMarkerName(index).equals(name)) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the markers of a chromosome located between two positions of
+     * the genetic map.
+     * @param chr the chromosome
+     * @param from the lower position (in cM)
+     * @param to the upper position (in cM)
+     * @return the list of Markerws ordered by position on the map
+     */
+    public final List<Markerws> getMarkers(final int chr, final double from,
+            final double to) {
+        final List<Markerws> markers = new ArrayList<Markerws>();
+        final int mpc = settings.getMarkersPerChromosome();
+        final int first = (chr - 1) * mpc;
+        final int last = Math.min(settings.getMarkers(), chr * mpc);
+        final double step = settings.getMapLength() / mpc;
+        final int lo = Math.max(first, first + (int) (from / step) - 1);
+        final int hi = Math.min(last, first + (int) (to / step) + 2);
+        for (int i = lo; i < hi; i++) {
+            final Markerws marker = this.getMarker(i);
+            if (marker.getMapPosition() >= from
+                    && marker.getMapPosition() <= to) {
+                markers.add(marker);
+            }
+        }
+        return markers;
+    }
+
+    /**
+     * Return the genetic map of a chromosome.
+     * @param chr the chromosome
+     * @return the list of GeneticMarkers ordered by position on the map
+     */
+    public final List<GeneticMarkers> getGeneticMap(final int chr) {
+        final List<GeneticMarkers> map = new ArrayList<GeneticMarkers>();
+        for (Markerws marker : this.getMarkers(chr, 0,
+                settings.getMapLength())) {
+            final GeneticMarkers gm = new GeneticMarkers();
+            gm.setName(marker.getName());
+            gm.setId(marker.getSgnID().substring("SGN-M".length()));
+            gm.set_Chromosome(chr);
+            gm.set_position(Double.parseDouble(
+                    String.valueOf(marker.getMapPosition())));
+            map.add(gm);
+        }
+        return map;
+    }
+
+    /**
+     * Return a gene with its position and description.
+     * @param index the index of the gene, from 0 to the number of genes
+     * @return the gene as an Annotation
+     */
+    public final Annotation getGene(final int index) {
+        if (index < 0 || index >= settings.getGenes()) {
+            throw new IndexOutOfBoundsException("No gene " + index);
+        }
+        final int gpc = settings.getGenesPerChromosome();
+        final int chr = index / gpc + 1;
+        final int rank = index % gpc;
+        final Random rnd = this.random(GENES, index);
+        final double bin = (double) settings.getChromosomeLength() / gpc;
+        final Annotation gene = new Annotation();
+        gene.setName(String.format("Solyc%02dg%06d.2.1", chr,
+                (rank + 1) * 10));
+        gene.setType("gene");
+        if (rnd.nextDouble() < 0.1) {
+            gene.setDescription("Unknown Protein");
+        } else {
+            gene.setDescription(pick(rnd) + " " + pick(rnd) + " protein");
+        }
+        final long start = (long) ((rank + 0.05 + 0.4 * rnd.nextDouble())
+                * bin);
+        final int length = (int) Math.max(1, Math.min(
+                500 + rnd.nextInt(4500), bin / 2));
+        this.place(gene, chr, start, length);
+        return gene;
+    }
+
+    /**
+     * Return the index of the gene of the given name.
+     * @param name the name of a gene (ie: Solyc01g000010.2.1)
+     * @return the index of the gene, -1 if no gene has this name
+     */
+    public final int getGeneIndex(final String name) {
+        final Matcher matcher = GENE_NAME.matcher(name);
+        if (!matcher.matches()) {
+            return -1;
+        }
+        final int gpc = settings.getGenesPerChromosome();
+        final int chr = Integer.parseInt(matcher.group(1));
+        final int number = Integer.parseInt(matcher.group(2));
+        final int index = (chr - 1) * gpc + number / 10 - 1;
+        if (chr < 1 || number % 10 != 0 || number / 10 > gpc
+                || index < 0 || index >= settings.getGenes()) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Return the GO terms of a gene.
+     * @param index the index of the gene
+     * @return the indexes of the GO terms, without duplicate
+     */
+    public final Set<Integer> getGeneGoTerms(final int index) {
+        final Random rnd = this.random(ANNOTATIONS, index);
+        final int count = poisson(rnd, settings.getGoPerGene());
+        final Set<Integer> terms = new LinkedHashSet<Integer>();
+        for (int k = 0; k < count; k++) {
+            terms.add(skewed(rnd, settings.getGoTerms()));
+        }
+        return terms;
+    }
+
+    /**
+     * Return whether a gene codes a protein known by UniProt.
+     * @param index the index of the gene
+     * @return true if the gene has a protein
+     */
+    public final boolean hasProtein(final int index) {
+        return this.random(PROTEINS, index).nextDouble()
+                < settings.getProteinFraction();
+    }
+
+    /**
+     * Return the URI of the protein of a gene.
+     * @param index the index of the gene
+     * @return the UniProt URI of the protein
+     */
+    public final String getProteinUri(final int index) {
+        return UNIPROT + String.format("Q%07d", index + 1);
+    }
+
+    /**
+     * Set the scaffold and the position on the scaffold of a feature.
+     * @param feature the gene or marker
+     * @param chr its chromosome
+     * @param bp its start on the chromosome
+     * @param length its length
+     */
+    private void place(final Annotation feature, final int chr,
+            final long bp, final int length) {
+        final long size = settings.getChromosomeLength();
+        final int scaffolds = settings.getScaffoldsPerChromosome();
+        final long start = Math.min(bp, size - 1);
+        final int scaffold = (int) (start * scaffolds / size);
+        final long offset = scaffold * size / scaffolds;
+        final long end = Math.min(start + length,
+                (scaffold + 1) * size / scaffolds);
+        feature.setScafoldname(this.getScaffoldName(chr, scaffold));
+        feature.setSeqPosition((int) (start - offset + 1),
+                (int) (end - offset));
+    }
+
+    /**
+     * Return the name of a scaffold, recognised as a tomato scaffold by
+     * QueryRdf.getPhysicalMap.
+     * @param chr the chromosome
+     * @param scaffold the index of the scaffold on the chromosome
+     * @return the name of the scaffold
+     */
+    public final String getScaffoldName(final int chr, final int scaffold) {
+        if (settings.getScaffoldsPerChromosome() == 1) {
+            return String.format("SL2.40ch%02d", chr);
+        }
+        return String.format("SL2.40sc%05d-ch%02d", scaffold + 1, chr);
+    }
+
+    /**
+     * Return the URI of a GO term.
+     * @param term the index of the term
+     * @return the URI of the term
+     */
+    public final String getGoUri(final int term) {
+        return GO + "GO_" + this.getGoId(term);
+    }
+
+    /**
+     * Return the identifier of a GO term.
+     * @param term the index of the term
+     * @return a 7 digit identifier
+     */
+    public final String getGoId(final int term) {
+        return String.format("%07d", term + 1);
+    }
+
+    /**
+     * Return the name of a GO term.
+     * @param term the index of the term
+     * @return the name of the term
+     */
+    public final String getGoLabel(final int term) {
+        if (term < GO_NAMESPACES.length) {
+            return GO_NAMESPACES[term].replace('_', ' ');
+        }
+        final Random rnd = this.random(LABELS, term);
+        return pick(rnd) + " " + pick(rnd) + " " + GO_SUFFIX[term % 3]
+                + " " + (term + 1);
+    }
+
+    /**
+     * Return the namespace of a GO term.
+     * @param term the index of the term
+     * @return the namespace of the term
+     */
+    public final String getGoNamespace(final int term) {
+        return GO_NAMESPACES[term % GO_NAMESPACES.length];
+    }
+
+    /**
+     * Return the parents of a GO term: one or two terms of the same
+     * namespace with a lower index, none for the three roots.
+     * @param term the index of the term
+     * @return the indexes of the parents
+     */
+    public final Set<Integer> getGoParents(final int term) {
+        final Set<Integer> parents = new LinkedHashSet<Integer>();
+        if (term >= GO_NAMESPACES.length) {
+            final Random rnd = this.random(TERMS, term);
+            final int ns = term % GO_NAMESPACES.length;
+            final int before = (term - ns) / GO_NAMESPACES.length;
+            parents.add(ns + GO_NAMESPACES.length * rnd.nextInt(before));
+            if (rnd.nextDouble() < 0.2) {
+                parents.add(ns + GO_NAMESPACES.length * rnd.nextInt(before));
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Return the description of a pathway.
+     * @param pathway the index of the pathway
+     * @return the description of the pathway
+     */
+    public final String getPathwayDescription(final int pathway) {
+        final Random rnd = this.random(PATHWAYS, pathway);
+        return "Plant hormone " + pick(rnd) + " biosynthesis; step "
+                + (pathway + 1);
+    }
+
+    /**
+     * Write the response of the getMarkersForRegion web-service listing the
+     * given markers, as written by SoapClient.
+     * @param markers the markers
+     * @param out where the BioMoby XML document is written
+     * @throws IOException when the document can not be written
+     */
+    public static void writeMarkerResponse(final List<Markerws> markers,
+            final Appendable out) throws IOException {
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<moby:MOBY xmlns:moby=\"http://www.biomoby.org/moby\">\n"
+                + "<moby:mobyContent>\n"
+                + "<moby:mobyData moby:queryID=\"sip_1_\">\n"
+                + "<moby:Collection moby:articleName=\"output\">\n");
+        for (Markerws marker : markers) {
+            out.append("<moby:Simple>\n"
+                    + "<moby:GeneticMarker moby:namespace=\"SGN\" moby:id=\"")
+                    .append(marker.getName()).append("\">\n")
+                    .append("  <moby:Integer moby:namespace=\"\" moby:id=\"\""
+                    + " moby:articleName=\"Chromosome\">")
+                    .append(String.valueOf(marker.getChromosomeNumber()))
+                    .append("</moby:Integer>\n")
+                    .append("  <moby:Float moby:namespace=\"\" moby:id=\"\""
+                    + " moby:articleName=\"position\">")
+                    .append(String.valueOf(marker.getMapPosition()))
+                    .append("</moby:Float>\n")
+                    .append("  <moby:String moby:namespace=\"\" moby:id=\"\""
+                    + " moby:articleName=\"SGN-MarkerID\">")
+                    .append(marker.getSgnID().substring("SGN-M".length()))
+                    .append("</moby:String>\n")
+                    .append("</moby:GeneticMarker>\n</moby:Simple>\n");
+        }
+        out.append("</moby:Collection>\n</moby:mobyData>\n"
+                + "</moby:mobyContent>\n</moby:MOBY>\n");
+    }
+
+    /**
+     * Return the random generator of an entity, derived from the seed.
+     * @param kind the kind of entity
+     * @param index the index of the entity
+     * @return a Random
+     */
+    private Random random(final int kind, final int index) {
+        long z = settings.getSeed() * 0x9E3779B97F4A7C15L
+                + ((long) kind << 32) + index;
+        // SplitMix64 finalizer: neighbouring entities get unrelated streams
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    /**
+     * Pick a word.
+     * @param rnd the random generator
+     * @return one of the WORDS
+     */
+    private static String pick(final Random rnd) {
+        return WORDS[rnd.nextInt(WORDS.length)];
+    }
+
+    /**
+     * Draw an index favouring the low values, as the annotations favour a
+     * few GO terms and pathways.
+     * @param rnd the random generator
+     * @param size the number of values
+     * @return an index between 0 and size - 1
+     */
+    private static int skewed(final Random rnd, final int size) {
+        return Math.min(size - 1,
+                (int) (size * Math.pow(rnd.nextDouble(), 2.5)));
+    }
+
+    /**
+     * Draw a number from a Poisson distribution.
+     * @param rnd the random generator
+     * @param mean the mean of the distribution
+     * @return a positive number
+     */
+    private static int poisson(final Random rnd, final double mean) {
+        if (mean <= 0) {
+            return 0;
+        }
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean
+                    + rnd.nextGaussian() * Math.sqrt(mean)));
+        }
+        final double limit = Math.exp(-mean);
+        int count = 0;
+        double p = rnd.nextDouble();
+        while (p > limit) {
+            count++;
+            p *= rnd.nextDouble();
+        }
+        return count;
+    }
+
+    /**
+     * Write a dataset in a directory: one N-Triples file per graph and the
+     * BioMoby response listing the markers of each chromosome.
+     * Usage: DatasetGenerator [-scale factor] [-seed seed]
+     * [-scaffolds number] directory
+     * @param args the command line arguments
+     * @throws IOException when the files can not be written
+     */
+    public static void main(final String[] args) throws IOException {
+        GeneratorSettings settings = new GeneratorSettings();
+        double scale = 1;
+        File dir = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("-scale".equals(args[i]) && i + 1 < args.length) {
+                scale = Double.parseDouble(args[++i]);
+            } else if ("-seed".equals(args[i]) && i + 1 < args.length) {
+                settings.setSeed(Long.parseLong(args[++i]));
+            } else if ("-scaffolds".equals(args[i]) && i + 1 < args.length) {
+                settings.setScaffoldsPerChromosome(
+                        Integer.parseInt(args[++i]));
+            } else {
+                dir = new File(args[i]);
+            }
+        }
+        if (dir == null) {
+            System.err.println("Usage: DatasetGenerator [-scale factor] "
+                    + "[-seed seed] [-scaffolds number] directory");
+            System.exit(1);
+        }
+        settings = settings.scale(scale);
+        LOG.log(Level.INFO, "Generating {0} in {1}",
+                new Object[]{settings, dir});
+        final DatasetGenerator generator = new DatasetGenerator(settings);
+        final NTriplesSink sink = new NTriplesSink(dir);
+        try {
+            generator.generate(sink);
+        }
+        finally {
+            sink.close();
+        }
+        for (int chr = 1; chr <= settings.getChromosomes(); chr++) {
+            final Writer out = new OutputStreamWriter(new FileOutputStream(
+                    new File(dir, String.format("markers-ch%02d.xml", chr))),
+                    "UTF-8");
+            try {
+                writeMarkerResponse(generator.getMarkers(chr, 0,
+                        settings.getMapLength()), out);
+            }
+            finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+/**
+ * Settings of the DatasetGenerator: size of the genome, density of the
+ * markers, fragmentation of the assembly and richness of the annotation.
+ * The default values give a dataset of the size of the tomato genome (ITAG2)
+ * with its genetic map; scale() grows or shrinks the number of genes and
+ * markers, the rest of the settings are kept.
+ */
+public class GeneratorSettings {
+
+    /** Seed of the generator, the same seed gives the same dataset. */
+    private long seed = 42;
+    /** Number of chromosomes. */
+    private int chromosomes = 12;
+    /** Length (in bp) of each chromosome. */
+    private int chromosomeLength = 80000000;
+    /** Number of scaffolds per chromosome, 1 for a chromosome assembly. */
+    private int scaffoldsPerChromosome = 1;
+    /** Total number of genes. */
+    private int genes = 34800;
+    /** Total number of genetic markers. */
+    private int markers = 2400;
+    /** Length (in cM) of the genetic map of each chromosome. */
+    private double mapLength = 100;
+    /** Fraction of the markers without position on the genome. */
+    private double unplacedMarkers = 0.05;
+    /** Number of GO terms in the ontology. */
+    private int goTerms = 5000;
+    /** Mean number of GO terms per gene. */
+    private double goPerGene = 3;
+    /** Number of exact synonyms per GO term. */
+    private int synonymsPerTerm = 1;
+    /** Fraction of the genes coding a protein known by UniProt. */
+    private double proteinFraction = 0.6;
+    /** Fraction of the proteins involved in a pathway. */
+    private double pathwayFraction = 0.2;
+    /** Number of pathways. */
+    private int pathways = 300;
+    /** Mean number of citations per protein. */
+    private double citationsPerProtein = 1;
+    /** Mean number of protein-protein interactions per protein. */
+    private double interactionsPerProtein = 0.5;
+
+    /**
+     * Return a copy of these settings with the number of genes and markers
+     * multiplied by the given factor (1 is the size of tomato).
+     * @param factor the scaling factor, between 0.0001 and 100
+     * @return the scaled settings
+     */
+    public final GeneratorSettings scale(final double factor) {
+        if (factor <= 0 || factor > 100) {
+            throw new IllegalArgumentException("Scale must be in ]0, 100]: "
+                    + factor);
+        }
+        final GeneratorSettings out = this.copy();
+        out.genes = Math.max(1, (int) Math.round(genes * factor));
+        out.markers = Math.max(1, (int) Math.round(markers * factor));
+        return out;
+    }
+
+    /**
+     * Return a copy of these settings.
+     * @return a new GeneratorSettings with the same values
+     */
+    public final GeneratorSettings copy() {
+        final GeneratorSettings out = new GeneratorSettings();
+        out.seed = seed;
+        out.chromosomes = chromosomes;
+        out.chromosomeLength = chromosomeLength;
+        out.scaffoldsPerChromosome = scaffoldsPerChromosome;
+        out.genes = genes;
+        out.markers = markers;
+        out.mapLength = mapLength;
+        out.unplacedMarkers = unplacedMarkers;
+        out.goTerms = goTerms;
+        out.goPerGene = goPerGene;
+        out.synonymsPerTerm = synonymsPerTerm;
+        out.proteinFraction = proteinFraction;
+        out.pathwayFraction = pathwayFraction;
+        out.pathways = pathways;
+        out.citationsPerProtein = citationsPerProtein;
+        out.interactionsPerProtein = interactionsPerProtein;
+        return out;
+    }
+
+    /**
+     * Return the number of genes per chromosome.
+     * @return the number of genes of the chromosomes (the last one may have
+     * less)
+     */
+    public final int getGenesPerChromosome() {
+        return (genes + chromosomes - 1) / chromosomes;
+    }
+
+    /**
+     * Return the number of markers per chromosome.
+     * @return the number of markers of the chromosomes (the last one may have
+     * less)
+     */
+    public final int getMarkersPerChromosome() {
+        return (markers + chromosomes - 1) / chromosomes;
+    }
+
+    /**
+     * Get the seed of the generator.
+     * @return the seed
+     */
+    public final long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the seed of the generator.
+     * @param value the seed
+     */
+    public final void setSeed(final long value) {
+        this.seed = value;
+    }
+
+    /**
+     * Get the number of chromosomes.
+     * @return the number of chromosomes
+     */
+    public final int getChromosomes() {
+        return chromosomes;
+    }
+
+    /**
+     * Set the number of chromosomes.
+     * @param value the number of chromosomes, between 1 and 99
+     */
+    public final void setChromosomes(final int value) {
+        if (value < 1 || value > 99) {
+            throw new IllegalArgumentException("Chromosomes must be in "
+                    + "[1, 99]: " + value);
+        }
+        this.chromosomes = value;
+    }
+
+    /**
+     * Get the length (in bp) of each chromosome.
+     * @return the length of the chromosomes
+     */
+    public final int getChromosomeLength() {
+        return chromosomeLength;
+    }
+
+    /**
+     * Set the length (in bp) of each chromosome.
+     * @param value the length of the chromosomes
+     */
+    public final void setChromosomeLength(final int value) {
+        this.chromosomeLength = value;
+    }
+
+    /**
+     * Get the number of scaffolds per chromosome.
+     * @return the number of scaffolds
+     */
+    public final int getScaffoldsPerChromosome() {
+        return scaffoldsPerChromosome;
+    }
+
+    /**
+     * Set the number of scaffolds per chromosome: 1 gives chromosome
+     * sequences (SL2.40ch01), more gives a fragmented assembly
+     * (SL2.40sc00001-ch01).
+     * @param value the number of scaffolds, between 1 and 99999
+     */
+    public final void setScaffoldsPerChromosome(final int value) {
+        if (value < 1 || value > 99999) {
+            throw new IllegalArgumentException("Scaffolds must be in "
+                    + "[1, 99999]: " + value);
+        }
+        this.scaffoldsPerChromosome = value;
+    }
+
+    /**
+     * Get the total number of genes.
+     * @return the number of genes
+     */
+    public final int getGenes() {
+        return genes;
+    }
+
+    /**
+     * Set the total number of genes.
+     * @param value the number of genes
+     */
+    public final void setGenes(final int value) {
+        this.genes = value;
+    }
+
+    /**
+     * Get the total number of genetic markers.
+     * @return the number of markers
+     */
+    public final int getMarkers() {
+        return markers;
+    }
+
+    /**
+     * Set the total number of genetic markers.
+     * @param value the number of markers
+     */
+    public final void setMarkers(final int value) {
+        this.markers = value;
+    }
+
+    /**
+     * Get the length (in cM) of the genetic map of each chromosome.
+     * @return the length of the genetic map
+     */
+    public final double getMapLength() {
+        return mapLength;
+    }
+
+    /**
+     * Set the length (in cM) of the genetic map of each chromosome.
+     * @param value the length of the genetic map
+     */
+    public final void setMapLength(final double value) {
+        this.mapLength = value;
+    }
+
+    /**
+     * Get the fraction of the markers without position on the genome.
+     * @return the fraction of unplaced markers
+     */
+    public final double getUnplacedMarkers() {
+        return unplacedMarkers;
+    }
+
+    /**
+     * Set the fraction of the markers without position on the genome.
+     * @param value the fraction of unplaced markers
+     */
+    public final void setUnplacedMarkers(final double value) {
+        this.unplacedMarkers = value;
+    }
+
+    /**
+     * Get the number of GO terms in the ontology.
+     * @return the number of GO terms
+     */
+    public final int getGoTerms() {
+        return goTerms;
+    }
+
+    /**
+     * Set the number of GO terms in the ontology.
+     * @param value the number of GO terms, at least 3 (the roots)
+     */
+    public final void setGoTerms(final int value) {
+        if (value < 3) {
+            throw new IllegalArgumentException("At least 3 GO terms are "
+                    + "needed: " + value);
+        }
+        this.goTerms = value;
+    }
+
+    /**
+     * Get the mean number of GO terms per gene.
+     * @return the mean number of GO terms
+     */
+    public final double getGoPerGene() {
+        return goPerGene;
+    }
+
+    /**
+     * Set the mean number of GO terms per gene.
+     * @param value the mean number of GO terms
+     */
+    public final void setGoPerGene(final double value) {
+        this.goPerGene = value;
+    }
+
+    /**
+     * Get the number of exact synonyms per GO term.
+     * @return the number of synonyms
+     */
+    public final int getSynonymsPerTerm() {
+        return synonymsPerTerm;
+    }
+
+    /**
+     * Set the number of exact synonyms per GO term.
+     * @param value the number of synonyms
+     */
+    public final void setSynonymsPerTerm(final int value) {
+        this.synonymsPerTerm = value;
+    }
+
+    /**
+     * Get the fraction of the genes coding a protein known by UniProt.
+     * @return the fraction of genes with a protein
+     */
+    public final double getProteinFraction() {
+        return proteinFraction;
+    }
+
+    /**
+     * Set the fraction of the genes coding a protein known by UniProt.
+     * @param value the fraction of genes with a protein
+     */
+    public final void setProteinFraction(final double value) {
+        this.proteinFraction = value;
+    }
+
+    /**
+     * Get the fraction of the proteins involved in a pathway.
+     * @return the fraction of proteins with a pathway
+     */
+    public final double getPathwayFraction() {
+        return pathwayFraction;
+    }
+
+    /**
+     * Set the fraction of the proteins involved in a pathway.
+     * @param value the fraction of proteins with a pathway
+     */
+    public final void setPathwayFraction(final double value) {
+        this.pathwayFraction = value;
+    }
+
+    /**
+     * Get the number of pathways.
+     * @return the number of pathways
+     */
+    public final int getPathways() {
+        return pathways;
+    }
+
+    /**
+     * Set the number of pathways.
+     * @param value the number of pathways, at least 1
+     */
+    public final void setPathways(final int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("At least 1 pathway is "
+                    + "needed: " + value);
+        }
+        this.pathways = value;
+    }
+
+    /**
+     * Get the mean number of citations per protein.
+     * @return the mean number of citations
+     */
+    public final double getCitationsPerProtein() {
+        return citationsPerProtein;
+    }
+
+    /**
+     * Set the mean number of citations per protein.
+     * @param value the mean number of citations
+     */
+    public final void setCitationsPerProtein(final double value) {
+        this.citationsPerProtein = value;
+    }
+
+    /**
+     * Get the mean number of protein-protein interactions per protein.
+     * @return the mean number of interactions
+     */
+    public final double getInteractionsPerProtein() {
+        return interactionsPerProtein;
+    }
+
+    /**
+     * Set the mean number of protein-protein interactions per protein.
+     * @param value the mean number of interactions
+     */
+    public final void setInteractionsPerProtein(final double value) {
+        this.interactionsPerProtein = value;
+    }
+
+    /**
+     * Return a one line description of the settings.
+     * @return a String listing the settings
+     */
+    @Override
+    public final String toString() {
+        return "seed=" + seed + " chromosomes=" + chromosomes
+                + " length=" + chromosomeLength
+                + " scaffolds=" + scaffoldsPerChromosome
+                + " genes=" + genes + " markers=" + markers
+                + " map=" + mapLength + "cM"
+                + " unplaced=" + unplacedMarkers
+                + " go=" + goTerms + " goPerGene=" + goPerGene
+                + " synonyms=" + synonymsPerTerm
+                + " proteins=" + proteinFraction
+                + " pathways=" + pathways + "/" + pathwayFraction
+                + " citations=" + citationsPerProtein
+                + " interactions=" + interactionsPerProtein;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * TripleSink adding the statements to a Jena Model, the named graphs are
+ * merged. Only the statements of the selected graphs are kept.
+ */
+public class ModelSink implements TripleSink {
+
+    /** The model filled. */
+    private final Model model;
+    /** The graphs kept, null to keep them all. */
+    private final Set<String> graphs;
+
+    /**
+     * Constructor keeping the statements of all the graphs in a new model.
+     */
+    public ModelSink() {
+        this(ModelFactory.createDefaultModel(), (Collection<String>) null);
+    }
+
+    /**
+     * Constructor.
+     * @param mod the Jena Model to fill
+     * @param selected the graphs whose statements are kept, null to keep
+     * them all
+     */
+    public ModelSink(final Model mod, final Collection<String> selected) {
+        this.model = mod;
+        if (selected == null) {
+            this.graphs = null;
+        } else {
+            this.graphs = new HashSet<String>(selected);
+        }
+    }
+
+    /**
+     * Constructor keeping the statements of the given graphs in a new model.
+     * @param selected the graphs whose statements are kept
+     */
+    public ModelSink(final String... selected) {
+        this(ModelFactory.createDefaultModel(), Arrays.asList(selected));
+    }
+
+    @Override
+    public final void addResource(final String graph, final String subject,
+            final String property, final String object) {
+        if (graphs == null || graphs.contains(graph)) {
+            this.add(subject, property, model.createResource(object));
+        }
+    }
+
+    @Override
+    public final void addLiteral(final String graph, final String subject,
+            final String property, final String value, final String lang,
+            final String datatype) {
+        if (graphs == null || graphs.contains(graph)) {
+            final RDFNode literal;
+            if (datatype != null) {
+                literal = model.createTypedLiteral(value, TypeMapper
+                        .getInstance().getSafeTypeByName(datatype));
+            } else if (lang != null) {
+                literal = model.createLiteral(value, lang);
+            } else {
+                literal = model.createLiteral(value);
+            }
+            this.add(subject, property, literal);
+        }
+    }
+
+    /**
+     * Add a statement to the model.
+     * @param subject the URI of the subject
+     * @param property the URI of the property
+     * @param object the object
+     */
+    private void add(final String subject, final String property,
+            final RDFNode object) {
+        model.add(model.createResource(subject),
+                model.createProperty(property), object);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Return the model filled.
+     * @return the Jena Model
+     */
+    public final Model getModel() {
+        return model;
+    }
+}
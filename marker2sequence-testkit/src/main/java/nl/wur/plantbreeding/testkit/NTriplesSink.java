@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TripleSink writing the statements in N-Triples files, one file per named
+ * graph: the graph http://go.pbr.wur.nl/ is written in go.pbr.wur.nl.nt.
+ * The files can be loaded in any triple store to serve the generated
+ * dataset.
+ */
+public class NTriplesSink implements TripleSink {
+
+    /** Extension of the files written. */
+    public static final String EXTENSION = ".nt";
+    /** Directory in which the files are written. */
+    private final File directory;
+    /** Writer of each graph. */
+    private final Map<String, Writer> writers = new HashMap<String, Writer>();
+    /** Buffer holding the statement written. */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Constructor.
+     * @param dir the directory in which the files are written, created if
+     * needed
+     * @throws IOException when the directory can not be created
+     */
+    public NTriplesSink(final File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        this.directory = dir;
+    }
+
+    /**
+     * Return the file in which the given graph is written.
+     * @param dir the directory of the files
+     * @param graph the URI of the graph (http://host/)
+     * @return the N-Triples file of the graph
+     */
+    public static File fileOf(final File dir, final String graph) {
+        String name = graph.replaceFirst("^[a-z]+://", "");
+        name = name.replaceAll("/+$", "").replaceAll("[^A-Za-z0-9.-]", "_");
+        return new File(dir, name + EXTENSION);
+    }
+
+    /**
+     * Return the graph written in the given file.
+     * @param file a file written by a NTriplesSink
+     * @return the URI of the graph, null if the file is not a N-Triples file
+     */
+    public static String graphOf(final File file) {
+        final String name = file.getName();
+        if (!name.endsWith(EXTENSION)) {
+            return null;
+        }
+        return "http://" + name.substring(0,
+                name.length() - EXTENSION.length()) + "/";
+    }
+
+    @Override
+    public final void addResource(final String graph, final String subject,
+            final String property, final String object) throws IOException {
+        line.setLength(0);
+        line.append('<').append(subject).append("> <").append(property)
+                .append("> <").append(object).append("> .\n");
+        this.getWriter(graph).write(line.toString());
+    }
+
+    @Override
+    public final void addLiteral(final String graph, final String subject,
+            final String property, final String value, final String lang,
+            final String datatype) throws IOException {
+        line.setLength(0);
+        line.append('<').append(subject).append("> <").append(property)
+                .append("> \"");
+        escape(value, line);
+        line.append('"');
+        if (datatype != null) {
+            line.append("^^<").append(datatype).append('>');
+        } else if (lang != null) {
+            line.append('@').append(lang);
+        }
+        line.append(" .\n");
+        this.getWriter(graph).write(line.toString());
+    }
+
+    /**
+     * Append the given value escaped as required by N-Triples (the files
+     * are pure ASCII).
+     * @param value the lexical value of a literal
+     * @param out the buffer to append to
+     */
+    static void escape(final String value, final StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        out.append(String.format("\\u%04X", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Return the writer of the given graph, opening its file if needed.
+     * @param graph the URI of the graph
+     * @return the Writer of the graph
+     * @throws IOException when the file can not be opened
+     */
+    private Writer getWriter(final String graph) throws IOException {
+        Writer out = writers.get(graph);
+        if (out == null) {
+            out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(fileOf(directory, graph)),
+                    "US-ASCII"), 1 << 16);
+            writers.put(graph, out);
+        }
+        return out;
+    }
+
+    @Override
+    public final void close() throws IOException {
+        IOException error = null;
+        for (Writer out : writers.values()) {
+            try {
+                out.close();
+            }
+            catch (IOException ex) {
+                error = ex;
+            }
+        }
+        writers.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
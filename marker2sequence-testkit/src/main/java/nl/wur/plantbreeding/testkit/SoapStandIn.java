@@ -0,0 +1,643 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import nl.wur.plantbreeding.logic.cache.CacheKey;
+import nl.wur.plantbreeding.logic.soapclient.SoapClient;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Embeddable SOAP server standing in for the BioMoby web-services called by
+ * SoapClient (EU-SOL markers, MPIZ Sifter and MIPS PlantDB), so that
+ * Marker2seq and AnnotationRetriever can run without network.
+ * The services are served under /axis/services/ as Axis RPC services taking
+ * and returning one string. Each request is answered, in this order, with
+ * the response recorded for its payload (keyed as the web-service caches
+ * are, see CacheKey), with a response synthesized from a DatasetGenerator,
+ * or with the response of the real service when recording; otherwise a SOAP
+ * fault is returned.
+ * Latency, errors and throughput limits can be injected (see StandInServer)
+ * to reproduce a slow or failing service.
+ */
+public class SoapStandIn extends StandInServer {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            SoapStandIn.class.getName());
+    /** Path of the services on the server. */
+    public static final String PATH = "/axis/services/";
+    /** Service returning the markers of an interval (EU-SOL). */
+    public static final String MARKER_SERVICE =
+            "getMarkersForRegionByQueryMarkerList";
+    /** Service returning the Sifter GO terms of a gene (MPIZ). */
+    public static final String SIFTER_SERVICE =
+            "GetSifterPredictedFunctionTermsByProteinID";
+    /** Service returning the PlantDB annotation of a gene (MIPS). */
+    public static final String PLANTDB_SERVICE = "getElementAnnotation";
+    /** Extension of the files holding the recorded responses. */
+    public static final String EXTENSION = ".xml";
+    /** Namespace of the SOAP envelope. */
+    private static final String SOAP_ENV =
+            "http://schemas.xmlsoap.org/soap/envelope/";
+    /** Responses recorded, per key of the request. */
+    private final Map<String, String> recorded =
+            new ConcurrentHashMap<String, String>();
+    /** Generator the responses are synthesized from, may be null. */
+    private volatile DatasetGenerator generator = null;
+    /** Base url of the real services recorded, null when not recording. */
+    private volatile String recordFrom = null;
+    /** Directory the recorded responses are saved in, may be null. */
+    private volatile File recordDir = null;
+
+    /**
+     * Constructor.
+     * @param serverport the port to listen to, 0 for any free port
+     * @param serverthreads the number of threads answering the calls
+     */
+    public SoapStandIn(final int serverport, final int serverthreads) {
+        super(serverport, serverthreads);
+    }
+
+    @Override
+    protected final String getPath() {
+        return PATH;
+    }
+
+    /**
+     * Return the base url of the services, to give to
+     * ServiceUrls.configure.
+     * @return the url the service names are appended to
+     */
+    public final String getBaseUrl() {
+        return this.getUrl();
+    }
+
+    /**
+     * Return the url of a service.
+     * @param service the name of the service
+     * @return the url of the service
+     */
+    public final String getServiceUrl(final String service) {
+        return this.getUrl() + service;
+    }
+
+    /**
+     * Record the response of a service to an input.
+     * @param service the name of the service
+     * @param input the BioMoby input, as given to SoapClient
+     * @param output the BioMoby output
+     */
+    public final void record(final String service, final String input,
+            final String output) {
+        recorded.put(CacheKey.forService(service, input), output);
+    }
+
+    /**
+     * Return the number of responses recorded.
+     * @return the number of responses
+     */
+    public final int getRecorded() {
+        return recorded.size();
+    }
+
+    /**
+     * Load the responses recorded in a directory, one file per response
+     * named after the key of its request.
+     * @param dir the directory holding the files
+     * @throws IOException when the directory can not be read
+     */
+    public final void load(final File dir) throws IOException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Could not read " + dir);
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            if (name.endsWith(EXTENSION)) {
+                final FileInputStream in = new FileInputStream(file);
+                try {
+                    recorded.put(name.substring(0, name.length()
+                            - EXTENSION.length()), read(in));
+                }
+                finally {
+                    in.close();
+                }
+            }
+        }
+        LOG.log(Level.INFO, "Loaded {0} responses from {1}",
+                new Object[]{recorded.size(), dir});
+    }
+
+    /**
+     * Synthesize the responses of the three services from a generated
+     * dataset, for the requests which were not recorded.
+     * @param datasetgenerator the DatasetGenerator, null to stop
+     * synthesizing
+     */
+    public final void setGenerator(final DatasetGenerator datasetgenerator) {
+        this.generator = datasetgenerator;
+    }
+
+    /**
+     * Forward the requests which were neither recorded nor synthesized to
+     * the real services and record their responses.
+     * @param baseurl the base url of the real services, null to stop
+     * recording
+     * @param dir the directory the responses are saved in, null to keep
+     * them in memory only
+     */
+    public final void setRecording(final String baseurl, final File dir) {
+        this.recordFrom = baseurl;
+        this.recordDir = dir;
+    }
+
+    /**
+     * Answer one SOAP call.
+     * @param exchange the request and its response
+     * @throws IOException when the response can not be sent
+     */
+    @Override
+    protected final void answer(final HttpExchange exchange)
+            throws IOException {
+        final String service = exchange.getRequestURI().getPath().substring(
+                PATH.length());
+        final String[] call;
+        try {
+            call = parseCall(read(exchange.getRequestBody()));
+        }
+        catch (SAXException ex) {
+            this.countError();
+            this.sendError(exchange, 400, "Invalid request: "
+                    + ex.getMessage());
+            return;
+        }
+        final String output = this.respond(service, call[1]);
+        if (output == null) {
+            this.countError();
+            this.sendError(exchange, 500, "No response for "
+                    + CacheKey.forService(service, call[1]));
+            return;
+        }
+        this.send(exchange, 200, "text/xml; charset=utf-8",
+                envelope(service, call[0], output));
+    }
+
+    /**
+     * Return the BioMoby output of a service for an input.
+     * @param service the name of the service
+     * @param input the BioMoby input
+     * @return the BioMoby output, null if there is none
+     * @throws IOException when the recorded response can not be saved
+     */
+    final String respond(final String service, final String input)
+            throws IOException {
+        final String key = CacheKey.forService(service, input);
+        String output = recorded.get(key);
+        if (output != null) {
+            return output;
+        }
+        final DatasetGenerator gen = generator;
+        if (gen != null) {
+            output = synthesize(gen, service, input);
+            if (output != null) {
+                return output;
+            }
+        }
+        final String baseurl = recordFrom;
+        if (baseurl != null) {
+            try {
+                output = new SoapClient().callService(service,
+                        baseurl + service, input, baseurl.startsWith("https"));
+            }
+            catch (Exception ex) {
+                LOG.log(Level.WARNING, "Could not record {0}: {1}",
+                        new Object[]{key, ex.getMessage()});
+                return null;
+            }
+            recorded.put(key, output);
+            this.save(key, output);
+        }
+        return output;
+    }
+
+    /**
+     * Save a recorded response in the recording directory.
+     * @param key the key of the request
+     * @param output the response
+     * @throws IOException when the file can not be written
+     */
+    private void save(final String key, final String output)
+            throws IOException {
+        final File dir = recordDir;
+        if (dir == null) {
+            return;
+        }
+        final Writer out = new OutputStreamWriter(new FileOutputStream(
+                new File(dir, key + EXTENSION)), "UTF-8");
+        try {
+            out.write(output);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Build the output of a service from a generated dataset.
+     * @param gen the DatasetGenerator
+     * @param service the name of the service
+     * @param input the BioMoby input
+     * @return the BioMoby output, null if the service is not one of the
+     * three known ones
+     * @throws IOException never, the output is built in memory
+     */
+    static String synthesize(final DatasetGenerator gen,
+            final String service, final String input) throws IOException {
+        final List<String> ids;
+        try {
+            ids = getMobyIds(input);
+        }
+        catch (SAXException ex) {
+            return null;
+        }
+        final StringBuilder out = new StringBuilder();
+        if (MARKER_SERVICE.equals(service)) {
+            writeMarkers(gen, ids, out);
+        } else if (SIFTER_SERVICE.equals(service)) {
+            writeGoTerms(gen, ids, out);
+        } else if (PLANTDB_SERVICE.equals(service)) {
+            writeElements(gen, ids, out);
+        } else {
+            return null;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the markers of the interval delimited by the given markers, on
+     * the chromosome of the first one known by the generator.
+     * @param gen the DatasetGenerator
+     * @param names the names of the markers
+     * @param out where the BioMoby output is written
+     * @throws IOException never, the output is built in memory
+     */
+    private static void writeMarkers(final DatasetGenerator gen,
+            final List<String> names, final Appendable out)
+            throws IOException {
+        long chr = 0;
+        double from = Double.MAX_VALUE;
+        double to = -Double.MAX_VALUE;
+        for (String name : names) {
+            final int index = gen.getMarkerIndex(name);
+            if (index < 0) {
+                continue;
+            }
+            final Markerws marker = gen.getMarker(index);
+            if (chr == 0) {
+                chr = marker.getChromosomeNumber();
+            }
+            if (marker.getChromosomeNumber() == chr) {
+                from = Math.min(from, marker.getMapPosition());
+                to = Math.max(to, marker.getMapPosition());
+            }
+        }
+        final List<Markerws> markers;
+        if (chr == 0) {
+            markers = new ArrayList<Markerws>();
+        } else {
+            markers = gen.getMarkers((int) chr, from, to);
+        }
+        DatasetGenerator.writeMarkerResponse(markers, out);
+    }
+
+    /**
+     * Write the Sifter GO terms of the given genes.
+     * @param gen the DatasetGenerator
+     * @param genes the names of the genes
+     * @param out where the BioMoby output is written
+     * @throws IOException never, the output is built in memory
+     */
+    private static void writeGoTerms(final DatasetGenerator gen,
+            final List<String> genes, final Appendable out)
+            throws IOException {
+        startMoby(out);
+        for (String gene : genes) {
+            final int index = gen.getGeneIndex(gene);
+            if (index < 0) {
+                continue;
+            }
+            for (int term : gen.getGeneGoTerms(index)) {
+                out.append("<moby:Simple>\n<moby:Annotated_GO_Term "
+                        + "moby:namespace=\"GO\" moby:id=\"")
+                        .append(gen.getGoId(term)).append("\">\n");
+                appendString(out, "Definition", gen.getGoLabel(term));
+                appendString(out, "process", gen.getGoNamespace(term));
+                appendString(out, "detailed_description",
+                        "Sifter prediction for " + gene);
+                out.append("</moby:Annotated_GO_Term>\n</moby:Simple>\n");
+            }
+        }
+        endMoby(out);
+    }
+
+    /**
+     * Write the PlantDB annotation of the given genes.
+     * @param gen the DatasetGenerator
+     * @param genes the names of the genes
+     * @param out where the BioMoby output is written
+     * @throws IOException never, the output is built in memory
+     */
+    private static void writeElements(final DatasetGenerator gen,
+            final List<String> genes, final Appendable out)
+            throws IOException {
+        startMoby(out);
+        for (String name : genes) {
+            final int index = gen.getGeneIndex(name);
+            if (index < 0) {
+                continue;
+            }
+            final Annotation gene = gen.getGene(index);
+            out.append("<moby:Simple>\n<moby:GeneticElement "
+                    + "moby:namespace=\"MIPS_GE_Tomato\" moby:id=\"")
+                    .append(gene.getScafoldname()).append("\">\n");
+            appendString(out, "name", gene.getName());
+            appendString(out, "type", gene.getType());
+            appendString(out, "description", gene.getDescription());
+            appendString(out, "start", String.valueOf(
+                    gene.getStartPosition()));
+            appendString(out, "stop", String.valueOf(gene.getEndPosition()));
+            appendString(out, "strand", "+");
+            out.append("</moby:GeneticElement>\n</moby:Simple>\n");
+        }
+        endMoby(out);
+    }
+
+    /**
+     * Write the start of a BioMoby output.
+     * @param out where the output is written
+     * @throws IOException never, the output is built in memory
+     */
+    private static void startMoby(final Appendable out) throws IOException {
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<moby:MOBY xmlns:moby=\"http://www.biomoby.org/moby\">\n"
+                + "<moby:mobyContent>\n"
+                + "<moby:mobyData moby:queryID=\"sip_1_\">\n"
+                + "<moby:Collection moby:articleName=\"output\">\n");
+    }
+
+    /**
+     * Write the end of a BioMoby output.
+     * @param out where the output is written
+     * @throws IOException never, the output is built in memory
+     */
+    private static void endMoby(final Appendable out) throws IOException {
+        out.append("</moby:Collection>\n</moby:mobyData>\n"
+                + "</moby:mobyContent>\n</moby:MOBY>\n");
+    }
+
+    /**
+     * Write a BioMoby String article.
+     * @param out where the output is written
+     * @param article the name of the article
+     * @param value its value
+     * @throws IOException never, the output is built in memory
+     */
+    private static void appendString(final Appendable out,
+            final String article, final String value) throws IOException {
+        out.append("  <moby:String moby:namespace=\"\" moby:id=\"\" "
+                + "moby:articleName=\"").append(article).append("\">")
+                .append(escape(value)).append("</moby:String>\n");
+    }
+
+    /**
+     * Return the moby:id of the objects of a BioMoby input.
+     * @param input the BioMoby input
+     * @return the ids, in document order
+     * @throws SAXException when the input is not XML
+     */
+    static List<String> getMobyIds(final String input) throws SAXException {
+        final Document doc = parse(input, false);
+        final NodeList nodes = doc.getElementsByTagName("*");
+        final List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            final String id = ((Element) nodes.item(i)).getAttribute(
+                    "moby:id");
+            if (id.length() > 0) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Extract the call from a SOAP request: the operation is the first
+     * element of the body and the input its first argument.
+     * @param request the SOAP envelope
+     * @return the namespace of the operation and the input
+     * @throws SAXException when the request is not a SOAP call
+     */
+    static String[] parseCall(final String request) throws SAXException {
+        final Document doc = parse(request, true);
+        final NodeList bodies = doc.getElementsByTagNameNS(SOAP_ENV, "Body");
+        final Element operation = bodies.getLength() == 0 ? null
+                : firstElement(bodies.item(0));
+        final Element argument = operation == null ? null
+                : firstElement(operation);
+        if (argument == null) {
+            throw new SAXException("No argument in the SOAP body");
+        }
+        final String namespace = operation.getNamespaceURI();
+        return new String[]{namespace == null ? "" : namespace,
+                    argument.getTextContent()};
+    }
+
+    /**
+     * Return the first child element of a node.
+     * @param node the node
+     * @return its first child element, null if there is none
+     */
+    private static Element firstElement(final Node node) {
+        Node child = node.getFirstChild();
+        while (child != null && child.getNodeType() != Node.ELEMENT_NODE) {
+            child = child.getNextSibling();
+        }
+        return (Element) child;
+    }
+
+    /**
+     * Parse an XML document.
+     * @param xml the document
+     * @param namespaces whether the parser is namespace aware
+     * @return the DOM Document
+     * @throws SAXException when the document is not well-formed
+     */
+    private static Document parse(final String xml, final boolean namespaces)
+            throws SAXException {
+        try {
+            final DocumentBuilderFactory factory =
+                    DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(namespaces);
+            final DocumentBuilder builder = factory.newDocumentBuilder();
+            return builder.parse(new InputSource(new StringReader(xml)));
+        }
+        catch (ParserConfigurationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        catch (IOException ex) {
+            throw new SAXException(ex);
+        }
+    }
+
+    /**
+     * Wrap the output of a service in an Axis RPC response.
+     * @param service the name of the service
+     * @param namespace the namespace of the operation called
+     * @param output the BioMoby output
+     * @return the SOAP envelope
+     */
+    static String envelope(final String service, final String namespace,
+            final String output) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<soapenv:Envelope xmlns:soapenv=\"" + SOAP_ENV + "\""
+                + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+                + "<soapenv:Body><ns1:" + service + "Response"
+                + " soapenv:encodingStyle="
+                + "\"http://schemas.xmlsoap.org/soap/encoding/\""
+                + " xmlns:ns1=\"" + escape(namespace) + "\">"
+                + "<" + service + "Return xsi:type=\"xsd:string\">"
+                + escape(output) + "</" + service + "Return>"
+                + "</ns1:" + service + "Response></soapenv:Body>"
+                + "</soapenv:Envelope>";
+    }
+
+    /**
+     * Send a SOAP fault.
+     * @param exchange the request
+     * @param status the HTTP status
+     * @param message the description of the fault
+     * @throws IOException when the response can not be sent
+     */
+    @Override
+    protected final void sendError(final HttpExchange exchange,
+            final int status, final String message) throws IOException {
+        this.send(exchange, status, "text/xml; charset=utf-8",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<soapenv:Envelope xmlns:soapenv=\"" + SOAP_ENV + "\">"
+                + "<soapenv:Body><soapenv:Fault>"
+                + "<faultcode>soapenv:Server</faultcode>"
+                + "<faultstring>" + escape(message) + "</faultstring>"
+                + "</soapenv:Fault></soapenv:Body></soapenv:Envelope>");
+    }
+
+    /**
+     * Escape the XML special characters of a text.
+     * @param text the text
+     * @return the escaped text
+     */
+    private static String escape(final String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;")
+                .replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Return a one line description of the state of the server.
+     * @return a String describing the server
+     */
+    @Override
+    public final String toString() {
+        return super.toString() + " recorded=" + recorded.size()
+                + " synthesized=" + (generator != null)
+                + " recording=" + recordFrom;
+    }
+
+    /**
+     * Serve recorded or generated responses until the JVM is stopped.
+     * Usage: SoapStandIn [-port port] [-scale factor] [-latency ms]
+     * [-errors rate] [-record url] [directory]
+     * With -record the calls which can not be answered are forwarded to the
+     * services at the given base url and their responses saved in the
+     * directory.
+     * @param args the command line arguments
+     * @throws IOException when the responses can not be loaded
+     */
+    public static void main(final String[] args) throws IOException {
+        int serverport = 8891;
+        double scale = 0.01;
+        long latency = 0;
+        double rate = 0;
+        String record = null;
+        File dir = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("-port".equals(args[i]) && i + 1 < args.length) {
+                serverport = Integer.parseInt(args[++i]);
+            } else if ("-scale".equals(args[i]) && i + 1 < args.length) {
+                scale = Double.parseDouble(args[++i]);
+            } else if ("-latency".equals(args[i]) && i + 1 < args.length) {
+                latency = Long.parseLong(args[++i]);
+            } else if ("-errors".equals(args[i]) && i + 1 < args.length) {
+                rate = Double.parseDouble(args[++i]);
+            } else if ("-record".equals(args[i]) && i + 1 < args.length) {
+                record = args[++i];
+            } else {
+                dir = new File(args[i]);
+            }
+        }
+        final SoapStandIn standin = new SoapStandIn(serverport, 16);
+        if (dir != null && dir.isDirectory()) {
+            standin.load(dir);
+        }
+        if (record == null) {
+            standin.setGenerator(new DatasetGenerator(
+                    new GeneratorSettings().scale(scale)));
+        } else {
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            standin.setRecording(record, dir);
+        }
+        standin.setLatency(latency / 2, latency * 3 / 2);
+        standin.setErrorRate(rate);
+        standin.start();
+    }
+}
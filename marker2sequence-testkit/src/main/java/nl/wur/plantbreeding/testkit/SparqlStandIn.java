@@ -0,0 +1,347 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import com.hp.hpl.jena.graph.compose.MultiUnion;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSetFormatter;
+import com.hp.hpl.jena.query.Syntax;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Embeddable SPARQL-over-HTTP server standing in for the Virtuoso endpoint,
+ * so that the application can run without network against fixture or
+ * generated graphs.
+ * The queries are answered by ARQ as QueryEngineHTTP expects (SPARQL XML
+ * results for SELECT and ASK, RDF/XML for CONSTRUCT and DESCRIBE); the FROM
+ * clauses select the named graphs queried and the Virtuoso
+ * "option(transitive)" is rewritten as a property path.
+ * Latency, errors and throughput limits can be injected (see StandInServer)
+ * to reproduce a slow or failing endpoint.
+ */
+public class SparqlStandIn extends StandInServer {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            SparqlStandIn.class.getName());
+    /** Path of the endpoint on the server. */
+    public static final String PATH = "/sparql";
+    /** Virtuoso transitive option following a triple pattern. */
+    private static final Pattern TRANSITIVE = Pattern.compile(
+            "(\\S+)\\s+(\\S+)\\s+(\\S+)\\s+option\\s*\\(\\s*transitive[^)]*\\)",
+            Pattern.CASE_INSENSITIVE);
+    /** The named graphs served. */
+    private final Map<String, Model> graphs =
+            new ConcurrentHashMap<String, Model>();
+    /**
+     * Constructor.
+     * @param serverport the port to listen to, 0 for any free port
+     * @param serverthreads the number of threads answering the queries
+     */
+    public SparqlStandIn(final int serverport, final int serverthreads) {
+        super(serverport, serverthreads);
+    }
+
+    /**
+     * Add (or replace) a named graph.
+     * @param graph the URI of the graph
+     * @param model its content
+     */
+    public final void addGraph(final String graph, final Model model) {
+        graphs.put(graph, model);
+    }
+
+    /**
+     * Load the N-Triples files written by a NTriplesSink, each file being
+     * one named graph.
+     * @param dir the directory holding the files
+     * @throws IOException when the directory can not be read
+     */
+    public final void load(final File dir) throws IOException {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Could not read " + dir);
+        }
+        for (File file : files) {
+            final String graph = NTriplesSink.graphOf(file);
+            if (graph != null) {
+                final Model model = ModelFactory.createDefaultModel();
+                model.read(file.toURI().toString(), "N-TRIPLE");
+                LOG.log(Level.INFO, "Loaded {0} statements in {1}",
+                        new Object[]{model.size(), graph});
+                this.addGraph(graph, model);
+            }
+        }
+    }
+
+    /**
+     * Load the dataset of a generator, each graph in its own model.
+     * @param generator the DatasetGenerator
+     * @throws IOException never, the graphs are built in memory
+     */
+    public final void load(final DatasetGenerator generator)
+            throws IOException {
+        final Map<String, ModelSink> generated =
+                new HashMap<String, ModelSink>();
+        generator.generate(new TripleSink() {
+
+            @Override
+            public void addResource(final String graph, final String subject,
+                    final String property, final String object) {
+                this.getSink(graph).addResource(graph, subject, property,
+                        object);
+            }
+
+            @Override
+            public void addLiteral(final String graph, final String subject,
+                    final String property, final String value,
+                    final String lang, final String datatype) {
+                this.getSink(graph).addLiteral(graph, subject, property,
+                        value, lang, datatype);
+            }
+
+            /**
+             * Return the sink filling the model of the given graph.
+             * @param graph the URI of the graph
+             * @return a ModelSink keeping all the statements it receives
+             */
+            private ModelSink getSink(final String graph) {
+                ModelSink sink = generated.get(graph);
+                if (sink == null) {
+                    sink = new ModelSink(ModelFactory.createDefaultModel(),
+                            null);
+                    generated.put(graph, sink);
+                }
+                return sink;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        for (Map.Entry<String, ModelSink> entry : generated.entrySet()) {
+            this.addGraph(entry.getKey(), entry.getValue().getModel());
+        }
+    }
+
+    @Override
+    protected final String getPath() {
+        return PATH;
+    }
+
+    /**
+     * Return the url of the endpoint, to give to QueryRdf.setService.
+     * @return the url of the endpoint
+     */
+    public final String getEndpoint() {
+        return this.getUrl();
+    }
+
+    /**
+     * Answer one SPARQL query.
+     * @param exchange the request and its response
+     * @throws IOException when the response can not be sent
+     */
+    @Override
+    protected final void answer(final HttpExchange exchange)
+            throws IOException {
+        final String querystring = this.readQuery(exchange);
+        if (querystring == null) {
+            this.countError();
+            this.send(exchange, 400, "text/plain", "No query given");
+            return;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final String type;
+        try {
+            type = this.execute(querystring, out);
+        }
+        catch (RuntimeException ex) {
+            this.countError();
+            LOG.log(Level.WARNING, "Query failed: {0}\n{1}",
+                    new Object[]{ex.getMessage(), querystring});
+            this.send(exchange, 400, "text/plain", String.valueOf(
+                    ex.getMessage()));
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(200, out.size());
+        out.writeTo(exchange.getResponseBody());
+    }
+
+    /**
+     * Run a query against the graphs named in its FROM clauses (all the
+     * graphs if there is none).
+     * @param querystring the query, possibly using Virtuoso syntax
+     * @param out where the result is written
+     * @return the content type of the result
+     */
+    final String execute(final String querystring, final OutputStream out) {
+        final Query query = QueryFactory.create(rewrite(querystring),
+                Syntax.syntaxARQ);
+        final MultiUnion union = new MultiUnion();
+        if (query.getGraphURIs().isEmpty()) {
+            for (Model model : graphs.values()) {
+                union.addGraph(model.getGraph());
+            }
+        } else {
+            for (String graph : query.getGraphURIs()) {
+                final Model model = graphs.get(graph);
+                if (model != null) {
+                    union.addGraph(model.getGraph());
+                }
+            }
+        }
+        final QueryExecution qexec = QueryExecutionFactory.create(query,
+                DatasetFactory.create(ModelFactory.createModelForGraph(
+                union)));
+        try {
+            if (query.isSelectType()) {
+                ResultSetFormatter.outputAsXML(out, qexec.execSelect());
+                return "application/sparql-results+xml";
+            } else if (query.isAskType()) {
+                ResultSetFormatter.outputAsXML(out, qexec.execAsk());
+                return "application/sparql-results+xml";
+            }
+            final Model result = query.isConstructType()
+                    ? qexec.execConstruct() : qexec.execDescribe();
+            result.write(out, "RDF/XML");
+            return "application/rdf+xml";
+        }
+        finally {
+            qexec.close();
+        }
+    }
+
+    /**
+     * Rewrite the Virtuoso specific syntax in standard SPARQL: a triple
+     * pattern followed by option(transitive) becomes a one-or-more property
+     * path.
+     * @param querystring the query
+     * @return the query ARQ can parse
+     */
+    static String rewrite(final String querystring) {
+        return TRANSITIVE.matcher(querystring).replaceAll("$1 $2+ $3");
+    }
+
+    /**
+     * Read the query of a request, given as the query parameter of a GET
+     * or of a form POST, or as the body of a application/sparql-query POST.
+     * @param exchange the request
+     * @return the query, null if there is none
+     * @throws IOException when the request can not be read
+     */
+    private String readQuery(final HttpExchange exchange) throws IOException {
+        String params = exchange.getRequestURI().getRawQuery();
+        if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            final String body = read(exchange.getRequestBody());
+            final String type = exchange.getRequestHeaders().getFirst(
+                    "Content-Type");
+            if (type != null && type.startsWith("application/sparql-query")) {
+                return body;
+            }
+            params = params == null ? body : params + "&" + body;
+        }
+        if (params == null) {
+            return null;
+        }
+        for (String param : params.split("&")) {
+            if (param.startsWith("query=")) {
+                return decode(param.substring("query=".length()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the number of queries received.
+     * @return the number of queries
+     */
+    public final long getQueries() {
+        return this.getRequests();
+    }
+
+    /**
+     * Return a one line description of the state of the server.
+     * @return a String describing the server
+     */
+    @Override
+    public final String toString() {
+        return super.toString() + " graphs=" + graphs.size();
+    }
+
+    /**
+     * Serve the N-Triples files of a directory or a generated dataset until
+     * the JVM is stopped.
+     * Usage: SparqlStandIn [-port port] [-scale factor] [-latency ms]
+     * [-errors rate] [-qps rate] [directory]
+     * @param args the command line arguments
+     * @throws IOException when the dataset can not be loaded
+     */
+    public static void main(final String[] args) throws IOException {
+        int serverport = 8890;
+        double scale = 0.01;
+        long latency = 0;
+        double rate = 0;
+        double qps = 0;
+        File dir = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("-port".equals(args[i]) && i + 1 < args.length) {
+                serverport = Integer.parseInt(args[++i]);
+            } else if ("-scale".equals(args[i]) && i + 1 < args.length) {
+                scale = Double.parseDouble(args[++i]);
+            } else if ("-latency".equals(args[i]) && i + 1 < args.length) {
+                latency = Long.parseLong(args[++i]);
+            } else if ("-errors".equals(args[i]) && i + 1 < args.length) {
+                rate = Double.parseDouble(args[++i]);
+            } else if ("-qps".equals(args[i]) && i + 1 < args.length) {
+                qps = Double.parseDouble(args[++i]);
+            } else {
+                dir = new File(args[i]);
+            }
+        }
+        final SparqlStandIn standin = new SparqlStandIn(serverport, 16);
+        if (dir == null) {
+            standin.load(new DatasetGenerator(
+                    new GeneratorSettings().scale(scale)));
+        } else {
+            standin.load(dir);
+        }
+        standin.setLatency(latency / 2, latency * 3 / 2);
+        standin.setErrorRate(rate);
+        standin.setMaxRate(qps);
+        standin.start();
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Embeddable HTTP server standing in for an external service.
+ * Latency, errors and throughput limits can be injected to reproduce a slow
+ * or failing service; the subclasses answer the requests let through.
+ */
+public abstract class StandInServer {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            StandInServer.class.getName());
+    /** Port asked for, 0 for any free port. */
+    private final int port;
+    /** Number of threads answering the requests. */
+    private final int threads;
+    /** Random generator of the injected latency and errors. */
+    private final Random random = new Random(42);
+    /** The HTTP server, null when stopped. */
+    private HttpServer server;
+    /** Threads of the HTTP server. */
+    private ExecutorService executor;
+    /** Minimum latency (in milliseconds) added to each request. */
+    private volatile long minLatency = 0;
+    /** Maximum latency (in milliseconds) added to each request. */
+    private volatile long maxLatency = 0;
+    /** Fraction of the requests answered with an error. */
+    private volatile double errorRate = 0;
+    /** Maximum number of requests started per second, 0 for no limit. */
+    private volatile double maxRate = 0;
+    /** Time (in nanoseconds) at which the next request may start. */
+    private long nextSlot = 0;
+    /** Requests running at the same time, beyond them 503 is answered. */
+    private volatile Semaphore concurrent = null;
+    /** Number of requests received. */
+    private final AtomicLong requests = new AtomicLong(0);
+    /** Number of errors answered (injected or not). */
+    private final AtomicLong errors = new AtomicLong(0);
+    /** Number of requests refused because of the concurrency limit. */
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     * @param serverport the port to listen to, 0 for any free port
+     * @param serverthreads the number of threads answering the requests
+     */
+    protected StandInServer(final int serverport, final int serverthreads) {
+        this.port = serverport;
+        this.threads = serverthreads;
+    }
+
+    /**
+     * Return the path under which the service is served.
+     * @return the path, starting with a slash
+     */
+    protected abstract String getPath();
+
+    /**
+     * Answer a request which passed the injected limits and faults.
+     * @param exchange the request and its response
+     * @throws IOException when the response can not be sent
+     */
+    protected abstract void answer(final HttpExchange exchange)
+            throws IOException;
+
+    /**
+     * Start the server.
+     * @throws IOException when the port can not be opened
+     */
+    public final synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(this.getPath(), new HttpHandler() {
+
+            @Override
+            public void handle(final HttpExchange exchange)
+                    throws IOException {
+                try {
+                    StandInServer.this.handle(exchange);
+                }
+                finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        LOG.log(Level.INFO, "{0} listening on {1}", new Object[]{
+                    this.getClass().getSimpleName(), this.getUrl()});
+    }
+
+    /**
+     * Stop the server.
+     */
+    public final synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * Return the url of the service on this server.
+     * @return the url, ending with the path of the service
+     */
+    public final synchronized String getUrl() {
+        final int actual = server == null ? port
+                : server.getAddress().getPort();
+        return "http://localhost:" + actual + this.getPath();
+    }
+
+    /**
+     * Answer one HTTP request.
+     * @param exchange the request and its response
+     * @throws IOException when the response can not be sent
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        final Semaphore limit = concurrent;
+        if (limit != null && !limit.tryAcquire()) {
+            rejected.incrementAndGet();
+            this.sendError(exchange, 503, "Too many requests");
+            return;
+        }
+        try {
+            this.throttle();
+            this.delay();
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                this.countError();
+                this.sendError(exchange, 500, "Injected error");
+                return;
+            }
+            this.answer(exchange);
+        }
+        finally {
+            if (limit != null) {
+                limit.release();
+            }
+        }
+    }
+
+    /**
+     * Send an error, as plain text by default.
+     * @param exchange the request
+     * @param status the HTTP status
+     * @param message the description of the error
+     * @throws IOException when the response can not be sent
+     */
+    protected void sendError(final HttpExchange exchange, final int status,
+            final String message) throws IOException {
+        this.send(exchange, status, "text/plain", message);
+    }
+
+    /**
+     * Record an error answered by the subclass.
+     */
+    protected final void countError() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * Wait until the throughput limit lets the request start.
+     */
+    private void throttle() {
+        if (maxRate <= 0) {
+            return;
+        }
+        final long wait;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final long slot = Math.max(now, nextSlot);
+            nextSlot = slot + (long) (1e9 / maxRate);
+            wait = slot - now;
+        }
+        sleep(wait / 1000000);
+    }
+
+    /**
+     * Wait for the injected latency.
+     */
+    private void delay() {
+        final long min = minLatency;
+        final long max = maxLatency;
+        if (max > 0) {
+            sleep(min + (long) (random.nextDouble() * (max - min)));
+        }
+    }
+
+    /**
+     * Send a response.
+     * @param exchange the request
+     * @param status the HTTP status
+     * @param type the content type
+     * @param message the body of the response
+     * @throws IOException when the response can not be sent
+     */
+    protected final void send(final HttpExchange exchange, final int status,
+            final String type, final String message) throws IOException {
+        final byte[] body = message.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Read a stream in a String.
+     * @param in the stream
+     * @return its content
+     * @throws IOException when the stream can not be read
+     */
+    protected static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n = in.read(buffer);
+        while (n >= 0) {
+            out.write(buffer, 0, n);
+            n = in.read(buffer);
+        }
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Decode a url encoded parameter.
+     * @param value the encoded value
+     * @return the decoded value
+     */
+    protected static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Sleep, keeping the interruption of the thread.
+     * @param millis the time to sleep in milliseconds
+     */
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Set the latency added to each request, drawn uniformly between the
+     * two bounds.
+     * @param min the minimum latency in milliseconds
+     * @param max the maximum latency in milliseconds, 0 for no latency
+     */
+    public final void setLatency(final long min, final long max) {
+        this.minLatency = min;
+        this.maxLatency = Math.max(min, max);
+    }
+
+    /**
+     * Set the fraction of the requests answered with an HTTP 500 error.
+     * @param rate the fraction, between 0 and 1
+     */
+    public final void setErrorRate(final double rate) {
+        this.errorRate = rate;
+    }
+
+    /**
+     * Set the maximum number of requests started per second, the other
+     * ones wait for their turn.
+     * @param rate the number of requests per second, 0 for no limit
+     */
+    public final synchronized void setMaxRate(final double rate) {
+        this.maxRate = rate;
+        this.nextSlot = 0;
+    }
+
+    /**
+     * Set the maximum number of requests running at the same time, the
+     * other ones are answered with an HTTP 503 error.
+     * @param max the number of requests, 0 for no limit
+     */
+    public final void setMaxConcurrent(final int max) {
+        this.concurrent = max > 0 ? new Semaphore(max) : null;
+    }
+
+    /**
+     * Return the number of requests received.
+     * @return the number of requests
+     */
+    public final long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Return the number of errors answered.
+     * @return the number of errors
+     */
+    public final long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Return the number of requests refused because of the concurrency
+     * limit.
+     * @return the number of refused requests
+     */
+    public final long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Return a one line description of the state of the server.
+     * @return a String describing the server
+     */
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " " + this.getUrl()
+                + " requests=" + requests.get()
+                + " errors=" + errors.get()
+                + " rejected=" + rejected.get();
+    }
+}
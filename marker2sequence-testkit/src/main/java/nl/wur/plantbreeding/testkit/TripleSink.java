@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import java.io.IOException;
+
+/**
+ * Receives the statements produced by the DatasetGenerator, one at a time,
+ * so that large datasets never have to be held in memory.
+ */
+public interface TripleSink {
+
+    /**
+     * Add a statement whose object is a resource.
+     * @param graph the named graph of the statement
+     * @param subject the URI of the subject
+     * @param property the URI of the property
+     * @param object the URI of the object
+     * @throws IOException when the statement can not be written
+     */
+    void addResource(String graph, String subject, String property,
+            String object) throws IOException;
+
+    /**
+     * Add a statement whose object is a literal.
+     * @param graph the named graph of the statement
+     * @param subject the URI of the subject
+     * @param property the URI of the property
+     * @param value the lexical value of the literal
+     * @param lang the language of the literal, null for none
+     * @param datatype the URI of the datatype of the literal, null for none
+     * @throws IOException when the statement can not be written
+     */
+    void addLiteral(String graph, String subject, String property,
+            String value, String lang, String datatype) throws IOException;
+
+    /**
+     * Flush and release what the sink holds.
+     * @throws IOException when the statements can not be written
+     */
+    void close() throws IOException;
+}
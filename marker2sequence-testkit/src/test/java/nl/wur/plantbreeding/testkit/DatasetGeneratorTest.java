@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import nl.wur.plantbreeding.logic.saxparser.ParserXMLMarkersToSW;
+import nl.wur.plantbreeding.logic.swtools.QueryRdf;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DatasetGeneratorTest {
+
+    /**
+     * Return the settings of a small fragmented genome.
+     * @return the GeneratorSettings
+     */
+    private GeneratorSettings small() {
+        final GeneratorSettings settings = new GeneratorSettings();
+        settings.setChromosomes(2);
+        settings.setChromosomeLength(1000000);
+        settings.setScaffoldsPerChromosome(4);
+        settings.setGenes(60);
+        settings.setMarkers(30);
+        settings.setGoTerms(40);
+        settings.setPathways(5);
+        return settings;
+    }
+
+    /**
+     * Read a whole file.
+     * @param file the file
+     * @return its content
+     * @throws IOException when the file can not be read
+     */
+    private String read(final File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] content = new byte[(int) in.length()];
+            in.readFully(content);
+            return new String(content, "US-ASCII");
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the dataset of the given settings in a temporary directory.
+     * @param settings the settings of the dataset
+     * @return the directory
+     * @throws IOException when the files can not be written
+     */
+    private File write(final GeneratorSettings settings) throws IOException {
+        final File dir = File.createTempFile("m2s-dataset-", "");
+        assertTrue(dir.delete());
+        final NTriplesSink sink = new NTriplesSink(dir);
+        new DatasetGenerator(settings).generate(sink);
+        sink.close();
+        return dir;
+    }
+
+    /**
+     * Test that the same settings give the same dataset.
+     * @throws Exception
+     */
+    @Test
+    public void testDeterministic() throws Exception {
+        final File first = write(small());
+        final File second = write(small());
+        final GeneratorSettings other = small();
+        other.setSeed(7);
+        final File third = write(other);
+        final String[] graphs = {DatasetGenerator.ITAG_GRAPH,
+            DatasetGenerator.GO_GRAPH, DatasetGenerator.UNIPROT_GRAPH};
+        for (String graph : graphs) {
+            final String content = read(NTriplesSink.fileOf(first, graph));
+            assertEquals(content, read(NTriplesSink.fileOf(second, graph)));
+            assertFalse(content.equals(read(NTriplesSink.fileOf(third,
+                    graph))));
+        }
+        final Model model = ModelFactory.createDefaultModel();
+        for (File file : first.listFiles()) {
+            assertNotNull(NTriplesSink.graphOf(file));
+            model.read(file.toURI().toString(), "N-TRIPLE");
+        }
+        final ModelSink sink = new ModelSink();
+        new DatasetGenerator(small()).generate(sink);
+        final Model expected = sink.getModel();
+        assertTrue(model.isIsomorphicWith(expected));
+    }
+
+    /**
+     * Test that QueryRdf finds the genes and markers generated.
+     * @throws Exception
+     */
+    @Test
+    public void testQueryRdf() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(small());
+        final ModelSink sink = new ModelSink(DatasetGenerator.ITAG_GRAPH,
+                DatasetGenerator.GO_GRAPH);
+        generator.generate(sink);
+        final Model model = sink.getModel();
+        final QueryRdf query = new QueryRdf();
+
+        assertEquals(60, query.getAnnotationList(model).size());
+        final List<GeneticMarkers> map = query.getGeneticMap(model);
+        assertEquals(30, map.size());
+        int placed = 0;
+        for (int i = 0; i < 30; i++) {
+            if (generator.getMarker(i).getScafoldname() != null) {
+                placed++;
+            }
+        }
+        final List<Markerws> physical = query.getPhysicalMap(model);
+        assertEquals(placed, physical.size());
+        for (Markerws marker : physical) {
+            final Markerws generated = generator.getMarker(
+                    generator.getMarkerIndex(marker.getName()));
+            assertEquals(generated.getScafoldname(),
+                    marker.getScafoldname());
+            assertEquals(generated.getChromosome(), marker.getChromosome());
+            assertEquals(generated.getStartPosition(),
+                    marker.getStartPosition());
+        }
+    }
+
+    /**
+     * Test that the BioMoby response is read back by the marker parser.
+     * @throws Exception
+     */
+    @Test
+    public void testMarkerResponse() throws Exception {
+        final DatasetGenerator generator = new DatasetGenerator(small());
+        final List<Markerws> markers = generator.getMarkers(2, 20, 80);
+        assertFalse(markers.isEmpty());
+        for (Markerws marker : markers) {
+            assertEquals(2L, marker.getChromosomeNumber());
+            assertTrue(marker.getMapPosition() >= 20
+                    && marker.getMapPosition() <= 80);
+        }
+        final File file = File.createTempFile("m2s-markers-", ".xml");
+        file.deleteOnExit();
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8");
+        DatasetGenerator.writeMarkerResponse(markers, out);
+        out.close();
+
+        final Model model = ModelFactory.createDefaultModel();
+        final ParserXMLMarkersToSW parser = new ParserXMLMarkersToSW();
+        parser.setModel(model);
+        parser.setUri(DatasetGenerator.MARKER);
+        parser.setMotif("moby:GeneticMarker");
+        parser.parseDocument(file.toURI().toString());
+        final List<GeneticMarkers> map = new QueryRdf().getGeneticMap(model);
+        assertEquals(markers.size(), map.size());
+        for (int i = 0; i < map.size(); i++) {
+            assertEquals(markers.get(i).getName(), map.get(i).getName());
+        }
+    }
+
+    /**
+     * Test the lookup of the markers by name.
+     */
+    @Test
+    public void testMarkerIndex() {
+        final DatasetGenerator generator = new DatasetGenerator(small());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i, generator.getMarkerIndex(
+                    DatasetGenerator.getMarkerName(i)));
+        }
+        assertEquals(-1, generator.getMarkerIndex("TG1"));
+        assertEquals(-1, generator.getMarkerIndex("TG30"));
+        assertEquals(-1, generator.getMarkerIndex("TG"));
+        assertEquals(60, new DatasetGenerator(small().scale(2)).getSettings()
+                .getMarkers());
+    }
+}
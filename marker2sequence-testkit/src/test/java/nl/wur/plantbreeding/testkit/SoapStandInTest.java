@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.logic.cache.WebServiceCaches;
+import nl.wur.plantbreeding.logic.marker2seq.AnnotationRetriever;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seq;
+import nl.wur.plantbreeding.logic.soapclient.ServiceUrls;
+import nl.wur.plantbreeding.logic.soapclient.SoapClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SoapStandInTest {
+
+    /** The generator of the responses synthesized. */
+    private DatasetGenerator generator;
+    /** The server tested. */
+    private SoapStandIn standin;
+
+    /**
+     * Serve a small generated dataset on a free port and send the
+     * web-service calls to it.
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        final GeneratorSettings settings = new GeneratorSettings();
+        settings.setChromosomes(2);
+        settings.setChromosomeLength(100000);
+        settings.setGenes(40);
+        settings.setMarkers(20);
+        settings.setGoTerms(60);
+        settings.setUnplacedMarkers(0);
+        generator = new DatasetGenerator(settings);
+        standin = new SoapStandIn(0, 4);
+        standin.setGenerator(generator);
+        standin.start();
+        // Without caches every call reaches the server
+        WebServiceCaches.configure(WebServiceCaches.DEFAULT_TTL, 0, null, 0);
+        ServiceUrls.configure(standin.getBaseUrl(), standin.getBaseUrl(),
+                standin.getBaseUrl());
+    }
+
+    /**
+     * Stop the server and restore the urls of the services and the caches.
+     */
+    @After
+    public void tearDown() {
+        standin.stop();
+        ServiceUrls.configure(null, null, null);
+        WebServiceCaches.configure(WebServiceCaches.DEFAULT_TTL,
+                WebServiceCaches.DEFAULT_MAX_ENTRIES,
+                WebServiceCaches.DEFAULT_DIRECTORY,
+                WebServiceCaches.DEFAULT_MAX_DISK_BYTES);
+    }
+
+    /**
+     * Test the markers of an interval synthesized from the dataset.
+     * @throws Exception
+     */
+    @Test
+    public void testRetrieveModel() throws Exception {
+        final String[] markers = {DatasetGenerator.getMarkerName(12),
+            DatasetGenerator.getMarkerName(16)};
+        final Model model = new Marker2seq().retrieveModel(markers);
+        final List<?> expected = generator.getMarkers(2,
+                generator.getMarker(12).getMapPosition(),
+                generator.getMarker(16).getMapPosition());
+        assertEquals(5, expected.size());
+        assertEquals(expected.size(), model.listSubjects().toList().size());
+        assertEquals(1, standin.getRequests());
+    }
+
+    /**
+     * Test the Sifter and PlantDB annotations synthesized from the dataset.
+     * @throws Exception
+     */
+    @Test
+    public void testAnnotation() throws Exception {
+        final Annotation gene = generator.getGene(25);
+        final AnnotationRetriever retriever =
+                new AnnotationRetriever(DatasetGenerator.ITAG_GRAPH);
+        final List<Annotation> terms = retriever.getGoTermFromSifter(
+                gene.getName(), false, false);
+        assertEquals(generator.getGeneGoTerms(25).size(), terms.size());
+        final List<Annotation> elements =
+                retriever.getAnnotationFromPlantDBMunich(gene.getName(),
+                false, false);
+        assertEquals(1, elements.size());
+        assertEquals(gene.getName(), elements.get(0).getName());
+        assertEquals(gene.getScafoldname(),
+                elements.get(0).getScafoldname());
+        assertEquals(gene.getStartPosition(),
+                elements.get(0).getStartPosition());
+    }
+
+    /**
+     * Test the replay of a recorded response and the faults.
+     * @throws Exception
+     */
+    @Test
+    public void testRecorded() throws Exception {
+        final String service = "testRecordedService";
+        standin.record(service, "<moby:MOBY/>", "<recorded/>");
+        final SoapClient client = new SoapClient();
+        assertEquals("<recorded/>", client.callService(service,
+                standin.getServiceUrl(service), "<moby:MOBY/>", false));
+        try {
+            client.callService(service, standin.getServiceUrl(service),
+                    "<moby:MOBY></moby:MOBY>", false);
+            fail("No response was recorded for this input");
+        }
+        catch (Exception ex) {
+            assertEquals(1, standin.getErrors());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.testkit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import nl.wur.plantbreeding.logic.swtools.QueryRdf;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SparqlStandInTest {
+
+    /** The generator of the dataset served. */
+    private DatasetGenerator generator;
+    /** The server tested. */
+    private SparqlStandIn standin;
+
+    /**
+     * Serve a small generated dataset on a free port.
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        final GeneratorSettings settings = new GeneratorSettings();
+        settings.setChromosomes(1);
+        settings.setChromosomeLength(100000);
+        settings.setGenes(50);
+        settings.setMarkers(10);
+        settings.setGoTerms(60);
+        settings.setProteinFraction(1);
+        generator = new DatasetGenerator(settings);
+        standin = new SparqlStandIn(0, 4);
+        standin.load(generator);
+        standin.start();
+    }
+
+    /**
+     * Stop the server.
+     */
+    @After
+    public void tearDown() {
+        standin.stop();
+    }
+
+    /**
+     * Return a QueryRdf querying the server.
+     * @return the QueryRdf
+     */
+    private QueryRdf newQuery() {
+        final QueryRdf query = new QueryRdf();
+        query.setService(standin.getEndpoint());
+        return query;
+    }
+
+    /**
+     * Test the rewriting of the Virtuoso transitive option.
+     */
+    @Test
+    public void testRewrite() {
+        assertEquals("SELECT ?s WHERE {   ?s rdfs:subClassOf+ <http://a#b> . }",
+                SparqlStandIn.rewrite("SELECT ?s WHERE {   ?s rdfs:subClassOf"
+                + "  <http://a#b> option(transitive) . }"));
+    }
+
+    /**
+     * Test that the children of a GO term are all its descendants.
+     */
+    @Test
+    public void testGoChildren() {
+        final Set<String> expected = new HashSet<String>();
+        for (int t = 3; t < 60; t++) {
+            int term = t;
+            final List<Integer> ancestors = new ArrayList<Integer>();
+            ancestors.add(term);
+            // Every term descends from the root of its namespace
+            while (!ancestors.isEmpty()) {
+                term = ancestors.remove(0);
+                if (term == 0) {
+                    expected.add(generator.getGoUri(t));
+                    break;
+                }
+                ancestors.addAll(generator.getGoParents(term));
+            }
+        }
+        final List<String> children = newQuery().getGoChildrenList(
+                generator.getGoId(0));
+        final Set<String> found = new HashSet<String>();
+        for (String chunk : children) {
+            for (String uri : chunk.trim().split("[\\s,]+")) {
+                if (!uri.isEmpty()) {
+                    found.add(uri.substring(1, uri.length() - 1));
+                }
+            }
+        }
+        assertEquals(expected, found);
+    }
+
+    /**
+     * Test that the queries are limited to the graphs of their FROM clauses.
+     */
+    @Test
+    public void testProteinInfo() {
+        final String gene = generator.getGene(7).getName();
+        final List<HashMap<String, String>> info =
+                newQuery().getProteinInfoForGene(gene);
+        assertEquals(1, info.size());
+        assertEquals(generator.getProteinUri(7), info.get(0).get("uri"));
+        assertEquals(generator.getGene(7).getDescription(),
+                info.get(0).get("description"));
+        assertTrue(standin.getQueries() > 0);
+        assertEquals(0, standin.getErrors());
+    }
+
+    /**
+     * Test the injected errors and latency.
+     */
+    @Test
+    public void testFaults() {
+        standin.setErrorRate(1);
+        try {
+            newQuery().getProteinInfoForGene(generator.getGene(1).getName());
+            fail("The injected error should reach the caller");
+        }
+        catch (RuntimeException ex) {
+            assertEquals(1, standin.getErrors());
+        }
+        standin.setErrorRate(0);
+        standin.setLatency(200, 200);
+        final long start = System.currentTimeMillis();
+        newQuery().getProteinInfoForGene(generator.getGene(2).getName());
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+}
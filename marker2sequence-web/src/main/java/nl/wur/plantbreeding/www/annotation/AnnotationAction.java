@@ -27,10 +27,9 @@ import java.util.logging.Logger;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import nl.wur.plantbreeding.logic.marker2seq.AnnotationRetriever;
 import nl.wur.plantbreeding.www.marker2seq.GoDistribution;
-import nl.wur.plantbreeding.www.util.EmailExceptions;
+import nl.wur.plantbreeding.www.util.ExceptionNotifier;
 import nl.wur.plantbreeding.logic.marker2seq.Marker2SeqUtils;
 import org.apache.struts.action.ActionForm;
 import org.apache.struts.action.ActionForward;
@@ -87,7 +86,6 @@ public class AnnotationAction extends org.apache.struts.action.Action {
         final ServletContext context = getServlet().getServletContext();
 
         LOG.info(" *** Start ***");
-        final HttpSession session = request.getSession();
         request.setAttribute("annotation", null); // annotation table
         request.setAttribute("annotationpie", null);
 
@@ -146,7 +144,7 @@ public class AnnotationAction extends org.apache.struts.action.Action {
             catch (Exception ex) {
                 LOG.log(Level.SEVERE, "ERROR : {0}", ex.getMessage());
                 LOG.severe(ex.getLocalizedMessage());
-                EmailExceptions.sendExceptionEmail(context, request, ex);
+                ExceptionNotifier.report(context, request, ex);
                 return mapping.findForward(ERROR);
             }
 
@@ -172,7 +170,7 @@ public class AnnotationAction extends org.apache.struts.action.Action {
                 }
                 out = GoDistribution.generateDistribution(
                         gos,
-                        "GO name space distribution", "#", session,
+                        "GO name space distribution", "#",
                         legend, legend, true, 10);
                 if (out != null) {
                     //store the image:
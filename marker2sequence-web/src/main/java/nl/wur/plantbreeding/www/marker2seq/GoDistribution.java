@@ -20,24 +20,29 @@ package nl.wur.plantbreeding.www.marker2seq;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
-import javax.servlet.http.HttpSession;
+import java.util.Map;
+import java.util.TreeMap;
+import nl.wur.plantbreeding.logic.jfreechart.ChartCache;
 import nl.wur.plantbreeding.logic.jfreechart.PieChart;
-import org.jfree.chart.ChartRenderingInfo;
-import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
-import org.jfree.chart.entity.StandardEntityCollection;
 import org.jfree.chart.plot.PiePlot;
-import org.jfree.chart.servlet.ServletUtilities;
 import org.jfree.chart.urls.StandardPieURLGenerator;
 import org.jfree.data.general.PieDataset;
 
 /**
  * This class handles the generation of the PieChart we use to present the GO
  * term distribution.
+ * The charts are kept in the ChartCache: the same distribution drawn with the
+ * same parameters is only drawn once.
  * @author Pierre-Yves Chibon -- py@chibon.fr
  */
 public final class GoDistribution {
 
+    /** Width of the charts. */
+    private static final int WIDTH = 500;
+    /** Height of the charts. */
+    private static final int HEIGHT = 400;
+
     /**
      * Default private constructor.
      */
@@ -48,42 +53,35 @@ public final class GoDistribution {
      * @param distrib a HashMap of GO name and GO frequency
      * @param title the title of the GO graph
      * @param url the url used for the tooltips
-     * @param session the HttpSession used to save the file
      * @param legend Print the legend or not
      * @param tooltips Add tooltip or not
      * @param urls Add urls or not (link in the graph)
-     * @param max Maximum number of item to display
+     * @param max Maximum number of sections displayed, the smallest ones
+     * are grouped in an Other section
      * @return a list containing the filename and the map for the figure
      * @throws IOException when something happens while writting the image
      */
     public static String[] generateDistribution(
             final HashMap<String, Integer> distrib,
-            final String title, final String url, final HttpSession session,
+            final String title, final String url,
             final boolean legend, final boolean tooltips, final boolean urls,
             final int max)
             throws IOException {
-
-        final PieChart piec = new PieChart();
-        final PieDataset piedata = piec.createDataset(distrib);
-
-        final JFreeChart chart = piec.createChart(piedata, title, legend,
-                tooltips, urls);
-        final PiePlot plot = (PiePlot) chart.getPlot();
-        if (distrib.size() >= max) {
-            plot.setLabelGenerator(null);
-        }
-        plot.setURLGenerator(new StandardPieURLGenerator(url, "section"));
-
-        final ChartRenderingInfo info = new ChartRenderingInfo(
-                new StandardEntityCollection());
-
-        final String filename = ServletUtilities.saveChartAsPNG(
-                chart, 500, 400, info, session);
-
-        final String map = ChartUtilities.getImageMap(filename, info);
-
-        final String[] output = {filename, map};
-        return output;
+        // The order of a HashMap is not stable, the key uses a sorted copy
+        final Map<String, Integer> sorted =
+                new TreeMap<String, Integer>(distrib);
+        final String key = ChartCache.key("top-distribution", sorted, title, url,
+                legend, tooltips, urls, max, WIDTH, HEIGHT);
+        return ChartCache.getOrCreate(key, new ChartCache.ChartSource() {
+
+            @Override
+            public JFreeChart createChart() {
+                final PieChart piec = new PieChart();
+                final PieDataset piedata = piec.createDataset(distrib, max);
+                return createPie(piec, piedata, title, url, legend, tooltips,
+                        urls);
+            }
+        }, WIDTH, HEIGHT);
     }
 
     /**
@@ -91,40 +89,53 @@ public final class GoDistribution {
      * @param gotermlist of String (here GO names)
      * @param title the title of the GO graph
      * @param url the url used for the tooltips
-     * @param session the HttpSession used to save the file
      * @param legend Print the legend or not
      * @param tooltips Add tooltip or not
      * @param urls Add urls or not (link in the graph)
-     * @param max Maximum number of item to display
+     * @param max Maximum number of sections displayed, the smallest ones
+     * are grouped in an Other section
      * @return a list containing the filename and the map for the figure
      * @throws IOException when something happens while writting the image
      */
     public static String[] generateDistribution(
             final List<String> gotermlist,
-            final String title, final String url, final HttpSession session,
+            final String title, final String url,
             final boolean legend, final boolean tooltips, final boolean urls,
             final int max)
             throws IOException {
-        final PieChart piec = new PieChart();
-        final PieDataset dataset = piec.createDataset(gotermlist);
+        final String key = ChartCache.key("top-list", gotermlist, title, url,
+                legend, tooltips, urls, max, WIDTH, HEIGHT);
+        return ChartCache.getOrCreate(key, new ChartCache.ChartSource() {
+
+            @Override
+            public JFreeChart createChart() {
+                final PieChart piec = new PieChart();
+                final PieDataset dataset = piec.createDataset(gotermlist,
+                        max);
+                return createPie(piec, dataset, title, url, legend, tooltips,
+                        urls);
+            }
+        }, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Create the pie chart of the given dataset.
+     * @param piec the PieChart creating the chart
+     * @param dataset the PieDataset to plot
+     * @param title the title of the GO graph
+     * @param url the url used for the tooltips
+     * @param legend Print the legend or not
+     * @param tooltips Add tooltip or not
+     * @param urls Add urls or not (link in the graph)
+     * @return the JFreeChart
+     */
+    private static JFreeChart createPie(final PieChart piec,
+            final PieDataset dataset, final String title, final String url,
+            final boolean legend, final boolean tooltips, final boolean urls) {
         final JFreeChart chart = piec.createChart(dataset, title, legend,
-                                                tooltips, urls);
+                tooltips, urls);
         final PiePlot plot = (PiePlot) chart.getPlot();
-        if (gotermlist.size() >= max) {
-            plot.setLabelGenerator(null);
-        }
         plot.setURLGenerator(new StandardPieURLGenerator(url, "section"));
-
-        final ChartRenderingInfo info = new ChartRenderingInfo(
-                new StandardEntityCollection());
-
-        final String filename = ServletUtilities.saveChartAsPNG(
-                chart, 500, 400, info, session);
-
-        final String map = ChartUtilities.getImageMap(filename, info);
-
-        final String[] output = {filename, map};
-        return output;
-
+        return chart;
     }
 }
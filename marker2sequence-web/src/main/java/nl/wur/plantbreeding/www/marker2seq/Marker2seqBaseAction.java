@@ -0,0 +1,325 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.www.marker2seq;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import nl.wur.plantbreeding.exceptions.MarkerNotMappedException;
+import nl.wur.plantbreeding.exceptions.SeveralMappedPositionException;
+import nl.wur.plantbreeding.exceptions.ServiceUnavailableException;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2SeqUtils;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seqQuery;
+import nl.wur.plantbreeding.logic.pipeline.PipelineContext;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+import nl.wur.plantbreeding.logic.swtools.QueryRdf;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
+import nl.wur.plantbreeding.www.util.ExceptionNotifier;
+import nl.wur.plantbreeding.www.util.ResultHandle;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.ActionMessage;
+import org.apache.struts.action.ActionMessages;
+
+/**
+ * Code shared by the actions running a marker2seq query, either directly
+ * (Marker2seqAction) or as a background job (SubmitMarker2seqJobAction and
+ * Marker2seqJobStatusAction): reading the query from the form, translating
+ * the errors of the pipeline into messages and publishing its results.
+ */
+public abstract class Marker2seqBaseAction
+        extends org.apache.struts.action.Action {
+
+    /* forward name="success" path="" */
+    /** Value return to the mapping to indicate to proceed to the page. */
+    protected static final String SUCCESS = "success";
+    /** Value return to the mapping to proceed to the keyword search page. */
+    protected static final String SUCCESSANNOTATION = "successannotation";
+    /** Value return to the mapping to indicate an error (generic case). */
+    protected static final String ERROR = "error";
+    /** Value return to the mapping to indicate a biomoby error. */
+    protected static final String ERRORMOBY = "errormoby";
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            Marker2seqBaseAction.class.getName());
+    /** URI used for reference. */
+    private static final String URI = "http://pbr.wur.nl/";
+
+    /**
+     * Read the query from the form and the settings of the application.
+     * @param markerForm the form containing the markers or the interval
+     * @param request the HTTP Request we are processing
+     * @return the Marker2seqQuery, null if no input was given (the error is
+     * then saved in the request)
+     */
+    protected final Marker2seqQuery readQuery(
+            final EnterMarkerNameForm markerForm,
+            final HttpServletRequest request) {
+        final ServletContext context = getServlet().getServletContext();
+
+        // Retrieve the sparql endpoint where are stored our graphs
+        // from the web.xml
+        final String endpoint = context.getInitParameter("sparqlserver");
+        if (endpoint == null) {
+            LOG.log(Level.INFO, "Could not retrieve the sparql server address "
+                    + "(at key: sparqlserver), Going to the "
+                    + "default value: http://localhost:8890/sparql/.");
+
+        }
+        LOG.log(Level.INFO, "Using endpoint {0}", endpoint);
+
+        final String theme = context.getInitParameter("theme");
+        final String species = context.getInitParameter("m2sSpecies");
+        final String graph = Marker2SeqUtils.GetBaseGraphFromTheme(species, theme);
+
+        request.setAttribute("species", species.toLowerCase());
+
+        String[] markers = {};
+        String keyword = null;
+
+        if (markerForm.getMarker1() != null
+                && !"".equals(markerForm.getMarker1())
+                && markerForm.getMarker2() != null
+                && !"".equals(markerForm.getMarker2())) {
+            markerForm.setMarkers(markerForm.getMarker1() + ","
+                    + markerForm.getMarker2());
+        }
+
+        //FIXME: Add NULL check!
+        if (markerForm.getMarkers() != null
+                && !markerForm.getMarkers().isEmpty()) {
+            LOG.log(Level.INFO, "Markers: {0}", markerForm.getMarkers());
+            markers = markerForm.getMarkers().split(",");
+            for (int i = 0; i < markers.length; i++) {
+                markers[i] = markers[i].trim();
+            }
+        } else if (( markerForm.getLoci() == null
+                || markerForm.getLoci().isEmpty() )
+                && ( markerForm.getMaploci() == null
+                || markerForm.getMaploci().isEmpty() )) {
+            LOG.info("Got nothing from the URL");
+            final ActionMessages errors = new ActionMessages();
+            errors.add("NoInputGiven",
+                    new ActionMessage("errors.detail", "No input given"));
+            saveErrors(request, errors);
+            return null;
+        }
+
+        if (request.getParameter("kw") != null) { //||
+            //(markerForm != null && !markerForm.getKeyword().isEmpty())) {
+            markerForm.setKeyword(request.getParameter("kw"));
+            keyword = markerForm.getKeyword();
+            LOG.log(Level.INFO, "Keyword given: {0}", keyword);
+        }
+
+        return new Marker2seqQuery(markers, markerForm.getLoci(),
+                markerForm.getMaploci(), keyword, species, endpoint, graph);
+    }
+
+    /**
+     * Return the forward to use once the query succeeded.
+     * @param mapping the ActionMapping used to select this instance
+     * @param query the query which succeeded
+     * @return the forward to the result page or, if a keyword was given, to
+     * the keyword search page
+     */
+    protected final ActionForward findSuccess(final ActionMapping mapping,
+            final Marker2seqQuery query) {
+        if (query.getKeyword() != null) {
+            return mapping.findForward(SUCCESSANNOTATION);
+        }
+        return mapping.findForward(SUCCESS);
+    }
+
+    /**
+     * Save the message explaining the failure of the pipeline in the request
+     * and return the forward to the error page.
+     * @param ex the exception thrown by the pipeline
+     * @param query the query which failed
+     * @param mapping the ActionMapping used to select this instance
+     * @param request the HTTP Request we are processing
+     * @return the forward to the error page
+     */
+    protected final ActionForward findFailure(final Exception ex,
+            final Marker2seqQuery query, final ActionMapping mapping,
+            final HttpServletRequest request) {
+        final ActionMessages errors = new ActionMessages();
+        if (ex instanceof MarkerNotMappedException) {
+            LOG.log(Level.SEVERE, "No markers could be retrieved.");
+            errors.add("Marker2seq", new ActionMessage("m2s.error.wrong.input"));
+            saveErrors(request, errors);
+            return mapping.findForward(ERROR);
+        }
+        if (ex instanceof ServiceUnavailableException) {
+            // An external service is down, no need to wait for it nor to
+            // warn the administrator for every request
+            LOG.log(Level.WARNING, "Service unavailable: {0}",
+                    ex.getMessage());
+            errors.add("Marker2seq", new ActionMessage("m2s.error.ws",
+                    ex.getMessage()));
+            saveErrors(request, errors);
+            return mapping.findForward(ERRORMOBY);
+        }
+        if (ex instanceof NumberFormatException) {
+            LOG.log(Level.SEVERE, "ERROR :"
+                    + " {0}", ex.getMessage());
+            errors.add("WrongInputGiven",
+                    new ActionMessage("errors.detail", "Wrong input form given"));
+            saveErrors(request, errors);
+            return mapping.findForward(ERROR);
+        }
+        LOG.log(Level.SEVERE, "ERROR :"
+                + " {0}", ex.getMessage());
+        this.handleError(errors, request, query.getMarkers(),
+                this.newQueryRdf(query.getEndpoint(), query.getBasegraph()));
+        if (!(ex instanceof SeveralMappedPositionException)) {
+            ExceptionNotifier.report(getServlet().getServletContext(),
+                    request, ex);
+        }
+        return mapping.findForward(ERROR);
+    }
+
+    /**
+     * Remove the leftovers of the previous query from the session.
+     * @param session the session of the user
+     */
+    protected static void clearResult(final HttpSession session) {
+        session.setAttribute("marker2filename", null);
+        session.setAttribute("resultannotation", null);
+    }
+
+    /**
+     * Start the trace of a request, continuing the one of the caller if it
+     * sent the B3 headers (X-B3-TraceId, X-B3-SpanId, X-B3-Sampled). The
+     * identifier of the trace is returned in the X-Trace-Id header.
+     * @param name name of the root span
+     * @param request the HTTP Request we are processing
+     * @param response the HTTP Response we are processing
+     * @return the root Span, NOOP if the request is not traced
+     */
+    protected static Span startTrace(final String name,
+            final HttpServletRequest request,
+            final HttpServletResponse response) {
+        final Span span = Tracer.startTrace(name,
+                request.getHeader("X-B3-TraceId"),
+                request.getHeader("X-B3-SpanId"),
+                "1".equals(request.getHeader("X-B3-Sampled")));
+        if (span.isRecording()) {
+            response.setHeader("X-Trace-Id", span.getTraceId());
+        }
+        return span;
+    }
+
+    /**
+     * Store the outputs of the pipeline in the ResultStore and make them the
+     * current result of the session. Only the ResultHandle is kept in the
+     * session, the jsp read the tables from the request (see
+     * ResultRequestFilter).
+     * @param session the session of the user
+     * @param result the PipelineContext returned by the pipeline
+     */
+    protected static void storeResult(final HttpSession session,
+            final PipelineContext result) {
+        final String id = ResultStore.newId();
+        ResultStore.put(id, result);
+        ResultHandle.publish(session, id);
+    }
+
+    /**
+     * Return a QueryRdf object for the given endpoint and base graph.
+     * @param endpoint the url of the sparql endpoint (may be null)
+     * @param graph the base graph used in the queries
+     * @return a QueryRdf object
+     */
+    private QueryRdf newQueryRdf(final String endpoint, final String graph) {
+        final QueryRdf query = new QueryRdf(URI);
+        if (endpoint != null && !endpoint.isEmpty()) {
+            query.setService(endpoint);
+        }
+        query.setBasegraph(graph);
+        return query;
+    }
+
+    /**
+     * This function displays the potential error found while parsint the output
+     * from the web-service. This allow to see quickly if one of the input
+     * markers is located on a different LG than the others.
+     * @param errors an ActionMessages used to set the error message to display
+     * to the user.
+     * @param request a HttpServletRequest to which the error is attached.
+     * @param markers the markers to locate.
+     * @param query the QueryRdf object of the request.
+     */
+    private void handleError(ActionMessages errors, HttpServletRequest request,
+            String[] markers, QueryRdf query) {
+        try {
+            ArrayList<String[]> positions = this.getPosition(markers, query);
+            String output = "";
+            for (String[] pos : positions) {
+                String sca = pos[1];
+                if (sca.contains("SCAFFOLD#")) {
+                    sca = sca.split("SCAFFOLD#")[1];
+                }
+                output += "<br /> " + pos[0] + " has scaffold: " + sca;
+            }
+            LOG.log(Level.SEVERE, "ERROR Makers have different scaffolds:"
+                    + " {0}", output);
+            errors.add("Marker2seq", new ActionMessage("errors.detail",
+                    "Could not proceed because not all the markers are located "
+                    + "on the same chromosome:" + output));
+            saveErrors(request, errors);
+
+        }
+        catch (Exception exc) {
+            LOG.log(Level.SEVERE, "ERROR could not map marker:"
+                    + " {0}", exc.getMessage());
+            errors.add("Marker2seq", new ActionMessage("errors.detail",
+                    exc.getMessage()));
+            saveErrors(request, errors);
+        }
+    }
+
+    /**
+     * This function return an array of String containing {Marker name, Marker
+     * scaffold} for a given marker.
+     * @param markers the name of the marker as used at the end of its URI.
+     * @param query the QueryRdf object of the request.
+     * @return an array of string in the format {Marker name, scaffold}.
+     * @throws MarkerNotMappedException if a marker cannot be located.
+     */
+    private ArrayList<String[]> getPosition(String[] markers, QueryRdf query)
+            throws MarkerNotMappedException {
+        ArrayList<String[]> output = new ArrayList<String[]>();
+        for (String marker : markers) {
+            String scaffold = query.getScaffoldMarker(marker);
+            if (scaffold == null) {
+                throw new MarkerNotMappedException("Could not map marker: " + marker);
+            } else {
+                String[] tmp = {marker, scaffold};
+                output.add(tmp);
+            }
+        }
+        return output;
+    }
+}
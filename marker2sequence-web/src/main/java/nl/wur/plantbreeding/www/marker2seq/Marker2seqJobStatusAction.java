@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.www.marker2seq;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import nl.wur.plantbreeding.logic.job.Job;
+import nl.wur.plantbreeding.logic.job.JobManager;
+import nl.wur.plantbreeding.logic.job.JobStatus;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seqQuery;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+import nl.wur.plantbreeding.www.util.Marker2seqContextListener;
+import nl.wur.plantbreeding.www.util.ResultHandle;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.ActionMessage;
+import org.apache.struts.action.ActionMessages;
+
+/**
+ * Follows a marker2seq job submitted with SubmitMarker2seqJobAction.
+ * While the job waits or runs, the wait page (which reloads itself) is
+ * shown; once it is done its result, already in the ResultStore, becomes
+ * the current result of the session.
+ * With the parameter format=json the status of the job is returned in JSON
+ * instead, with the parameter cancel=true the job is cancelled.
+ * Only the session which submitted a job can follow it.
+ */
+public class Marker2seqJobStatusAction extends Marker2seqBaseAction {
+
+    /** Value return to the mapping while the job is not finished. */
+    private static final String WAIT = "wait";
+    /** Name of the session attribute holding the jobs of the user. */
+    private static final String JOBS = "m2s_jobs";
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            Marker2seqJobStatusAction.class.getName());
+
+    /**
+     * This is the action called from the Struts framework.
+     * @param mapping The ActionMapping used to select this instance.
+     * @param form The optional ActionForm bean for this request.
+     * @param request The HTTP Request we are processing.
+     * @param response The HTTP Response we are processing.
+     * @return mapping.findForward to the wait page / error / result jsp, or
+     * null when the JSON answer was written.
+     * @throws Exception when the JSON answer can not be written
+     */
+    @Override
+    public final ActionForward execute(final ActionMapping mapping,
+            final ActionForm form,
+            final HttpServletRequest request,
+            final HttpServletResponse response) throws Exception {
+
+        final boolean json = isJson(request);
+        final HttpSession session = request.getSession();
+        final JobManager manager = Marker2seqContextListener.getJobManager(
+                getServlet().getServletContext());
+        final String id = request.getParameter("id");
+        final Marker2seqQuery query = id == null ? null
+                : getJobs(session).get(id);
+        final Job<?> job = query == null ? null : manager.getJob(id);
+
+        if (job == null) {
+            LOG.log(Level.INFO, "Unknown job {0}", id);
+            if (json) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                        "Unknown job " + id);
+                return null;
+            }
+            return this.findExpired(mapping, request);
+        }
+
+        if ("true".equals(request.getParameter("cancel"))) {
+            LOG.log(Level.INFO, "Cancelling job {0}", id);
+            manager.cancel(id);
+        }
+
+        final JobStatus status = job.getStatus();
+        if (json) {
+            writeJson(response, job, manager.getQueuePosition(job));
+            return null;
+        }
+
+        switch (status) {
+            case QUEUED:
+            case RUNNING:
+                request.setAttribute("job", job);
+                request.setAttribute("position",
+                        manager.getQueuePosition(job));
+                return mapping.findForward(WAIT);
+            case DONE:
+                final String resultid = (String) job.getResult();
+                if (ResultStore.get(resultid) == null) {
+                    return this.findExpired(mapping, request);
+                }
+                clearResult(session);
+                ResultHandle.publish(session, resultid);
+                return this.findSuccess(mapping, query);
+            case FAILED:
+                // The error is reported once
+                getJobs(session).remove(id);
+                return this.findFailure(job.getError(), query, mapping,
+                        request);
+            default:
+                getJobs(session).remove(id);
+                final ActionMessages errors = new ActionMessages();
+                errors.add("Marker2seq",
+                        new ActionMessage("m2s.error.job.cancelled"));
+                saveErrors(request, errors);
+                return mapping.findForward(ERROR);
+        }
+    }
+
+    /**
+     * Save the message telling the job is unknown or expired and return the
+     * forward to the error page.
+     * @param mapping the ActionMapping used to select this instance
+     * @param request the HTTP Request we are processing
+     * @return the forward to the error page
+     */
+    private ActionForward findExpired(final ActionMapping mapping,
+            final HttpServletRequest request) {
+        final ActionMessages errors = new ActionMessages();
+        errors.add("Marker2seq", new ActionMessage("m2s.error.job.unknown"));
+        saveErrors(request, errors);
+        return mapping.findForward(ERROR);
+    }
+
+    /**
+     * Return the jobs submitted from the given session.
+     * @param session the session of the user
+     * @return the queries of the jobs, per job identifier
+     */
+    @SuppressWarnings("unchecked")
+    static ConcurrentMap<String, Marker2seqQuery> getJobs(
+            final HttpSession session) {
+        synchronized (session) {
+            ConcurrentMap<String, Marker2seqQuery> jobs =
+                    (ConcurrentMap<String, Marker2seqQuery>)
+                    session.getAttribute(JOBS);
+            if (jobs == null) {
+                jobs = new ConcurrentHashMap<String, Marker2seqQuery>();
+                session.setAttribute(JOBS, jobs);
+            }
+            return jobs;
+        }
+    }
+
+    /**
+     * Return whether the answer should be given in JSON.
+     * @param request the HTTP Request we are processing
+     * @return true if the parameter format=json was given
+     */
+    static boolean isJson(final HttpServletRequest request) {
+        return "json".equalsIgnoreCase(request.getParameter("format"));
+    }
+
+    /**
+     * Write the status of a job in JSON.
+     * @param response the HTTP Response we are processing
+     * @param job the job to describe
+     * @param position the position of the job in the queue, -1 if it is not
+     * queued
+     * @throws IOException when the response can not be written
+     */
+    static void writeJson(final HttpServletResponse response,
+            final Job<?> job, final int position) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        final PrintWriter out = response.getWriter();
+        out.print("{\"id\":\"" + escape(job.getId()) + "\""
+                + ",\"status\":\"" + job.getStatus() + "\""
+                + ",\"progress\":" + job.getProgress()
+                + ",\"position\":" + position);
+        if (job.getMessage() != null) {
+            out.print(",\"step\":\"" + escape(job.getMessage()) + "\"");
+        }
+        out.println("}");
+        out.flush();
+    }
+
+    /**
+     * Escape a string to be written in a JSON string.
+     * @param value the string to escape
+     * @return the escaped string
+     */
+    private static String escape(final String value) {
+        final StringBuilder out = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
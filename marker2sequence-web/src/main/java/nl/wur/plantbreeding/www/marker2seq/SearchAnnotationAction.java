@@ -21,9 +21,13 @@
 package nl.wur.plantbreeding.www.marker2seq;
 
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ResIterator;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletContext;
@@ -34,6 +38,11 @@ import nl.wur.plantbreeding.datatypes.Annotation;
 import nl.wur.plantbreeding.logic.marker2seq.AnnotationSearch;
 import nl.wur.plantbreeding.logic.swtools.QueryRdf;
 import nl.wur.plantbreeding.logic.marker2seq.Marker2SeqUtils;
+import nl.wur.plantbreeding.logic.store.GenomeIndex;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+import nl.wur.plantbreeding.logic.store.StoredResult;
+import nl.wur.plantbreeding.logic.swtools.AnnotationIndex;
+import nl.wur.plantbreeding.www.util.ResultHandle;
 import org.apache.struts.action.ActionForm;
 import org.apache.struts.action.ActionForward;
 import org.apache.struts.action.ActionMapping;
@@ -82,8 +91,14 @@ public class SearchAnnotationAction extends org.apache.struts.action.Action {
         final HttpSession session = request.getSession();
         final ServletContext context = getServlet().getServletContext();
         final ActionMessages errors = new ActionMessages();
-        final Model model = (Model) session.getAttribute("model");
+        final ResultHandle handle = ResultHandle.get(session);
+        final Model model = handle == null ? null
+                : ResultStore.getModel(handle.getId());
         final QueryRdf query = new QueryRdf();
+        final String endpoint = context.getInitParameter("sparqlserver");
+        if (endpoint != null && !endpoint.isEmpty()) {
+            query.setService(endpoint);
+        }
 
         if (model == null) {
             errors.add("SearchAnnotationAction",
@@ -117,7 +132,11 @@ public class SearchAnnotationAction extends org.apache.struts.action.Action {
             AnnotationSearch search = new AnnotationSearch(bgraph);
             final List<Annotation> annotationlist = query.getAnnotationList(
                     search.searchModel(model, kw));
-            session.setAttribute("resultannotation", annotationlist);
+            final StoredResult stored = ResultStore.get(handle.getId());
+            if (stored != null) {
+                ResultStore.update(stored.withSearchResult(annotationlist));
+            }
+            request.setAttribute("resultannotation", annotationlist);
         }
 
 
@@ -125,24 +144,32 @@ public class SearchAnnotationAction extends org.apache.struts.action.Action {
             if (graph.equals("alignment")) {
                 session.setAttribute("type", "alignment");
                 session.setAttribute("restricted", "notok");
-                final String alignfn = (String) session.getAttribute(
-                        "m2s_alignment_fn");
+                final StoredResult stored = ResultStore.get(handle.getId());
+                final String alignfn = stored == null ? null
+                        : stored.getPicturefile();
                 if (alignfn == null || alignfn.isEmpty()) {
                     LOG.log(Level.INFO, "TODO: regenerate the picture");
                     //TODO: Add code to regenerate the alignment picture
                 }
             } else if (graph.equals("go")) {
                 session.setAttribute("type", "go");
+                // The rows of the genes are read from the genome index when
+                // one is loaded, the model of the result is then not indexed
+                final AnnotationIndex genome = GenomeIndex.get();
+                final AnnotationIndex index = genome != null ? genome
+                        : ResultStore.getIndex(handle.getId());
                 if (restricted != null && restricted.equals("1")
                         && kw != null && !kw.isEmpty()) {
                     LOG.log(Level.INFO, "Restricted: {0}", kw);
                     session.setAttribute("restricted", "ok");
-                    this.generateGoDistributionGraph(
-                            query.getRestrictedModel(model, kw), session);
+                    this.generateGoDistributionGraph(index,
+                            this.getSubjects(
+                            query.getRestrictedModel(model, kw)), session);
                 } else {
                     session.setAttribute("restricted", "notok");
                     LOG.log(Level.INFO, "Not Restricted");
-                    this.generateGoDistributionGraph(model, session);
+                    this.generateGoDistributionGraph(index, genome == null
+                            ? null : this.getSubjects(model), session);
                 }
             }
         }
@@ -157,114 +184,95 @@ public class SearchAnnotationAction extends org.apache.struts.action.Action {
     }
 
     /**
-     * For a given model, generate the pie chart of the GO distribution and
-     * put them in the session.
-     * @param model a Jena Model from which the GO are queried
+     * Return the uri of the subjects of the given model.
+     * @param model a Jena Model
+     * @return the set of the uri of its subjects
+     */
+    private Set<String> getSubjects(final Model model) {
+        final Set<String> subjects = new HashSet<String>();
+        final ResIterator it = model.listSubjects();
+        try {
+            while (it.hasNext()) {
+                subjects.add(it.nextResource().toString());
+            }
+        }
+        finally {
+            it.close();
+        }
+        return subjects;
+    }
+
+    /**
+     * For the given genes, generate the pie charts of the GO distribution
+     * and put them in the session. The distributions are read from the
+     * annotation index of the result or from the genome index.
+     * @param index the AnnotationIndex of the model of the result, or of the
+     * genome
+     * @param genes the uri of the genes, null for all the genes of the index
      * @param session the session in which to store the filename of the graph
      */
-    private void generateGoDistributionGraph(final Model model,
+    private void generateGoDistributionGraph(final AnnotationIndex index,
+            final Collection<String> genes,
             final HttpSession session) {
-        final QueryRdf query = new QueryRdf();
+        if (index == null) {
+            LOG.log(Level.INFO, "No model left to index");
+            return;
+        }
         LOG.log(Level.INFO, "Generating Pie chart");
         /*
          * Distribution of the go namespace
          */
-        this.setGoNamespaceDistribution(query, model, session);
+        this.setDistribution(getDistribution(index,
+                AnnotationIndex.Category.NAMESPACE, genes),
+                "GO name space distribution", true, "m2s_go_ns_", session);
 
         /*
          * Distribution of the go terms
          */
-        this.setGoTermDistribution(query, model, session);
+        this.setDistribution(getDistribution(index,
+                AnnotationIndex.Category.GO, genes),
+                "GO distribution", false, "m2s_go_", session);
 
         /*
          * Distribution of the go synonyms
          */
-        this.setGoSynonymDistribution(query, model, session);
+        this.setDistribution(getDistribution(index,
+                AnnotationIndex.Category.SYNONYM, genes),
+                "GO synonym distribution", false, "m2s_go_syn_", session);
     }
 
     /**
-     * Retrieve the Go Term distribution from the model and generate the
-     * associated Pie Chart.
-     * @param query a QueryRdf object used to retrieved the GO terms
-     * @param model the jena Model to query
-     * @param session the session in which will be stored the graph
+     * Return the distribution of a category over the given genes.
+     * @param index the AnnotationIndex to read
+     * @param category the AnnotationIndex.Category
+     * @param genes the uri of the genes, null for all the genes of the index
+     * @return a hash of "annotation": "count"
      */
-    private void setGoTermDistribution(
-            final QueryRdf query,
-            final Model model,
-            final HttpSession session) {
-        final HashMap<String, Integer> distrib =
-                query.getGoDistribution(model);
-        int tot = 0;
-        for (Integer num : distrib.values()) {
-            tot += num;
-        }
-        String[] out = null;
-        try {
-            out = GoDistribution.generateDistribution(distrib,
-                    "GO distribution", "#", session,
-                    false, true, true, 10);
-        }
-        catch (IOException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        }
-        if (out != null) {
-            //store the image:
-            session.setAttribute("m2s_go_fn", out[0]);
-            session.setAttribute("m2s_go_map", out[1]);
-            session.setAttribute("m2s_go_gonum", tot);
-        }
-        LOG.log(Level.INFO, "GO term distribution done");
-    }
-
-    /**
-     * Retrieve the GO Term namespace distribution from the model and generate
-     * the associated Pie Chart.
-     * @param query a QueryRdf object used to retrieved the GO terms
-     * @param model the jena Model to query
-     * @param session the session in which will be stored the graph
-     */
-    private void setGoNamespaceDistribution(
-            final QueryRdf query,
-            final Model model,
-            final HttpSession session) {
-        final HashMap<String, Integer> distrib =
-                query.getGoNameSpaceDistribution(model);
-        int tot = 0;
-        for (Integer num : distrib.values()) {
-            tot += num;
-        }
-        String[] out = null;
-        try {
-            out = GoDistribution.generateDistribution(distrib,
-                    "GO name space distribution", "#", session,
-                    true, true, true, 10);
-        }
-        catch (IOException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        }
-        if (out != null) {
-            //store the image:
-            session.setAttribute("m2s_go_ns_fn", out[0]);
-            session.setAttribute("m2s_go_ns_map", out[1]);
-            session.setAttribute("m2s_go_ns_gonum", tot);
+    private static HashMap<String, Integer> getDistribution(
+            final AnnotationIndex index,
+            final AnnotationIndex.Category category,
+            final Collection<String> genes) {
+        if (genes == null) {
+            return index.getDistribution(category);
         }
-        LOG.log(Level.INFO, "GO namespace distribution done");
+        return index.getDistribution(category, genes);
     }
 
     /**
-     * Retrieve the GO Term synonym distribution from the model and generate
-     * the associated Pie Chart.
-     * @param query a QueryRdf object used to retrieved the GO terms
-     * @param model the jena Model to query
+     * Generate the Pie Chart of a distribution and store it in the session.
+     * @param distrib the distribution, a hash of "annotation": "count"
+     * @param title the title of the chart
+     * @param legend print the legend or not
+     * @param prefix prefix of the session attributes (filename, map and
+     * number of GO terms)
      * @param session the session in which will be stored the graph
      */
-    private void setGoSynonymDistribution(
-            final QueryRdf query,
-            final Model model,
+    private void setDistribution(
+            final HashMap<String, Integer> distrib,
+            final String title,
+            final boolean legend,
+            final String prefix,
             final HttpSession session) {
-        final HashMap<String, Integer> distrib =
-                query.getGoSynonymDistribution(model);
         int tot = 0;
         for (Integer num : distrib.values()) {
             tot += num;
@@ -272,18 +280,17 @@ public class SearchAnnotationAction extends org.apache.struts.action.Action {
         String[] out = null;
         try {
             out = GoDistribution.generateDistribution(distrib,
-                    "GO synonym distribution", "#", session,
-                    false, true, true, 10);
+                    title, "#", legend, true, true, 10);
         }
         catch (IOException ex) {
             LOG.log(Level.SEVERE, null, ex);
         }
         if (out != null) {
             //store the image:
-            session.setAttribute("m2s_go_syn_fn", out[0]);
-            session.setAttribute("m2s_go_syn_map", out[1]);
-            session.setAttribute("m2s_go_syn_gonum", tot);
+            session.setAttribute(prefix + "fn", out[0]);
+            session.setAttribute(prefix + "map", out[1]);
+            session.setAttribute(prefix + "gonum", tot);
         }
-        LOG.log(Level.INFO, "GO synonym distribution done");
+        LOG.log(Level.INFO, "{0} done", title);
     }
 }
@@ -71,6 +71,11 @@ public class SearchWholeAnnotationAction
         final HttpSession session = request.getSession();
         final ActionMessages errors = new ActionMessages();
         final QueryRdf query = new QueryRdf();
+        final String endpoint = getServlet().getServletContext()
+                .getInitParameter("sparqlserver");
+        if (endpoint != null && !endpoint.isEmpty()) {
+            query.setService(endpoint);
+        }
 
         //TODO: Fix the use of the form
         final SearchWholeAnnotationForm keywordform = (SearchWholeAnnotationForm) form;
@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.www.marker2seq;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import nl.wur.plantbreeding.logic.job.Job;
+import nl.wur.plantbreeding.logic.job.JobManager;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seqJob;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seqPipeline;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seqQuery;
+import nl.wur.plantbreeding.www.util.Marker2seqContextListener;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.ActionMessage;
+import org.apache.struts.action.ActionMessages;
+
+/**
+ * Submits a marker2seq query as a background job instead of running it in
+ * the thread of the request.
+ * The user is redirected to the page following the job (see
+ * Marker2seqJobStatusAction), or, if the parameter format=json is given,
+ * the identifier and the status of the job are returned in JSON.
+ */
+public class SubmitMarker2seqJobAction extends Marker2seqBaseAction {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            SubmitMarker2seqJobAction.class.getName());
+    /** The pipeline, it keeps no state between two runs. */
+    private final Marker2seqPipeline pipeline = new Marker2seqPipeline();
+
+    /**
+     * This is the action called from the Struts framework.
+     * @param mapping The ActionMapping used to select this instance.
+     * @param form The optional ActionForm bean for this request.
+     * @param request The HTTP Request we are processing.
+     * @param response The HTTP Response we are processing.
+     * @return a redirection to the status of the job, the error page, or
+     * null when the JSON answer was written.
+     * @throws Exception when the JSON answer can not be written
+     */
+    @Override
+    public final ActionForward execute(final ActionMapping mapping,
+            final ActionForm form,
+            final HttpServletRequest request,
+            final HttpServletResponse response) throws Exception {
+
+        final boolean json = Marker2seqJobStatusAction.isJson(request);
+        final EnterMarkerNameForm markerForm = (EnterMarkerNameForm) form;
+
+        final Marker2seqQuery m2squery = this.readQuery(markerForm, request);
+        if (m2squery == null) {
+            if (json) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "No input given");
+                return null;
+            }
+            return mapping.findForward(ERROR);
+        }
+
+        final JobManager manager = Marker2seqContextListener.getJobManager(
+                getServlet().getServletContext());
+        final Marker2seqJob task = new Marker2seqJob(pipeline, m2squery);
+        final Job<String> job;
+        try {
+            job = manager.submit(task, task.getPriority(), null);
+        }
+        catch (RejectedExecutionException ex) {
+            LOG.log(Level.WARNING, "Job refused: {0}", ex.getMessage());
+            if (json) {
+                response.sendError(
+                        HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        ex.getMessage());
+                return null;
+            }
+            final ActionMessages errors = new ActionMessages();
+            errors.add("Marker2seq", new ActionMessage("m2s.error.busy"));
+            saveErrors(request, errors);
+            return mapping.findForward(ERRORMOBY);
+        }
+        LOG.log(Level.INFO, "Submitted job {0}", job.getId());
+        Marker2seqJobStatusAction.getJobs(request.getSession()).put(
+                job.getId(), m2squery);
+
+        //reset
+        markerForm.clearForm();
+
+        if (json) {
+            Marker2seqJobStatusAction.writeJson(response, job,
+                    manager.getQueuePosition(job));
+            return null;
+        }
+        return new ActionForward(
+                "/marker2seq/jobStatus.do?id=" + job.getId(), true);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import nl.wur.plantbreeding.logic.marker.AlignmentData;
+import nl.wur.plantbreeding.logic.marker.RenderCache;
+import nl.wur.plantbreeding.logic.marker.SvgCanvas;
+import org.biomoby.shared.MobyException;
+
+/**
+ * Streams the alignment picture as SVG, drawn straight into the response
+ * from the data kept in the RenderCache. The links of the markers and
+ * sequences are part of the picture, no html map is needed.
+ * The picture is identified by its key (a hash of its content), so it can
+ * be cached by the browser and revalidated with its ETag. It is compressed
+ * when the browser accepts it.
+ */
+public class AlignmentSvgServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 20121007L;
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            AlignmentSvgServlet.class.getName());
+    /** Time (in seconds) the browser may keep the picture. */
+    private static final int MAX_AGE = 24 * 60 * 60;
+
+    /**
+     * Write the picture whose key is given in the key parameter.
+     *
+     * @param request  the request.
+     * @param response  the response.
+     *
+     * @throws ServletException never.
+     * @throws IOException when the response can not be written.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response)
+            throws ServletException, IOException {
+        final String key = request.getParameter("key");
+        if (key == null || !key.matches("[0-9a-f]{40}")) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid picture key");
+            return;
+        }
+        final String etag = "\"" + key + "\"";
+        final String match = request.getHeader("If-None-Match");
+        if (match != null && (match.contains(etag) || match.equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+            return;
+        }
+        final AlignmentData data = RenderCache.getData(key);
+        if (data == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                    "The picture expired, run the query again");
+            return;
+        }
+
+        response.setContentType(SvgCanvas.CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "private, max-age=" + MAX_AGE);
+        response.setHeader("Vary", "Accept-Encoding");
+        OutputStream out = new BufferedOutputStream(
+                response.getOutputStream(), 16 * 1024);
+        final String encoding = request.getHeader("Accept-Encoding");
+        if (encoding != null && encoding.contains("gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            out = new GZIPOutputStream(out, 16 * 1024);
+        }
+        final Writer writer = new OutputStreamWriter(out, "UTF-8");
+        try {
+            RenderCache.writeSvg(data, writer);
+        }
+        catch (MobyException ex) {
+            LOG.log(Level.SEVERE, "Could not draw the picture " + key, ex);
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import nl.wur.plantbreeding.logic.marker.Marker2seqGraphics;
+import nl.wur.plantbreeding.logic.marker.RenderCache;
+import nl.wur.plantbreeding.logic.marker.TileRenderer;
+import org.biomoby.shared.MobyException;
+
+/**
+ * Serves the tiles of the zoomable alignment picture (see TileRenderer),
+ * drawn on demand and kept in the RenderCache.
+ * With the key, zoom (z), column (x) and row (y) parameters it returns the
+ * png of the tile; with only the key it returns the size of the picture as
+ * JSON for the pan/zoom client (js/jquery.alignmentTiles.js).
+ * Tiles never change for a given key, they are cached by the browser and
+ * revalidated with their ETag.
+ */
+public class AlignmentTileServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 20121008L;
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            AlignmentTileServlet.class.getName());
+    /** Time (in seconds) the browser may keep a tile. */
+    private static final int MAX_AGE = 24 * 60 * 60;
+
+    /**
+     * Write the tile or the description of the picture.
+     *
+     * @param request  the request.
+     * @param response  the response.
+     *
+     * @throws ServletException never.
+     * @throws IOException when the response can not be written.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response)
+            throws ServletException, IOException {
+        final String key = request.getParameter("key");
+        if (key == null || !key.matches("[0-9a-f]{40}")) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid picture key");
+            return;
+        }
+        if (request.getParameter("z") == null) {
+            this.writeInfo(key, response);
+            return;
+        }
+        final int zoom;
+        final int column;
+        final int row;
+        try {
+            zoom = Integer.parseInt(request.getParameter("z"));
+            column = Integer.parseInt(request.getParameter("x"));
+            row = Integer.parseInt(request.getParameter("y"));
+        }
+        catch (NumberFormatException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Invalid tile");
+            return;
+        }
+        final String etag = "\"" + key + "-" + zoom + "-" + column + "-"
+                + row + "\"";
+        final String match = request.getHeader("If-None-Match");
+        if (match != null && match.contains(etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+            return;
+        }
+        byte[] png = null;
+        try {
+            png = RenderCache.getTile(key, zoom, column, row);
+        }
+        catch (MobyException ex) {
+            LOG.log(Level.SEVERE, "Could not draw the tile " + etag, ex);
+        }
+        if (png == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                    "No such tile, the picture may have expired");
+            return;
+        }
+        response.setContentType("image/png");
+        response.setContentLength(png.length);
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "private, max-age=" + MAX_AGE);
+        final OutputStream out = response.getOutputStream();
+        out.write(png);
+        out.flush();
+    }
+
+    /**
+     * Write the size of the picture and of its tiles as JSON.
+     * @param key the key of the picture
+     * @param response the response
+     * @throws IOException when the response can not be written
+     */
+    private void writeInfo(final String key,
+            final HttpServletResponse response) throws IOException {
+        final TileRenderer renderer = RenderCache.getTileRenderer(key);
+        if (renderer == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                    "The picture expired, run the query again");
+            return;
+        }
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "private, max-age=" + MAX_AGE);
+        final PrintWriter out = response.getWriter();
+        out.print("{\"width\": " + Marker2seqGraphics.PICTUREWIDTH
+                + ", \"height\": " + renderer.getHeigth()
+                + ", \"tileSize\": " + TileRenderer.TILE_SIZE
+                + ", \"maxZoom\": " + TileRenderer.MAX_ZOOM + "}");
+        out.flush();
+    }
+}
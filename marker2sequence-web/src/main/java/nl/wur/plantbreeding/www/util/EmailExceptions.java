@@ -57,12 +57,63 @@ public class EmailExceptions extends Email {
             productionServer = context.getInitParameter("productionServer");
         }
 
-        String emailBody;
         Email email = new Email();
+        String emailBody = "Dear " + context.getInitParameter("adminName")
+                + ",\n\nBreeDB has encountered an exception.\n"
+                + describe(context, req, exception, customMessage);
+        try {
+            if (productionServer.equals("true") && req.getLocalAddr() != null) {
+                if (req.getLocalAddr().equals("127.0.0.1")
+                        || req.getLocalAddr().equals("0:0:0:0:0:0:0:1")) {
+                    LOG.info("Log exception instead of sending email");
+                    if (exception != null) {
+                        LOG.severe(exception.getLocalizedMessage());
+                        exception.printStackTrace();
+                    }
+                } else {
+                    email.sendEmail(context, "Exception ", emailBody);
+                    LOG.info("Exception email send");
+                }
+            } else if (productionServer.equals("true")) {
+                email.sendEmail(context, "Exception ", emailBody);
+                LOG.info("Exception email send");
+                if (exception != null) {
+                    LOG.severe(exception.getLocalizedMessage());
+                }
+            } else {
+                LOG.info("Log exception instead of sending email");
+                if (req.getLocalAddr() == null) {
+                    LOG.severe("req.getLocalAddr is null");
+                }
+                if (exception != null) {
+                    LOG.severe("Exception Localized Message:");
+                    LOG.severe(exception.getLocalizedMessage());
+                    LOG.severe("Exception Cause:");
+                    LOG.severe(exception.getCause().toString());
+                }
+            }
+        }
+        catch (AddressException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+        }
+        catch (MessagingException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Describe the request and the exception in the exception email.
+     * @param context The servlet context.
+     * @param req The HTTP request
+     * @param exception The exception which was thrown, may be null.
+     * @param customMessage our own message, may be null.
+     * @return the description, one line per field
+     */
+    static String describe(ServletContext context, HttpServletRequest req,
+            Exception exception, String customMessage) {
+        String emailBody;
         //Email body shoudl consist of:
-        emailBody = "Dear " + context.getInitParameter("adminName") + ",\n\n"
-                + "BreeDB has encountered an exception.\n"
-                + "page         : " + req.getRequestURI()
+        emailBody = "page         : " + req.getRequestURI()
                 + " (" + req.getRequestURL() + ")\n"
                 + "query        : " + req.getQueryString() + "\n"
                 + "database     : " + context.getInitParameter("theme") + "\n"
@@ -103,44 +154,25 @@ public class EmailExceptions extends Email {
         }
         emailBody += "server       : " + context.getServerInfo()
                 + " (" + req.getLocalAddr() + ")\n";
-        try {
-            if (productionServer.equals("true") && req.getLocalAddr() != null) {
-                if (req.getLocalAddr().equals("127.0.0.1")
-                        || req.getLocalAddr().equals("0:0:0:0:0:0:0:1")) {
-                    LOG.info("Log exception instead of sending email");
-                    if (exception != null) {
-                        LOG.severe(exception.getLocalizedMessage());
-                        exception.printStackTrace();
-                    }
-                } else {
-                    email.sendEmail(context, "Exception ", emailBody);
-                    LOG.info("Exception email send");
-                }
-            } else if (productionServer.equals("true")) {
-                email.sendEmail(context, "Exception ", emailBody);
-                LOG.info("Exception email send");
-                if (exception != null) {
-                    LOG.severe(exception.getLocalizedMessage());
-                }
-            } else {
-                LOG.info("Log exception instead of sending email");
-                if (req.getLocalAddr() == null) {
-                    LOG.severe("req.getLocalAddr is null");
-                }
-                if (exception != null) {
-                    LOG.severe("Exception Localized Message:");
-                    LOG.severe(exception.getLocalizedMessage());
-                    LOG.severe("Exception Cause:");
-                    LOG.severe(exception.getCause().toString());
-                }
-            }
-        }
-        catch (AddressException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        }
-        catch (MessagingException ex) {
-            LOG.log(Level.SEVERE, null, ex);
+        return emailBody;
+    }
+
+    /**
+     * Tell whether the exceptions of this request are emailed or only logged:
+     * they are emailed on a production server, unless the request was sent
+     * from the server itself.
+     * @param context The servlet context.
+     * @param req The HTTP request
+     * @return true if the exception should be emailed
+     */
+    static boolean isMailed(ServletContext context, HttpServletRequest req) {
+        final String production = context.getInitParameter("productionServer");
+        if (production != null && !production.equals("true")) {
+            return false;
         }
+        final String local = req.getLocalAddr();
+        return local == null || !(local.equals("127.0.0.1")
+                || local.equals("0:0:0:0:0:0:0:1"));
     }
 
     /**
@@ -0,0 +1,445 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.www.util;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.mail.MessagingException;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Emails the exceptions to the administrator in the background, so that a
+ * failing request does not wait for the smtp server.
+ * The exceptions are grouped by signature (their class and the top of the
+ * stack trace of their root cause) and sent as one digest every interval.
+ * The number of emails per hour is limited: when the limit is reached the
+ * exceptions keep being counted and go in the next digest. The details of
+ * a signature are sent once per repeat interval, the following digests
+ * only give its number of occurrences.
+ * Exceptions which are not emailed (see EmailExceptions) are logged right
+ * away as before.
+ */
+public class ExceptionNotifier {
+
+    /** Name of the context attribute holding the ExceptionNotifier. */
+    public static final String CONTEXT_ATTRIBUTE = "m2sExceptionNotifier";
+    /** Default time (in milliseconds) between two digests. */
+    public static final long DEFAULT_INTERVAL = 5 * 60 * 1000;
+    /** Default maximum number of emails sent per hour. */
+    public static final int DEFAULT_MAX_EMAILS = 6;
+    /** Default time (in milliseconds) before the details of an exception
+     * are sent again. */
+    public static final long DEFAULT_REPEAT = 60 * 60 * 1000;
+    /** Maximum number of signatures waiting in a digest. */
+    private static final int MAX_SIGNATURES = 100;
+    /** Number of stack frames in the signature of an exception. */
+    private static final int SIGNATURE_FRAMES = 5;
+    /** One hour, in milliseconds. */
+    private static final long HOUR = 60 * 60 * 1000;
+    /**
+     * The logger
+     */
+    private static final Logger LOG = Logger.getLogger(
+            ExceptionNotifier.class.getName());
+    /** The servlet context giving the administrator and the smtp server. */
+    private final ServletContext context;
+    /** Time (in milliseconds) between two digests. */
+    private final long interval;
+    /** Maximum number of emails sent per hour. */
+    private final int maxEmails;
+    /** Time (in milliseconds) before the details are sent again. */
+    private final long repeat;
+    /** Exceptions waiting for the next digest, per signature. */
+    private final Map<String, Occurrence> pending =
+            new LinkedHashMap<String, Occurrence>();
+    /** Number of exceptions not kept as there were too many signatures. */
+    private int overflow = 0;
+    /** Time at which the details of each signature were last sent (only
+     * used by the thread sending the digests). */
+    private final Map<String, Long> reported = new HashMap<String, Long>();
+    /** Time at which the emails of the last hour were sent (only used by
+     * the thread sending the digests). */
+    private final LinkedList<Long> sent = new LinkedList<Long>();
+    /** Number of exceptions notified. */
+    private final AtomicLong notified = new AtomicLong(0);
+    /** Number of digests emailed. */
+    private final AtomicLong emails = new AtomicLong(0);
+    /** Number of digests which could not be sent. */
+    private final AtomicLong failed = new AtomicLong(0);
+    /** Thread sending the digests. */
+    private final Thread thread;
+
+    /**
+     * Constructor, starts the thread sending the digests.
+     * @param servletcontext the servlet context giving the administrator
+     * and the smtp server
+     * @param digestinterval time (in milliseconds) between two digests
+     * @param maxperhour maximum number of emails sent per hour
+     * @param repeatinterval time (in milliseconds) before the details of an
+     * exception are sent again
+     */
+    public ExceptionNotifier(ServletContext servletcontext,
+            long digestinterval, int maxperhour, long repeatinterval) {
+        this.context = servletcontext;
+        this.interval = digestinterval;
+        this.maxEmails = maxperhour;
+        this.repeat = repeatinterval;
+        LOG.log(Level.INFO, "Exception digests every {0}ms, at most {1} "
+                + "emails per hour, details repeated after {2}ms",
+                new Object[]{digestinterval, maxperhour, repeatinterval});
+        this.thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                sendLoop();
+            }
+        }, "m2s-exception-notifier");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Notify the administrator of an exception, using the ExceptionNotifier
+     * of the application. The email is sent synchronously when the
+     * application has none.
+     * @param context The servlet context.
+     * @param req The HTTP request
+     * @param exception The exception which was thrown.
+     */
+    public static void report(ServletContext context, HttpServletRequest req,
+            Exception exception) {
+        final ExceptionNotifier notifier = (ExceptionNotifier)
+                context.getAttribute(CONTEXT_ATTRIBUTE);
+        if (notifier == null) {
+            EmailExceptions.sendExceptionEmail(context, req, exception);
+        } else {
+            notifier.add(req, exception, null);
+        }
+    }
+
+    /**
+     * Add an exception to the next digest. Only the first exception of a
+     * signature is described, the following ones are counted.
+     * @param req The HTTP request
+     * @param exception The exception which was thrown, may be null.
+     * @param customMessage our own message, may be null.
+     */
+    public void add(HttpServletRequest req, Exception exception,
+            String customMessage) {
+        notified.incrementAndGet();
+        if (!EmailExceptions.isMailed(context, req)) {
+            EmailExceptions.sendExceptionEmail(context, req, exception,
+                    customMessage);
+            return;
+        }
+        if (exception != null) {
+            LOG.log(Level.SEVERE, "{0} on {1}", new Object[]{exception,
+                        req.getRequestURI()});
+        }
+        final String signature = getSignature(exception, customMessage);
+        final long now = this.currentTime();
+        if (this.count(signature, now)) {
+            return;
+        }
+        final String body = EmailExceptions.describe(context, req,
+                exception, customMessage);
+        synchronized (pending) {
+            if (!this.count(signature, now)) {
+                if (pending.size() < MAX_SIGNATURES) {
+                    pending.put(signature,
+                            new Occurrence(signature, body, now));
+                } else {
+                    overflow++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Count an exception whose signature is already in the next digest.
+     * @param signature the signature of the exception
+     * @param now the time of the exception
+     * @return false if the signature is not in the next digest yet
+     */
+    private boolean count(String signature, long now) {
+        synchronized (pending) {
+            final Occurrence occurrence = pending.get(signature);
+            if (occurrence == null) {
+                return false;
+            }
+            occurrence.count++;
+            occurrence.last = now;
+            return true;
+        }
+    }
+
+    /**
+     * Return the signature of an exception: its class, the class of its root
+     * cause and the top of the stack trace of the root cause. The message is
+     * left out as it often holds the input of the user.
+     * @param exception the exception, may be null
+     * @param customMessage our own message, used when there is no exception
+     * @return the signature
+     */
+    static String getSignature(Throwable exception, String customMessage) {
+        if (exception == null) {
+            return "message " + customMessage;
+        }
+        Throwable root = exception;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        final StringBuilder signature = new StringBuilder(
+                exception.getClass().getName());
+        if (root != exception) {
+            signature.append(" caused by ").append(root.getClass().getName());
+        }
+        final StackTraceElement[] frames = root.getStackTrace();
+        for (int i = 0; i < frames.length && i < SIGNATURE_FRAMES; i++) {
+            signature.append("\n    at ").append(frames[i]);
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Send a digest every interval until the notifier is closed, then the
+     * last one.
+     */
+    private void sendLoop() {
+        boolean running = true;
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException ex) {
+                running = false;
+            }
+            this.sendDigest(!running);
+        }
+    }
+
+    /**
+     * Email the exceptions waiting, unless the limit of emails per hour is
+     * reached.
+     * @param last true when the notifier is closed, the exceptions which can
+     * not be emailed are then logged
+     */
+    void sendDigest(boolean last) {
+        final long now = this.currentTime();
+        while (!sent.isEmpty() && sent.getFirst() < now - HOUR) {
+            sent.removeFirst();
+        }
+        final Iterator<Long> times = reported.values().iterator();
+        while (times.hasNext()) {
+            if (times.next() < now - repeat) {
+                times.remove();
+            }
+        }
+        final List<Occurrence> digest;
+        final int overflowed;
+        synchronized (pending) {
+            if (pending.isEmpty() && overflow == 0) {
+                return;
+            }
+            if (sent.size() >= maxEmails && !last) {
+                LOG.log(Level.INFO, "{0} emails sent in the last hour, the "
+                        + "exceptions wait for the next digest", sent.size());
+                return;
+            }
+            digest = new ArrayList<Occurrence>(pending.values());
+            overflowed = overflow;
+            pending.clear();
+            overflow = 0;
+        }
+
+        final String text = this.buildDigest(digest, overflowed, now);
+        int total = overflowed;
+        for (Occurrence occurrence : digest) {
+            total += occurrence.count;
+        }
+        if (sent.size() >= maxEmails) {
+            LOG.log(Level.WARNING, "Exceptions not emailed:\n{0}", text);
+            return;
+        }
+        try {
+            this.send("Exception digest: " + total + " exceptions", text);
+            sent.add(now);
+            emails.incrementAndGet();
+            for (Occurrence occurrence : digest) {
+                if (!reported.containsKey(occurrence.signature)) {
+                    reported.put(occurrence.signature, now);
+                }
+            }
+        } catch (MessagingException ex) {
+            failed.incrementAndGet();
+            LOG.log(Level.SEVERE, "Could not email the exceptions:\n" + text,
+                    ex);
+        }
+    }
+
+    /**
+     * Email a digest to the administrator.
+     * @param subject the subject of the email
+     * @param text the text of the digest
+     * @throws MessagingException if the email can not be sent
+     */
+    void send(String subject, String text) throws MessagingException {
+        new Email().sendEmail(context, subject, text);
+    }
+
+    /**
+     * Return the current time, the tests give their own.
+     * @return the time in milliseconds
+     */
+    long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Write the text of a digest.
+     * @param digest the exceptions of the digest, one per signature
+     * @param overflowed the number of exceptions not kept
+     * @param now the current time
+     * @return the text of the email
+     */
+    private String buildDigest(List<Occurrence> digest, int overflowed,
+            long now) {
+        final SimpleDateFormat format = new SimpleDateFormat(
+                "yyyy-MM-dd HH:mm:ss");
+        final StringBuilder text = new StringBuilder();
+        text.append("Dear ").append(context.getInitParameter("adminName"))
+                .append(",\n\nBreeDB has encountered ").append(digest.size())
+                .append(" different exceptions since the last digest.\n");
+        for (Occurrence occurrence : digest) {
+            text.append("\n=== ").append(occurrence.count)
+                    .append(" times, from ")
+                    .append(format.format(new Date(occurrence.first)))
+                    .append(" to ")
+                    .append(format.format(new Date(occurrence.last)))
+                    .append(" ===\n");
+            final Long previous = reported.get(occurrence.signature);
+            if (previous == null) {
+                text.append(occurrence.body);
+                text.append("signature    : ").append(occurrence.signature)
+                        .append('\n');
+            } else {
+                text.append("signature    : ").append(occurrence.signature)
+                        .append("\n(details sent on ")
+                        .append(format.format(new Date(previous)))
+                        .append(")\n");
+            }
+        }
+        if (overflowed > 0) {
+            text.append("\n").append(overflowed).append(" more exceptions "
+                    + "were not kept, there were too many different ones.\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Stop the notifier, the exceptions waiting are sent (or logged if the
+     * limit of emails is reached).
+     */
+    public void close() {
+        thread.interrupt();
+        try {
+            thread.join(30000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the number of exceptions notified.
+     * @return the number of exceptions
+     */
+    public long getNotified() {
+        return notified.get();
+    }
+
+    /**
+     * Return the number of digests emailed.
+     * @return the number of emails sent
+     */
+    public long getEmails() {
+        return emails.get();
+    }
+
+    /**
+     * Return the number of digests which could not be sent.
+     * @return the number of emails which failed
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Return a one line description of the state of the notifier.
+     * @return a String describing the notifier
+     */
+    @Override
+    public String toString() {
+        final int waiting;
+        synchronized (pending) {
+            waiting = pending.size();
+        }
+        return "exceptions notified=" + notified.get() + " emails="
+                + emails.get() + " failed=" + failed.get() + " pending="
+                + waiting;
+    }
+
+    /**
+     * Exceptions of one signature waiting for the next digest.
+     */
+    private static final class Occurrence {
+
+        /** Signature of the exceptions. */
+        private final String signature;
+        /** Description of the first exception and of its request. */
+        private final String body;
+        /** Time of the first exception. */
+        private final long first;
+        /** Time of the last exception. */
+        private long last;
+        /** Number of exceptions. */
+        private int count = 1;
+
+        /**
+         * Constructor.
+         * @param sig the signature of the exceptions
+         * @param text the description of the first exception
+         * @param time the time of the first exception
+         */
+        private Occurrence(String sig, String text, long time) {
+            this.signature = sig;
+            this.body = text;
+            this.first = time;
+            this.last = time;
+        }
+    }
+}
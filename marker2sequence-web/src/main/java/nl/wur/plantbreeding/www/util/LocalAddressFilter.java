@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Refuses the requests which do not come from one of the allowed addresses,
+ * to keep the monitoring servlets for the administrators.
+ * The addresses are given, separated by commas, by the allowedAddresses
+ * parameter of the filter; only the local host is allowed by default.
+ */
+public class LocalAddressFilter implements Filter {
+
+    /** Addresses allowed when the filter has no allowedAddresses. */
+    public static final String DEFAULT_ALLOWED =
+            "127.0.0.1,0:0:0:0:0:0:0:1,::1";
+
+    /**
+     * The logger
+     */
+    private static final Logger LOG = Logger.getLogger(
+            LocalAddressFilter.class.getName());
+
+    /** The addresses allowed. */
+    private final Set<String> allowed = new HashSet<String>();
+
+    /**
+     * Read the addresses allowed.
+     * @param config the configuration of the filter
+     * @throws ServletException never
+     */
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        String addresses = config.getInitParameter("allowedAddresses");
+        if (addresses == null || addresses.trim().isEmpty()) {
+            addresses = DEFAULT_ALLOWED;
+        }
+        for (String address : Arrays.asList(addresses.split(","))) {
+            if (!address.trim().isEmpty()) {
+                allowed.add(address.trim());
+            }
+        }
+    }
+
+    /**
+     * Answer 403 to the requests from an address which is not allowed.
+     * @param request the request
+     * @param response the response
+     * @param chain the rest of the chain
+     * @throws IOException if the chain fails
+     * @throws ServletException if the chain fails
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+            FilterChain chain) throws IOException, ServletException {
+        if (!allowed.contains(request.getRemoteAddr())) {
+            LOG.log(Level.INFO, "Refused access from {0}",
+                    request.getRemoteAddr());
+            ((HttpServletResponse) response).sendError(
+                    HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
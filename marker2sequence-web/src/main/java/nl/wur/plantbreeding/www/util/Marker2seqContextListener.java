@@ -0,0 +1,447 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+import nl.wur.plantbreeding.logic.cache.ResultCache;
+import nl.wur.plantbreeding.logic.cache.WebServiceCaches;
+import nl.wur.plantbreeding.logic.jfreechart.ChartCache;
+import nl.wur.plantbreeding.logic.job.JobManager;
+import nl.wur.plantbreeding.logic.marker.RenderCache;
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry;
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry.Gauge;
+import nl.wur.plantbreeding.logic.metrics.QueryMetrics;
+import nl.wur.plantbreeding.logic.pipeline.PipelineScheduler;
+import nl.wur.plantbreeding.logic.resilience.ResilienceRegistry;
+import nl.wur.plantbreeding.logic.soapclient.ServiceUrls;
+import nl.wur.plantbreeding.logic.store.GenomeIndex;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+import nl.wur.plantbreeding.logic.swtools.QueryProfiler;
+import nl.wur.plantbreeding.logic.trace.SpanExporter;
+import nl.wur.plantbreeding.logic.trace.Tracer;
+
+/**
+ * Configures the application wide resources of marker2sequence from the
+ * context parameters of the web.xml when the application starts, creates
+ * the JobManager running the background marker2seq jobs and the
+ * ExceptionNotifier emailing the exceptions, and registers the
+ * metrics of the caches, jobs and sessions (exported over JMX and by the
+ * MetricsServlet).
+ */
+public class Marker2seqContextListener implements ServletContextListener,
+        HttpSessionListener {
+
+    /** Name of the context attribute holding the JobManager. */
+    public static final String JOB_MANAGER = "m2sJobManager";
+    /**
+     * The logger
+     */
+    private static final Logger LOG = Logger.getLogger(
+            Marker2seqContextListener.class.getName());
+    /** Number of HTTP sessions currently open. */
+    private final AtomicInteger sessions = new AtomicInteger(0);
+
+    /**
+     * Configure the web-service caches, the result store, the render cache
+     * and the protection
+     * of the external services when the application starts.
+     * @param sce the event giving access to the servlet context
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        final ServletContext context = sce.getServletContext();
+
+        final long ttl = getLong(context, "wsCacheTtl",
+                WebServiceCaches.DEFAULT_TTL / 1000) * 1000;
+        final int entries = (int) getLong(context, "wsCacheMaxEntries",
+                WebServiceCaches.DEFAULT_MAX_ENTRIES);
+        final long disk = getLong(context, "wsCacheMaxDiskMb",
+                WebServiceCaches.DEFAULT_MAX_DISK_BYTES / (1024 * 1024))
+                * 1024 * 1024;
+        File directory = WebServiceCaches.DEFAULT_DIRECTORY;
+        final String dir = context.getInitParameter("wsCacheDir");
+        if ("none".equalsIgnoreCase(dir)) {
+            directory = null;
+        } else if (dir != null && !dir.trim().isEmpty()) {
+            directory = new File(dir.trim());
+        }
+        WebServiceCaches.configure(ttl, entries, directory, disk);
+
+        File storedir = ResultStore.DEFAULT_DIRECTORY;
+        final String store = context.getInitParameter("resultStoreDir");
+        if ("none".equalsIgnoreCase(store)) {
+            storedir = null;
+        } else if (store != null && !store.trim().isEmpty()) {
+            storedir = new File(store.trim());
+        }
+        ResultStore.configure(
+                getLong(context, "resultStoreTtl",
+                ResultStore.DEFAULT_TTL / 1000) * 1000,
+                (int) getLong(context, "resultStoreMaxTables",
+                ResultStore.DEFAULT_MAX_TABLES),
+                (int) getLong(context, "resultStoreMaxModels",
+                ResultStore.DEFAULT_MAX_MODELS),
+                storedir,
+                getLong(context, "resultStoreMaxDiskMb",
+                ResultStore.DEFAULT_MAX_DISK_BYTES / (1024 * 1024))
+                * 1024 * 1024);
+
+        File renderdir = RenderCache.DEFAULT_DIRECTORY;
+        final String render = context.getInitParameter("renderCacheDir");
+        if ("none".equalsIgnoreCase(render)) {
+            renderdir = null;
+        } else if (render != null && !render.trim().isEmpty()) {
+            renderdir = new File(render.trim());
+        }
+        RenderCache.configure(
+                getLong(context, "renderCacheTtl",
+                RenderCache.DEFAULT_TTL / 1000) * 1000,
+                (int) getLong(context, "renderCacheMaxEntries",
+                RenderCache.DEFAULT_MAX_ENTRIES),
+                (int) getLong(context, "renderCacheMaxTiles",
+                RenderCache.DEFAULT_MAX_TILES),
+                renderdir,
+                getLong(context, "renderCacheMaxDiskMb",
+                RenderCache.DEFAULT_MAX_DISK_BYTES / (1024 * 1024))
+                * 1024 * 1024);
+        File chartdir = ChartCache.DEFAULT_DIRECTORY;
+        final String charts = context.getInitParameter("chartCacheDir");
+        if (charts != null && !charts.trim().isEmpty()) {
+            chartdir = new File(charts.trim());
+        }
+        ChartCache.configure(
+                getLong(context, "chartCacheTtl",
+                ChartCache.DEFAULT_TTL / 1000) * 1000,
+                (int) getLong(context, "chartCacheMaxEntries",
+                ChartCache.DEFAULT_MAX_ENTRIES),
+                chartdir);
+
+        final String genome = context.getInitParameter("annotationIndexFile");
+        if (genome != null && !genome.trim().isEmpty()) {
+            GenomeIndex.configure(new File(genome.trim()));
+        }
+
+        RenderCache.setRasterize(!"svg".equalsIgnoreCase(
+                context.getInitParameter("alignmentFormat")));
+
+        ServiceUrls.configure(context.getInitParameter("markerServiceUrl"),
+                context.getInitParameter("sifterServiceUrl"),
+                context.getInitParameter("plantdbServiceUrl"));
+
+        ResilienceRegistry.configure(
+                (int) getLong(context, "serviceFailureThreshold", 5),
+                getLong(context, "serviceOpenTime", 30000),
+                (int) getLong(context, "serviceMaxConcurrentCalls", 10),
+                getLong(context, "serviceMaxWait", 1000),
+                getLong(context, "sparqlHedgeDelay", 0),
+                getLong(context, "sparqlTimeOut", 30000));
+
+        QueryMetrics.setEnabled(!"false".equals(context.getInitParameter(
+                "queryMetrics")));
+        QueryMetrics.setSlowThreshold(getLong(context, "slowQueryThreshold",
+                QueryMetrics.DEFAULT_SLOW_THRESHOLD));
+        final String slowlog = context.getInitParameter("slowQueryLog");
+        if (slowlog != null && !slowlog.trim().isEmpty()) {
+            try {
+                QueryMetrics.setSlowLog(new File(slowlog.trim()));
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Can not write the slow queries in "
+                        + slowlog, ex);
+            }
+        }
+
+        QueryProfiler.configure(
+                Boolean.parseBoolean(context.getInitParameter(
+                "queryProfiling")),
+                !"false".equals(context.getInitParameter(
+                "queryProfilingExplain")),
+                (int) getLong(context, "queryProfilingKept",
+                QueryProfiler.DEFAULT_KEPT));
+
+        configureTracing(context);
+
+        final ExceptionNotifier notifier = new ExceptionNotifier(context,
+                getLong(context, "exceptionDigestInterval",
+                ExceptionNotifier.DEFAULT_INTERVAL / 1000) * 1000,
+                (int) getLong(context, "exceptionMaxEmailsPerHour",
+                ExceptionNotifier.DEFAULT_MAX_EMAILS),
+                getLong(context, "exceptionRepeatInterval",
+                ExceptionNotifier.DEFAULT_REPEAT / 1000) * 1000);
+        context.setAttribute(ExceptionNotifier.CONTEXT_ATTRIBUTE, notifier);
+
+        final JobManager jobs = new JobManager(
+                (int) getLong(context, "jobWorkers",
+                JobManager.DEFAULT_WORKERS),
+                (int) getLong(context, "jobQueueLimit",
+                JobManager.DEFAULT_QUEUE_LIMIT),
+                getLong(context, "jobRetention",
+                JobManager.DEFAULT_RETENTION / 1000) * 1000);
+        context.setAttribute(JOB_MANAGER, jobs);
+
+        registerMetrics(jobs, notifier);
+    }
+
+    /**
+     * Configure the sampling of the traces and start their exporter if a
+     * trace file or a collector is given.
+     * @param context the servlet context
+     */
+    private void configureTracing(ServletContext context) {
+        Tracer.configure(getLong(context, "traceSamplePercent", 1) / 100.0,
+                getLong(context, "traceSlowThreshold", 10000));
+        final String file = context.getInitParameter("traceFile");
+        final String collector = context.getInitParameter("traceCollector");
+        final boolean tofile = file != null && !file.trim().isEmpty();
+        final boolean tocollector = collector != null
+                && !collector.trim().isEmpty();
+        if (tofile || tocollector) {
+            try {
+                Tracer.setExporter(new SpanExporter(
+                        tofile ? new File(file.trim()) : null,
+                        tocollector ? new URL(collector.trim()) : null));
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Can not export the traces", ex);
+            }
+        }
+    }
+
+    /**
+     * Register the gauges of the caches, of the jobs, of the sessions, of
+     * the traces and of the exception emails in the MetricsRegistry, and its
+     * MBean.
+     * @param jobs the JobManager running the background jobs
+     * @param notifier the ExceptionNotifier emailing the exceptions
+     */
+    private void registerMetrics(final JobManager jobs,
+            final ExceptionNotifier notifier) {
+        registerCache(WebServiceCaches.getMarkerCache());
+        registerCache(WebServiceCaches.getSifterCache());
+        registerCache(ResultStore.getTableCache());
+        registerCache(ResultStore.getModelCache());
+        registerCache(ResultStore.getIndexCache());
+        registerCache(RenderCache.getCache());
+        registerCache(RenderCache.getTileCache());
+        MetricsRegistry.registerGauge("jobs_queued",
+                "Marker2seq jobs waiting for a worker", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return jobs.getQueued();
+            }
+        });
+        MetricsRegistry.registerGauge("jobs_running",
+                "Marker2seq jobs being run", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return jobs.getRunning();
+            }
+        });
+        MetricsRegistry.registerGauge("sessions_active",
+                "HTTP sessions open", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return sessions.get();
+            }
+        });
+        MetricsRegistry.registerCounter("trace_spans_exported",
+                "Spans of the traces exported", new Gauge() {
+
+            @Override
+            public double getValue() {
+                final SpanExporter exporter = Tracer.getExporter();
+                return exporter == null ? 0 : exporter.getExported();
+            }
+        });
+        MetricsRegistry.registerCounter("trace_spans_dropped",
+                "Spans of the traces dropped as the exporter was late",
+                new Gauge() {
+
+            @Override
+            public double getValue() {
+                final SpanExporter exporter = Tracer.getExporter();
+                return exporter == null ? 0 : exporter.getDropped();
+            }
+        });
+        MetricsRegistry.registerCounter("exceptions_notified",
+                "Exceptions reported to the administrator", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return notifier.getNotified();
+            }
+        });
+        MetricsRegistry.registerCounter("exception_emails",
+                "Exception digests emailed", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return notifier.getEmails();
+            }
+        });
+        MetricsRegistry.registerCounter("exception_emails_failed",
+                "Exception digests which could not be sent", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return notifier.getFailed();
+            }
+        });
+        MetricsRegistry.registerMBean();
+    }
+
+    /**
+     * Register the hits, misses and entries of a cache in the
+     * MetricsRegistry.
+     * @param cache the cache
+     */
+    private static void registerCache(final ResultCache<?> cache) {
+        final String name = cache.getName();
+        MetricsRegistry.registerCounter("cache_hits", "Cache hits",
+                new Gauge() {
+
+            @Override
+            public double getValue() {
+                return cache.getMemoryHits();
+            }
+        }, "cache", name, "level", "memory");
+        MetricsRegistry.registerCounter("cache_hits", "Cache hits",
+                new Gauge() {
+
+            @Override
+            public double getValue() {
+                return cache.getDiskHits();
+            }
+        }, "cache", name, "level", "disk");
+        MetricsRegistry.registerCounter("cache_misses", "Cache misses",
+                new Gauge() {
+
+            @Override
+            public double getValue() {
+                return cache.getMisses();
+            }
+        }, "cache", name);
+        MetricsRegistry.registerGauge("cache_entries",
+                "Entries in the memory level of the cache", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return cache.size();
+            }
+        }, "cache", name);
+    }
+
+    /**
+     * Count the sessions opened.
+     * @param se the event giving access to the session
+     */
+    @Override
+    public void sessionCreated(HttpSessionEvent se) {
+        sessions.incrementAndGet();
+    }
+
+    /**
+     * Count the sessions closed.
+     * @param se the event giving access to the session
+     */
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        sessions.decrementAndGet();
+    }
+
+    /**
+     * Stop the threads started by the application.
+     * @param sce the event giving access to the servlet context
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        final JobManager jobs = getJobManager(sce.getServletContext());
+        if (jobs != null) {
+            jobs.shutdown();
+            sce.getServletContext().removeAttribute(JOB_MANAGER);
+        }
+        final ExceptionNotifier notifier = (ExceptionNotifier)
+                sce.getServletContext().getAttribute(
+                ExceptionNotifier.CONTEXT_ATTRIBUTE);
+        if (notifier != null) {
+            notifier.close();
+            sce.getServletContext().removeAttribute(
+                    ExceptionNotifier.CONTEXT_ATTRIBUTE);
+        }
+        ResilienceRegistry.shutdown();
+        MetricsRegistry.unregisterMBean();
+        MetricsRegistry.unregister("jobs_queued");
+        MetricsRegistry.unregister("jobs_running");
+        MetricsRegistry.unregister("sessions_active");
+        MetricsRegistry.unregister("trace_spans_exported");
+        MetricsRegistry.unregister("trace_spans_dropped");
+        MetricsRegistry.unregister("exceptions_notified");
+        MetricsRegistry.unregister("exception_emails");
+        MetricsRegistry.unregister("exception_emails_failed");
+        Tracer.setExporter(null);
+        try {
+            QueryMetrics.setSlowLog(null);
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Closing the slow query log", ex);
+        }
+        PipelineScheduler.shutdownDefaultExecutor();
+    }
+
+    /**
+     * Return the JobManager running the background jobs of the application.
+     * @param context the servlet context
+     * @return the JobManager, null if the application is not started
+     */
+    public static JobManager getJobManager(ServletContext context) {
+        return (JobManager) context.getAttribute(JOB_MANAGER);
+    }
+
+    /**
+     * Read a numerical context parameter.
+     * @param context the servlet context
+     * @param name the name of the context parameter
+     * @param defaultvalue the value returned when the parameter is not set or
+     * is not a number
+     * @return the value of the parameter
+     */
+    static long getLong(ServletContext context, String name,
+            long defaultvalue) {
+        final String value = context.getInitParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultvalue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            LOG.log(Level.WARNING, "Invalid value for {0}: {1}",
+                    new Object[]{name, value});
+            return defaultvalue;
+        }
+    }
+}
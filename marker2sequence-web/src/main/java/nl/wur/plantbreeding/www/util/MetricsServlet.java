@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry;
+
+/**
+ * Metrics of the application (sparql queries, web-service calls, parsing,
+ * drawing, caches, jobs and sessions) in the Prometheus text format, to be
+ * scraped by a Prometheus server. The same values are available over JMX
+ * (nl.wur.plantbreeding:type=Metrics).
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 20121101L;
+
+    /**
+     * Write all the metrics.
+     *
+     * @param request  the request.
+     * @param response  the response.
+     *
+     * @throws ServletException never.
+     * @throws IOException when the response can not be written.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        final PrintWriter out = response.getWriter();
+        MetricsRegistry.writePrometheus(out);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import nl.wur.plantbreeding.logic.swtools.QueryProfiler;
+
+/**
+ * Report of the QueryProfiler: for each QueryRdf method, its queries and
+ * the plan of the slowest ones. The profiling is enabled with the
+ * queryProfiling parameter of the web.xml; a POST writes the report then
+ * forgets the profiles collected so far.
+ */
+public class QueryProfileServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 20121115L;
+
+    /**
+     * Write the report of the profiling.
+     *
+     * @param request  the request.
+     * @param response  the response.
+     *
+     * @throws ServletException never.
+     * @throws IOException when the response can not be written.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response)
+            throws ServletException, IOException {
+        writeReport(response);
+    }
+
+    /**
+     * Write the report of the profiling then forget the profiles.
+     *
+     * @param request  the request.
+     * @param response  the response.
+     *
+     * @throws ServletException never.
+     * @throws IOException when the response can not be written.
+     */
+    @Override
+    protected void doPost(HttpServletRequest request,
+            HttpServletResponse response)
+            throws ServletException, IOException {
+        writeReport(response);
+        QueryProfiler.reset();
+    }
+
+    /**
+     * Write the report of the profiling.
+     *
+     * @param response  the response.
+     *
+     * @throws IOException when the response can not be written.
+     */
+    private void writeReport(HttpServletResponse response)
+            throws IOException {
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        final PrintWriter out = response.getWriter();
+        if (!QueryProfiler.isEnabled()) {
+            out.println("Query profiling is disabled (see the queryProfiling"
+                    + " parameter of the web.xml)");
+        }
+        QueryProfiler.writeReport(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.Serializable;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+
+/**
+ * The only trace of a marker2seq result kept in the http session: the
+ * identifier of the result in the ResultStore.
+ * The result is removed from the store when the handle leaves the session
+ * (new result, session invalidated or expired).
+ */
+public final class ResultHandle implements Serializable,
+        HttpSessionBindingListener {
+
+    /** Name of the session attribute holding the handle. */
+    public static final String ATTRIBUTE = "m2s_result";
+    private static final long serialVersionUID = 20121004L;
+    /** Identifier of the result in the ResultStore. */
+    private final String id;
+
+    /**
+     * Constructor.
+     * @param resultid the identifier of the result in the ResultStore
+     */
+    public ResultHandle(String resultid) {
+        this.id = resultid;
+    }
+
+    /**
+     * Return the identifier of the result.
+     * @return the identifier in the ResultStore
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Nothing to do when the handle enters the session.
+     * @param event the binding event
+     */
+    @Override
+    public void valueBound(HttpSessionBindingEvent event) {
+    }
+
+    /**
+     * Remove the result from the store when the handle leaves the session.
+     * @param event the binding event
+     */
+    @Override
+    public void valueUnbound(HttpSessionBindingEvent event) {
+        ResultStore.remove(id);
+    }
+
+    /**
+     * Return the handle of the result of the given session.
+     * @param session the session of the user
+     * @return the ResultHandle, null if the user has no result
+     */
+    public static ResultHandle get(HttpSession session) {
+        return (ResultHandle) session.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * Make the given result the current result of the session, the previous
+     * one is removed from the store.
+     * @param session the session of the user
+     * @param resultid the identifier of the result in the ResultStore
+     */
+    public static void publish(HttpSession session, String resultid) {
+        final ResultHandle current = get(session);
+        if (current != null && current.getId().equals(resultid)) {
+            return;
+        }
+        session.setAttribute(ATTRIBUTE, new ResultHandle(resultid));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+import nl.wur.plantbreeding.logic.store.StoredResult;
+
+/**
+ * Makes the tables of the current marker2seq result of the session
+ * available, as request attributes, to the result pages.
+ * The tables are read from the ResultStore for each request, so that the
+ * session only holds a ResultHandle.
+ */
+public class ResultRequestFilter implements Filter {
+
+    /**
+     * The logger
+     */
+    private static final Logger LOG = Logger.getLogger(
+            ResultRequestFilter.class.getName());
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+    }
+
+    /**
+     * Set the request attributes from the result of the session, if any.
+     * @param request the request
+     * @param response the response
+     * @param chain the rest of the chain
+     * @throws IOException if the chain fails
+     * @throws ServletException if the chain fails
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+            FilterChain chain) throws IOException, ServletException {
+        final HttpSession session =
+                ((HttpServletRequest) request).getSession(false);
+        final ResultHandle handle = session == null ? null
+                : ResultHandle.get(session);
+        if (handle != null) {
+            final StoredResult result = ResultStore.get(handle.getId());
+            if (result == null) {
+                LOG.log(Level.INFO, "Result {0} is no longer available",
+                        handle.getId());
+            } else {
+                setAttributes(request, result);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Set the request attributes read by the jsp.
+     * @param request the request
+     * @param result the tables of the result
+     */
+    static void setAttributes(ServletRequest request, StoredResult result) {
+        // genetic map table
+        request.setAttribute("map", result.getMap());
+        // annotation table
+        request.setAttribute("annotation", result.getAnnotation());
+        // marker table
+        request.setAttribute("markers", result.getMarkers());
+        request.setAttribute("picturemap", result.getPicturemap());
+        // name of the picture
+        request.setAttribute("m2s_alignment_fn", result.getPicturefile());
+        // key of the picture, to serve it as SVG
+        request.setAttribute("m2s_alignment_key", result.getPicturekey());
+        if (result.getSearchresult() != null) {
+            request.setAttribute("resultannotation",
+                    result.getSearchresult());
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
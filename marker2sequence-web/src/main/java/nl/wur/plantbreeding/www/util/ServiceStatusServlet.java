@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.www.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import nl.wur.plantbreeding.logic.cache.ResultCache;
+import nl.wur.plantbreeding.logic.cache.WebServiceCaches;
+import nl.wur.plantbreeding.logic.jfreechart.ChartCache;
+import nl.wur.plantbreeding.logic.job.JobManager;
+import nl.wur.plantbreeding.logic.marker.RenderCache;
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry;
+import nl.wur.plantbreeding.logic.metrics.QueryMetrics;
+import nl.wur.plantbreeding.logic.metrics.QueryStats;
+import nl.wur.plantbreeding.logic.metrics.Timer;
+import nl.wur.plantbreeding.logic.resilience.ServiceGuard;
+import nl.wur.plantbreeding.logic.resilience.ResilienceRegistry;
+import nl.wur.plantbreeding.logic.soapclient.ServiceUrls;
+import nl.wur.plantbreeding.logic.store.GenomeIndex;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+import nl.wur.plantbreeding.logic.trace.SpanExporter;
+import nl.wur.plantbreeding.logic.trace.Tracer;
+
+/**
+ * Plain text page giving the state of the external services (circuit
+ * breakers, concurrent calls), of the web-service caches, of the
+ * background jobs and the statistics of the sparql queries, for monitoring.
+ */
+public class ServiceStatusServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 20121002L;
+
+    /**
+     * Write the state of the services and caches, one per line.
+     *
+     * @param request  the request.
+     * @param response  the response.
+     *
+     * @throws ServletException never.
+     * @throws IOException when the response can not be written.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        final PrintWriter out = response.getWriter();
+        out.println("urls " + ServiceUrls.getStatus());
+        for (ServiceGuard guard : ResilienceRegistry.getGuards()) {
+            out.println("service " + guard);
+        }
+        printCache(out, WebServiceCaches.getMarkerCache());
+        printCache(out, WebServiceCaches.getSifterCache());
+        printCache(out, ResultStore.getTableCache());
+        printCache(out, ResultStore.getModelCache());
+        printCache(out, ResultStore.getIndexCache());
+        printCache(out, RenderCache.getCache());
+        printCache(out, RenderCache.getTileCache());
+        out.println(ChartCache.getStatus());
+        out.println(GenomeIndex.getStatus());
+        final JobManager jobs = Marker2seqContextListener.getJobManager(
+                getServletContext());
+        if (jobs != null) {
+            out.println(jobs);
+        }
+        for (QueryStats stats : QueryMetrics.getStats()) {
+            out.println("query " + stats);
+        }
+        for (Timer timer : MetricsRegistry.getTimers()) {
+            out.println("timer " + timer);
+        }
+        final SpanExporter exporter = Tracer.getExporter();
+        if (exporter != null) {
+            out.println("trace sampleRate=" + Tracer.getSampleRate()
+                    + " slowThreshold=" + Tracer.getSlowThreshold() + "ms "
+                    + exporter);
+        }
+        final Object notifier = getServletContext().getAttribute(
+                ExceptionNotifier.CONTEXT_ATTRIBUTE);
+        if (notifier != null) {
+            out.println(notifier);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the state of a cache on one line.
+     * @param out the writer of the response
+     * @param cache the cache to describe
+     */
+    private static void printCache(PrintWriter out, ResultCache<?> cache) {
+        out.println("cache " + cache.getName()
+                + " entries=" + cache.size()
+                + " diskBytes=" + cache.getDiskBytes()
+                + " memoryHits=" + cache.getMemoryHits()
+                + " diskHits=" + cache.getDiskHits()
+                + " misses=" + cache.getMisses());
+    }
+}
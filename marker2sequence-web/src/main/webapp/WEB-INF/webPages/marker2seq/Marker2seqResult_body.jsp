@@ -54,12 +54,12 @@
     </tiles:insert>
 
     <%-- Insert the gene tables without the sub-selection --%>
-    <logic:present name="resultannotation" scope="session">
+    <logic:present name="resultannotation">
         <tiles:insert page="/WEB-INF/tiles/empty.jsp">
             <tiles:put name="body" value="/WEB-INF/webPages/marker2seq/inc_genetables_sub.jsp" />
         </tiles:insert>
     </logic:present>
-    <logic:notPresent name="resultannotation" scope="session">
+    <logic:notPresent name="resultannotation">
         <tiles:insert page="/WEB-INF/tiles/empty.jsp">
             <tiles:put name="body" value="/WEB-INF/webPages/marker2seq/inc_genetables_nosub.jsp" />
         </tiles:insert>
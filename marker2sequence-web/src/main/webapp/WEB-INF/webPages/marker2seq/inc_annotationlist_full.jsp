@@ -14,9 +14,9 @@
 <c:set var="species" ><%=application.getInitParameter("m2sSpecies").toLowerCase()%></c:set>
 <c:set var="urlgbrowse" ><bean:message key='m2s.url.gbrowse.${species}'/></c:set>
 
-<logic:present name="annotation" scope="session">
+<logic:present name="annotation" scope="request">
    <bean:message key="m2s.annotation.table.header"/>
-    <display:table name="sessionScope.annotation" class="displayTable" export="true"
+    <display:table name="requestScope.annotation" class="displayTable" export="true"
                    pagesize="100" id="row" >
 
         <display:setProperty name="export.csv.filename" value="annotation.csv"/>
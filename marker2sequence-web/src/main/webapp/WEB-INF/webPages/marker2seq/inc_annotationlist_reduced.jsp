@@ -15,9 +15,9 @@
 <c:set var="species" ><%=application.getInitParameter("m2sSpecies").toLowerCase()%></c:set>
 <c:set var="urlgbrowse" ><bean:message key='m2s.url.gbrowse.${species}'/></c:set>
 
-<logic:present name="resultannotation" scope="session">
+<logic:present name="resultannotation">
    <bean:message key="m2s.annotation.table.header"/>
-    <display:table name="sessionScope.resultannotation" class="displayTable" export="true"
+    <display:table name="resultannotation" class="displayTable" export="true"
                    pagesize="100" id="resultrow" >
 
         <display:setProperty name="export.csv.filename" value="annotation.csv"/>
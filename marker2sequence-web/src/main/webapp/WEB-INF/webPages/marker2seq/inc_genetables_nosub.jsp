@@ -18,7 +18,7 @@
     <ul>
         <li><a href="#tabs-1"><bean:message key="m2s.result.tab1.title"/></a></li>
         <li><a href="#tabs-2"><bean:message key="m2s.result.tab2.title"/></a></li>
-        <logic:present name="map" scope="session">
+        <logic:present name="map" scope="request">
             <li><a href="#tabs-3"><bean:message key="m2s.result.tab3.title"/></a></li>
         </logic:present>
     </ul>
@@ -35,7 +35,7 @@
         </tiles:insert>
     </div>
 
-    <logic:present name="map" scope="session">
+    <logic:present name="map" scope="request">
         <div id="tabs-3">
             <tiles:insert page="/WEB-INF/tiles/empty.jsp">
                 <tiles:put name="body" value="/WEB-INF/webPages/marker2seq/inc_maplist.jsp" />
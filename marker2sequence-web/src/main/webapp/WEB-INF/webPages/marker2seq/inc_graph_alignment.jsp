@@ -9,7 +9,7 @@
 <html:xhtml/>
 
 
-<logic:present name="picturemap" scope="session">
+<logic:present name="picturemap" scope="request">
     <map name="marker2sequencemap">
         <logic:iterate id="map" name="picturemap" indexId="counter">
             <bean:write name="map"  filter="false" />
@@ -17,16 +17,48 @@
     </map>
 </logic:present>
 
-<logic:present name="m2s_alignment_fn" scope="session">
+<logic:present name="m2s_alignment_fn" scope="request">
     <%
                 String graphURL = request.getContextPath() + "/servlet/DisplayChart?filename="
-                        + session.getAttribute("m2s_alignment_fn");
+                        + request.getAttribute("m2s_alignment_fn");
     %>
     <img src="<%= graphURL%>" usemap="#marker2sequencemap" border=0 alt="Custom generated graph" />
     <p>
         <bean:message key="m2s.annotation.picture.description"/>
     </p>
+    <logic:present name="m2s_alignment_key" scope="request">
+        <p>
+            <a href="<%= request.getContextPath() + "/servlet/AlignmentSvg?key="
+                        + request.getAttribute("m2s_alignment_key")%>"><bean:message key="m2s.annotation.picture.svg"/></a>
+        </p>
+    </logic:present>
+</logic:present>
+<logic:notPresent name="m2s_alignment_fn" scope="request">
+    <logic:present name="m2s_alignment_key" scope="request">
+        <object type="image/svg+xml" data="<%= request.getContextPath() + "/servlet/AlignmentSvg?key="
+                        + request.getAttribute("m2s_alignment_key")%>">Custom generated graph</object>
+        <p>
+            <bean:message key="m2s.annotation.picture.description"/>
+        </p>
+    </logic:present>
+    <logic:notPresent name="m2s_alignment_key" scope="request">
+        <bean:message key="m2s.annotation.alignment.picture.missing"/>
+    </logic:notPresent>
+</logic:notPresent>
+<logic:present name="m2s_alignment_key" scope="request">
+    <p>
+        <a href="#" id="alignmenttiles-open"><bean:message key="m2s.annotation.picture.zoom"/></a>
+    </p>
+    <div id="alignmenttiles"></div>
+    <script type="text/javascript" src="<%= request.getContextPath()%>/js/jquery.alignmentTiles.js"></script>
+    <script type="text/javascript">
+        $('#alignmenttiles-open').click(function() {
+            $('#alignmenttiles').alignmentTiles({
+                url: '<%= request.getContextPath()%>/servlet/AlignmentTile',
+                key: '<%= request.getAttribute("m2s_alignment_key")%>'
+            });
+            $(this).hide();
+            return false;
+        });
+    </script>
 </logic:present>
-<logic:notPresent name="m2s_alignment_fn" scope="session">
-    <bean:message key="m2s.annotation.alignment.picture.missing"/>
-</logic:notPresent>
\ No newline at end of file
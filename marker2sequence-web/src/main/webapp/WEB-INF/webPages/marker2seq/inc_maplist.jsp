@@ -16,9 +16,9 @@
 <c:set var="urlgbrowse" ><bean:message key='m2s.url.gbrowse.${species}'/></c:set>
 <c:set var="urlmarkers" ><bean:message key='m2s.url.markers.sgnname.${species}'/></c:set>
 
-<logic:present name="map" scope="session">
+<logic:present name="map" scope="request">
     <bean:message key="m2s.map.header"/>
-    <display:table name="sessionScope.map" class="displayTable" export="true" pagesize="50" id="maprow">
+    <display:table name="requestScope.map" class="displayTable" export="true" pagesize="50" id="maprow">
         
         <display:setProperty name="export.rtf.filename" value="map.rtf"/>
         <display:setProperty name="export.csv.filename" value="map.csv"/>
@@ -16,9 +16,9 @@
 <c:set var="urlgbrowse" ><bean:message key='m2s.url.gbrowse.${species}'/></c:set>
 <c:set var="urlmarkers" ><bean:message key='m2s.url.markers.name.${species}'/></c:set>
 
-<logic:present name="markers" scope="session">
+<logic:present name="markers" scope="request">
     <bean:message key="m2s.marker.header"/>
-    <display:table name="sessionScope.markers" class="displayTable" export="true"
+    <display:table name="requestScope.markers" class="displayTable" export="true"
                    pagesize="100" id="markerrow" >
 
         <display:setProperty name="export.csv.filename" value="markersfromsgn.csv"/>
@@ -32,7 +32,7 @@
 	<h3><a href="#">Flanking markers</a></h3>
         <div>
             <p><bean:message key="m2s.enter.marker.${species}"/></p>
-            <html:form action="/marker2seq/marker2seq.do">
+            <html:form action="/marker2seq/submit.do">
                 <html:text property="marker1" /><br/>
                 <html:text property="marker2" /><br/>
                 <html:submit styleId="submitProcessing"/><html:reset/>
@@ -41,7 +41,7 @@
         <h3><a href="#">Multiple markers</a></h3>
         <div>
             <p><bean:message key="m2s.enter.markers.${species}"/></p>
-            <html:form action="/marker2seq/marker2seq.do">
+            <html:form action="/marker2seq/submit.do">
                 <html:text property="markers" /><br/>
                 <html:submit styleId="submitProcessing"/><html:reset/>
             </html:form>
@@ -49,7 +49,7 @@
         <h3><a href="#">Coordinates</a></h3>
         <div>
             <p><bean:message key="m2s.enter.coordinate.${species}"/></p>
-            <html:form action="/marker2seq/marker2seq.do">
+            <html:form action="/marker2seq/submit.do">
                 <html:text property="loci" /><br/>
                 <html:submit styleId="submitProcessing"/><html:reset/>
             </html:form>
@@ -57,7 +57,7 @@
         <h3><a href="#">Map Coordinates</a></h3>
         <div>
             <p><bean:message key="m2s.enter.map.coordinate.${species}"/></p>
-            <html:form action="/marker2seq/marker2seq.do">
+            <html:form action="/marker2seq/submit.do">
                 <html:text property="maploci" /><br/>
                 <html:submit styleId="submitProcessing"/><html:reset/>
             </html:form>
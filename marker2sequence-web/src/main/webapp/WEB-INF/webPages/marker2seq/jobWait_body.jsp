@@ -0,0 +1,27 @@
+<%--
+    Document   : jobWait_body
+    Created on : Oct 3, 2012, 10:12:40 AM
+    Author     : Pierre-Yves Chibon -- py@chibon.fr
+--%>
+
+<%@taglib uri="http://struts.apache.org/tags-bean" prefix="bean" %>
+<%@taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@page session="true" %>
+
+<script>
+    setTimeout(function() { window.location.reload(); }, 3000);
+</script>
+
+<h2><bean:message key="m2s.job.header"/></h2>
+<c:choose>
+    <c:when test="${job.status == 'QUEUED'}">
+        <p><bean:message key="m2s.job.queued" arg0="${position}"/></p>
+    </c:when>
+    <c:otherwise>
+        <p><bean:message key="m2s.job.running" arg0="${job.progress}"/>
+            <c:if test="${not empty job.message}">(<c:out value="${job.message}"/>)</c:if>
+        </p>
+    </c:otherwise>
+</c:choose>
+<p><bean:message key="m2s.job.refresh"/></p>
+<p><a href="<c:url value="/marker2seq/jobStatus.do"><c:param name="id" value="${job.id}"/><c:param name="cancel" value="true"/></c:url>"><bean:message key="m2s.job.cancel"/></a></p>
@@ -0,0 +1,123 @@
+/*!
+ * Pan and zoom viewer of the marker2sequence alignment picture.
+ *
+ * The picture is loaded as tiles from the AlignmentTile servlet, only the
+ * tiles visible in the viewer are requested.
+ *
+ * Usage: $('#alignmenttiles').alignmentTiles({url: '.../servlet/AlignmentTile',
+ *                                             key: '<picture key>'});
+ */
+(function($) {
+
+    $.fn.alignmentTiles = function(options) {
+        var settings = $.extend({
+            url: 'servlet/AlignmentTile',
+            key: null,
+            height: 500
+        }, options);
+
+        return this.each(function() {
+            var container = $(this);
+            var info = null;
+            var zoom = 0;
+            var loaded = {};
+            var toolbar = $('<div class="alignmenttiles-toolbar"></div>');
+            var zoomin = $('<button type="button">+</button>');
+            var zoomout = $('<button type="button">-</button>');
+            var label = $('<span></span>');
+            var viewport = $('<div class="alignmenttiles-viewport"></div>');
+            var plane = $('<div></div>');
+
+            toolbar.append(zoomout).append(zoomin).append(label);
+            viewport.css({position: 'relative', overflow: 'auto',
+                border: '1px solid #cccccc'});
+            plane.css({position: 'relative'});
+            viewport.append(plane);
+            container.empty().append(toolbar).append(viewport);
+
+            function tileUrl(z, x, y) {
+                return settings.url + '?key=' + settings.key + '&z=' + z
+                    + '&x=' + x + '&y=' + y;
+            }
+
+            // Add the tiles visible in the viewport which are not there yet
+            function showTiles() {
+                var size = info.tileSize;
+                var width = info.width * Math.pow(2, zoom);
+                var columns = Math.ceil(width / size);
+                var rows = Math.ceil(info.height / size);
+                var left = Math.floor(viewport.scrollLeft() / size);
+                var right = Math.min(columns - 1, Math.floor(
+                    (viewport.scrollLeft() + viewport.width()) / size));
+                var top = Math.floor(viewport.scrollTop() / size);
+                var bottom = Math.min(rows - 1, Math.floor(
+                    (viewport.scrollTop() + viewport.height()) / size));
+                for (var x = left; x <= right; x++) {
+                    for (var y = top; y <= bottom; y++) {
+                        var id = zoom + '-' + x + '-' + y;
+                        if (!loaded[id]) {
+                            loaded[id] = true;
+                            $('<img alt=""/>').attr('src', tileUrl(zoom, x, y))
+                                .css({position: 'absolute', left: x * size,
+                                    top: y * size, width: size, height: size})
+                                .appendTo(plane);
+                        }
+                    }
+                }
+            }
+
+            // Change the zoom level keeping the center of the view in place
+            function setZoom(z) {
+                z = Math.max(0, Math.min(info.maxZoom, z));
+                var factor = Math.pow(2, z - zoom);
+                var center = viewport.scrollLeft() + viewport.width() / 2;
+                zoom = z;
+                loaded = {};
+                plane.empty().css({
+                    width: info.width * Math.pow(2, zoom),
+                    height: info.height
+                });
+                viewport.scrollLeft(center * factor - viewport.width() / 2);
+                label.text(' zoom x' + Math.pow(2, zoom));
+                zoomin.attr('disabled', zoom >= info.maxZoom);
+                zoomout.attr('disabled', zoom <= 0);
+                showTiles();
+            }
+
+            // Drag to pan
+            var drag = null;
+            plane.mousedown(function(event) {
+                drag = {x: event.pageX, y: event.pageY,
+                    left: viewport.scrollLeft(), top: viewport.scrollTop()};
+                event.preventDefault();
+            });
+            $(document).mousemove(function(event) {
+                if (drag) {
+                    viewport.scrollLeft(drag.left - event.pageX + drag.x);
+                    viewport.scrollTop(drag.top - event.pageY + drag.y);
+                }
+            }).mouseup(function() {
+                drag = null;
+            });
+
+            viewport.scroll(function() {
+                if (info) {
+                    showTiles();
+                }
+            });
+            zoomin.click(function() {
+                setZoom(zoom + 1);
+            });
+            zoomout.click(function() {
+                setZoom(zoom - 1);
+            });
+
+            $.getJSON(settings.url, {key: settings.key}, function(data) {
+                info = data;
+                viewport.css({width: info.width,
+                    height: Math.min(info.height + 20, settings.height)});
+                setZoom(0);
+            });
+        });
+    };
+})(jQuery);
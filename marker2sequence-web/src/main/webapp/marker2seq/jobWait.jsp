@@ -0,0 +1,14 @@
+<%-- 
+    Document   : jobWait.jsp
+    Created on : Oct 3, 2012, 10:12:40 AM
+    Author     : Pierre-Yves Chibon <py@chibon.fr>
+--%>
+
+<%@page contentType="text/html" pageEncoding="UTF-8"%>
+
+<%@taglib prefix="tiles" uri="http://struts.apache.org/tags-tiles" %>
+
+<tiles:insert page="/WEB-INF/tiles/layoutPage.jsp">
+    <tiles:put name="title" value="Marker to sequence" />
+    <tiles:put name="body" value="/WEB-INF/webPages/marker2seq/jobWait_body.jsp" />
+</tiles:insert>
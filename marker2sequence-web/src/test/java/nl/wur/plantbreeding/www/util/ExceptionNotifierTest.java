@@ -0,0 +1,210 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.www.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ExceptionNotifierTest {
+
+    /** One hour, in milliseconds. */
+    private static final long HOUR = 60 * 60 * 1000;
+    /** Subjects of the digests sent. */
+    private final List<String> subjects = new CopyOnWriteArrayList<String>();
+    /** Texts of the digests sent. */
+    private final List<String> texts = new CopyOnWriteArrayList<String>();
+    /** Time seen by the notifier. */
+    private volatile long now = 1350000000000L;
+    /** Request sent from another host, so that its exceptions are mailed. */
+    private HttpServletRequest request;
+    /** Notifier under test, null until a test creates it. */
+    private ExceptionNotifier notifier;
+
+    @Before
+    public void setUp() {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        values.put("getRequestURI", "/marker2seq/Marker2seq.do");
+        values.put("getRequestURL",
+                new StringBuffer("http://localhost/marker2seq/Marker2seq.do"));
+        values.put("getLocalAddr", "10.0.0.1");
+        values.put("getRemoteAddr", "10.0.0.2");
+        request = stub(HttpServletRequest.class, values);
+    }
+
+    @After
+    public void tearDown() {
+        if (notifier != null) {
+            notifier.close();
+        }
+    }
+
+    /**
+     * Return an implementation of an interface whose methods return the
+     * given values, null for the others.
+     */
+    private static <T> T stub(Class<T> type, final Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[]{type}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        return values.get(method.getName());
+                    }
+                }));
+    }
+
+    /**
+     * Create a notifier which never sends a digest by itself, recording the
+     * digests instead of emailing them.
+     */
+    private ExceptionNotifier create(int maxperhour, long repeat) {
+        final ServletContext context = stub(ServletContext.class,
+                new HashMap<String, Object>());
+        notifier = new ExceptionNotifier(context, Long.MAX_VALUE, maxperhour,
+                repeat) {
+
+            @Override
+            void send(String subject, String text) {
+                subjects.add(subject);
+                texts.add(text);
+            }
+
+            @Override
+            long currentTime() {
+                return now;
+            }
+        };
+        return notifier;
+    }
+
+    /**
+     * Test that the exceptions of a signature are described once and counted.
+     */
+    @Test
+    public void testDuplicates() {
+        create(ExceptionNotifier.DEFAULT_MAX_EMAILS,
+                ExceptionNotifier.DEFAULT_REPEAT);
+        for (int i = 0; i < 3; i++) {
+            notifier.add(request, new IllegalStateException("input " + i),
+                    null);
+        }
+        notifier.add(request, new IllegalArgumentException("other"), null);
+        assertEquals(4, notifier.getNotified());
+        assertTrue(subjects.isEmpty());
+
+        notifier.sendDigest(false);
+        assertEquals(1, subjects.size());
+        assertEquals("Exception digest: 4 exceptions", subjects.get(0));
+        final String text = texts.get(0);
+        assertTrue(text, text.contains("encountered 2 different exceptions"));
+        assertTrue(text, text.contains("=== 3 times, from "));
+        assertTrue(text, text.contains("=== 1 times, from "));
+        assertTrue(text, text.contains("exception    : input 0\n"));
+        assertFalse(text, text.contains("input 1"));
+        assertEquals(1, notifier.getEmails());
+
+        notifier.sendDigest(false);
+        assertEquals(1, subjects.size());
+    }
+
+    /**
+     * Test that the digests wait once the emails of the hour are sent.
+     */
+    @Test
+    public void testMaxPerHour() {
+        create(1, ExceptionNotifier.DEFAULT_REPEAT);
+        notifier.add(request, new IllegalStateException("first"), null);
+        notifier.sendDigest(false);
+        assertEquals(1, subjects.size());
+
+        notifier.add(request, new IllegalArgumentException("second"), null);
+        now += HOUR / 2;
+        notifier.sendDigest(false);
+        assertEquals(1, subjects.size());
+        notifier.add(request, new IllegalArgumentException("third"), null);
+
+        now += HOUR / 2 + 1;
+        notifier.sendDigest(false);
+        assertEquals(2, subjects.size());
+        assertEquals("Exception digest: 2 exceptions", subjects.get(1));
+
+        notifier.add(request, new IllegalStateException("last"), null);
+        notifier.sendDigest(true);
+        assertEquals(2, subjects.size());
+        assertEquals(2, notifier.getEmails());
+    }
+
+    /**
+     * Test that the details of a signature are only sent again after the
+     * repeat interval.
+     */
+    @Test
+    public void testRepeat() {
+        create(ExceptionNotifier.DEFAULT_MAX_EMAILS, 10 * 60 * 1000);
+        for (int i = 0; i < 3; i++) {
+            notifier.add(request, new IllegalStateException("input " + i),
+                    null);
+            notifier.sendDigest(false);
+            now += 6 * 60 * 1000;
+        }
+        assertEquals(3, subjects.size());
+        assertTrue(texts.get(0), texts.get(0).contains("input 0"));
+        assertFalse(texts.get(0).contains("details sent on"));
+        assertFalse(texts.get(1).contains("input 1"));
+        assertTrue(texts.get(1), texts.get(1).contains("(details sent on "));
+        assertTrue(texts.get(2), texts.get(2).contains("input 2"));
+        assertFalse(texts.get(2).contains("details sent on"));
+    }
+
+    /**
+     * Test that the exceptions beyond the maximum number of signatures are
+     * counted in the digest.
+     */
+    @Test
+    public void testOverflow() {
+        create(ExceptionNotifier.DEFAULT_MAX_EMAILS,
+                ExceptionNotifier.DEFAULT_REPEAT);
+        for (int i = 0; i < 105; i++) {
+            notifier.add(request, null, "error " + i);
+        }
+        assertTrue(notifier.toString(),
+                notifier.toString().endsWith(" pending=100"));
+
+        notifier.sendDigest(false);
+        assertEquals("Exception digest: 105 exceptions", subjects.get(0));
+        final String text = texts.get(0);
+        assertTrue(text, text.contains("encountered 100 different exceptions"));
+        assertTrue(text, text.contains("Custom error : error 99\n"));
+        assertFalse(text, text.contains("error 100"));
+        assertTrue(text, text.contains("\n5 more exceptions were not kept"));
+        assertTrue(notifier.toString().endsWith(" pending=0"));
+    }
+}
@@ -17,6 +17,9 @@
 
 package nl.wur.plantbreeding.datatypes;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import org.biomoby.shared.MobyException;
 import org.biomoby.shared.datatypes.GeneticMarker;
@@ -27,10 +30,18 @@ import org.biomoby.shared.datatypes.GeneticMarker;
  * (getAnnotationsForGeneticIntervalBySgnMarkerID)
  *
  * The attributes are defined by the attributes retrieved in the XML.
+ * The positions are kept as primitives (NO_POSITION when unknown) and the
+ * categorical attributes (scafold, type, method, strand) are shared through
+ * the StringPool, an interval can hold thousands of annotations.
  *
  * @author Pierre-Yves Chibon -- py@chibon.fr
  */
-public class Annotation {
+public class Annotation implements Serializable {
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121005;
+    /** Value of the positions which are not known. */
+    public static final int NO_POSITION = Integer.MIN_VALUE;
 
     /** Name of the scafold in which this feature is. */
     private String scafoldname;
@@ -41,9 +52,9 @@ public class Annotation {
     /** Method of the feature. */
     private String method;
     /** Start position on the feature on the scafold (in bp). */
-    protected Integer seq_position_start;
+    protected int seq_position_start = NO_POSITION;
     /** End position of the featuer on the scafold (in bp). */
-    protected Integer seq_position_end;
+    protected int seq_position_end = NO_POSITION;
     /** Description of this annotation. */
     private String description;
     /** Strand in which the annotation is located. */
@@ -111,7 +122,7 @@ public class Annotation {
      * @param strand
      */
     public void setStrand(String strand) {
-        this.strand = strand;
+        this.strand = StringPool.get(strand);
     }
 
     /**
@@ -127,7 +138,7 @@ public class Annotation {
      * @param scafoldname
      */
     public void setScafoldname(String scafoldname) {
-        this.scafoldname = scafoldname;
+        this.scafoldname = StringPool.get(scafoldname);
     }
 
     /**
@@ -148,34 +159,80 @@ public class Annotation {
 
     /**
      * Returns the end position on this feature on the scafold.
-     * @return Integer seq_position_end
+     * @return Integer seq_position_end, null if unknown
      */
     public Integer getSeq_position_end() {
-        return seq_position_end;
+        return toInteger(seq_position_end);
     }
 
     /**
      * Sets the end position on this feature on the scafold.
-     * @param seq_position_end
+     * @param seq_position_end the position, null if unknown
      */
     public void setSeq_position_end(Integer seq_position_end) {
-        this.seq_position_end = seq_position_end;
+        this.seq_position_end = fromInteger(seq_position_end);
     }
 
     /**
      * Returns the start position on this feature on the scafold.
-     * @return Integer seq_position_start
+     * @return Integer seq_position_start, null if unknown
      */
     public Integer getSeq_position_start() {
-        return seq_position_start;
+        return toInteger(seq_position_start);
     }
 
     /**
      * Sets the start position on this feature on the scafold.
-     * @param seq_position_start
+     * @param seq_position_start the position, null if unknown
      */
     public void setSeq_position_start(Integer seq_position_start) {
-        this.seq_position_start = seq_position_start;
+        this.seq_position_start = fromInteger(seq_position_start);
+    }
+
+    /**
+     * Returns the start position on this feature on the scafold, without
+     * boxing it.
+     * @return the position in bp, NO_POSITION if unknown
+     */
+    public int getStartPosition() {
+        return seq_position_start;
+    }
+
+    /**
+     * Returns the end position on this feature on the scafold, without
+     * boxing it.
+     * @return the position in bp, NO_POSITION if unknown
+     */
+    public int getEndPosition() {
+        return seq_position_end;
+    }
+
+    /**
+     * Sets the start and end positions of this feature on the scafold.
+     * @param start the start position in bp, NO_POSITION if unknown
+     * @param end the end position in bp, NO_POSITION if unknown
+     */
+    public void setSeqPosition(int start, int end) {
+        this.seq_position_start = start;
+        this.seq_position_end = end;
+    }
+
+    /**
+     * Box the given position.
+     * @param position the position, NO_POSITION if unknown
+     * @return the boxed position, null if unknown
+     */
+    protected static Integer toInteger(int position) {
+        return position == NO_POSITION ? null : Integer.valueOf(position);
+    }
+
+    /**
+     * Unbox the given position.
+     * @param position the position, null if unknown
+     * @return the position, NO_POSITION if unknown
+     */
+    protected static int fromInteger(Integer position) {
+        return position == null ? NO_POSITION : position.intValue();
     }
 
     /**
@@ -191,7 +248,7 @@ public class Annotation {
      * @param type
      */
     public void setType(String type) {
-        this.type = type;
+        this.type = StringPool.get(type);
     }
 
     /**
@@ -207,7 +264,7 @@ public class Annotation {
      * @param method
      */
     public void setMethod(String method) {
-        this.method = method;
+        this.method = StringPool.get(method);
     }
 
     /**
@@ -220,8 +277,8 @@ public class Annotation {
                 + " seq method: " + this.method + "\n"
                 + " seq type: " + this.type + "\n"
                 + " seq scafoldname: " + this.scafoldname + "\n"
-                + " seq start position: " + this.seq_position_start + "\n"
-                + " seq end position: " + this.seq_position_end + "\n"
+                + " seq start position: " + this.getSeq_position_start() + "\n"
+                + " seq end position: " + this.getSeq_position_end() + "\n"
                 + " factor: " + this.factor + "\n";
 
         return s;
@@ -254,12 +311,28 @@ public class Annotation {
         markerws.setMap_position(new Float(gm.getMoby_position().
                 getFloatValue()));
         markerws.setSgnID(gm.getId());
-        markerws.setSeq_position_start(this.seq_position_start);
-        markerws.setSeq_position_end(this.seq_position_end);
+        markerws.setSeqPosition(this.seq_position_start,
+                this.seq_position_end);
         markerws.setScafoldname(this.scafoldname);
         markerws.setMethod(this.method);
         markerws.setType(this.type);
 
         return markerws;
     }
+
+    /**
+     * Share the categorical attributes of the annotation read back from disk
+     * or from the session.
+     * @param in the stream to read from
+     * @throws IOException if the annotation can not be read
+     * @throws ClassNotFoundException if a class is missing
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.scafoldname = StringPool.get(this.scafoldname);
+        this.type = StringPool.get(this.type);
+        this.method = StringPool.get(this.method);
+        this.strand = StringPool.get(this.strand);
+    }
 }
@@ -0,0 +1,220 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.datatypes;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of Annotation stored by column: primitive arrays for the
+ * positions and the ranking factor, dictionary codes for the categorical
+ * attributes. A large interval then costs a few arrays instead of one object
+ * (and its boxed positions and duplicated strings) per gene.
+ * The Annotation returned by get() are created on the fly, the JSP and the
+ * tables page through the list and only build the rows they display.
+ */
+public class AnnotationTable extends AbstractList<Annotation>
+        implements RandomAccess, Serializable {
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121005L;
+    /** Number of rows. */
+    private final int size;
+    /** Name of the features. */
+    private final String[] name;
+    /** Description of the features. */
+    private final String[] description;
+    /** Start position of the features. */
+    private final int[] start;
+    /** End position of the features. */
+    private final int[] end;
+    /** Ranking factor of the features. */
+    private final double[] factor;
+    /** Code of the scafold of the features. */
+    private final int[] scafold;
+    /** Code of the type of the features. */
+    private final int[] type;
+    /** Code of the method of the features. */
+    private final int[] method;
+    /** Code of the strand of the features. */
+    private final int[] strand;
+    /** Values of the categorical columns. */
+    private final CodeDictionary dictionary = new CodeDictionary();
+
+    /**
+     * Constructor, copies the given annotation.
+     * @param list the annotation to store
+     */
+    protected AnnotationTable(final List<? extends Annotation> list) {
+        this.size = list.size();
+        this.name = new String[size];
+        this.description = new String[size];
+        this.start = new int[size];
+        this.end = new int[size];
+        this.factor = new double[size];
+        this.scafold = new int[size];
+        this.type = new int[size];
+        this.method = new int[size];
+        this.strand = new int[size];
+        int i = 0;
+        for (Annotation annotation : list) {
+            name[i] = annotation.getName();
+            description[i] = annotation.getDescription();
+            start[i] = annotation.getStartPosition();
+            end[i] = annotation.getEndPosition();
+            factor[i] = annotation.getFactor();
+            scafold[i] = dictionary.encode(annotation.getScafoldname());
+            type[i] = dictionary.encode(annotation.getType());
+            method[i] = dictionary.encode(annotation.getMethod());
+            strand[i] = dictionary.encode(annotation.getStrand());
+            i++;
+        }
+        dictionary.seal();
+    }
+
+    /**
+     * Return a table with the given annotation.
+     * @param list the annotation, may be null
+     * @return the list itself if it already is an AnnotationTable, a new
+     * table otherwise, null if the list is null
+     */
+    public static AnnotationTable copyOf(final List<? extends Annotation> list) {
+        if (list == null) {
+            return null;
+        }
+        if (list instanceof AnnotationTable) {
+            return (AnnotationTable) list;
+        }
+        return new AnnotationTable(list);
+    }
+
+    /**
+     * Return a new Annotation with the values of the given row.
+     * @param index the row
+     * @return an Annotation, changing it does not change the table
+     */
+    @Override
+    public Annotation get(final int index) {
+        this.checkIndex(index);
+        final Annotation annotation = new Annotation();
+        this.fill(index, annotation);
+        return annotation;
+    }
+
+    /**
+     * Return the given page of the table.
+     * @param first the first row of the page
+     * @param count the maximum number of rows of the page
+     * @return the rows of the page, empty if first is past the end
+     */
+    public final List<Annotation> page(final int first, final int count) {
+        final int last = Math.min(size, first + count);
+        final List<Annotation> rows = new ArrayList<Annotation>(
+                Math.max(0, last - first));
+        for (int i = Math.max(0, first); i < last; i++) {
+            rows.add(this.get(i));
+        }
+        return rows;
+    }
+
+    /**
+     * Copy the values of the given row into the given annotation.
+     * @param index the row
+     * @param annotation the Annotation to fill
+     */
+    final void fill(final int index, final Annotation annotation) {
+        annotation.setName(name[index]);
+        annotation.setDescription(description[index]);
+        annotation.setSeqPosition(start[index], end[index]);
+        annotation.setFactor(factor[index]);
+        annotation.setScafoldname(dictionary.decode(scafold[index]));
+        annotation.setType(dictionary.decode(type[index]));
+        annotation.setMethod(dictionary.decode(method[index]));
+        annotation.setStrand(dictionary.decode(strand[index]));
+    }
+
+    /**
+     * Throw an IndexOutOfBoundsException if the row does not exist.
+     * @param index the row
+     */
+    final void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Return the name of the feature of the given row.
+     * @param index the row
+     * @return the name
+     */
+    public final String getName(final int index) {
+        this.checkIndex(index);
+        return name[index];
+    }
+
+    /**
+     * Return the scafold of the feature of the given row.
+     * @param index the row
+     * @return the scafold name
+     */
+    public final String getScafoldname(final int index) {
+        this.checkIndex(index);
+        return dictionary.decode(scafold[index]);
+    }
+
+    /**
+     * Return the type of the feature of the given row.
+     * @param index the row
+     * @return the type
+     */
+    public final String getType(final int index) {
+        this.checkIndex(index);
+        return dictionary.decode(type[index]);
+    }
+
+    /**
+     * Return the start position of the feature of the given row.
+     * @param index the row
+     * @return the position, Annotation.NO_POSITION if unknown
+     */
+    public final int getStartPosition(final int index) {
+        this.checkIndex(index);
+        return start[index];
+    }
+
+    /**
+     * Return the end position of the feature of the given row.
+     * @param index the row
+     * @return the position, Annotation.NO_POSITION if unknown
+     */
+    public final int getEndPosition(final int index) {
+        this.checkIndex(index);
+        return end[index];
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.datatypes;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary giving a small integer code to each distinct value of a
+ * categorical column (scaffold name, type, method, strand) of a table.
+ */
+final class CodeDictionary implements Serializable {
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121005L;
+    /** Code of the null value. */
+    static final int NULL_CODE = -1;
+    /** The values, the value of code i is at index i. */
+    private final List<String> values = new ArrayList<String>();
+    /** Code of each value, only needed while the table is filled. */
+    private transient Map<String, Integer> codes =
+            new HashMap<String, Integer>();
+
+    /**
+     * Return the code of the given value, adding it to the dictionary if
+     * needed.
+     * @param value the value, may be null
+     * @return the code of the value
+     */
+    int encode(final String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        if (codes == null) {
+            codes = new HashMap<String, Integer>();
+            for (int i = 0; i < values.size(); i++) {
+                codes.put(values.get(i), i);
+            }
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(StringPool.get(value));
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Return the value of the given code.
+     * @param code the code
+     * @return the value, null for NULL_CODE
+     */
+    String decode(final int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    /**
+     * Forget the index used to encode the values, once the table is full.
+     */
+    void seal() {
+        codes = null;
+    }
+
+    /**
+     * Return the number of distinct values.
+     * @return the size of the dictionary
+     */
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.datatypes;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of Markerws stored by column, see AnnotationTable.
+ */
+public class MarkerTable extends AbstractList<Markerws>
+        implements RandomAccess, Serializable {
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121005L;
+    /** The columns shared with the annotation. */
+    private final AnnotationTable features;
+    /** Position of the markers on the genetic map. */
+    private final float[] mapPosition;
+    /** Chromosome of the markers. */
+    private final long[] chromosome;
+    /** SGN identifier of the markers. */
+    private final String[] sgnID;
+
+    /**
+     * Constructor, copies the given markers.
+     * @param list the markers to store
+     */
+    protected MarkerTable(final List<Markerws> list) {
+        this.features = new AnnotationTable(list);
+        final int size = list.size();
+        this.mapPosition = new float[size];
+        this.chromosome = new long[size];
+        this.sgnID = new String[size];
+        int i = 0;
+        for (Markerws marker : list) {
+            mapPosition[i] = marker.getMapPosition();
+            chromosome[i] = marker.getChromosomeNumber();
+            sgnID[i] = marker.getSgnID();
+            i++;
+        }
+    }
+
+    /**
+     * Return a table with the given markers.
+     * @param list the markers, may be null
+     * @return the list itself if it already is a MarkerTable, a new table
+     * otherwise, null if the list is null
+     */
+    public static MarkerTable copyOf(final List<Markerws> list) {
+        if (list == null) {
+            return null;
+        }
+        if (list instanceof MarkerTable) {
+            return (MarkerTable) list;
+        }
+        return new MarkerTable(list);
+    }
+
+    /**
+     * Return a new Markerws with the values of the given row.
+     * @param index the row
+     * @return a Markerws, changing it does not change the table
+     */
+    @Override
+    public final Markerws get(final int index) {
+        features.checkIndex(index);
+        final Markerws marker = new Markerws();
+        features.fill(index, marker);
+        marker.setMapLocation(chromosome[index], mapPosition[index]);
+        marker.setSgnID(sgnID[index]);
+        return marker;
+    }
+
+    /**
+     * Return the given page of the table.
+     * @param first the first row of the page
+     * @param count the maximum number of rows of the page
+     * @return the rows of the page, empty if first is past the end
+     */
+    public final List<Markerws> page(final int first, final int count) {
+        final int last = Math.min(this.size(), first + count);
+        final List<Markerws> rows = new ArrayList<Markerws>(
+                Math.max(0, last - first));
+        for (int i = Math.max(0, first); i < last; i++) {
+            rows.add(this.get(i));
+        }
+        return rows;
+    }
+
+    @Override
+    public final int size() {
+        return features.size();
+    }
+
+    /**
+     * Return the columns shared with the annotation (name, scafold,
+     * positions...).
+     * @return the AnnotationTable of the markers
+     */
+    public final AnnotationTable getFeatures() {
+        return features;
+    }
+
+    /**
+     * Return the position on the genetic map of the marker of the given row.
+     * @param index the row
+     * @return the position, NaN if unknown
+     */
+    public final float getMapPosition(final int index) {
+        features.checkIndex(index);
+        return mapPosition[index];
+    }
+
+    /**
+     * Return the chromosome of the marker of the given row.
+     * @param index the row
+     * @return the chromosome, Markerws.NO_CHROMOSOME if unknown
+     */
+    public final long getChromosomeNumber(final int index) {
+        features.checkIndex(index);
+        return chromosome[index];
+    }
+}
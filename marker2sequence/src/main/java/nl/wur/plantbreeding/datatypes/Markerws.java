@@ -24,9 +24,13 @@ package nl.wur.plantbreeding.datatypes;
 public class Markerws extends Annotation {
 
     /** Serial version UID */
-    private static final long serialVersionUID = 20100811;
-    private Float map_position;
-    private Long chromosome;
+    private static final long serialVersionUID = 20121005;
+    /** Value of the chromosome when it is not known. */
+    public static final long NO_CHROMOSOME = Long.MIN_VALUE;
+    /** Position on the genetic map, NaN when it is not known. */
+    private float map_position = Float.NaN;
+    /** Chromosome of the marker, NO_CHROMOSOME when it is not known. */
+    private long chromosome = NO_CHROMOSOME;
     private String sgnID;
 
     public Markerws() {
@@ -35,32 +39,60 @@ public class Markerws extends Annotation {
     @Override
     public Markerws clone() {
         Markerws m = new Markerws();
-        m.setChromosome(this.getChromosome());
-        m.setMap_position(this.getMap_position());
+        m.chromosome = this.chromosome;
+        m.map_position = this.map_position;
         m.setMethod(this.getMethod());
         m.setName(this.getName());
         m.setScafoldname(this.getScafoldname());
-        m.setSeq_position_end(this.getSeq_position_end());
-        m.setSeq_position_start(this.getSeq_position_start());
+        m.setSeqPosition(this.seq_position_start, this.seq_position_end);
         m.setSgnID(this.getSgnID());
         m.setType(this.getType());
         return m;
     }
 
     public Long getChromosome() {
-        return chromosome;
+        return chromosome == NO_CHROMOSOME ? null : Long.valueOf(chromosome);
     }
 
     public void setChromosome(Long chromosome) {
-        this.chromosome = chromosome;
+        this.chromosome = chromosome == null
+                ? NO_CHROMOSOME : chromosome.longValue();
     }
 
     public Float getMap_position() {
-        return map_position;
+        return Float.isNaN(map_position) ? null : Float.valueOf(map_position);
     }
 
     public void setMap_position(Float map_position) {
-        this.map_position = map_position;
+        this.map_position = map_position == null
+                ? Float.NaN : map_position.floatValue();
+    }
+
+    /**
+     * Return the chromosome of the marker without boxing it.
+     * @return the chromosome, NO_CHROMOSOME if unknown
+     */
+    public long getChromosomeNumber() {
+        return chromosome;
+    }
+
+    /**
+     * Return the position of the marker on the genetic map without boxing
+     * it.
+     * @return the position, NaN if unknown
+     */
+    public float getMapPosition() {
+        return map_position;
+    }
+
+    /**
+     * Set the chromosome and the position of the marker on the genetic map.
+     * @param chr the chromosome, NO_CHROMOSOME if unknown
+     * @param position the position on the genetic map, NaN if unknown
+     */
+    public void setMapLocation(long chr, float position) {
+        this.chromosome = chr;
+        this.map_position = position;
     }
 
     public String getSgnID() {
@@ -74,11 +106,11 @@ public class Markerws extends Annotation {
     @Override
     public String toString() {
         String s = " name: " + this.getName() + "\n"
-                + " chromosome: " + this.chromosome + "\n"
+                + " chromosome: " + this.getChromosome() + "\n"
                 + " scaffold: " + this.getScafoldname() + "\n"
-                + " map position: " + this.map_position + "\n"
-                + " seq start position: " + this.seq_position_start + "\n"
-                + " seq end position: " + this.seq_position_end + "\n"
+                + " map position: " + this.getMap_position() + "\n"
+                + " seq start position: " + this.getSeq_position_start() + "\n"
+                + " seq end position: " + this.getSeq_position_end() + "\n"
                 + " SgnId: " + this.sgnID;
         return s;
     }
@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.datatypes;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of the categorical strings (scaffold names, types, methods, strands)
+ * of the annotations so that the thousands of genes of an interval share a
+ * handful of String instances instead of holding one copy each.
+ * Unlike String.intern() the pool lives in the heap and is bounded: once it
+ * is full the strings are simply returned as they are.
+ */
+public final class StringPool {
+
+    /** Maximum number of strings kept in the pool. */
+    public static final int MAX_SIZE = 100000;
+    /** The strings already seen. */
+    private static final ConcurrentMap<String, String> POOL =
+            new ConcurrentHashMap<String, String>();
+
+    /**
+     * Default private constructor.
+     */
+    private StringPool() { }
+
+    /**
+     * Return the pooled instance equal to the given string.
+     * @param value the string to pool, may be null
+     * @return the shared instance, the value itself if the pool is full
+     */
+    public static String get(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String pooled = POOL.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (POOL.size() >= MAX_SIZE) {
+            return value;
+        }
+        // substring() may share a larger char array, keep a trimmed copy
+        final String copy = new String(value);
+        final String previous = POOL.putIfAbsent(copy, copy);
+        return previous == null ? copy : previous;
+    }
+
+    /**
+     * Return the number of strings in the pool.
+     * @return the size of the pool
+     */
+    public static int size() {
+        return POOL.size();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.exceptions;
+
+/**
+ * This class is thrown when a call to an external service (web-service or
+ * sparql endpoint) is refused without being tried: the circuit breaker of the
+ * service is open, too many calls are already running or the call timed out.
+ * It is unchecked so that it can go through the Jena query API the same way
+ * the HTTP exceptions of Jena do.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 20121002L;
+
+    /**
+     * Default constructor
+     */
+    public ServiceUnavailableException() {}
+
+    /**
+     * Constructor for a given message.
+     * @param message String of the exception message
+     */
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.cache;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import nl.wur.plantbreeding.logic.swtools.BinaryRdfReader;
+import nl.wur.plantbreeding.logic.swtools.BinaryRdfWriter;
+
+/**
+ * ResultCodec storing Jena Models in the binary RDF format.
+ * The blocks are not compressed since the ResultCache already gzips its
+ * files, compressing them twice would only cost time.
+ */
+public class BinaryModelCodec implements ResultCodec<Model> {
+
+    /**
+     * Write the given model to the given stream.
+     * @param value the Jena Model to write
+     * @param out the stream to write into
+     * @throws IOException when something goes wrong while writing
+     */
+    @Override
+    public final void encode(final Model value, final OutputStream out)
+            throws IOException {
+        BinaryRdfWriter.write(value, out, Deflater.NO_COMPRESSION);
+    }
+
+    /**
+     * Read a model back from the given stream.
+     * @param in the stream to read from
+     * @return the Jena Model read
+     * @throws IOException when something goes wrong while reading, or if the
+     * stream was written by another codec
+     */
+    @Override
+    public final Model decode(final InputStream in) throws IOException {
+        return BinaryRdfReader.read(in);
+    }
+
+    /**
+     * Return a new model containing all the statements of the given one.
+     * @param value the Jena Model to copy
+     * @return a copy of the model
+     */
+    @Override
+    public final Model copy(final Model value) {
+        final Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefixes(value.getNsPrefixMap());
+        model.add(value);
+        return model;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Generates the keys used to store the web-service results in a ResultCache.
+ * Two inputs only differing by their white spaces (indentation of the XML
+ * generated by the XMLGenerator classes for example) give the same key.
+ */
+public final class CacheKey {
+
+    /** Characters used to write the hash in hexadecimal. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Default private constructor.
+     */
+    private CacheKey() { }
+
+    /**
+     * Return the key for a given web-service and a given XML input.
+     * @param servicename the name of the web-service called
+     * @param input the XML input sent to the web-service
+     * @return a String usable as key (and as file name) in a ResultCache
+     */
+    public static String forService(final String servicename,
+            final String input) {
+        return servicename.replaceAll("[^A-Za-z0-9_-]", "_") + "-"
+                + CacheKey.hash(CacheKey.normalize(input));
+    }
+
+    /**
+     * Remove the white spaces which are not significant in the XML input:
+     * between the tags and repeated ones.
+     * @param xml the XML string to normalize
+     * @return the normalized XML string
+     */
+    public static String normalize(final String xml) {
+        if (xml == null) {
+            return "";
+        }
+        return xml.trim().replaceAll(">\\s+<", "><")
+                .replaceAll("\\s+", " ")
+                .replaceAll("\\s*/>", "/>");
+    }
+
+    /**
+     * Return the SHA-1 hash of the given string, written in hexadecimal.
+     * @param content the string to hash
+     * @return the hexadecimal representation of the hash
+     */
+    public static String hash(final String content) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return CacheKey.toHex(digest.digest(content.getBytes("UTF-8")));
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Write the given bytes in hexadecimal.
+     * @param bytes the array of bytes to convert
+     * @return the hexadecimal string
+     */
+    public static String toHex(final byte[] bytes) {
+        final char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.cache;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * ResultCodec storing Jena Models as N-TRIPLE.
+ */
+public class ModelCodec implements ResultCodec<Model> {
+
+    /** Serialization used to write the model to disk. */
+    private static final String FORMAT = "N-TRIPLE";
+
+    /**
+     * Write the given model to the given stream.
+     * @param value the Jena Model to write
+     * @param out the stream to write into
+     * @throws IOException when something goes wrong while writing
+     */
+    @Override
+    public final void encode(final Model value, final OutputStream out)
+            throws IOException {
+        value.write(out, FORMAT);
+        out.flush();
+    }
+
+    /**
+     * Read a model back from the given stream.
+     * @param in the stream to read from
+     * @return the Jena Model read
+     * @throws IOException when something goes wrong while reading
+     */
+    @Override
+    public final Model decode(final InputStream in) throws IOException {
+        final Model model = ModelFactory.createDefaultModel();
+        model.read(in, null, FORMAT);
+        return model;
+    }
+
+    /**
+     * Return a new model containing all the statements of the given one.
+     * @param value the Jena Model to copy
+     * @return a copy of the model
+     */
+    @Override
+    public final Model copy(final Model value) {
+        final Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefixes(value.getNsPrefixMap());
+        model.add(value);
+        return model;
+    }
+}
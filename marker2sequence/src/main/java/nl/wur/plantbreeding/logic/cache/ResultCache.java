@@ -0,0 +1,518 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Two levels (memory and disk) cache for the results of expensive calls.
+ * The memory level keeps the most recently used entries up to a maximum
+ * number of entries, the disk level keeps the entries (compressed) in a
+ * directory up to a maximum size in bytes. Both levels drop the entries older
+ * than the time-to-live.
+ * The values are copied when stored and when retrieved so that the callers
+ * can freely modify them.
+ * @param <V> the type of the cached values
+ */
+public class ResultCache<V> {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            ResultCache.class.getName());
+    /** Extension of the files written on disk. */
+    private static final String EXTENSION = ".cache.gz";
+    /** Name of the cache, used in the logs. */
+    private final String name;
+    /** Codec used to copy the values and write them to disk. */
+    private final ResultCodec<V> codec;
+    /** Maximum number of entries kept in memory. */
+    private volatile int maxEntries;
+    /** Time-to-live of an entry in milliseconds. */
+    private volatile long ttl;
+    /** Directory in which the entries are written, null for memory only. */
+    private volatile File directory;
+    /** Maximum number of bytes used on disk. */
+    private volatile long maxDiskBytes;
+    /** Number of bytes currently used on disk. */
+    private final AtomicLong diskBytes = new AtomicLong(0);
+    /** Entries kept in memory, in access order. */
+    private final LinkedHashMap<String, CacheEntry<V>> memory =
+            new LinkedHashMap<String, CacheEntry<V>>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 20121001L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<String, CacheEntry<V>> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+    /** Number of entries found in memory. */
+    private final AtomicLong memoryhits = new AtomicLong(0);
+    /** Number of entries found on disk. */
+    private final AtomicLong diskhits = new AtomicLong(0);
+    /** Number of entries not found. */
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     * @param cachename name of the cache, also used as sub-directory
+     * @param valuecodec codec used to copy and store the values
+     * @param entries maximum number of entries kept in memory
+     * @param timetolive time-to-live of the entries in milliseconds
+     * @param dir directory in which to store the entries, null to only keep
+     * them in memory
+     * @param maxbytes maximum number of bytes used on disk
+     */
+    public ResultCache(final String cachename,
+            final ResultCodec<V> valuecodec,
+            final int entries,
+            final long timetolive,
+            final File dir,
+            final long maxbytes) {
+        this.name = cachename;
+        this.codec = valuecodec;
+        this.maxEntries = entries;
+        this.ttl = timetolive;
+        this.maxDiskBytes = maxbytes;
+        this.setDirectory(dir);
+    }
+
+    /**
+     * Return the name of the cache.
+     * @return the name of the cache
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Return the maximum number of entries kept in memory.
+     * @return the maximum number of entries
+     */
+    public final int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Set the maximum number of entries kept in memory.
+     * @param entries the maximum number of entries
+     */
+    public final void setMaxEntries(final int entries) {
+        this.maxEntries = entries;
+        synchronized (memory) {
+            while (memory.size() > entries) {
+                memory.remove(memory.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Return the time-to-live of the entries in milliseconds.
+     * @return the time-to-live
+     */
+    public final long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Set the time-to-live of the entries in milliseconds.
+     * @param timetolive the time-to-live
+     */
+    public final void setTtl(final long timetolive) {
+        this.ttl = timetolive;
+    }
+
+    /**
+     * Return the directory in which the entries are stored on disk.
+     * @return the directory or null if the cache is only kept in memory
+     */
+    public final File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set the directory in which the entries are stored on disk.
+     * The directory is created if it does not exist.
+     * @param dir the directory or null to only keep the entries in memory
+     */
+    public final void setDirectory(final File dir) {
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            LOG.log(Level.WARNING, "Cache {0}: could not create {1}, "
+                    + "entries are only kept in memory",
+                    new Object[]{name, dir});
+            this.directory = null;
+        } else {
+            this.directory = dir;
+        }
+        this.diskBytes.set(this.computeDiskBytes());
+    }
+
+    /**
+     * Return the maximum number of bytes used on disk.
+     * @return the maximum number of bytes
+     */
+    public final long getMaxDiskBytes() {
+        return maxDiskBytes;
+    }
+
+    /**
+     * Set the maximum number of bytes used on disk.
+     * @param maxbytes the maximum number of bytes
+     */
+    public final void setMaxDiskBytes(final long maxbytes) {
+        this.maxDiskBytes = maxbytes;
+        this.trimDisk();
+    }
+
+    /**
+     * Retrieve the value stored for the given key.
+     * @param key the key of the entry
+     * @return a copy of the value stored or null if there is no valid entry
+     * for this key
+     */
+    public final V get(final String key) {
+        final long now = System.currentTimeMillis();
+        CacheEntry<V> entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+            if (entry != null && now - entry.created > ttl) {
+                memory.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            memoryhits.incrementAndGet();
+            return codec.copy(entry.value);
+        }
+
+        final V value = this.readFromDisk(key, now);
+        if (value == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        diskhits.incrementAndGet();
+        synchronized (memory) {
+            memory.put(key, new CacheEntry<V>(codec.copy(value), now));
+        }
+        return value;
+    }
+
+    /**
+     * Store the given value for the given key.
+     * @param key the key of the entry
+     * @param value the value to store (it is copied)
+     */
+    public final void put(final String key, final V value) {
+        if (value == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        synchronized (memory) {
+            memory.put(key, new CacheEntry<V>(codec.copy(value), now));
+        }
+        this.writeToDisk(key, value);
+    }
+
+    /**
+     * Remove the entry stored for the given key.
+     * @param key the key of the entry
+     */
+    public final void remove(final String key) {
+        synchronized (memory) {
+            memory.remove(key);
+        }
+        final File file = this.getFile(key);
+        if (file != null && file.exists()) {
+            final long length = file.length();
+            if (file.delete()) {
+                diskBytes.addAndGet(-length);
+            }
+        }
+    }
+
+    /**
+     * Remove all the entries from the cache (memory and disk).
+     */
+    public final void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        for (File file : this.listFiles()) {
+            if (!file.delete()) {
+                LOG.log(Level.WARNING, "Could not delete {0}", file);
+            }
+        }
+        diskBytes.set(this.computeDiskBytes());
+    }
+
+    /**
+     * Return the number of entries currently kept in memory.
+     * @return the number of entries in memory
+     */
+    public final int size() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    /**
+     * Return the number of bytes currently used on disk.
+     * @return the number of bytes used
+     */
+    public final long getDiskBytes() {
+        return diskBytes.get();
+    }
+
+    /**
+     * Return the number of requests answered from memory.
+     * @return the number of memory hits
+     */
+    public final long getMemoryHits() {
+        return memoryhits.get();
+    }
+
+    /**
+     * Return the number of requests answered from disk.
+     * @return the number of disk hits
+     */
+    public final long getDiskHits() {
+        return diskhits.get();
+    }
+
+    /**
+     * Return the number of requests which could not be answered.
+     * @return the number of misses
+     */
+    public final long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Return the file in which the entry of the given key is stored.
+     * @param key the key of the entry
+     * @return the file or null if the cache is only kept in memory
+     */
+    private File getFile(final String key) {
+        final File dir = directory;
+        if (dir == null) {
+            return null;
+        }
+        return new File(dir, key + EXTENSION);
+    }
+
+    /**
+     * Read the entry of the given key from disk.
+     * @param key the key of the entry
+     * @param now the current time in milliseconds
+     * @return the value or null if there is no valid entry on disk
+     */
+    private V readFromDisk(final String key, final long now) {
+        final File file = this.getFile(key);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        if (now - file.lastModified() > ttl) {
+            this.remove(key);
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = new GZIPInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            return codec.decode(in);
+        }
+        catch (IOException ex) {
+            LOG.log(Level.WARNING, "Cache " + name + ": could not read "
+                    + file, ex);
+            this.remove(key);
+            return null;
+        }
+        finally {
+            this.close(in);
+        }
+    }
+
+    /**
+     * Write the given entry to disk (if a directory is set).
+     * The entry is first written to a temporary file which is then renamed so
+     * that a concurrent reader never sees a partial entry.
+     * @param key the key of the entry
+     * @param value the value to write
+     */
+    private void writeToDisk(final String key, final V value) {
+        final File file = this.getFile(key);
+        if (file == null) {
+            return;
+        }
+        final File tmp = new File(file.getParentFile(),
+                file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new GZIPOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            codec.encode(value, out);
+            out.close();
+            out = null;
+            final long previous = file.exists() ? file.length() : 0;
+            if (previous > 0 && !file.delete()) {
+                LOG.log(Level.WARNING, "Could not replace {0}", file);
+            }
+            if (tmp.renameTo(file)) {
+                diskBytes.addAndGet(file.length() - previous);
+            } else {
+                diskBytes.addAndGet(-previous);
+            }
+        }
+        catch (IOException ex) {
+            LOG.log(Level.WARNING, "Cache " + name + ": could not write "
+                    + file, ex);
+        }
+        finally {
+            this.close(out);
+            if (tmp.exists() && !tmp.delete()) {
+                LOG.log(Level.WARNING, "Could not delete {0}", tmp);
+            }
+        }
+        if (diskBytes.get() > maxDiskBytes) {
+            this.trimDisk();
+        }
+    }
+
+    /**
+     * Remove the oldest entries from disk until the cache uses less than its
+     * maximum number of bytes.
+     */
+    private synchronized void trimDisk() {
+        final File[] files = this.listFiles();
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(final File f1, final File f2) {
+                final long m1 = f1.lastModified();
+                final long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        int cnt = 0;
+        while (total > maxDiskBytes && cnt < files.length) {
+            final long length = files[cnt].length();
+            if (files[cnt].delete()) {
+                total -= length;
+            }
+            cnt++;
+        }
+        diskBytes.set(total);
+        if (cnt > 0) {
+            LOG.log(Level.INFO, "Cache {0}: removed {1} entries from disk",
+                    new Object[]{name, cnt});
+        }
+    }
+
+    /**
+     * Return the files of the entries stored on disk.
+     * @return an array of files, empty if nothing is stored on disk
+     */
+    private File[] listFiles() {
+        final File dir = directory;
+        if (dir == null) {
+            return new File[0];
+        }
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int cnt = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(EXTENSION)) {
+                files[cnt++] = file;
+            }
+        }
+        return Arrays.copyOf(files, cnt);
+    }
+
+    /**
+     * Return the number of bytes used by the entries stored on disk.
+     * @return the number of bytes used on disk
+     */
+    private long computeDiskBytes() {
+        long total = 0;
+        for (File file : this.listFiles()) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    /**
+     * Close the given stream, ignoring the errors.
+     * @param stream the stream to close (may be null)
+     */
+    private void close(final java.io.Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        }
+        catch (IOException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * A value stored in memory with its creation time.
+     * @param <V> the type of the value
+     */
+    private static final class CacheEntry<V> {
+
+        /** The value stored. */
+        private final V value;
+        /** Time at which the value was stored (in milliseconds). */
+        private final long created;
+
+        /**
+         * Constructor.
+         * @param val the value stored
+         * @param time the time at which the value is stored
+         */
+        private CacheEntry(final V val, final long time) {
+            this.value = val;
+            this.created = time;
+        }
+    }
+}
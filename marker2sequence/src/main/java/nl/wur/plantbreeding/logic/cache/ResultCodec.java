@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Converts the values stored in a ResultCache to and from their on-disk
+ * representation.
+ * @param <V> the type of the cached values
+ */
+public interface ResultCodec<V> {
+
+    /**
+     * Write the given value to the given stream.
+     * @param value the value to write
+     * @param out the stream to write into
+     * @throws IOException when something goes wrong while writing
+     */
+    void encode(V value, OutputStream out) throws IOException;
+
+    /**
+     * Read a value back from the given stream.
+     * @param in the stream to read from
+     * @return the value read
+     * @throws IOException when something goes wrong while reading
+     */
+    V decode(InputStream in) throws IOException;
+
+    /**
+     * Return an independent copy of the given value, so that the callers can
+     * modify what they get from the cache without altering the cache itself.
+     * @param value the value to copy
+     * @return a copy of the value
+     */
+    V copy(V value);
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * ResultCodec relying on the standard java serialization.
+ * @param <V> the type of the cached values
+ */
+public class SerializableCodec<V extends Serializable>
+        implements ResultCodec<V> {
+
+    /**
+     * Write the given value to the given stream.
+     * @param value the value to write
+     * @param out the stream to write into
+     * @throws IOException when something goes wrong while writing
+     */
+    @Override
+    public final void encode(final V value, final OutputStream out)
+            throws IOException {
+        final ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(value);
+        oos.flush();
+    }
+
+    /**
+     * Read a value back from the given stream.
+     * @param in the stream to read from
+     * @return the value read
+     * @throws IOException when something goes wrong while reading
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public final V decode(final InputStream in) throws IOException {
+        final ObjectInputStream ois = new ObjectInputStream(in);
+        try {
+            return (V) ois.readObject();
+        }
+        catch (ClassNotFoundException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Return a deep copy of the value by serializing it back and forth.
+     * @param value the value to copy
+     * @return a copy of the value
+     */
+    @Override
+    public final V copy(final V value) {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            this.encode(value, out);
+            return this.decode(new ByteArrayInputStream(out.toByteArray()));
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Could not copy the value", ex);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * ResultCodec for values which are never modified once stored: the values
+ * are written to disk with the given codec but are not copied, the callers
+ * all share the same instance.
+ * @param <V> the type of the cached values
+ */
+public class SharedCodec<V> implements ResultCodec<V> {
+
+    /** Codec writing the values to disk. */
+    private final ResultCodec<V> codec;
+
+    /**
+     * Constructor.
+     * @param diskcodec the codec writing the values to disk
+     */
+    public SharedCodec(final ResultCodec<V> diskcodec) {
+        this.codec = diskcodec;
+    }
+
+    @Override
+    public final void encode(final V value, final OutputStream out)
+            throws IOException {
+        codec.encode(value, out);
+    }
+
+    @Override
+    public final V decode(final InputStream in) throws IOException {
+        return codec.decode(in);
+    }
+
+    /**
+     * Return the value itself, it must be treated as read-only.
+     * @param value the value
+     * @return the same value
+     */
+    @Override
+    public final V copy(final V value) {
+        return value;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.cache;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.datatypes.Annotation;
+
+/**
+ * Holds the caches placed in front of the BioMoby web-services.
+ * The caches are shared by the whole application and can be configured once
+ * at start-up (see the web.xml of the web application).
+ */
+public final class WebServiceCaches {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            WebServiceCaches.class.getName());
+    /** Default time-to-live of the entries: 24 hours. */
+    public static final long DEFAULT_TTL = 24L * 60 * 60 * 1000;
+    /** Default maximum number of entries kept in memory per cache. */
+    public static final int DEFAULT_MAX_ENTRIES = 200;
+    /** Default maximum number of bytes used on disk per cache: 100MB. */
+    public static final long DEFAULT_MAX_DISK_BYTES = 100L * 1024 * 1024;
+    /** Default directory in which the caches are written. */
+    public static final File DEFAULT_DIRECTORY = new File(
+            System.getProperty("java.io.tmpdir"), "m2s-cache");
+    /** Cache of the models returned by getMarkersForRegionByQueryMarkerList. */
+    private static final ResultCache<Model> MARKERCACHE =
+            new ResultCache<Model>("markers", new BinaryModelCodec(),
+            DEFAULT_MAX_ENTRIES, DEFAULT_TTL,
+            new File(DEFAULT_DIRECTORY, "markers"), DEFAULT_MAX_DISK_BYTES);
+    /**
+     * Cache of the annotations returned by
+     * GetSifterPredictedFunctionTermsByProteinID.
+     */
+    private static final ResultCache<ArrayList<Annotation>> SIFTERCACHE =
+            new ResultCache<ArrayList<Annotation>>("sifter",
+            new SerializableCodec<ArrayList<Annotation>>(),
+            DEFAULT_MAX_ENTRIES, DEFAULT_TTL,
+            new File(DEFAULT_DIRECTORY, "sifter"), DEFAULT_MAX_DISK_BYTES);
+
+    /**
+     * Default private constructor.
+     */
+    private WebServiceCaches() { }
+
+    /**
+     * Return the cache of the getMarkersForRegionByQueryMarkerList
+     * web-service.
+     * @return the ResultCache storing the Jena Model of the markers
+     */
+    public static ResultCache<Model> getMarkerCache() {
+        return MARKERCACHE;
+    }
+
+    /**
+     * Return the cache of the GetSifterPredictedFunctionTermsByProteinID
+     * web-service.
+     * @return the ResultCache storing the list of Annotation
+     */
+    public static ResultCache<ArrayList<Annotation>> getSifterCache() {
+        return SIFTERCACHE;
+    }
+
+    /**
+     * Configure all the web-service caches.
+     * @param ttl time-to-live of the entries in milliseconds
+     * @param maxentries maximum number of entries kept in memory per cache
+     * @param directory directory in which the caches are written, null to
+     * only keep them in memory
+     * @param maxdiskbytes maximum number of bytes used on disk per cache
+     */
+    public static void configure(final long ttl, final int maxentries,
+            final File directory, final long maxdiskbytes) {
+        LOG.log(Level.INFO, "Web-service caches: ttl={0}ms, entries={1}, "
+                + "directory={2}, disk={3} bytes",
+                new Object[]{ttl, maxentries, directory, maxdiskbytes});
+        configure(MARKERCACHE, ttl, maxentries, directory, maxdiskbytes);
+        configure(SIFTERCACHE, ttl, maxentries, directory, maxdiskbytes);
+    }
+
+    /**
+     * Configure one cache.
+     * @param cache the ResultCache to configure
+     * @param ttl time-to-live of the entries in milliseconds
+     * @param maxentries maximum number of entries kept in memory
+     * @param directory parent directory of the cache, null to only keep the
+     * entries in memory
+     * @param maxdiskbytes maximum number of bytes used on disk
+     */
+    private static void configure(final ResultCache<?> cache, final long ttl,
+            final int maxentries, final File directory,
+            final long maxdiskbytes) {
+        cache.setTtl(ttl);
+        cache.setMaxEntries(maxentries);
+        if (directory == null) {
+            cache.setDirectory(null);
+        } else {
+            cache.setDirectory(new File(directory, cache.getName()));
+        }
+        cache.setMaxDiskBytes(maxdiskbytes);
+    }
+}
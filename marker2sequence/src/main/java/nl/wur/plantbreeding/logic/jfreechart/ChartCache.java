@@ -0,0 +1,258 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.jfreechart;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.logic.cache.CacheKey;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.entity.StandardEntityCollection;
+
+/**
+ * Bounded cache of the charts saved as png, keyed by a hash of the data and
+ * of the parameters they are drawn from: a chart is only drawn and saved
+ * once as long as its data does not change, then served from its file.
+ * The files are named PREFIX + key + ".png" and the html map of each chart
+ * is kept in memory; when a chart is evicted its file is deleted, so the
+ * disk use is bounded by the number of entries.
+ */
+public final class ChartCache {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            ChartCache.class.getName());
+    /** Default time-to-live of the charts: 24 hours. */
+    public static final long DEFAULT_TTL = 24L * 60 * 60 * 1000;
+    /** Default number of charts kept. */
+    public static final int DEFAULT_MAX_ENTRIES = 300;
+    /** Default directory in which the charts are saved. */
+    public static final File DEFAULT_DIRECTORY = new File(
+            System.getProperty("java.io.tmpdir"), "m2s-charts");
+    /** Prefix of the name of the chart files. */
+    public static final String PREFIX = "public-chart-";
+    /** Suffix of the name of the chart files. */
+    private static final String SUFFIX = ".png";
+    /** Time-to-live of the charts in milliseconds. */
+    private static volatile long ttl = DEFAULT_TTL;
+    /** Maximum number of charts kept. */
+    private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    /** Directory in which the charts are saved. */
+    private static volatile File directory = DEFAULT_DIRECTORY;
+    /** Html map of the charts, per key, in access order. */
+    private static final Map<String, String> MAPS =
+            new LinkedHashMap<String, String>(64, 0.75f, true) {
+
+                private static final long serialVersionUID = 20121008L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<String, String> eldest) {
+                    if (size() > maxEntries) {
+                        deleteFile(eldest.getKey());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    /** Number of charts served from the cache. */
+    private static final AtomicLong HITS = new AtomicLong(0);
+    /** Number of charts drawn. */
+    private static final AtomicLong MISSES = new AtomicLong(0);
+
+    /**
+     * Default private constructor.
+     */
+    private ChartCache() { }
+
+    /**
+     * Draws a chart, called by the cache when the chart is not found.
+     */
+    public interface ChartSource {
+
+        /**
+         * Create the chart.
+         * @return the JFreeChart to save
+         */
+        JFreeChart createChart();
+    }
+
+    /**
+     * Return the key of a chart drawn from the given data and parameters.
+     * @param parts the data and parameters of the chart: the entries of the
+     * maps and the elements of the collections (in their iteration order),
+     * the string value of the other objects
+     * @return the hexadecimal hash identifying the chart
+     */
+    public static String key(final Object... parts) {
+        final StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) part).entrySet()) {
+                    sb.append(entry.getKey()).append('\u0001')
+                            .append(entry.getValue()).append('\u0002');
+                }
+            } else if (part instanceof Collection) {
+                for (Object item : (Collection<?>) part) {
+                    sb.append(item).append('\u0002');
+                }
+            } else {
+                sb.append(part);
+            }
+            sb.append('\u0000');
+        }
+        return CacheKey.hash(sb.toString());
+    }
+
+    /**
+     * Return the chart with the given key, drawing and saving it if it is
+     * not in the cache.
+     * @param key the key of the chart, see key()
+     * @param source draws the chart when needed
+     * @param width the width of the chart
+     * @param height the height of the chart
+     * @return an array of the name of the chart file (to give to the
+     * DisplayChart servlet) and the html map of the chart (whose name is the
+     * name of the file)
+     * @throws IOException when the chart can not be saved
+     */
+    public static String[] getOrCreate(final String key,
+            final ChartSource source, final int width, final int height)
+            throws IOException {
+        final String filename = PREFIX + key + SUFFIX;
+        final File dir = directory;
+        final File file = new File(dir, filename);
+        String map;
+        synchronized (MAPS) {
+            map = MAPS.get(key);
+        }
+        if (map != null && file.exists()
+                && System.currentTimeMillis() - file.lastModified() < ttl) {
+            HITS.incrementAndGet();
+            return new String[]{filename, map};
+        }
+        MISSES.incrementAndGet();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        final ChartRenderingInfo info = new ChartRenderingInfo(
+                new StandardEntityCollection());
+        final File tmp = File.createTempFile(PREFIX, ".tmp", dir);
+        try {
+            ChartUtilities.saveChartAsPNG(tmp, source.createChart(), width,
+                    height, info);
+            if (file.exists() && !file.delete()) {
+                LOG.log(Level.WARNING, "Could not replace {0}", file);
+            }
+            if (!tmp.renameTo(file) && !file.exists()) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+        finally {
+            if (tmp.exists() && !tmp.delete()) {
+                LOG.log(Level.WARNING, "Could not delete {0}", tmp);
+            }
+        }
+        map = ChartUtilities.getImageMap(filename, info);
+        synchronized (MAPS) {
+            MAPS.put(key, map);
+        }
+        return new String[]{filename, map};
+    }
+
+    /**
+     * Return the file of a chart saved by this cache.
+     * @param filename the name of the chart file, as returned by getOrCreate
+     * @return the file, null if the name is not the name of a chart of this
+     * cache
+     */
+    public static File getFile(final String filename) {
+        if (filename == null || !filename.startsWith(PREFIX)
+                || !filename.endsWith(SUFFIX)) {
+            return null;
+        }
+        final String key = filename.substring(PREFIX.length(),
+                filename.length() - SUFFIX.length());
+        if (!key.matches("[0-9a-f]{40}")) {
+            return null;
+        }
+        return new File(directory, filename);
+    }
+
+    /**
+     * Delete the file of the chart with the given key.
+     * @param key the key of the chart
+     */
+    private static void deleteFile(final String key) {
+        final File file = new File(directory, PREFIX + key + SUFFIX);
+        if (file.exists() && !file.delete()) {
+            LOG.log(Level.WARNING, "Could not delete {0}", file);
+        }
+    }
+
+    /**
+     * Configure the cache, the charts already saved in the directory are
+     * removed since their map is not known.
+     * @param timetolive time-to-live of the charts in milliseconds
+     * @param entries maximum number of charts kept
+     * @param dir directory in which the charts are saved
+     */
+    public static void configure(final long timetolive, final int entries,
+            final File dir) {
+        LOG.log(Level.INFO, "Chart cache: ttl={0}ms, entries={1}, "
+                + "directory={2}", new Object[]{timetolive, entries, dir});
+        synchronized (MAPS) {
+            for (String key : MAPS.keySet()) {
+                deleteFile(key);
+            }
+            MAPS.clear();
+            ttl = timetolive;
+            maxEntries = entries;
+            directory = dir;
+        }
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(PREFIX) && !file.delete()) {
+                    LOG.log(Level.WARNING, "Could not delete {0}", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return a one line description of the state of the cache.
+     * @return a String describing the cache
+     */
+    public static String getStatus() {
+        final int size;
+        synchronized (MAPS) {
+            size = MAPS.size();
+        }
+        return "cache charts entries=" + size + "/" + maxEntries
+                + " hits=" + HITS.get() + " misses=" + MISSES.get()
+                + " directory=" + directory;
+    }
+}
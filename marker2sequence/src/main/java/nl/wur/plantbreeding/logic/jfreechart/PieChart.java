@@ -19,9 +19,13 @@
 package nl.wur.plantbreeding.logic.jfreechart;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
@@ -36,10 +40,15 @@ import org.jfree.data.general.PieDataset;
  * value
  *  - a hashmap "String", "double" with group as key and number of values as
  * value.
+ * The datasets can be limited to their largest sections, the others being
+ * grouped in a single OTHER section.
  * @author Pierre-Yves Chibon -- py@chibon.fr
  */
 public class PieChart {
 
+    /** Label of the section grouping the smallest sections. */
+    public static final String OTHER = "Other";
+
     /**
      * Create the Pie Chart using the given dataset.
      * It assigns to the chart the given title, prints the legend if asked,
@@ -120,12 +129,61 @@ public class PieChart {
      */
     public final PieDataset createDataset(final List<String> list) {
         DefaultPieDataset dataset = new DefaultPieDataset();
-        ArrayList<String> done = new ArrayList<String>();
-        for (String key : list) {
-            if (!done.contains(key)) {
-                dataset.setValue(key, this.count(key, list));
-            }
+        for (Map.Entry<String, Integer> entry : count(list).entrySet()) {
+            dataset.setValue(entry.getKey(), entry.getValue().doubleValue());
+        }
+        return dataset;
+    }
 
+    /**
+     * Returns a PieDataset from a List of String keeping only the max largest
+     * sections, the others are grouped in the OTHER section.
+     * @param list List of String containg all the values
+     * @param max the maximum number of sections kept (OTHER excluded)
+     * @return a PieDataset, sections sorted by decreasing size
+     */
+    public final PieDataset createDataset(final List<String> list,
+            final int max) {
+        return this.createDataset(count(list), max);
+    }
+
+    /**
+     * Returns a PieDataset from a Map "String", "Integer" keeping only the
+     * max largest sections, the others are grouped in the OTHER section.
+     * @param distrib Map containing the key as key and the count as value
+     * @param max the maximum number of sections kept (OTHER excluded)
+     * @return a PieDataset, sections sorted by decreasing size (then by key)
+     */
+    public final PieDataset createDataset(
+            final Map<String, Integer> distrib, final int max) {
+        final List<Map.Entry<String, Integer>> entries =
+                new ArrayList<Map.Entry<String, Integer>>(distrib.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+
+            @Override
+            public int compare(final Map.Entry<String, Integer> e1,
+                    final Map.Entry<String, Integer> e2) {
+                final int cmp = e2.getValue().compareTo(e1.getValue());
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return e1.getKey().compareTo(e2.getKey());
+            }
+        });
+        final DefaultPieDataset dataset = new DefaultPieDataset();
+        double other = 0;
+        int cnt = 0;
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (cnt < max && !OTHER.equals(entry.getKey())) {
+                dataset.setValue(entry.getKey(),
+                        entry.getValue().doubleValue());
+                cnt++;
+            } else {
+                other += entry.getValue();
+            }
+        }
+        if (other > 0) {
+            dataset.setValue(OTHER, other);
         }
         return dataset;
     }
@@ -164,19 +222,26 @@ public class PieChart {
     }
 
     /**
-     * For a given String in a List of String return how many
-     * time this String is present.
-     * @param key String to search in the list
+     * Count the occurrences of each String of a List, in a single pass.
      * @param list List of String investigated
-     * @return the number of time the string is in the list (a double)
+     * @return a map of each String to its number of occurrences, in the order
+     * of their first occurrence
      */
-    private double count(final String key, final List<String> list) {
-        double cnt = 0;
+    private static Map<String, Integer> count(final List<String> list) {
+        final Map<String, int[]> counters = new LinkedHashMap<String, int[]>();
         for (String item : list) {
-            if (item.equals(key)) {
-                cnt += 1;
+            final int[] counter = counters.get(item);
+            if (counter == null) {
+                counters.put(item, new int[]{1});
+            } else {
+                counter[0]++;
             }
         }
-        return cnt;
+        final Map<String, Integer> counts =
+                new LinkedHashMap<String, Integer>(counters.size() * 4 / 3 + 1);
+        for (Map.Entry<String, int[]> entry : counters.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return counts;
     }
 }
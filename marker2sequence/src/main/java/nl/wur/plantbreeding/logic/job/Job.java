@@ -0,0 +1,271 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.job;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A task submitted to the JobManager, with its status, its progress and,
+ * once finished, its result or its error.
+ * The task reports its progress with setProgress(), the other state changes
+ * are made by the JobManager.
+ * @param <T> the type of the result of the job
+ */
+public class Job<T> {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(Job.class.getName());
+    /** Identifier of the job. */
+    private final String id;
+    /** Priority of the job, the lowest value runs first. */
+    private final int priority;
+    /** The work to do. */
+    private final JobTask<T> task;
+    /** Listeners told of the changes of the job. */
+    private final List<JobListener> listeners =
+            new CopyOnWriteArrayList<JobListener>();
+    /** Time at which the job was submitted. */
+    private final long submitted;
+    /** Time at which the job started, 0 if not started. */
+    private long started = 0;
+    /** Time at which the job finished, 0 if not finished. */
+    private long finished = 0;
+    /** Current status. */
+    private JobStatus status = JobStatus.QUEUED;
+    /** Progress of the job, in percent. */
+    private int progress = 0;
+    /** Description of the current step. */
+    private String message = null;
+    /** Result of the job, once done. */
+    private T result = null;
+    /** Error of the job, once failed. */
+    private Exception error = null;
+    /** Thread running the job, null when it is not running. */
+    private Thread worker = null;
+
+    /**
+     * Constructor.
+     * @param jobid the identifier of the job
+     * @param jobpriority the priority, the lowest value runs first
+     * @param jobtask the work to do
+     */
+    Job(final String jobid, final int jobpriority, final JobTask<T> jobtask) {
+        this.id = jobid;
+        this.priority = jobpriority;
+        this.task = jobtask;
+        this.submitted = System.currentTimeMillis();
+    }
+
+    /**
+     * Add a listener told of the changes of this job.
+     * @param listener the JobListener to add
+     */
+    public final void addListener(final JobListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     * @param listener the JobListener to remove
+     */
+    public final void removeListener(final JobListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Report the progress of the job, called by the task.
+     * @param percent the progress in percent (0 to 100)
+     * @param step a description of the current step
+     */
+    public final void setProgress(final int percent, final String step) {
+        synchronized (this) {
+            if (status != JobStatus.RUNNING) {
+                return;
+            }
+            this.progress = Math.max(0, Math.min(100, percent));
+            this.message = step;
+        }
+        this.fireChanged();
+    }
+
+    /**
+     * Run the task in the current thread, unless the job was cancelled.
+     */
+    final void execute() {
+        synchronized (this) {
+            if (status != JobStatus.QUEUED) {
+                return;
+            }
+            status = JobStatus.RUNNING;
+            started = System.currentTimeMillis();
+            worker = Thread.currentThread();
+        }
+        this.fireChanged();
+        T out = null;
+        Exception failure = null;
+        try {
+            out = task.run(this);
+        }
+        catch (Exception ex) {
+            failure = ex;
+        }
+        synchronized (this) {
+            worker = null;
+            // Clear the interruption of a cancel() arriving too late
+            Thread.interrupted();
+            if (status != JobStatus.RUNNING) {
+                return;
+            }
+            finished = System.currentTimeMillis();
+            if (failure == null) {
+                status = JobStatus.DONE;
+                progress = 100;
+                result = out;
+            } else {
+                status = JobStatus.FAILED;
+                error = failure;
+            }
+        }
+        this.fireChanged();
+    }
+
+    /**
+     * Cancel the job: a queued job will not run, a running job is
+     * interrupted.
+     * @return true if the job was cancelled, false if it was already
+     * finished
+     */
+    final boolean cancel() {
+        synchronized (this) {
+            if (status.isFinished()) {
+                return false;
+            }
+            status = JobStatus.CANCELLED;
+            finished = System.currentTimeMillis();
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+        this.fireChanged();
+        return true;
+    }
+
+    /**
+     * Tell the listeners that the job changed.
+     */
+    private void fireChanged() {
+        for (JobListener listener : listeners) {
+            try {
+                listener.jobChanged(this);
+            }
+            catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Listener of job " + id + " failed",
+                        ex);
+            }
+        }
+    }
+
+    /**
+     * Return the identifier of the job.
+     * @return the identifier
+     */
+    public final String getId() {
+        return id;
+    }
+
+    /**
+     * Return the priority of the job.
+     * @return the priority, the lowest value runs first
+     */
+    public final int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Return the time at which the job was submitted.
+     * @return the time in milliseconds
+     */
+    public final long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Return the time at which the job started.
+     * @return the time in milliseconds, 0 if the job did not start
+     */
+    public final synchronized long getStarted() {
+        return started;
+    }
+
+    /**
+     * Return the time at which the job finished.
+     * @return the time in milliseconds, 0 if the job is not finished
+     */
+    public final synchronized long getFinished() {
+        return finished;
+    }
+
+    /**
+     * Return the current status of the job.
+     * @return the JobStatus
+     */
+    public final synchronized JobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Return the progress of the job.
+     * @return the progress in percent
+     */
+    public final synchronized int getProgress() {
+        return progress;
+    }
+
+    /**
+     * Return the description of the current step.
+     * @return the description, may be null
+     */
+    public final synchronized String getMessage() {
+        return message;
+    }
+
+    /**
+     * Return the result of the job.
+     * @return the result, null unless the job is done
+     */
+    public final synchronized T getResult() {
+        return result;
+    }
+
+    /**
+     * Return the error of the job.
+     * @return the exception thrown by the task, null unless the job failed
+     */
+    public final synchronized Exception getError() {
+        return error;
+    }
+
+    @Override
+    public final String toString() {
+        return "Job " + id + " (" + this.getStatus() + ")";
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.job;
+
+/**
+ * Receives the progress events of a Job: every change of status or of
+ * progress.
+ */
+public interface JobListener {
+
+    /**
+     * Called, from the thread changing the job, each time its status or its
+     * progress changed.
+     * @param job the job which changed
+     */
+    void jobChanged(Job<?> job);
+}
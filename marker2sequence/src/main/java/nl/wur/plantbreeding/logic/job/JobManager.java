@@ -0,0 +1,340 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.job;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs Jobs in the background on a bounded pool of workers.
+ * The jobs waiting for a worker are ordered by priority (then by submission
+ * order) and their number is limited: once the queue is full new jobs are
+ * refused. The finished jobs are kept, so that their result can be
+ * retrieved, during the retention time and are then forgotten.
+ */
+public class JobManager {
+
+    /** Priority of the small jobs. */
+    public static final int HIGH_PRIORITY = 0;
+    /** Default priority. */
+    public static final int NORMAL_PRIORITY = 5;
+    /** Priority of the large jobs. */
+    public static final int LOW_PRIORITY = 10;
+    /** Default number of workers. */
+    public static final int DEFAULT_WORKERS = 2;
+    /** Default maximum number of jobs waiting for a worker. */
+    public static final int DEFAULT_QUEUE_LIMIT = 50;
+    /** Default retention time of the finished jobs: 30 minutes. */
+    public static final long DEFAULT_RETENTION = 30L * 60 * 1000;
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            JobManager.class.getName());
+    /** Maximum delay between two purges of the finished jobs. */
+    private static final long MAX_PURGE_DELAY = 60 * 1000;
+    /** Jobs known, per identifier. */
+    private final ConcurrentMap<String, Job<?>> jobs =
+            new ConcurrentHashMap<String, Job<?>>();
+    /** Workers running the jobs. */
+    private final ThreadPoolExecutor executor;
+    /** Thread purging the finished jobs. */
+    private final ScheduledExecutorService cleaner;
+    /** Maximum number of jobs waiting for a worker. */
+    private final int queueLimit;
+    /** Time (in milliseconds) the finished jobs are kept. */
+    private final long retention;
+    /** Submission counter, keeps the order of jobs of same priority. */
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    /**
+     * Constructor using the default settings.
+     */
+    public JobManager() {
+        this(DEFAULT_WORKERS, DEFAULT_QUEUE_LIMIT, DEFAULT_RETENTION);
+    }
+
+    /**
+     * Constructor.
+     * @param workers the number of jobs run at the same time
+     * @param limit the maximum number of jobs waiting for a worker
+     * @param retentiontime time (in milliseconds) the finished jobs are kept
+     */
+    public JobManager(final int workers, final int limit,
+            final long retentiontime) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is "
+                    + "needed, got " + workers);
+        }
+        this.queueLimit = limit;
+        this.retention = retentiontime;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0,
+                TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+                new NamedThreadFactory("m2s-job-"));
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("m2s-job-cleaner-"));
+        final long delay = Math.max(1000, Math.min(retentiontime,
+                MAX_PURGE_DELAY));
+        this.cleaner.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                purge();
+            }
+        }, delay, delay, TimeUnit.MILLISECONDS);
+        LOG.log(Level.INFO, "Job manager: workers={0}, queue={1}, "
+                + "retention={2}ms", new Object[]{workers, limit,
+                    retentiontime});
+    }
+
+    /**
+     * Submit a new job.
+     * @param <T> the type of the result of the job
+     * @param task the work to do
+     * @param priority the priority of the job, the lowest value runs first
+     * @param listener told of the changes of the job, may be null
+     * @return the Job, its identifier is used to retrieve it later
+     * @throws RejectedExecutionException if the queue is full or the manager
+     * was shut down
+     */
+    public final synchronized <T> Job<T> submit(final JobTask<T> task,
+            final int priority, final JobListener listener) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("The job manager is "
+                    + "shut down");
+        }
+        if (executor.getQueue().size() >= queueLimit) {
+            throw new RejectedExecutionException("Too many jobs waiting ("
+                    + queueLimit + ")");
+        }
+        final Job<T> job = new Job<T>(UUID.randomUUID().toString(),
+                priority, task);
+        if (listener != null) {
+            job.addListener(listener);
+        }
+        jobs.put(job.getId(), job);
+        executor.execute(new JobRunner(job, sequence.incrementAndGet()));
+        LOG.log(Level.FINE, "Submitted job {0} with priority {1}",
+                new Object[]{job.getId(), priority});
+        return job;
+    }
+
+    /**
+     * Return the job with the given identifier.
+     * @param id the identifier of the job
+     * @return the Job, null if it is unknown or was purged
+     */
+    public final Job<?> getJob(final String id) {
+        if (id == null) {
+            return null;
+        }
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancel the job with the given identifier.
+     * @param id the identifier of the job
+     * @return true if the job was cancelled, false if it is unknown or
+     * already finished
+     */
+    public final boolean cancel(final String id) {
+        final Job<?> job = this.getJob(id);
+        if (job == null || !job.cancel()) {
+            return false;
+        }
+        final Iterator<Runnable> queued = executor.getQueue().iterator();
+        while (queued.hasNext()) {
+            if (((JobRunner) queued.next()).job == job) {
+                queued.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forget the jobs finished since longer than the retention time.
+     * @return the number of jobs removed
+     */
+    public final int purge() {
+        final long limit = System.currentTimeMillis() - retention;
+        int removed = 0;
+        final Iterator<Job<?>> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            final Job<?> job = iterator.next();
+            if (job.getStatus().isFinished() && job.getFinished() < limit) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            LOG.log(Level.FINE, "Purged {0} job(s)", removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Return the position of the given job in the queue.
+     * @param job the job
+     * @return the number of jobs which will run before it, -1 if the job is
+     * not waiting
+     */
+    public final int getQueuePosition(final Job<?> job) {
+        if (job.getStatus() != JobStatus.QUEUED) {
+            return -1;
+        }
+        final JobRunner[] queued = executor.getQueue().toArray(
+                new JobRunner[0]);
+        JobRunner runner = null;
+        for (JobRunner candidate : queued) {
+            if (candidate.job == job) {
+                runner = candidate;
+            }
+        }
+        if (runner == null) {
+            return 0;
+        }
+        int position = 0;
+        for (JobRunner candidate : queued) {
+            if (candidate.compareTo(runner) < 0) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Return the number of jobs waiting for a worker.
+     * @return the number of queued jobs
+     */
+    public final int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Return the number of jobs being run.
+     * @return the number of running jobs
+     */
+    public final int getRunning() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Return the number of jobs known (queued, running or kept).
+     * @return the number of jobs
+     */
+    public final int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Cancel the jobs not finished and stop the workers.
+     */
+    public final void shutdown() {
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+        for (Job<?> job : jobs.values()) {
+            job.cancel();
+        }
+        jobs.clear();
+    }
+
+    @Override
+    public final String toString() {
+        return "jobs running=" + this.getRunning()
+                + " queued=" + this.getQueued() + "/" + queueLimit
+                + " kept=" + this.getJobCount()
+                + " completed=" + executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Queue entry of a job, ordered by priority then by submission order.
+     */
+    private static final class JobRunner implements Runnable,
+            Comparable<JobRunner> {
+
+        /** The job to run. */
+        private final Job<?> job;
+        /** Submission order of the job. */
+        private final long order;
+
+        /**
+         * Constructor.
+         * @param queuedjob the job to run
+         * @param submission the submission order of the job
+         */
+        private JobRunner(final Job<?> queuedjob, final long submission) {
+            this.job = queuedjob;
+            this.order = submission;
+        }
+
+        @Override
+        public void run() {
+            job.execute();
+        }
+
+        @Override
+        public int compareTo(final JobRunner other) {
+            if (job.getPriority() != other.job.getPriority()) {
+                return job.getPriority() < other.job.getPriority() ? -1 : 1;
+            }
+            if (order == other.order) {
+                return 0;
+            }
+            return order < other.order ? -1 : 1;
+        }
+    }
+
+    /**
+     * Creates daemon threads with a recognisable name.
+     */
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        /** Prefix of the thread names. */
+        private final String prefix;
+        /** Number of threads created. */
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        /**
+         * Constructor.
+         * @param threadprefix the prefix of the thread names
+         */
+        private NamedThreadFactory(final String threadprefix) {
+            this.prefix = threadprefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r,
+                    prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
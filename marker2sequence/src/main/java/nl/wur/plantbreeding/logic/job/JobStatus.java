@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.job;
+
+/**
+ * The states of a Job.
+ */
+public enum JobStatus {
+    /** The job waits for a worker. */
+    QUEUED,
+    /** The job is being run. */
+    RUNNING,
+    /** The job completed, its result is available. */
+    DONE,
+    /** The job failed, its error is available. */
+    FAILED,
+    /** The job was cancelled before completing. */
+    CANCELLED;
+
+    /**
+     * Return whether the job is over (done, failed or cancelled).
+     * @return true if the job will not change anymore
+     */
+    public boolean isFinished() {
+        return this == DONE || this == FAILED || this == CANCELLED;
+    }
+}
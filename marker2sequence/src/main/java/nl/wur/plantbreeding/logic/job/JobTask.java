@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.job;
+
+/**
+ * The work done by a Job.
+ * @param <T> the type of the result of the job
+ */
+public interface JobTask<T> {
+
+    /**
+     * Do the work, called from a worker thread of the JobManager.
+     * @param job the job running this task, used to report the progress
+     * @return the result of the job
+     * @throws Exception if the job failed
+     */
+    T run(Job<T> job) throws Exception;
+}
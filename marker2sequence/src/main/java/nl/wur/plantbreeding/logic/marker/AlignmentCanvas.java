@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.Color;
+import java.awt.Font;
+
+/**
+ * The drawing operations used by Marker2seqGraphics, so that the same layout
+ * code draws either a raster picture (Graphics2DCanvas) or a vector one
+ * (SvgCanvas).
+ */
+public interface AlignmentCanvas {
+
+    /**
+     * Set the font used by the next strings.
+     * @param font the Font
+     */
+    void setFont(Font font);
+
+    /**
+     * Return the width of the given string written with the current font.
+     * @param text the string
+     * @return the width in pixels
+     */
+    int stringWidth(String text);
+
+    /**
+     * Return the height of a line of the current font.
+     * @return the height in pixels
+     */
+    int getFontHeight();
+
+    /**
+     * Set the color used by the next drawings.
+     * @param color the Color
+     */
+    void setColor(Color color);
+
+    /**
+     * Fill a rectangle with the current color.
+     * @param x left of the rectangle
+     * @param y top of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     */
+    void fillRect(int x, int y, int width, int height);
+
+    /**
+     * Draw the outline of a rectangle with the current color, as
+     * Graphics.drawRect does.
+     * @param x left of the rectangle
+     * @param y top of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     */
+    void drawRect(int x, int y, int width, int height);
+
+    /**
+     * Draw a line with the current color.
+     * @param x1 x of the first point
+     * @param y1 y of the first point
+     * @param x2 x of the second point
+     * @param y2 y of the second point
+     */
+    void drawLine(int x1, int y1, int x2, int y2);
+
+    /**
+     * Write a string with the current color and font.
+     * @param text the string
+     * @param x x of the baseline
+     * @param y y of the baseline
+     */
+    void drawString(String text, float x, float y);
+
+    /**
+     * Write a string rotated by a quarter turn counter-clockwise. The
+     * coordinates are given in the rotated space, as after
+     * Graphics2D.rotate(-Math.PI / 2).
+     * @param text the string
+     * @param x x of the baseline in the rotated space
+     * @param y y of the baseline in the rotated space
+     */
+    void drawVerticalString(String text, float x, float y);
+
+    /**
+     * Fill a rectangle with a horizontal gradient.
+     * @param x left of the rectangle
+     * @param y top of the rectangle
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param x1 x at which the gradient has the first color
+     * @param color1 the first color
+     * @param x2 x at which the gradient has the second color
+     * @param color2 the second color
+     */
+    void fillGradientRect(int x, int y, int width, int height, float x1,
+            Color color1, float x2, Color color2);
+
+    /**
+     * Start a link: the next drawings are clickable, until endLink.
+     * Canvases which can not hold links ignore it (the html map of
+     * Marker2seqGraphics is then used).
+     * @param href the url of the link
+     * @param title the title of the link
+     */
+    void startLink(String href, String title);
+
+    /**
+     * End the link started by startLink.
+     */
+    void endLink();
+}
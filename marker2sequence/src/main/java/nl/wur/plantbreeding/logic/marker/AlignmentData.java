@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import nl.wur.plantbreeding.datatypes.MarkerTable;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import org.biomoby.shared.MobyException;
+
+/**
+ * Everything the alignment picture is drawn from (genetic map, sequences
+ * with their markers, highlighted markers), kept with the picture so that it
+ * can be drawn again in another format (SVG) without querying the services.
+ * The object is never modified once created.
+ */
+public final class AlignmentData implements Serializable {
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121007L;
+    /** Chromosome of the genetic markers for which it is unknown. */
+    private static final long NO_CHROMOSOME = Long.MIN_VALUE;
+    /** Names of the genetic markers. */
+    private final String[] mapNames;
+    /** Identifiers of the genetic markers. */
+    private final String[] mapIds;
+    /** Positions of the genetic markers. */
+    private final double[] mapPositions;
+    /** Chromosomes of the genetic markers. */
+    private final long[] mapChromosomes;
+    /** Names of the sequences. */
+    private final String[] sequenceNames;
+    /** Types of the sequences. */
+    private final String[] sequenceTypes;
+    /** Markers of each sequence. */
+    private final ArrayList<MarkerTable> sequenceMarkers;
+    /** The markers given as input (highlighted). */
+    private final ArrayList<String> entryMarkers;
+
+    /**
+     * Constructor, see of().
+     * @param markerlist the genetic map of the interval
+     * @param markersequence the sequences (scaffolds) with their markers
+     * @param entrymarkers the markers given as input, may be null
+     * @throws MobyException when the position of a marker can not be read
+     */
+    private AlignmentData(final List<GeneticMarkers> markerlist,
+            final List<MarkerSequence> markersequence,
+            final List<String> entrymarkers) throws MobyException {
+        final int nmarkers = markerlist.size();
+        this.mapNames = new String[nmarkers];
+        this.mapIds = new String[nmarkers];
+        this.mapPositions = new double[nmarkers];
+        this.mapChromosomes = new long[nmarkers];
+        for (int i = 0; i < nmarkers; i++) {
+            final GeneticMarkers marker = markerlist.get(i);
+            mapNames[i] = marker.getName();
+            mapIds[i] = marker.getId();
+            mapPositions[i] = marker.get_position();
+            if (marker.getMoby_Chromosome() == null) {
+                mapChromosomes[i] = NO_CHROMOSOME;
+            } else {
+                mapChromosomes[i] = marker.getMoby_Chromosome().getIntValue();
+            }
+        }
+        final int nsequences = markersequence.size();
+        this.sequenceNames = new String[nsequences];
+        this.sequenceTypes = new String[nsequences];
+        this.sequenceMarkers = new ArrayList<MarkerTable>(nsequences);
+        for (int i = 0; i < nsequences; i++) {
+            final MarkerSequence sequence = markersequence.get(i);
+            sequenceNames[i] = sequence.getName();
+            sequenceTypes[i] = sequence.getType();
+            sequenceMarkers.add(MarkerTable.copyOf(sequence.getMarkers()));
+        }
+        if (entrymarkers == null) {
+            this.entryMarkers = new ArrayList<String>(0);
+        } else {
+            this.entryMarkers = new ArrayList<String>(entrymarkers);
+        }
+    }
+
+    /**
+     * Return a snapshot of the given data.
+     * @param markerlist the genetic map of the interval
+     * @param markersequence the sequences (scaffolds) with their markers
+     * @param entrymarkers the markers given as input, may be null
+     * @return the AlignmentData
+     * @throws MobyException when the position of a marker can not be read
+     */
+    public static AlignmentData of(final List<GeneticMarkers> markerlist,
+            final List<MarkerSequence> markersequence,
+            final List<String> entrymarkers) throws MobyException {
+        return new AlignmentData(markerlist, markersequence, entrymarkers);
+    }
+
+    /**
+     * Return the genetic map, as new GeneticMarkers objects.
+     * @return a list of GeneticMarkers
+     */
+    public List<GeneticMarkers> getGeneticMap() {
+        final List<GeneticMarkers> markers =
+                new ArrayList<GeneticMarkers>(mapNames.length);
+        for (int i = 0; i < mapNames.length; i++) {
+            final GeneticMarkers marker = new GeneticMarkers();
+            marker.setName(mapNames[i]);
+            marker.setId(mapIds[i]);
+            marker.set_position(mapPositions[i]);
+            if (mapChromosomes[i] != NO_CHROMOSOME) {
+                marker.set_Chromosome(mapChromosomes[i]);
+            }
+            markers.add(marker);
+        }
+        return markers;
+    }
+
+    /**
+     * Return the sequences with their markers, as new MarkerSequence
+     * objects.
+     * @return a list of MarkerSequence
+     */
+    public List<MarkerSequence> getSequences() {
+        final List<MarkerSequence> sequences =
+                new ArrayList<MarkerSequence>(sequenceNames.length);
+        for (int i = 0; i < sequenceNames.length; i++) {
+            List<Markerws> markers = null;
+            if (sequenceMarkers.get(i) != null) {
+                markers = new ArrayList<Markerws>(sequenceMarkers.get(i));
+            }
+            sequences.add(new MarkerSequence(sequenceNames[i], null,
+                    sequenceTypes[i], null, null, markers));
+        }
+        return sequences;
+    }
+
+    /**
+     * Return the markers given as input (highlighted).
+     * @return an unmodifiable list of marker names
+     */
+    public List<String> getEntryMarkers() {
+        return Collections.unmodifiableList(entryMarkers);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picture of the genetic map aligned with the physical map, together with
+ * the areas (html map) making its elements clickable.
+ */
+public final class AlignmentImage {
+
+    /** The picture. */
+    private final BufferedImage image;
+    /** The areas of the html map. */
+    private final List<String> map;
+
+    /**
+     * Constructor.
+     * @param img the picture
+     * @param areas the areas of the html map (copied)
+     */
+    public AlignmentImage(final BufferedImage img, final List<String> areas) {
+        this.image = img;
+        this.map = Collections.unmodifiableList(new ArrayList<String>(areas));
+    }
+
+    /**
+     * Return the picture.
+     * @return the BufferedImage
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Return the areas of the html map.
+     * @return an unmodifiable list of area strings
+     */
+    public List<String> getMap() {
+        return map;
+    }
+}
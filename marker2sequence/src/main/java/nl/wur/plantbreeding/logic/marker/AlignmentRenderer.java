@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import org.biomoby.shared.MobyException;
+
+/**
+ * Draws the picture of the genetic map aligned with the physical map using
+ * Marker2seqGraphics: computes the size of the picture, sets the legend and
+ * the extreme markers of each sequence.
+ */
+public class AlignmentRenderer {
+
+    /** Width of the picture, retrieved from Marker2seqGraphics. */
+    private static final Integer PICTUREWIDTH = Marker2seqGraphics.PICTUREWIDTH;
+    /** Legend of the picture. */
+    private static final Map<String, Color> LEGEND;
+
+    static {
+        final Map<String, Color> legend = new LinkedHashMap<String, Color>(4);
+        legend.put("Map & Marker", Color.gray);
+        legend.put("Scaffolds", Color.blue);
+        legend.put("Unknown orientation", Color.pink);
+        LEGEND = Collections.unmodifiableMap(legend);
+    }
+
+    /**
+     * Return the legend of the picture.
+     * @return an unmodifiable map of the legend label to its color
+     */
+    public static Map<String, Color> getLegend() {
+        return LEGEND;
+    }
+
+    /**
+     * Draw the picture for the given genetic map and sequences.
+     * @param markerlist the genetic map of the interval
+     * @param markersequence the sequences (scaffolds) with their markers,
+     * their start and end markers are set
+     * @param entrymarkers the markers given as input (highlighted)
+     * @return the AlignmentImage or null if there is nothing to draw
+     * @throws MobyException when the position of a marker can not be read
+     */
+    public final AlignmentImage render(final List<GeneticMarkers> markerlist,
+            final List<MarkerSequence> markersequence,
+            final List<String> entrymarkers) throws MobyException {
+        if (markersequence == null || markersequence.isEmpty()
+                || markerlist == null || markerlist.isEmpty()) {
+            return null;
+        }
+        for (MarkerSequence ms : markersequence) {
+            this.setExtremeMarkers(ms);
+        }
+
+        final HashMap<String, Color> legend =
+                new HashMap<String, Color>(LEGEND);
+        final Marker2seqGraphics graphic = new Marker2seqGraphics();
+        final int heigth = this.getHeigth(graphic, markerlist, markersequence,
+                legend);
+
+        // Draw the actual image and generate the mapstring:
+        final BufferedImage bim = new BufferedImage(PICTUREWIDTH, heigth,
+                BufferedImage.TYPE_INT_RGB);
+        final Graphics2D gr = bim.createGraphics();
+        // Fill the background in white
+        gr.setColor(Color.white);
+        gr.fillRect(0, 0, PICTUREWIDTH, heigth);
+        graphic.drawImage(markerlist, markersequence, gr, legend,
+                entrymarkers);
+        gr.dispose();
+
+        return new AlignmentImage(bim, graphic.getMap());
+    }
+
+    /**
+     * Write the picture for the given genetic map and sequences as SVG.
+     * The picture is written element by element, the links of the markers
+     * and sequences are part of it.
+     * @param markerlist the genetic map of the interval
+     * @param markersequence the sequences (scaffolds) with their markers,
+     * their start and end markers are set
+     * @param entrymarkers the markers given as input (highlighted)
+     * @param out where the SVG is written (flushed, not closed)
+     * @return false if there is nothing to draw (nothing is written)
+     * @throws MobyException when the position of a marker can not be read
+     * @throws IOException when the picture can not be written
+     */
+    public final boolean renderSvg(final List<GeneticMarkers> markerlist,
+            final List<MarkerSequence> markersequence,
+            final List<String> entrymarkers, final Writer out)
+            throws MobyException, IOException {
+        if (markersequence == null || markersequence.isEmpty()
+                || markerlist == null || markerlist.isEmpty()) {
+            return false;
+        }
+        for (MarkerSequence ms : markersequence) {
+            this.setExtremeMarkers(ms);
+        }
+        final HashMap<String, Color> legend =
+                new HashMap<String, Color>(LEGEND);
+        final Marker2seqGraphics graphic = new Marker2seqGraphics();
+        final int heigth = this.getHeigth(graphic, markerlist, markersequence,
+                legend);
+        final SvgCanvas canvas = new SvgCanvas(out, PICTUREWIDTH, heigth);
+        graphic.drawImage(markerlist, markersequence, canvas, legend,
+                entrymarkers);
+        canvas.finish();
+        return true;
+    }
+
+    /**
+     * Return the heigth of the picture for the given genetic map and
+     * sequences.
+     * @param graphic the Marker2seqGraphics drawing the picture
+     * @param markerlist the genetic map of the interval
+     * @param markersequence the sequences (scaffolds) with their markers
+     * @param legend the legend of the picture
+     * @return the heigth in pixels
+     */
+    final int getHeigth(final Marker2seqGraphics graphic,
+            final List<GeneticMarkers> markerlist,
+            final List<MarkerSequence> markersequence,
+            final Map<String, Color> legend) {
+        final BufferedImage bim = new BufferedImage(100, 100,
+                BufferedImage.TYPE_INT_RGB);
+        final Graphics2D gr = bim.createGraphics();
+
+        // Calculate heigth of the picture
+        // Sequence part
+        Integer heigth = markersequence.size()
+                * ( graphic.getVerticalspace()
+                + graphic.getSequenceheigth() );
+        // Name of the marker part
+        heigth = heigth + gr.getFontMetrics().stringWidth(
+                graphic.getLonguestMarker(markerlist))
+                + // Legend part
+                10 + legend.size() * graphic.getVerticalspace()
+                //
+                + graphic.getSequencetop();
+        gr.dispose();
+        return heigth;
+    }
+
+    /**
+     * Set the two Extreme marker (start and stop) and a given scafold
+     * This way I know according to the genetic map where the scafold should
+     * start and stop
+     * @param ms
+     * @return MarkerSequence
+     */
+    final MarkerSequence setExtremeMarkers(final MarkerSequence ms) {
+        Markerws start = null;
+        Markerws end = null;
+        for (Markerws marker : ms.getMarkers()) {
+            if (start == null) {
+                start = marker;
+            }
+            if (end == null) {
+                end = marker;
+            }
+            if (marker.getMap_position() <= start.getMap_position()
+                    && marker.getSeq_position_start()
+                    < start.getSeq_position_start()) {
+                start = marker;
+            }
+            if (marker.getMap_position() >= end.getMap_position()
+                    && marker.getSeq_position_end()
+                    > end.getSeq_position_end()) {
+                end = marker;
+            }
+        }
+        ms.setEndmarker(end);
+        ms.setStartmarker(start);
+        return ms;
+
+    }
+}
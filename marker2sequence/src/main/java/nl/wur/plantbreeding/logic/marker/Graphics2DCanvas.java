@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+
+/**
+ * AlignmentCanvas drawing on a Graphics2D (of a BufferedImage for the png
+ * pictures). Links are ignored, the html map is used instead.
+ */
+public class Graphics2DCanvas implements AlignmentCanvas {
+
+    /** The graphics drawn on. */
+    private final Graphics2D gr;
+    /** Metrics of the current font, null until needed. */
+    private FontMetrics metrics = null;
+
+    /**
+     * Constructor.
+     * @param graphics the Graphics2D to draw on
+     */
+    public Graphics2DCanvas(final Graphics2D graphics) {
+        this.gr = graphics;
+    }
+
+    @Override
+    public final void setFont(final Font font) {
+        gr.setFont(font);
+        metrics = null;
+    }
+
+    /**
+     * Return the metrics of the current font, computed once per font.
+     * @return the FontMetrics
+     */
+    private FontMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = gr.getFontMetrics();
+        }
+        return metrics;
+    }
+
+    @Override
+    public final int stringWidth(final String text) {
+        return this.getMetrics().stringWidth(text);
+    }
+
+    @Override
+    public final int getFontHeight() {
+        return this.getMetrics().getHeight();
+    }
+
+    @Override
+    public final void setColor(final Color color) {
+        gr.setColor(color);
+    }
+
+    @Override
+    public final void fillRect(final int x, final int y, final int width,
+            final int height) {
+        gr.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public final void drawRect(final int x, final int y, final int width,
+            final int height) {
+        gr.drawRect(x, y, width, height);
+    }
+
+    @Override
+    public final void drawLine(final int x1, final int y1, final int x2,
+            final int y2) {
+        gr.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public final void drawString(final String text, final float x,
+            final float y) {
+        gr.drawString(text, x, y);
+    }
+
+    @Override
+    public final void drawVerticalString(final String text, final float x,
+            final float y) {
+        final AffineTransform oldAt = gr.getTransform();
+        gr.rotate(-Math.PI / 2.0);
+        gr.drawString(text, x, y);
+        gr.setTransform(oldAt);
+    }
+
+    @Override
+    public final void fillGradientRect(final int x, final int y,
+            final int width, final int height, final float x1,
+            final Color color1, final float x2, final Color color2) {
+        final Paint paint = gr.getPaint();
+        gr.setPaint(new GradientPaint(x1, y, color1, x2, y, color2, false));
+        gr.fillRect(x, y, width, height);
+        gr.setPaint(paint);
+    }
+
+    @Override
+    public final void startLink(final String href, final String title) {
+        // The links are given by the html map
+    }
+
+    @Override
+    public final void endLink() {
+        // The links are given by the html map
+    }
+}
@@ -22,16 +22,20 @@ import nl.wur.plantbreeding.datatypes.Sequence;
 import nl.wur.plantbreeding.datatypes.Markerws;
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.GradientPaint;
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
 import org.biomoby.shared.MobyException;
 import org.biomoby.shared.datatypes.GeneticMarker;
 
@@ -108,6 +112,17 @@ public class Marker2seqGraphics {
             + "coords=\""
             + "%s,%s,%s,%s\" href=\"http://solgenomics.wur.nl/gbrowse/bin/"
             + "gbrowse/ITAG1_genomic/?name=%s\" target=\"_blank\" />";
+    /**
+     * Link of a marker, followed by the name of the marker.
+     */
+    private static final String MARKERLINK = "http://solgenomics.wur.nl/"
+            + "search/markers/markersearch.pl?w822_submit=Search&"
+            + "w822_nametype=starts+with&w822_marker_name=";
+    /**
+     * Link of a sequence, followed by the name of the sequence.
+     */
+    private static final String SEQUENCELINK = "http://solgenomics.wur.nl/"
+            + "gbrowse/bin/gbrowse/ITAG1_genomic/?name=";
     /**
      * String used in the map for the marker.
      */
@@ -124,6 +139,12 @@ public class Marker2seqGraphics {
     /** The logger. */
     private static final Logger LOG = Logger.getLogger(
             Marker2seqGraphics.class.getName());
+    /** Positions and indexes of the genetic map being drawn. */
+    private MapLayout layout = null;
+    /** Width of the picture drawn, wider than PICTUREWIDTH to zoom in. */
+    private Integer picturewidth = PICTUREWIDTH;
+    /** Part of the picture actually drawn, null to draw all of it. */
+    private Rectangle viewport = null;
 
     /**
      * This function generates the full image.
@@ -139,21 +160,74 @@ public class Marker2seqGraphics {
             final Graphics2D gr,
             final HashMap<String, Color> legend,
             final List<String> entrymarkers) throws MobyException {
+        this.drawImage(markers, sequences, new Graphics2DCanvas(gr), legend,
+                entrymarkers);
+    }
 
-        final float startpoint =
-                new Float(markers.get(0).getMoby_position().getFloatValue());
-        final float endpoint =
-                new Float(markers.get(markers.size() - 1).getMoby_position().
-                getFloatValue());
+    /**
+     * This function generates the full image on the given canvas.
+     * @param markers a list of GeneticMarkers
+     * @param sequences a list of MarkerSequence
+     * @param gr the AlignmentCanvas to draw the picture on
+     * @param legend a HashMap of color for the legen
+     * @param entrymarkers a list of Markers
+     * @throws MobyException when something happens with the web-service
+     */
+    public final void drawImage(final List<GeneticMarkers> markers,
+            final List<MarkerSequence> sequences,
+            final AlignmentCanvas gr,
+            final HashMap<String, Color> legend,
+            final List<String> entrymarkers) throws MobyException {
+        final Span span = Tracer.startSpan("render "
+                + gr.getClass().getSimpleName());
+        span.setAttribute("geneticmarkers", markers.size())
+                .setAttribute("scaffolds", sequences.size());
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            this.draw(markers, sequences, gr, legend, entrymarkers);
+            failed = false;
+        }
+        finally {
+            MetricsRegistry.getTimer(MetricsRegistry.RENDER, "canvas",
+                    gr.getClass().getSimpleName()).record(
+                    System.nanoTime() - start, failed);
+            if (failed) {
+                span.setAttribute("error", "rendering failed");
+            }
+            span.end();
+        }
+    }
+
+    /**
+     * Draw the full image on the given canvas, the time taken is recorded
+     * by drawImage.
+     * @param markers a list of GeneticMarkers
+     * @param sequences a list of MarkerSequence
+     * @param gr the AlignmentCanvas to draw the picture on
+     * @param legend a HashMap of color for the legen
+     * @param entrymarkers a list of Markers
+     * @throws MobyException when something happens with the web-service
+     */
+    private void draw(final List<GeneticMarkers> markers,
+            final List<MarkerSequence> sequences,
+            final AlignmentCanvas gr,
+            final HashMap<String, Color> legend,
+            final List<String> entrymarkers) throws MobyException {
+
+        layout = new MapLayout(markers);
+        final double[] positions = layout.positions;
+        final float startpoint = (float) positions[0];
+        final float endpoint = (float) positions[positions.length - 1];
 
         // Set Font
         gr.setFont(new Font("Serif", Font.PLAIN, 12));
         // Calculate the y Top position
-        Integer top = gr.getFontMetrics().stringWidth(
+        Integer top = gr.stringWidth(
                 this.getLonguestMarker(markers)) + TOPMARGIN;
         // Calculate the width on the map
-        final Integer width = Marker2seqGraphics.PICTUREWIDTH
-                - gr.getFontMetrics().stringWidth(
+        final Integer width = picturewidth
+                - gr.stringWidth(
                 this.getLonguestSequenceName(sequences))
                 - spacebartext - RIGHTMARGIN;
         final Integer mapstep = (int) (width / (endpoint - startpoint));
@@ -175,48 +249,63 @@ public class Marker2seqGraphics {
         }
 
         // Draw the marker on the map
-        ArrayList<Double> position = new ArrayList<Double>();
-        for (GeneticMarkers marker : markers) {
-            if (entrymarkers.contains(marker.getName())) {
-                if (position.contains(
-                        marker.getMoby_position().getFloatValue())) {
-                    this.drawMarker(gr, marker, startpoint, top, mapstep,
-                            true, Color.red, true);
-                    position.add(marker.getMoby_position().
-                            getFloatValue() + 10);
+        final Set<String> entries = new HashSet<String>(entrymarkers);
+        final PositionSet position = new PositionSet(positions.length);
+        final int last = positions.length - 1;
+        for (int i = 0; i <= last; i++) {
+            final GeneticMarkers marker = markers.get(i);
+            final double mapposition = positions[i];
+            if (!this.isMarkerVisible(mapposition, startpoint, top,
+                    mapstep)) {
+                // Outside of the viewport, only its position is recorded
+                if (entries.contains(marker.getName())
+                        && position.contains(mapposition)) {
+                    position.add(mapposition + 10);
+                }
+                position.add(mapposition);
+                continue;
+            }
+            if (entries.contains(marker.getName())) {
+                if (position.contains(mapposition)) {
+                    this.drawMarker(gr, marker, (float) mapposition,
+                            startpoint, top, mapstep, true, Color.red, true);
+                    position.add(mapposition + 10);
                 } else {
-                    this.drawMarker(gr, marker, startpoint, top, mapstep,
-                            true, Color.red, false);
+                    this.drawMarker(gr, marker, (float) mapposition,
+                            startpoint, top, mapstep, true, Color.red, false);
                 }
 
-            } else if (markers.indexOf(marker) == 0
-                    || markers.indexOf(marker) == markers.size() - 1) {
-                this.drawMarker(gr, marker, startpoint, top, mapstep,
-                        true, Color.black, false);
-            } else if (!new Float(marker.getMoby_position().
-                    getFloatValue()).equals(startpoint)
-                    && !new Float(marker.getMoby_position().
-                    getFloatValue()).equals(endpoint)
-                    && !position.contains(marker.getMoby_position().
-                    getFloatValue())) {
-                this.drawMarker(gr, marker, startpoint, top, mapstep,
-                        true, Color.black, false);
+            } else if (i == 0 || i == last) {
+                this.drawMarker(gr, marker, (float) mapposition,
+                        startpoint, top, mapstep, true, Color.black, false);
+            } else if (Float.compare((float) mapposition, startpoint) != 0
+                    && Float.compare((float) mapposition, endpoint) != 0
+                    && !position.contains(mapposition)) {
+                this.drawMarker(gr, marker, (float) mapposition,
+                        startpoint, top, mapstep, true, Color.black, false);
             }
-            position.add(marker.getMoby_position().getFloatValue());
+            position.add(mapposition);
         }
 
         top += SEQUENCETOP;
         // Draw the sequences on the map
+        int index = 0;
         for (MarkerSequence scafold : sequences) {
+            if (viewport != null && viewport.y
+                    > top + verticalspace * (index + 2)) {
+                // The sequence and its links are above the viewport
+                index++;
+                continue;
+            }
             if (scafold.getMarkers().size() == 1) {
                 //RF: do not draw when size==1
 //       this.drawMSequence(gr, scafold, markers, sequences.indexOf(scafold),
 //                        width, top, mapstep, startpoint, Color.pink);
             } else {
-                this.drawMSequence(gr, scafold, markers, sequences.indexOf(
-                        scafold),
+                this.drawMSequence(gr, scafold, markers, index,
                         width, top, mapstep, startpoint, Color.blue);
             }
+            index++;
         }
 
         // Print the Legend:
@@ -229,7 +318,7 @@ public class Marker2seqGraphics {
      * This functions prints the marker name and the bar localizing them on the
      * map on the picture.
      * It also handles the entry of the string used in the map
-     * @param gr a Graphics2D object for drawing
+     * @param gr the AlignmentCanvas to draw on
      * @param marker a GeneticMarker
      * @param startpoint a starting point
      * @param top a top position
@@ -239,7 +328,7 @@ public class Marker2seqGraphics {
      * @param shift a boolean to shift the text
      * @throws MobyException when something happens
      */
-    public final void drawMarker(Graphics2D gr,
+    public final void drawMarker(final AlignmentCanvas gr,
             final GeneticMarkers marker,
             final float startpoint,
             final Integer top,
@@ -248,58 +337,82 @@ public class Marker2seqGraphics {
             final Color color,
             final boolean shift)
             throws MobyException {
+        this.drawMarker(gr, marker,
+                (float) marker.getMoby_position().getFloatValue(),
+                startpoint, top, step, showtext, color, shift);
+    }
+
+    /**
+     * Prints the marker at the given position of the map, see drawMarker.
+     * @param gr the AlignmentCanvas to draw on
+     * @param marker a GeneticMarker
+     * @param position the position of the marker on the map
+     * @param startpoint a starting point
+     * @param top a top position
+     * @param step a step interval
+     * @param showtext a boolean to set the display of the text
+     * @param color a Color
+     * @param shift a boolean to shift the text
+     */
+    private void drawMarker(final AlignmentCanvas gr,
+            final GeneticMarkers marker,
+            final float position,
+            final float startpoint,
+            final Integer top,
+            final Integer step,
+            final boolean showtext,
+            final Color color,
+            final boolean shift) {
 
         final Integer offset = -4;
+        final String label = Float.toString(position);
         gr.setColor(color);
-        final Float position =
-                new Float(marker.getMoby_position().getFloatValue());
         // Draw the marker position
         gr.fillRect((int) ((position - startpoint) * step + margin), //left
                 top - 2, //top
                 1, // width
                 MARKERHEIGTH); // heigth
 
-        final AffineTransform oldAt = gr.getTransform();
-        gr.rotate(-Math.PI / 2.0);
         // Print the marker name
         if (showtext) {
             // x and y are inverted since the orientation if changed
+            gr.startLink(MARKERLINK + marker.getName(), marker.getName());
             if (shift) {
-                gr.drawString(marker.getName(), // String
+                gr.drawVerticalString(marker.getName(), // String
                         5 - top, //x
                         (position - startpoint) * step + margin + 13);// y
-                gr.drawString(position.toString(), // String
+                gr.drawVerticalString(label, // String
                         - 8 - top - margin - MARKERHEIGTH, //x
                         (position - startpoint) * step + margin);// y
             } else {
-                gr.drawString(marker.getName(), // String
+                gr.drawVerticalString(marker.getName(), // String
                         5 - top, //x
                         (position - startpoint) * step + margin);// y
-                gr.drawString(position.toString(), // String
+                gr.drawVerticalString(label, // String
                         - 8 - top - margin - MARKERHEIGTH, //x
                         (position - startpoint) * step + margin);// y
             }
+            gr.endLink();
 
             // Add the string to the list to link the marker name
             String mapstring;
             Integer xtop = ((int) (position - startpoint) * step
-                    + gr.getFontMetrics().getHeight());
+                    + gr.getFontHeight());
             if (shift) {
                 xtop += 13;
             }
             xtop += offset;
-            Integer ytop = top - gr.getFontMetrics().stringWidth(
-                    marker.getName()) - 4;
+            final int namewidth = gr.stringWidth(marker.getName());
+            Integer ytop = top - namewidth - 4;
             Integer xbottom = xtop + 10;
-            Integer ybottom = ytop + gr.getFontMetrics().stringWidth(
-                    marker.getName());
+            Integer ybottom = ytop + namewidth;
             mapstring = String.format(markermap, marker.getName(),
                     xtop, ytop, xbottom, ybottom, marker.getName());
             map.add(mapstring);
             // Print the marker position
         } else {
             // x and y are inverted since the orientation if changed
-            gr.drawString(position.toString(), // String
+            gr.drawVerticalString(label, // String
                     5 - top, //x
                     (position - startpoint) * step + margin);// y
 
@@ -318,7 +431,6 @@ public class Marker2seqGraphics {
 //                                marker.getName());
 //            map.add(mapstring);
         }
-        gr.setTransform(oldAt);
 
     }
 
@@ -326,7 +438,7 @@ public class Marker2seqGraphics {
      * This function draw the sequence bar, add their name, add the gradient
      * at their end representing the uncertainty of the end of the sequence.
      *
-     * @param gr a Graphics2D object
+     * @param gr the AlignmentCanvas to draw on
      * @param sequence a MarkerSequence object
      * @param markers a list of GeneticMarker
      * @param index an integer
@@ -337,7 +449,7 @@ public class Marker2seqGraphics {
      * @param color the Color
      * @throws MobyException when something goes bad
      */
-    public final void drawMSequence(final Graphics2D gr,
+    public final void drawMSequence(final AlignmentCanvas gr,
             final MarkerSequence sequence,
             final List<GeneticMarkers> markers,
             final Integer index,
@@ -348,6 +460,8 @@ public class Marker2seqGraphics {
             final Color color) throws MobyException {
 
         gr.setColor(color);
+        final MapLayout maplayout = this.getLayout(markers);
+        final float firstposition = (float) maplayout.positions[0];
 
         // Calculate the number of cM/nucleotide
         final float mapdis = sequence.getEndmarker().getMap_position()
@@ -358,80 +472,63 @@ public class Marker2seqGraphics {
         // Get the start and stop position of the sequence
         // (based on the markers)
         final Integer start = (int) ((sequence.getStartmarker().
-                getMap_position()
-                - new Float(markers.get(0).getMoby_position().getFloatValue()))
-                * step);
+                getMap_position() - firstposition) * step);
         final Integer end = (int) ((sequence.getEndmarker().getMap_position()
                 - sequence.getStartmarker().getMap_position()) * step);
 
         // Draw left end of the sequence
-        if (this.getPreviousMarker(markers,
-                sequence.getStartmarker()) != null) {
-            // get the previous marker
-            final GeneticMarker previousmarker = this.getPreviousMarker(markers,
-                    sequence.getStartmarker());
+        final int previousmarker = maplayout.getPrevious(
+                sequence.getStartmarker());
+        if (previousmarker >= 0) {
             // calcul the interval between the first marker and the previous
             // one and divide it by 2
             final Integer interval = (int) Math.ceil(
                     (sequence.getStartmarker().getMap_position()
-                    - new Float(previousmarker.getMoby_position().
-                    getFloatValue())) * step / 2);
+                    - (float) maplayout.positions[previousmarker]) * step / 2);
             // calculate the starting x position
             final Integer startx = start + margin;
             // calculate the y position
             final Integer y = top + verticalspace * (index + 1);
             // Generate the gradient. Color depending onscafold vs bac
             // and on one or more markers in the sequence
-            GradientPaint gradient;
+            Color gradientcolor = color;
             if (sequence.getMarkers() != null
                     && sequence.getMarkers().size() == 1) {
-                gradient = new GradientPaint(startx - interval, y, Color.white,
-                        startx, y, Color.pink, false);
-            } else {
-                gradient = new GradientPaint(startx - interval, y, Color.white,
-                        startx, y, color, false);
+                gradientcolor = Color.pink;
             }
-            // set the gradient
-            gr.setPaint(gradient);
             // paint the rectangle where the gradient should appear
-            gr.fillRect(startx - interval, //left
+            gr.fillGradientRect(startx - interval, //left
                     y, //top
                     interval, // width
-                    sequenceheigth); // heigth
+                    sequenceheigth, // heigth
+                    startx - interval, Color.white, startx, gradientcolor);
         }
 
         // Draw right end of the sequence
-        if (this.getNextMarker(markers, sequence.getEndmarker()) != null) {
-            // get the next marker
-            final GeneticMarker nextmarker =
-                    this.getNextMarker(markers, sequence.getEndmarker());
+        final int nextmarker = maplayout.getNext(sequence.getEndmarker());
+        if (nextmarker >= 0) {
             // calcul the interval between the last marker and
             // the next one and divide it by 2
-            final Integer interval = (int) Math.ceil((new Float(
-                    nextmarker.getMoby_position().getFloatValue())
+            final Integer interval = (int) Math.ceil(((float)
+                    maplayout.positions[nextmarker]
                     - sequence.getEndmarker().getMap_position()) * step / 2);
             // calculate the starting x position
             final Integer startx = start + margin + end;
             // calculate the y position
             final Integer y = top + verticalspace * (index + 1);
-            GradientPaint gradient;
             // Generate the gradient. Color depending onscafold vs bac and
             // on one or more markers in the sequence
+            Color gradientcolor = color;
             if (sequence.getMarkers() != null
                     && sequence.getMarkers().size() == 1) {
-                gradient = new GradientPaint(startx, y, Color.pink,
-                        startx + interval, y, Color.white, false);
-            } else {
-                gradient = new GradientPaint(startx, y, color,
-                        startx + interval, y, Color.white, false);
+                gradientcolor = Color.pink;
             }
-            // set the gradient
-            gr.setPaint(gradient);
             // paint the rectangle where the gradient should appear
-            gr.fillRect(startx, //left
+            gr.fillGradientRect(startx, //left
                     y, //top
                     interval, // width
-                    sequenceheigth); // heigth
+                    sequenceheigth, // heigth
+                    startx, gradientcolor, startx + interval, Color.white);
         }
 
         gr.setColor(color);
@@ -444,36 +541,34 @@ public class Marker2seqGraphics {
                 sequenceheigth); // heigth
 
         // Draw sequence name
+        gr.startLink(SEQUENCELINK + sequence.getName(), sequence.getName());
         gr.drawString(sequence.getName(),//String
                 width + spacebartext,//x
                 top + verticalspace * (index + 1) + 5);// y
+        gr.endLink();
 
 
         // Link the markers on the sequence to the map
         gr.setColor(Color.black);
 
+        final Markerws startmarker = sequence.getStartmarker();
+        final float startposition = startmarker.getMapPosition();
         for (Markerws marker : sequence.getMarkers()) {
-            final Float position =
-                    new Float(markers.get(0).getMoby_position().
-                    getFloatValue());
-            if (marker.getSeq_position_start() != null) {
-                final Integer xmap = (int) ((marker.getMap_position()
+            if (marker.getStartPosition() != Markerws.NO_POSITION) {
+                final Integer xmap = (int) ((marker.getMapPosition()
                         - startpoint)
                         * step + margin);
                 final Integer ymap = top - verticalspace;
                 Integer xseq = margin;
-                if (marker.getName().equals(sequence.getStartmarker().
-                        getName())) {
-                    xseq += (int) ((marker.getMap_position() - position)
+                if (marker.getName().equals(startmarker.getName())) {
+                    xseq += (int) ((marker.getMapPosition() - firstposition)
                             * step);
                 } else {
                     final float distancemarker = Math.abs(
-                            marker.getSeq_position_end()
-                            - sequence.getStartmarker().
-                            getSeq_position_start());
+                            marker.getEndPosition()
+                            - startmarker.getStartPosition());
                     xseq += (int) (((distancemarker * range)
-                            + sequence.getStartmarker().getMap_position()
-                            - position) * step);
+                            + startposition - firstposition) * step);
                 }
                 final Integer yseq = top + verticalspace * (index + 1);
                 gr.drawLine(xmap, ymap, xseq, yseq);
@@ -485,10 +580,10 @@ public class Marker2seqGraphics {
         String mapstring;
         final Integer xtop = width + spacebartext;
         final Integer ytop = top + verticalspace * (index + 1) + 5
-                - gr.getFontMetrics().getHeight();
-        final Integer xbottom = xtop + gr.getFontMetrics().stringWidth(
+                - gr.getFontHeight();
+        final Integer xbottom = xtop + gr.stringWidth(
                 sequence.getName());
-        final Integer ybottom = ytop + gr.getFontMetrics().getHeight();
+        final Integer ybottom = ytop + gr.getFontHeight();
         mapstring = String.format(sequencemap, sequence.getName(),
                 xtop, ytop, xbottom, ybottom, sequence.getName());
         map.add(mapstring);
@@ -497,12 +592,12 @@ public class Marker2seqGraphics {
 
     /**
      * Draw the legend at the bottom of the picture.
-     * @param gr a Graphics2D object for drawing
+     * @param gr the AlignmentCanvas to draw on
      * @param top a top position
      * @param legend a HashMap for the legend
      */
     public final void drawLegend(
-            final Graphics2D gr,
+            final AlignmentCanvas gr,
             final Integer top,
             final HashMap<String, Color> legend) {
         final Set<String> keys = legend.keySet();
@@ -688,62 +783,58 @@ public class Marker2seqGraphics {
     }
 
     /**
-     * For a given marker returns the marker at the next position on the map.
-     * @param markers a list of GeneticMarkers
-     * @param from a Markerws object
-     * @return the GeneticMarker which follows the given markers (from) in the
-     * given list (markers)
+     * Set the width of the picture, the genetic map is stretched to fill it.
+     * @param width the width in pixels, PICTUREWIDTH by default
      */
-    private GeneticMarker getNextMarker(
-            final List<GeneticMarkers> markers,
-            final Markerws from)
-            throws MobyException {
-        boolean flag = false;
-        for (GeneticMarker marker : markers) {
-            if (flag && Math.ceil(marker.getMoby_position().getFloatValue())
-                    != Math.ceil(from.getMap_position())) {
-                return marker;
-            }
-            if (marker.getName().equals(from.getName())) {
-                flag = true;
-            }
+    public final void setPictureWidth(final Integer width) {
+        this.picturewidth = width;
+    }
+
+    /**
+     * Restrict the drawing to a part of the picture: the markers and
+     * sequences which can not appear in it are skipped. The canvas should be
+     * clipped to the same rectangle.
+     * @param rectangle the part of the picture to draw, null to draw all of
+     * it (default)
+     */
+    public final void setViewport(final Rectangle rectangle) {
+        this.viewport = rectangle;
+    }
+
+    /**
+     * Return whether the marker at the given position of the map can appear
+     * in the viewport (its name and position are written around its bar).
+     * @param position the position of the marker on the map
+     * @param startpoint the first position of the map
+     * @param top the top position of the map
+     * @param step the number of pixels per unit of the map
+     * @return true if the marker should be drawn
+     */
+    private boolean isMarkerVisible(final double position,
+            final float startpoint, final Integer top, final Integer step) {
+        if (viewport == null) {
+            return true;
         }
-        return null;
+        final int slack = 2 * legendheigth + MARKERHEIGTH;
+        final double x = (position - startpoint) * step + margin;
+        return viewport.y <= top + SEQUENCETOP
+                && x >= viewport.x - slack
+                && x <= viewport.x + viewport.width + slack;
     }
 
     /**
-     * For a given marker returns the marker at the previous position on the
-     * map.
-     * @param markers a list og GeneticMarkers
-     * @param from a Markerws
-     * @return a GeneticMarker which is just before the given Markerws (from) in
-     * the given list (markers)
+     * Return the layout of the given genetic map, the one computed by
+     * drawImage when it is the map being drawn.
+     * @param markers a list of GeneticMarkers
+     * @return the MapLayout of the markers
+     * @throws MobyException when the position of a marker can not be read
      */
-    private GeneticMarker getPreviousMarker(
-            final List<GeneticMarkers> markers,
-            final Markerws from)
+    private MapLayout getLayout(final List<GeneticMarkers> markers)
             throws MobyException {
-        boolean flag = false;
-        int cnt = 0;
-        GeneticMarker previous = null;
-        for (GeneticMarker marker : markers) {
-            if (flag) {
-                return previous;
-            }
-            if (marker.getName().equals(from.getName())) {
-                flag = true;
-            }
-            if (Math.ceil(marker.getMoby_position().getFloatValue())
-                    != Math.ceil(from.getMap_position())) {
-                previous = marker;
-            }
-            cnt = cnt + 1;
-        }
-        if (flag) {
-            return previous;
-        } else {
-            return null;
+        if (layout == null || layout.markers != markers) {
+            layout = new MapLayout(markers);
         }
+        return layout;
     }
 
     /**
@@ -772,4 +863,79 @@ public class Marker2seqGraphics {
         }
         return end - start;
     }
+
+    /**
+     * Positions of the markers of a genetic map read once, and the index of
+     * each marker name, so that the neighbours of a marker are found without
+     * going through the whole map.
+     */
+    private static final class MapLayout {
+
+        /** The genetic map. */
+        private final List<GeneticMarkers> markers;
+        /** Position of each marker on the map. */
+        private final double[] positions;
+        /** Index of the first marker having a given name. */
+        private final Map<String, Integer> index;
+
+        /**
+         * Constructor.
+         * @param map the genetic map
+         * @throws MobyException when the position of a marker can not be read
+         */
+        private MapLayout(final List<GeneticMarkers> map)
+                throws MobyException {
+            this.markers = map;
+            this.positions = new double[map.size()];
+            this.index = new HashMap<String, Integer>(map.size() * 2);
+            int cnt = 0;
+            for (GeneticMarker marker : map) {
+                positions[cnt] = marker.getMoby_position().getFloatValue();
+                if (!index.containsKey(marker.getName())) {
+                    index.put(marker.getName(), cnt);
+                }
+                cnt++;
+            }
+        }
+
+        /**
+         * Return the index of the marker at the next position on the map.
+         * @param from a Markerws object
+         * @return the index of the first marker following the given one
+         * whose position differs, -1 if there is none
+         */
+        private int getNext(final Markerws from) {
+            final Integer start = index.get(from.getName());
+            if (start == null) {
+                return -1;
+            }
+            final double ceil = Math.ceil(from.getMapPosition());
+            for (int i = start + 1; i < positions.length; i++) {
+                if (Math.ceil(positions[i]) != ceil) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Return the index of the marker at the previous position on the map.
+         * @param from a Markerws object
+         * @return the index of the last marker up to the given one whose
+         * position differs, -1 if there is none
+         */
+        private int getPrevious(final Markerws from) {
+            final Integer end = index.get(from.getName());
+            if (end == null) {
+                return -1;
+            }
+            final double ceil = Math.ceil(from.getMapPosition());
+            for (int i = end; i >= 0; i--) {
+                if (Math.ceil(positions[i]) != ceil) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.util.Arrays;
+
+/**
+ * Set of positions (double) on a map, without boxing them.
+ * Two positions are equal when Double.equals would say so.
+ */
+final class PositionSet {
+
+    /** Value of the empty slots. */
+    private static final long EMPTY = Double.doubleToLongBits(Double.NaN) ^ 1;
+    /** The positions (as bits), open addressing with linear probing. */
+    private long[] slots;
+    /** Number of positions in the set. */
+    private int size = 0;
+
+    /**
+     * Constructor.
+     * @param expected number of positions expected
+     */
+    PositionSet(final int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        this.slots = new long[capacity];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * Return whether the set contains the given position.
+     * @param position the position
+     * @return true if the position was added before
+     */
+    boolean contains(final double position) {
+        final long bits = Double.doubleToLongBits(position);
+        final int mask = slots.length - 1;
+        int i = hash(bits) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == bits) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Add the given position to the set.
+     * @param position the position
+     */
+    void add(final double position) {
+        final long bits = Double.doubleToLongBits(position);
+        int mask = slots.length - 1;
+        int i = hash(bits) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == bits) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = bits;
+        size++;
+        if (size * 2 > slots.length) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Return the number of positions in the set.
+     * @return the size of the set
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Double the capacity of the set.
+     */
+    private void grow() {
+        final long[] old = slots;
+        slots = new long[old.length * 2];
+        Arrays.fill(slots, EMPTY);
+        final int mask = slots.length - 1;
+        for (long bits : old) {
+            if (bits != EMPTY) {
+                int i = hash(bits) & mask;
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = bits;
+            }
+        }
+    }
+
+    /**
+     * Spread the bits of a position.
+     * @param bits the bits of the position
+     * @return the hash of the position
+     */
+    private static int hash(final long bits) {
+        final int h = (int) (bits ^ (bits >>> 32));
+        return h ^ (h >>> 16);
+    }
+}
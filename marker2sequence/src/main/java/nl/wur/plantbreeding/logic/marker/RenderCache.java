@@ -0,0 +1,531 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import nl.wur.plantbreeding.logic.cache.CacheKey;
+import nl.wur.plantbreeding.logic.cache.ResultCache;
+import nl.wur.plantbreeding.logic.cache.SerializableCodec;
+import nl.wur.plantbreeding.logic.cache.SharedCodec;
+import org.biomoby.shared.MobyException;
+
+/**
+ * Content-addressed cache of the alignment pictures.
+ * The key is a hash of everything the picture is drawn from (genetic map,
+ * sequences and their markers, highlighted markers, legend) so that two
+ * identical queries share the same picture: it is drawn and encoded once,
+ * then served from memory (or disk) and published under the same file name.
+ * The published files are kept in the "png" sub-directory of the cache, at
+ * most as many as the pictures kept in memory: when a file is evicted it is
+ * deleted, and written again from the cache if it is requested later.
+ */
+public final class RenderCache {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            RenderCache.class.getName());
+    /** Default time-to-live of the pictures: 24 hours. */
+    public static final long DEFAULT_TTL = 24L * 60 * 60 * 1000;
+    /** Default number of pictures kept in memory. */
+    public static final int DEFAULT_MAX_ENTRIES = 50;
+    /** Default number of tiles kept in memory. */
+    public static final int DEFAULT_MAX_TILES = 2000;
+    /** Default maximum number of bytes used on disk: 100MB. */
+    public static final long DEFAULT_MAX_DISK_BYTES = 100L * 1024 * 1024;
+    /** Default directory in which the pictures are cached. */
+    public static final File DEFAULT_DIRECTORY = new File(
+            System.getProperty("java.io.tmpdir"), "m2s-render");
+    /** Prefix of the name of the published pictures. */
+    public static final String PREFIX = "alignment-";
+    /** Suffix of the name of the published pictures. */
+    private static final String SUFFIX = ".png";
+    /** Name of the sub-directory of the published pictures. */
+    private static final String PUBLISHED_DIRECTORY = "png";
+    /** Version of the drawing, change it when Marker2seqGraphics changes. */
+    private static final String VERSION = "2";
+    /** Whether the png pictures are drawn (false: only served as SVG). */
+    private static volatile boolean rasterize = true;
+    /** The pictures, they are never modified once stored. */
+    private static final ResultCache<RenderedAlignment> CACHE =
+            new ResultCache<RenderedAlignment>("render",
+            new SharedCodec<RenderedAlignment>(
+            new SerializableCodec<RenderedAlignment>()),
+            DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_DIRECTORY,
+            DEFAULT_MAX_DISK_BYTES);
+    /** The png bytes of the tiles, per picture key, zoom, column and row. */
+    private static final ResultCache<byte[]> TILES =
+            new ResultCache<byte[]>("tiles",
+            new SharedCodec<byte[]>(new SerializableCodec<byte[]>()),
+            DEFAULT_MAX_TILES, DEFAULT_TTL,
+            new File(DEFAULT_DIRECTORY, "tiles"), DEFAULT_MAX_DISK_BYTES);
+    /** Directory in which the pictures are published. */
+    private static volatile File publishDirectory = new File(
+            DEFAULT_DIRECTORY, PUBLISHED_DIRECTORY);
+    /** Maximum number of pictures published. */
+    private static volatile int maxPublished = DEFAULT_MAX_ENTRIES;
+    /** File of the published pictures, per picture key, in access order. */
+    private static final Map<String, File> PUBLISHED =
+            new LinkedHashMap<String, File>(64, 0.75f, true) {
+
+                private static final long serialVersionUID = 20121018L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<String, File> eldest) {
+                    if (size() > maxPublished) {
+                        deleteFile(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    /** Number of TileRenderer kept, the pictures being browsed. */
+    private static final int MAX_RENDERERS = 8;
+    /** TileRenderer of the last pictures browsed, per picture key. */
+    private static final Map<String, TileRenderer> RENDERERS =
+            new LinkedHashMap<String, TileRenderer>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 20121008L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<String, TileRenderer> eldest) {
+                    return size() > MAX_RENDERERS;
+                }
+            };
+
+    /**
+     * Default private constructor.
+     */
+    private RenderCache() { }
+
+    /**
+     * Return the key of the picture drawn from the given data.
+     * @param markerlist the genetic map of the interval
+     * @param markersequence the sequences (scaffolds) with their markers
+     * @param entrymarkers the markers given as input (highlighted)
+     * @return the hexadecimal hash identifying the picture
+     * @throws MobyException when the position of a marker can not be read
+     */
+    public static String key(final List<GeneticMarkers> markerlist,
+            final List<MarkerSequence> markersequence,
+            final List<String> entrymarkers) throws MobyException {
+        final StringBuilder sb = new StringBuilder(VERSION);
+        sb.append("|width=").append(Marker2seqGraphics.PICTUREWIDTH);
+        sb.append("|png=").append(rasterize);
+        for (String legend : AlignmentRenderer.getLegend().keySet()) {
+            sb.append("|legend=").append(legend).append('=')
+                    .append(AlignmentRenderer.getLegend().get(legend)
+                    .getRGB());
+        }
+        for (GeneticMarkers marker : markerlist) {
+            sb.append("|gm=").append(marker.getName()).append(',')
+                    .append(marker.getId()).append(',')
+                    .append(marker.get_position()).append(',');
+            if (marker.getMoby_Chromosome() != null) {
+                sb.append(marker.getMoby_Chromosome().getIntValue());
+            }
+        }
+        for (MarkerSequence sequence : markersequence) {
+            sb.append("|seq=").append(sequence.getName()).append(',')
+                    .append(sequence.getType());
+            if (sequence.getMarkers() != null) {
+                for (Markerws marker : sequence.getMarkers()) {
+                    sb.append("|m=").append(marker.getName()).append(',')
+                            .append(marker.getMapPosition()).append(',')
+                            .append(marker.getStartPosition()).append(',')
+                            .append(marker.getEndPosition());
+                }
+            }
+        }
+        if (entrymarkers != null) {
+            for (String marker : entrymarkers) {
+                sb.append("|in=").append(marker);
+            }
+        }
+        return CacheKey.hash(sb.toString());
+    }
+
+    /**
+     * Return the picture drawn from the given data, from the cache if it was
+     * already drawn.
+     * @param markerlist the genetic map of the interval
+     * @param markersequence the sequences (scaffolds) with their markers
+     * @param entrymarkers the markers given as input (highlighted)
+     * @return the key and the picture, null if there is nothing to draw
+     * @throws MobyException when the position of a marker can not be read
+     * @throws IOException when the picture can not be encoded
+     */
+    public static Entry getOrRender(final List<GeneticMarkers> markerlist,
+            final List<MarkerSequence> markersequence,
+            final List<String> entrymarkers)
+            throws MobyException, IOException {
+        if (markersequence == null || markersequence.isEmpty()
+                || markerlist == null || markerlist.isEmpty()) {
+            return null;
+        }
+        final String key = key(markerlist, markersequence, entrymarkers);
+        RenderedAlignment rendered = CACHE.get(key);
+        if (rendered == null) {
+            final AlignmentData data = AlignmentData.of(markerlist,
+                    markersequence, entrymarkers);
+            if (rasterize) {
+                final AlignmentImage image = new AlignmentRenderer().render(
+                        markerlist, markersequence, entrymarkers);
+                final ByteArrayOutputStream png = new ByteArrayOutputStream(
+                        64 * 1024);
+                ImageIO.write(image.getImage(), "png", png);
+                rendered = new RenderedAlignment(png.toByteArray(),
+                        image.getMap(), data);
+            } else {
+                rendered = new RenderedAlignment(null,
+                        new ArrayList<String>(0), data);
+            }
+            CACHE.put(key, rendered);
+        } else {
+            LOG.log(Level.FINE, "Picture {0} found in the cache", key);
+        }
+        return new Entry(key, rendered);
+    }
+
+    /**
+     * Return the data the picture with the given key is drawn from.
+     * @param key the key of the picture
+     * @return the AlignmentData, null if the picture is not (or no longer)
+     * in the cache
+     */
+    public static AlignmentData getData(final String key) {
+        final RenderedAlignment rendered = CACHE.get(key);
+        if (rendered == null) {
+            return null;
+        }
+        return rendered.getData();
+    }
+
+    /**
+     * Write the picture drawn from the given data as SVG.
+     * @param data the data the picture is drawn from (see getData)
+     * @param out where the SVG is written (flushed, not closed)
+     * @throws MobyException when the position of a marker can not be read
+     * @throws IOException when the picture can not be written
+     */
+    public static void writeSvg(final AlignmentData data, final Writer out)
+            throws MobyException, IOException {
+        new AlignmentRenderer().renderSvg(data.getGeneticMap(),
+                data.getSequences(), data.getEntryMarkers(), out);
+    }
+
+    /**
+     * Return the TileRenderer of the picture with the given key.
+     * @param key the key of the picture
+     * @return the TileRenderer, null if the picture is not (or no longer) in
+     * the cache
+     */
+    public static TileRenderer getTileRenderer(final String key) {
+        synchronized (RENDERERS) {
+            final TileRenderer renderer = RENDERERS.get(key);
+            if (renderer != null) {
+                return renderer;
+            }
+        }
+        final AlignmentData data = getData(key);
+        if (data == null) {
+            return null;
+        }
+        final TileRenderer renderer = new TileRenderer(data);
+        synchronized (RENDERERS) {
+            RENDERERS.put(key, renderer);
+        }
+        return renderer;
+    }
+
+    /**
+     * Return a tile of the picture with the given key, encoded as png, from
+     * the cache if it was already drawn.
+     * @param key the key of the picture
+     * @param zoom the zoom level, from 0 to TileRenderer.MAX_ZOOM
+     * @param column the column of the tile, from the left
+     * @param row the row of the tile, from the top
+     * @return the png bytes of the tile (they must not be modified), null if
+     * the picture is not in the cache or the tile is not part of it
+     * @throws MobyException when the position of a marker can not be read
+     * @throws IOException when the tile can not be encoded
+     */
+    public static byte[] getTile(final String key, final int zoom,
+            final int column, final int row)
+            throws MobyException, IOException {
+        final String tilekey = key + "-" + zoom + "-" + column + "-" + row;
+        byte[] png = TILES.get(tilekey);
+        if (png == null) {
+            final TileRenderer renderer = getTileRenderer(key);
+            if (renderer == null || !renderer.isTile(zoom, column, row)) {
+                return null;
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    8 * 1024);
+            ImageIO.write(renderer.render(zoom, column, row), "png", out);
+            png = out.toByteArray();
+            TILES.put(tilekey, png);
+        }
+        return png;
+    }
+
+    /**
+     * Write the picture in the directory of the published pictures unless
+     * it is already there.
+     * @param entry the picture to publish
+     * @return the name of the file to give to the DisplayChart servlet (see
+     * getFile), null if the png was not drawn
+     * @throws IOException when the file can not be written
+     */
+    public static String publish(final Entry entry) throws IOException {
+        if (entry.getPicture().getPng() == null) {
+            return null;
+        }
+        final String filename = PREFIX + entry.getKey() + SUFFIX;
+        final File dir = publishDirectory;
+        final File file = new File(dir, filename);
+        synchronized (PUBLISHED) {
+            if (file.equals(PUBLISHED.get(entry.getKey())) && file.exists()) {
+                return filename;
+            }
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        final File tmp = File.createTempFile(PREFIX, ".tmp", dir);
+        try {
+            final OutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(entry.getPicture().getPng());
+            }
+            finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file) && !file.exists()) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+        finally {
+            if (tmp.exists() && !tmp.delete()) {
+                LOG.log(Level.WARNING, "Could not delete {0}", tmp);
+            }
+        }
+        synchronized (PUBLISHED) {
+            PUBLISHED.put(entry.getKey(), file);
+        }
+        LOG.log(Level.INFO, "Image file is {0}", file);
+        return filename;
+    }
+
+    /**
+     * Return the file of a picture published by this cache, publishing it
+     * again if its file was evicted while the picture is still cached.
+     * @param filename the name of the file, as returned by publish
+     * @return the file, null if the name is not the name of a picture of
+     * this cache
+     */
+    public static File getFile(final String filename) {
+        if (filename == null || !filename.startsWith(PREFIX)
+                || !filename.endsWith(SUFFIX)) {
+            return null;
+        }
+        final String key = filename.substring(PREFIX.length(),
+                filename.length() - SUFFIX.length());
+        if (!key.matches("[0-9a-f]{40}")) {
+            return null;
+        }
+        final File file = new File(publishDirectory, filename);
+        final boolean published;
+        synchronized (PUBLISHED) {
+            published = file.equals(PUBLISHED.get(key));
+        }
+        if (!published || !file.exists()) {
+            final RenderedAlignment rendered = CACHE.get(key);
+            if (rendered != null) {
+                try {
+                    publish(new Entry(key, rendered));
+                }
+                catch (IOException ex) {
+                    LOG.log(Level.WARNING, "Could not publish " + filename,
+                            ex);
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Delete the file of a published picture.
+     * @param file the file to delete
+     */
+    private static void deleteFile(final File file) {
+        if (file.exists() && !file.delete()) {
+            LOG.log(Level.WARNING, "Could not delete {0}", file);
+        }
+    }
+
+    /**
+     * Delete the published pictures, the files left in the directory by a
+     * previous run included.
+     * @param dir the directory of the published pictures
+     */
+    private static void clearPublished(final File dir) {
+        synchronized (PUBLISHED) {
+            for (File file : PUBLISHED.values()) {
+                deleteFile(file);
+            }
+            PUBLISHED.clear();
+        }
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(PREFIX)) {
+                    deleteFile(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the cache of the pictures.
+     * @return the ResultCache storing the pictures
+     */
+    public static ResultCache<RenderedAlignment> getCache() {
+        return CACHE;
+    }
+
+    /**
+     * Return the cache of the tiles.
+     * @return the ResultCache storing the png bytes of the tiles
+     */
+    public static ResultCache<byte[]> getTileCache() {
+        return TILES;
+    }
+
+    /**
+     * Configure the cache of the pictures, the pictures already published
+     * are removed.
+     * @param ttl time-to-live of the pictures in milliseconds
+     * @param maxentries maximum number of pictures kept in memory and
+     * published
+     * @param maxtiles maximum number of tiles kept in memory
+     * @param directory directory in which the pictures are cached, null to
+     * only keep them in memory (the published pictures are then written in
+     * DEFAULT_DIRECTORY)
+     * @param maxdiskbytes maximum number of bytes used on disk
+     */
+    public static void configure(final long ttl, final int maxentries,
+            final int maxtiles, final File directory,
+            final long maxdiskbytes) {
+        LOG.log(Level.INFO, "Render cache: ttl={0}ms, entries={1}, "
+                + "tiles={2}, directory={3}, disk={4} bytes",
+                new Object[]{ttl, maxentries, maxtiles, directory,
+                    maxdiskbytes});
+        final File published = new File(directory == null
+                ? DEFAULT_DIRECTORY : directory, PUBLISHED_DIRECTORY);
+        clearPublished(published);
+        publishDirectory = published;
+        maxPublished = maxentries;
+        CACHE.setTtl(ttl);
+        CACHE.setMaxEntries(maxentries);
+        CACHE.setDirectory(directory);
+        CACHE.setMaxDiskBytes(maxdiskbytes);
+        TILES.setTtl(ttl);
+        TILES.setMaxEntries(maxtiles);
+        if (directory == null) {
+            TILES.setDirectory(null);
+        } else {
+            TILES.setDirectory(new File(directory, TILES.getName()));
+        }
+        TILES.setMaxDiskBytes(maxdiskbytes);
+    }
+
+    /**
+     * Set whether the png pictures are drawn. When they are not, the
+     * pictures are only served as SVG (see writeSvg) and no html map is
+     * built.
+     * @param png true to draw the png pictures
+     */
+    public static void setRasterize(final boolean png) {
+        LOG.log(Level.INFO, "Render cache: png pictures {0}",
+                png ? "drawn" : "not drawn");
+        rasterize = png;
+    }
+
+    /**
+     * Return whether the png pictures are drawn.
+     * @return true if they are drawn
+     */
+    public static boolean isRasterize() {
+        return rasterize;
+    }
+
+    /**
+     * A picture and its key.
+     */
+    public static final class Entry {
+
+        /** The key of the picture. */
+        private final String key;
+        /** The picture. */
+        private final RenderedAlignment picture;
+
+        /**
+         * Constructor.
+         * @param hash the key of the picture
+         * @param rendered the picture
+         */
+        private Entry(final String hash, final RenderedAlignment rendered) {
+            this.key = hash;
+            this.picture = rendered;
+        }
+
+        /**
+         * Return the key of the picture.
+         * @return the hexadecimal hash
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Return the picture.
+         * @return the RenderedAlignment
+         */
+        public RenderedAlignment getPicture() {
+            return picture;
+        }
+    }
+}
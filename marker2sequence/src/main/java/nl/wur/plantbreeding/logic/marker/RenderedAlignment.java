@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picture of the alignment encoded as png, with the areas of its html map
+ * and the data it is drawn from (to draw it again as SVG), as kept in the
+ * RenderCache. The png is not drawn when the pictures are served as SVG.
+ */
+public final class RenderedAlignment implements Serializable {
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121007L;
+    /** The png bytes of the picture. */
+    private final byte[] png;
+    /** The areas of the html map. */
+    private final ArrayList<String> map;
+    /** The data the picture is drawn from. */
+    private final AlignmentData data;
+
+    /**
+     * Constructor.
+     * @param bytes the png bytes of the picture (not copied), null if the
+     * png was not drawn
+     * @param areas the areas of the html map (copied)
+     * @param alignment the data the picture is drawn from
+     */
+    public RenderedAlignment(final byte[] bytes, final List<String> areas,
+            final AlignmentData alignment) {
+        this.png = bytes;
+        this.map = new ArrayList<String>(areas);
+        this.data = alignment;
+    }
+
+    /**
+     * Return the png bytes of the picture, they must not be modified.
+     * @return the png bytes, null if the png was not drawn
+     */
+    public byte[] getPng() {
+        return png;
+    }
+
+    /**
+     * Return the areas of the html map.
+     * @return an unmodifiable list of area strings
+     */
+    public List<String> getMap() {
+        return Collections.unmodifiableList(map);
+    }
+
+    /**
+     * Return the data the picture is drawn from.
+     * @return the AlignmentData
+     */
+    public AlignmentData getData() {
+        return data;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * AlignmentCanvas writing the picture as SVG, element by element, to a
+ * Writer: no raster is ever held in memory and the picture scales without
+ * loss. The links are written in the picture itself (svg:a elements).
+ * The strings are measured with the same font metrics as the png pictures
+ * so that both have the same layout.
+ */
+public class SvgCanvas implements AlignmentCanvas {
+
+    /** Content type of the output. */
+    public static final String CONTENT_TYPE = "image/svg+xml";
+    /** Graphics only used to measure the strings. */
+    private static final Graphics2D MEASURE = new BufferedImage(1, 1,
+            BufferedImage.TYPE_INT_RGB).createGraphics();
+    /** Where the SVG is written. */
+    private final Writer out;
+    /** Metrics of the current font. */
+    private FontMetrics metrics;
+    /** Current color, as a SVG color. */
+    private String color = "#000000";
+    /** Current font, as SVG attributes. */
+    private String font;
+    /** Number of gradients defined so far. */
+    private int gradients = 0;
+    /** First error met while writing, thrown by finish. */
+    private IOException error = null;
+
+    /**
+     * Constructor, writes the header of the picture.
+     * @param writer where the SVG is written
+     * @param width width of the picture
+     * @param height height of the picture
+     */
+    public SvgCanvas(final Writer writer, final int width, final int height) {
+        this.out = writer;
+        this.setFont(MEASURE.getFont());
+        this.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\" "
+                + "xmlns:xlink=\"http://www.w3.org/1999/xlink\" "
+                + "version=\"1.1\" width=\"" + width + "\" height=\""
+                + height + "\" viewBox=\"0 0 " + width + " " + height
+                + "\">\n<rect x=\"0\" y=\"0\" width=\"" + width
+                + "\" height=\"" + height + "\" fill=\"#ffffff\"/>\n");
+    }
+
+    /**
+     * Write the end of the picture and flush the writer (it is not closed).
+     * @throws IOException if something could not be written
+     */
+    public final void finish() throws IOException {
+        this.write("</svg>\n");
+        if (error == null) {
+            try {
+                out.flush();
+            }
+            catch (IOException ex) {
+                error = ex;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public final void setFont(final Font newfont) {
+        synchronized (MEASURE) {
+            this.metrics = MEASURE.getFontMetrics(newfont);
+        }
+        String family = newfont.getFamily();
+        if (Font.SERIF.equalsIgnoreCase(family)) {
+            family = "serif";
+        } else if (Font.SANS_SERIF.equalsIgnoreCase(family)
+                || Font.DIALOG.equalsIgnoreCase(family)) {
+            family = "sans-serif";
+        }
+        this.font = " font-family=\"" + escape(family) + "\" font-size=\""
+                + newfont.getSize() + "\"";
+    }
+
+    @Override
+    public final int stringWidth(final String text) {
+        return metrics.stringWidth(text);
+    }
+
+    @Override
+    public final int getFontHeight() {
+        return metrics.getHeight();
+    }
+
+    @Override
+    public final void setColor(final Color newcolor) {
+        this.color = toSvg(newcolor);
+    }
+
+    @Override
+    public final void fillRect(final int x, final int y, final int width,
+            final int height) {
+        this.write("<rect x=\"" + x + "\" y=\"" + y + "\" width=\"" + width
+                + "\" height=\"" + height + "\" fill=\"" + color + "\"/>\n");
+    }
+
+    @Override
+    public final void drawRect(final int x, final int y, final int width,
+            final int height) {
+        this.write("<rect x=\"" + (x + 0.5) + "\" y=\"" + (y + 0.5)
+                + "\" width=\"" + width + "\" height=\"" + height
+                + "\" fill=\"none\" stroke=\"" + color + "\"/>\n");
+    }
+
+    @Override
+    public final void drawLine(final int x1, final int y1, final int x2,
+            final int y2) {
+        this.write("<line x1=\"" + (x1 + 0.5) + "\" y1=\"" + (y1 + 0.5)
+                + "\" x2=\"" + (x2 + 0.5) + "\" y2=\"" + (y2 + 0.5)
+                + "\" stroke=\"" + color + "\"/>\n");
+    }
+
+    @Override
+    public final void drawString(final String text, final float x,
+            final float y) {
+        this.write("<text x=\"" + format(x) + "\" y=\"" + format(y)
+                + "\" fill=\"" + color + "\"" + font + ">" + escape(text)
+                + "</text>\n");
+    }
+
+    @Override
+    public final void drawVerticalString(final String text, final float x,
+            final float y) {
+        this.write("<text transform=\"rotate(-90)\" x=\"" + format(x)
+                + "\" y=\"" + format(y) + "\" fill=\"" + color + "\""
+                + font + ">" + escape(text) + "</text>\n");
+    }
+
+    @Override
+    public final void fillGradientRect(final int x, final int y,
+            final int width, final int height, final float x1,
+            final Color color1, final float x2, final Color color2) {
+        final String id = "g" + (gradients++);
+        this.write("<linearGradient id=\"" + id
+                + "\" gradientUnits=\"userSpaceOnUse\" x1=\"" + format(x1)
+                + "\" y1=\"0\" x2=\"" + format(x2) + "\" y2=\"0\">"
+                + "<stop offset=\"0\" stop-color=\"" + toSvg(color1)
+                + "\"/><stop offset=\"1\" stop-color=\"" + toSvg(color2)
+                + "\"/></linearGradient>\n<rect x=\"" + x + "\" y=\"" + y
+                + "\" width=\"" + width + "\" height=\"" + height
+                + "\" fill=\"url(#" + id + ")\"/>\n");
+    }
+
+    @Override
+    public final void startLink(final String href, final String title) {
+        this.write("<a xlink:href=\"" + escape(href)
+                + "\" target=\"_blank\"><title>" + escape(title)
+                + "</title>\n");
+    }
+
+    @Override
+    public final void endLink() {
+        this.write("</a>\n");
+    }
+
+    /**
+     * Write the given string, errors are kept for finish.
+     * @param text the string to write
+     */
+    private void write(final String text) {
+        if (error != null) {
+            return;
+        }
+        try {
+            out.write(text);
+        }
+        catch (IOException ex) {
+            error = ex;
+        }
+    }
+
+    /**
+     * Return the SVG notation of the given color.
+     * @param value the Color
+     * @return the color as #rrggbb
+     */
+    private static String toSvg(final Color value) {
+        return String.format("#%06x", value.getRGB() & 0xFFFFFF);
+    }
+
+    /**
+     * Write a coordinate without useless decimals.
+     * @param value the coordinate
+     * @return the coordinate as a string
+     */
+    private static String format(final float value) {
+        if (value == (int) value) {
+            return Integer.toString((int) value);
+        }
+        return String.format(Locale.ENGLISH, "%.2f", value);
+    }
+
+    /**
+     * Escape the characters which are special in XML.
+     * @param text the text to escape
+     * @return the escaped text
+     */
+    static String escape(final String text) {
+        if (text == null) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import org.biomoby.shared.MobyException;
+
+/**
+ * Draws the alignment picture as square tiles, at several zoom levels, for
+ * the views of whole chromosomes.
+ * At zoom level z the picture is PICTUREWIDTH * 2^z pixels wide, its height
+ * does not depend on the zoom. Each tile is drawn on its own image of
+ * TILE_SIZE pixels with Marker2seqGraphics restricted to the tile, so the
+ * memory used does not depend on the size of the interval.
+ */
+public class TileRenderer {
+
+    /** Width and height of the tiles, in pixels. */
+    public static final int TILE_SIZE = 256;
+    /** Highest zoom level. */
+    public static final int MAX_ZOOM = 6;
+    /** The genetic map of the interval. */
+    private final List<GeneticMarkers> markerlist;
+    /** The sequences (scaffolds) with their markers. */
+    private final List<MarkerSequence> markersequence;
+    /** The markers given as input (highlighted). */
+    private final List<String> entrymarkers;
+    /** Height of the picture, at every zoom level. */
+    private final int heigth;
+
+    /**
+     * Constructor.
+     * @param data the data the picture is drawn from
+     */
+    public TileRenderer(final AlignmentData data) {
+        this.markerlist = data.getGeneticMap();
+        this.markersequence = data.getSequences();
+        this.entrymarkers = data.getEntryMarkers();
+        final AlignmentRenderer renderer = new AlignmentRenderer();
+        for (MarkerSequence ms : markersequence) {
+            renderer.setExtremeMarkers(ms);
+        }
+        this.heigth = renderer.getHeigth(new Marker2seqGraphics(), markerlist,
+                markersequence, AlignmentRenderer.getLegend());
+    }
+
+    /**
+     * Return the width of the picture at the given zoom level.
+     * @param zoom the zoom level, from 0 to MAX_ZOOM
+     * @return the width in pixels
+     */
+    public static int getWidth(final int zoom) {
+        return Marker2seqGraphics.PICTUREWIDTH << zoom;
+    }
+
+    /**
+     * Return the height of the picture.
+     * @return the height in pixels
+     */
+    public final int getHeigth() {
+        return heigth;
+    }
+
+    /**
+     * Return the number of columns of tiles at the given zoom level.
+     * @param zoom the zoom level, from 0 to MAX_ZOOM
+     * @return the number of columns
+     */
+    public static int getColumns(final int zoom) {
+        return (getWidth(zoom) + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * Return the number of rows of tiles (the same at every zoom level).
+     * @return the number of rows
+     */
+    public final int getRows() {
+        return (heigth + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    /**
+     * Return whether the given tile exists.
+     * @param zoom the zoom level
+     * @param column the column of the tile, from the left
+     * @param row the row of the tile, from the top
+     * @return true if the tile is part of the picture
+     */
+    public final boolean isTile(final int zoom, final int column,
+            final int row) {
+        return zoom >= 0 && zoom <= MAX_ZOOM
+                && column >= 0 && column < getColumns(zoom)
+                && row >= 0 && row < getRows();
+    }
+
+    /**
+     * Draw the given tile.
+     * @param zoom the zoom level, from 0 to MAX_ZOOM
+     * @param column the column of the tile, from the left
+     * @param row the row of the tile, from the top
+     * @return the image of the tile, TILE_SIZE pixels wide and high
+     * @throws MobyException when the position of a marker can not be read
+     * @throws IllegalArgumentException if the tile is not part of the
+     * picture
+     */
+    public final BufferedImage render(final int zoom, final int column,
+            final int row) throws MobyException {
+        if (!this.isTile(zoom, column, row)) {
+            throw new IllegalArgumentException("No tile " + zoom + "/"
+                    + column + "/" + row);
+        }
+        final Rectangle tile = new Rectangle(column * TILE_SIZE,
+                row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+        final BufferedImage bim = new BufferedImage(TILE_SIZE, TILE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        final Graphics2D gr = bim.createGraphics();
+        try {
+            gr.setColor(Color.white);
+            gr.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            gr.translate(-tile.x, -tile.y);
+            gr.clip(tile);
+            final Marker2seqGraphics graphic = new Marker2seqGraphics();
+            graphic.setPictureWidth(getWidth(zoom));
+            graphic.setViewport(tile);
+            graphic.drawImage(markerlist, markersequence, gr,
+                    new HashMap<String, Color>(AlignmentRenderer.getLegend()),
+                    entrymarkers);
+        }
+        finally {
+            gr.dispose();
+        }
+        return bim;
+    }
+}
@@ -23,8 +23,13 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.exceptions.ServiceUnavailableException;
+import nl.wur.plantbreeding.logic.cache.CacheKey;
+import nl.wur.plantbreeding.logic.cache.ResultCache;
+import nl.wur.plantbreeding.logic.cache.WebServiceCaches;
 import nl.wur.plantbreeding.logic.saxparser.ParserXMLGetElementAnnotation;
 import nl.wur.plantbreeding.logic.saxparser.ParserXMLSifterAnnotation;
+import nl.wur.plantbreeding.logic.soapclient.ServiceUrls;
 import nl.wur.plantbreeding.logic.soapclient.SoapClient;
 import nl.wur.plantbreeding.logic.swtools.QueryRdf;
 import nl.wur.plantbreeding.logic.util.FileName;
@@ -107,11 +112,19 @@ public class AnnotationRetriever {
         //  Retrieve the markers in between the two given markers
         final String xmlinput =
                 XMLGeneratorGetAnnotation.generateXML(geneid, "MIPS_GE_Tomato");
+        final String name = "GetSifterPredictedFunctionTermsByProteinID";
+        final ResultCache<ArrayList<Annotation>> cache =
+                WebServiceCaches.getSifterCache();
+        final String key = CacheKey.forService(name, xmlinput);
+        final ArrayList<Annotation> cached = cache.get(key);
+        if (cached != null) {
+            LOG.log(Level.INFO, "Sifter annotation retrieved from the cache: "
+                    + "{0}", geneid);
+            return cached;
+        }
         final SoapClient client = new SoapClient();
         client.setDebug(debug);
-        final String name = "GetSifterPredictedFunctionTermsByProteinID";
-        final String url = "http://bioinfo.mpiz-koeln.mpg.de/axis/services/"
-                                + name;
+        final String url = ServiceUrls.getSifter(name);
         String outputfile = null;
 
         // Call the service, keep the output to memory
@@ -122,6 +135,11 @@ public class AnnotationRetriever {
                     + FileName.generateFileNameByTime();
             outputfile = client.callService(name, url, xmlinput,
                             ssl, true, filename);
+        } catch (ServiceUnavailableException ex) {
+            // Fall back on the GO terms available in the sparql endpoint
+            LOG.log(Level.WARNING, "Web-service not called: {0}",
+                    ex.getMessage());
+            return new ArrayList<Annotation>();
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, null, ex);
         }
@@ -132,7 +150,11 @@ public class AnnotationRetriever {
 
         xmlmarkers.parseDocument(outputfile);
 
-        return xmlmarkers.getAnnotations();
+        final ArrayList<Annotation> annotations = xmlmarkers.getAnnotations();
+        if (outputfile != null) {
+            cache.put(key, annotations);
+        }
+        return annotations;
     }
 
     /**
@@ -150,8 +172,7 @@ public class AnnotationRetriever {
                     final boolean debug)
             throws Exception {
         final String name = "getElementAnnotation";
-        final String url = "http://mips.gsf.de/proj/plant/webapp/axis/services/"
-                + name;
+        final String url = ServiceUrls.getPlantDB(name);
         final String xmlinput = XMLGeneratorGetAnnotation.generateXML(
                                             geneid, "MIPS_GE_Tomato", "input");
         final SoapClient client = new SoapClient();
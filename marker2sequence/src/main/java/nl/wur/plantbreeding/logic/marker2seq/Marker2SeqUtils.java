@@ -19,7 +19,10 @@ package nl.wur.plantbreeding.logic.marker2seq;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.logging.Logger;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import org.biomoby.shared.MobyException;
 
 /**
  * Utility class for Marker2seq
@@ -96,6 +99,33 @@ public class Marker2SeqUtils {
         return output;
     }
 
+    /**
+     * This function transform the genetic map to a list of HashMap used to
+     * present the table in the view.
+     * @param markers the list of GeneticMarkers of the genetic map.
+     * @return a List of HashMap with the keys name, map_position and
+     * chromosome.
+     * @throws MobyException when the position of a marker can not be read.
+     */
+    public static List<HashMap<String, String>> TransformGeneticMapToTable(
+            final List<GeneticMarkers> markers)
+            throws MobyException {
+        final ArrayList<HashMap<String, String>> table =
+                new ArrayList<HashMap<String, String>>();
+
+        for (GeneticMarkers marker : markers) {
+            final HashMap<String, String> map = new HashMap<String, String>();
+            map.put("name", marker.getName());
+            map.put("map_position", new Float(
+                    marker.getMoby_position().getFloatValue()).toString());
+            map.put("chromosome", Long.toString(
+                    marker.getMoby_Chromosome().getIntValue()));
+            table.add(map);
+        }
+
+        return table;
+    }
+
     /**
      * Add the given value at the given key, or enter the new key/value.
      * @param key a String of the key.
@@ -25,7 +25,12 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import nl.wur.plantbreeding.datatypes.GeneticMarkers;
 import nl.wur.plantbreeding.exceptions.SeveralMappedPositionException;
+import nl.wur.plantbreeding.exceptions.ServiceUnavailableException;
+import nl.wur.plantbreeding.logic.cache.CacheKey;
+import nl.wur.plantbreeding.logic.cache.ResultCache;
+import nl.wur.plantbreeding.logic.cache.WebServiceCaches;
 import nl.wur.plantbreeding.logic.saxparser.ParserXMLMarkersToSW;
+import nl.wur.plantbreeding.logic.soapclient.ServiceUrls;
 import nl.wur.plantbreeding.logic.soapclient.SoapClient;
 import nl.wur.plantbreeding.logic.swtools.QueryRdf;
 import nl.wur.plantbreeding.logic.util.FileName;
@@ -44,9 +49,10 @@ public class Marker2seq {
     private static final Logger LOG = Logger.getLogger(
             Marker2seq.class.getName());
     /** URI used for reference. */
-    private static String uri = "http://pbr.wur.nl/";
-    /** List of GeneticMarkers. */
-    private static List<GeneticMarkers> markerlist = null;
+    private static final String uri = "http://pbr.wur.nl/";
+    /** Name of the web-service returning the markers of an interval. */
+    private static final String MARKERSERVICE =
+            "getMarkersForRegionByQueryMarkerList";
     /** default URL to virtuoso. */
     private String endpoint = "http://sparql.plantbreeding.nl:8080/sparql/";
     /** Name of the scaffold up to the chromosome. */
@@ -56,15 +62,6 @@ public class Marker2seq {
     /** Base graph used for the queries. */
     private String basegraph;
 
-    /**
-     * Retrieve the marker list of this object.
-     * @return a List of GeneticMarkers retrieved from the output of the
-     * web-service
-     */
-    public final List<GeneticMarkers> getMarkerlist() {
-        return markerlist;
-    }
-
     /**
      * Return the endpoint used for querying when input is a Loci or a MapLoci.
      * @return a string of the endpoint's url which will be used to query
@@ -111,6 +108,10 @@ public class Marker2seq {
     private Model getModelFromWSOutput(final String outputfile)
             throws SAXException {
         Model model = ModelFactory.createDefaultModel();
+        if (outputfile == null) {
+            // The web-service could not be called, nothing to parse
+            return model;
+        }
 
         final ParserXMLMarkersToSW parser = new ParserXMLMarkersToSW();
         parser.setModel(model);
@@ -141,26 +142,30 @@ public class Marker2seq {
     /**
      * Call the web-services to extract the list of markers between the given
      * markers.
-     * @param markerslist String array with the markers in the interval
+     * @param xmlinput the XML input of the web-service, as generated by
+     * XMLGeneratorMarkers
      * @return String giving the full path of the output file
      */
-    private String callWebservice(final String[] markerslist) {
+    private String callWebservice(final String xmlinput) {
         final SoapClient client = new SoapClient();
         String output = null;
         String outputfile = null;
         //  Retrieve the markers in between the two given markers
-        final String xmlinput = XMLGeneratorMarkers.generateXML(markerslist);
-        final String name = "getMarkersForRegionByQueryMarkerList";
-        final String url = "https://www.eu-sol.wur.nl/axis/services/" + name;
+        final String url = ServiceUrls.getMarkers(MARKERSERVICE);
 
         // Call the service, keep the output to memory (given as input to
         // the second ws) and write it down to a file for the parsing
         try {
-            output = client.callService(name, url, xmlinput, true);
+            output = client.callService(MARKERSERVICE, url, xmlinput,
+                    url.startsWith("https"));
             final String filename = "ws1.1-"
                     + FileName.generateFileNameByTime();
             outputfile = client.writeFile(filename, output);
         }
+        catch (ServiceUnavailableException ex) {
+            LOG.log(Level.WARNING, "Web-service not called: {0}",
+                    ex.getMessage());
+        }
         catch (Exception ex) {
             LOG.log(Level.SEVERE, null, ex);
         }
@@ -205,8 +210,21 @@ public class Marker2seq {
                 + ", " + markers[1]);
 //        final String[] info = query.getChrAndPositionFromInputMarkers(markers);
 //        return query.getModelFromInputMarkers(info);
-        final String outputfile = this.callWebservice(markers);
-        return this.getModelFromWSOutput(outputfile);
+        final String xmlinput = XMLGeneratorMarkers.generateXML(markers);
+        final ResultCache<Model> cache = WebServiceCaches.getMarkerCache();
+        final String key = CacheKey.forService(MARKERSERVICE, xmlinput);
+        Model model = cache.get(key);
+        if (model != null) {
+            LOG.log(Level.INFO, "Markers retrieved from the cache: {0}", key);
+            return model;
+        }
+        final String outputfile = this.callWebservice(xmlinput);
+        model = this.getModelFromWSOutput(outputfile);
+        // Empty models come from failed calls, they should be retried
+        if (!model.isEmpty()) {
+            cache.put(key, model);
+        }
+        return model;
 
     }
 
@@ -315,9 +333,28 @@ public class Marker2seq {
      * of the form: SL2.31ch06:start..stop
      * @return a Jena Model with additionnal information about the genes and the
      * markers.
+     * @see #buildResult(Model, String)
      */
-    public final Model addInfoToModel(Model model, final String locus)
+    public final Model addInfoToModel(final Model model, final String locus)
             throws NumberFormatException {
+        return this.buildResult(model, locus).getModel();
+    }
+
+    /**
+     * Add additionnal info to the current model containing only the markers
+     * information (see addInfoToModel) and return it together with the
+     * genetic map of the interval.
+     * @param model a Jena Model containing markers information from the
+     * web-service or the virtuoso.
+     * @param locus the locus string given as input used when no information
+     * could be retrieved using the neighbooring markers. The string should be
+     * of the form: SL2.31ch06:start..stop
+     * @return a Marker2seqResult holding the completed model and the genetic
+     * map of the interval
+     */
+    public final Marker2seqResult buildResult(Model model, final String locus)
+            throws NumberFormatException {
+        List<GeneticMarkers> markerlist;
         if (model.isEmpty() && locus != null) {
             LOG.log(Level.INFO, "No genomic marker found in this interval,"
                     + "try to  use locus information");
@@ -328,19 +365,20 @@ public class Marker2seq {
                 Integer.parseInt(stringpos[1].trim())};
             model = query.getMarkerInfo(model, chr, pos);
             model = query.getGeneInfo(model, chr, pos);
+            markerlist = query.getGeneticMap(model);
         } else {
             LOG.log(Level.INFO, "Add gene and marker information for known"
                     + " marker");
-            Marker2seq.markerlist = query.getGeneticMap(model);
-            LOG.log(Level.INFO, "markers: {0}", Marker2seq.markerlist.size());
+            markerlist = query.getGeneticMap(model);
+            LOG.log(Level.INFO, "markers: {0}", markerlist.size());
             // Add marker and position for all markers
-            model = query.getMarkerInfo(model, Marker2seq.markerlist);
+            model = query.getMarkerInfo(model, markerlist);
             LOG.log(Level.INFO, "model: {0}", model.size());
             // Add genes within the borders
             model = query.getGenesInfo(model);
             LOG.log(Level.INFO, "model: {0}", model.size());
         }
-        return model;
+        return new Marker2seqResult(model, markerlist);
     }
 
     public String getLociString(String[] markers)
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker2seq;
+
+import nl.wur.plantbreeding.logic.job.Job;
+import nl.wur.plantbreeding.logic.job.JobManager;
+import nl.wur.plantbreeding.logic.job.JobStatus;
+import nl.wur.plantbreeding.logic.job.JobTask;
+import nl.wur.plantbreeding.logic.pipeline.PipelineContext;
+import nl.wur.plantbreeding.logic.pipeline.PipelineListener;
+import nl.wur.plantbreeding.logic.pipeline.Stage;
+import nl.wur.plantbreeding.logic.store.ResultStore;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
+
+/**
+ * Runs the Marker2seqPipeline of a query as a background job, the progress
+ * of the job follows the stages of the pipeline.
+ * The result is written in the ResultStore, under the identifier of the job,
+ * so that the job itself only holds this identifier.
+ */
+public class Marker2seqJob implements JobTask<String> {
+
+    /** The pipeline to run. */
+    private final Marker2seqPipeline pipeline;
+    /** The query of the job. */
+    private final Marker2seqQuery query;
+
+    /**
+     * Constructor.
+     * @param m2spipeline the pipeline to run
+     * @param m2squery the query of the job
+     */
+    public Marker2seqJob(final Marker2seqPipeline m2spipeline,
+            final Marker2seqQuery m2squery) {
+        this.pipeline = m2spipeline;
+        this.query = m2squery;
+    }
+
+    /**
+     * Return the query of the job.
+     * @return the Marker2seqQuery
+     */
+    public final Marker2seqQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Return the priority to give to this job: queries on a list of markers
+     * cover small intervals and run first, queries on a physical or genetic
+     * interval may be large and run last.
+     * @return the priority of the job for the JobManager
+     */
+    public final int getPriority() {
+        if (query.getMarkers().length > 0) {
+            return JobManager.NORMAL_PRIORITY;
+        }
+        return JobManager.LOW_PRIORITY;
+    }
+
+    /**
+     * Run the pipeline and store its result, as a new trace (see Tracer).
+     * Nothing is stored if the job was cancelled while it was running.
+     * @param job the job running this task
+     * @return the identifier of the result in the ResultStore, null if the
+     * job was cancelled
+     * @throws Exception the exception of the first stage failing
+     */
+    @Override
+    public final String run(final Job<String> job) throws Exception {
+        job.setProgress(0, "started");
+        final Span span = Tracer.startTrace("Marker2seqJob");
+        span.setAttribute("job", job.getId());
+        try {
+            final PipelineContext result = pipeline.run(query,
+                    new PipelineListener() {
+
+                        @Override
+                        public void stageCompleted(final Stage stage,
+                                final int done, final int total) {
+                            job.setProgress(100 * done / total,
+                                    stage.getName());
+                        }
+                    });
+            // The result of a cancelled job would never be read
+            if (job.getStatus() == JobStatus.CANCELLED) {
+                return null;
+            }
+            ResultStore.put(job.getId(), result);
+            // Cancelled while the result was stored
+            if (job.getStatus() == JobStatus.CANCELLED) {
+                ResultStore.remove(job.getId());
+                return null;
+            }
+            return job.getId();
+        }
+        catch (Exception ex) {
+            span.setError(ex);
+            throw ex;
+        }
+        finally {
+            span.end();
+        }
+    }
+}
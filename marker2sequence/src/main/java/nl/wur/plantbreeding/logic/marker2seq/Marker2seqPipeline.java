@@ -0,0 +1,475 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker2seq;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.shared.Lock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import nl.wur.plantbreeding.exceptions.MarkerNotMappedException;
+import nl.wur.plantbreeding.logic.marker.RenderCache;
+import nl.wur.plantbreeding.logic.pipeline.PipelineContext;
+import nl.wur.plantbreeding.logic.pipeline.PipelineListener;
+import nl.wur.plantbreeding.logic.pipeline.PipelineScheduler;
+import nl.wur.plantbreeding.logic.pipeline.Stage;
+import nl.wur.plantbreeding.logic.swtools.QueryRdf;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
+import org.biomoby.shared.MobyException;
+import org.xml.sax.SAXException;
+
+/**
+ * The marker2sequence pipeline: from a Marker2seqQuery to the tables and the
+ * picture displayed to the user.
+ * The model of the interval is retrieved and completed first, then the
+ * annotation list, the physical map, the genetic map table, the picture and
+ * the keyword search are built in parallel.
+ */
+public class Marker2seqPipeline {
+
+    /** Key of the Marker2seqQuery (input of the pipeline). */
+    public static final String QUERY = "query";
+    /** Key of the model returned by the web-service or virtuoso. */
+    public static final String RAWMODEL = "rawmodel";
+    /** Key of the locus string used when no marker could be found. */
+    public static final String LOCUS = "locus";
+    /** Key of the Marker2seqResult (completed model and genetic map). */
+    public static final String RESULT = "result";
+    /** Key of the annotation list (List of Annotation). */
+    public static final String ANNOTATION = "annotation";
+    /** Key of the physical map (List of Markerws). */
+    public static final String PHYSICALMAP = "markers";
+    /** Key of the sequences with their markers (List of MarkerSequence). */
+    public static final String MARKERSEQUENCE = "markersequence";
+    /** Key of the genetic map table (List of HashMap). */
+    public static final String GENETICMAPTABLE = "map";
+    /** Key of the name of the picture file (see RenderCache.getFile). */
+    public static final String PICTUREFILE = "picturefile";
+    /** Key of the areas of the picture (List of String). */
+    public static final String PICTUREMAP = "picturemap";
+    /** Key of the key of the picture in the RenderCache (String). */
+    public static final String PICTUREKEY = "picturekey";
+    /** Key of the annotation matching the keyword (List of Annotation). */
+    public static final String SEARCHRESULT = "resultannotation";
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            Marker2seqPipeline.class.getName());
+    /** URI used for reference. */
+    private static final String URI = "http://pbr.wur.nl/";
+    /** The scheduler running the stages. */
+    private final PipelineScheduler scheduler;
+
+    /**
+     * Constructor using the executor shared by the pipelines.
+     */
+    public Marker2seqPipeline() {
+        this(PipelineScheduler.getDefaultExecutor());
+    }
+
+    /**
+     * Constructor.
+     * @param executor the executor running the stages
+     */
+    public Marker2seqPipeline(final ExecutorService executor) {
+        final List<Stage> stages = new ArrayList<Stage>();
+        stages.add(new RetrieveStage());
+        stages.add(new CompleteStage());
+        stages.add(new AnnotationStage());
+        stages.add(new PhysicalMapStage());
+        stages.add(new MarkerSequenceStage());
+        stages.add(new GeneticMapTableStage());
+        stages.add(new PictureStage());
+        stages.add(new SearchStage());
+        this.scheduler = new PipelineScheduler(stages, executor);
+    }
+
+    /**
+     * Run the pipeline for the given query.
+     * @param query the Marker2seqQuery describing the request
+     * @return the PipelineContext holding the outputs of all the stages
+     * (see the keys defined in this class) and their timings
+     * @throws MarkerNotMappedException when no information could be
+     * retrieved for the given interval
+     * @throws Exception the exception of the first stage failing
+     */
+    public final PipelineContext run(final Marker2seqQuery query)
+            throws Exception {
+        return this.run(query, null);
+    }
+
+    /**
+     * Run the pipeline for the given query, reporting the progress to the
+     * given listener.
+     * The run is traced as one Span, started as a new trace unless the
+     * caller is already traced, with a child Span per stage.
+     * @param query the Marker2seqQuery describing the request
+     * @param listener told each time a stage completes, may be null
+     * @return the PipelineContext holding the outputs of all the stages
+     * (see the keys defined in this class) and their timings
+     * @throws MarkerNotMappedException when no information could be
+     * retrieved for the given interval
+     * @throws Exception the exception of the first stage failing
+     */
+    public final PipelineContext run(final Marker2seqQuery query,
+            final PipelineListener listener) throws Exception {
+        final PipelineContext context = new PipelineContext();
+        context.put(QUERY, query);
+        final Span span = Tracer.startTrace("marker2seq pipeline");
+        span.setAttribute("species", query.getSpecies())
+                .setAttribute("markers", query.getMarkers().length);
+        try {
+            scheduler.run(context, listener);
+        }
+        catch (Exception ex) {
+            span.setError(ex);
+            throw ex;
+        }
+        finally {
+            span.end();
+        }
+        return context;
+    }
+
+    /**
+     * Return a new QueryRdf object set for the given query.
+     * @param query the Marker2seqQuery of the request
+     * @return a QueryRdf object
+     */
+    private static QueryRdf newQueryRdf(final Marker2seqQuery query) {
+        final QueryRdf queryrdf = new QueryRdf(URI);
+        if (query.getEndpoint() != null && !query.getEndpoint().isEmpty()) {
+            queryrdf.setService(query.getEndpoint());
+        }
+        queryrdf.setBasegraph(query.getBasegraph());
+        return queryrdf;
+    }
+
+    /**
+     * Return a new Marker2seq object set for the given query.
+     * @param query the Marker2seqQuery of the request
+     * @return a Marker2seq object
+     */
+    private static Marker2seq newMarker2seq(final Marker2seqQuery query) {
+        final Marker2seq mk2seq = new Marker2seq();
+        mk2seq.setEndpoint(query.getEndpoint());
+        mk2seq.setBasegraph(query.getBasegraph());
+        return mk2seq;
+    }
+
+    /**
+     * Retrieves the model of the markers of the interval from the
+     * web-service (or virtuoso), or the locus to use when no marker is found.
+     */
+    private static final class RetrieveStage extends Stage {
+
+        /** Constructor. */
+        private RetrieveStage() {
+            super("retrieve", new String[]{QUERY},
+                    new String[]{RAWMODEL, LOCUS});
+        }
+
+        @Override
+        public void run(final PipelineContext context) throws Exception {
+            final Marker2seqQuery query = context.get(QUERY,
+                    Marker2seqQuery.class);
+            final Marker2seq mk2seq = newMarker2seq(query);
+            final String[] markers = query.getMarkers();
+            Model model = ModelFactory.createDefaultModel();
+            String locus = query.getLoci();
+
+            if (markers.length > 0) {
+                if (query.getSpecies().equalsIgnoreCase("arabidopsis")) {
+                    // Retrieve the models from Virtuoso rather than the WS
+                    model = mk2seq.retrieveModelFromVirtuoso(markers);
+                } else {
+                    try {
+                        model = mk2seq.retrieveModel(markers);
+                    }
+                    catch (SAXException ex) {
+                        LOG.log(Level.SEVERE,
+                                "ERROR while parsing the web-service output:"
+                                + " {0}", ex.getMessage());
+                        LOG.log(Level.SEVERE,
+                                "Trying to retrieve information from Virtuoso");
+                    }
+                }
+                // If nothing was returned, try to get the interval
+                if (model.isEmpty()) {
+                    locus = mk2seq.getLociString(markers);
+                }
+            } else if (query.getMaploci() != null
+                    && !query.getMaploci().isEmpty()) {
+                try {
+                    model = mk2seq.retrieveModelFromMapLoci(
+                            query.getMaploci().trim());
+                }
+                catch (SAXException ex) {
+                    LOG.log(Level.SEVERE,
+                            "ERROR while parsing the web-service output:"
+                            + " {0}", ex.getMessage());
+                }
+            }
+            Tracer.current().setAttribute("markers", markers.length)
+                    .setAttribute("model.size", model.size());
+            context.put(RAWMODEL, model);
+            context.put(LOCUS, locus);
+        }
+    }
+
+    /**
+     * Adds the marker and gene information to the model.
+     */
+    private static final class CompleteStage extends Stage {
+
+        /** Constructor. */
+        private CompleteStage() {
+            super("complete", new String[]{QUERY, RAWMODEL, LOCUS},
+                    new String[]{RESULT});
+        }
+
+        @Override
+        public void run(final PipelineContext context) throws Exception {
+            final Model model = context.get(RAWMODEL, Model.class);
+            final String locus = context.get(LOCUS, String.class);
+            LOG.log(Level.INFO, "model start : {0}", model.size());
+            if (model.isEmpty() && (locus == null || locus.isEmpty())) {
+                throw new MarkerNotMappedException(
+                        "No markers could be retrieved.");
+            }
+            final Marker2seqResult result = newMarker2seq(context.get(QUERY,
+                    Marker2seqQuery.class)).buildResult(model, locus);
+            // if the model is still empty, something went wrong...
+            if (result.getModel().isEmpty()) {
+                throw new MarkerNotMappedException(
+                        "No markers could be retrieved.");
+            }
+            Tracer.current().setAttribute("model.size",
+                    result.getModel().size())
+                    .setAttribute("geneticmarkers",
+                    result.getMarkerlist().size());
+            context.put(RESULT, result);
+        }
+    }
+
+    /**
+     * Base class of the stages reading the completed model: the model is
+     * read under a read lock as several of these stages run at the same
+     * time.
+     */
+    private abstract static class ModelReaderStage extends Stage {
+
+        /**
+         * Constructor.
+         * @param name name of the stage
+         * @param in keys of the values read from the context
+         * @param out keys of the values written to the context
+         */
+        protected ModelReaderStage(final String name, final String[] in,
+                final String[] out) {
+            super(name, in, out);
+        }
+
+        @Override
+        public final void run(final PipelineContext context)
+                throws Exception {
+            final Model model = context.get(RESULT,
+                    Marker2seqResult.class).getModel();
+            model.enterCriticalSection(Lock.READ);
+            try {
+                this.read(context, model);
+            }
+            finally {
+                model.leaveCriticalSection();
+            }
+        }
+
+        /**
+         * Read the model and write the outputs to the context.
+         * @param context the PipelineContext of the run
+         * @param model the completed model of the interval
+         * @throws Exception when something goes wrong
+         */
+        protected abstract void read(PipelineContext context, Model model)
+                throws Exception;
+    }
+
+    /**
+     * Builds the annotation table.
+     */
+    private static final class AnnotationStage extends ModelReaderStage {
+
+        /** Constructor. */
+        private AnnotationStage() {
+            super("annotation", new String[]{QUERY, RESULT},
+                    new String[]{ANNOTATION});
+        }
+
+        @Override
+        protected void read(final PipelineContext context, final Model model) {
+            context.put(ANNOTATION, newQueryRdf(context.get(QUERY,
+                    Marker2seqQuery.class)).getAnnotationList(model));
+        }
+    }
+
+    /**
+     * Builds the marker table (physical map).
+     */
+    private static final class PhysicalMapStage extends ModelReaderStage {
+
+        /** Constructor. */
+        private PhysicalMapStage() {
+            super("physicalmap", new String[]{QUERY, RESULT},
+                    new String[]{PHYSICALMAP});
+        }
+
+        @Override
+        protected void read(final PipelineContext context, final Model model) {
+            context.put(PHYSICALMAP, newQueryRdf(context.get(QUERY,
+                    Marker2seqQuery.class)).getPhysicalMap(model));
+        }
+    }
+
+    /**
+     * Retrieves the sequences (scaffolds) with their markers.
+     */
+    private static final class MarkerSequenceStage extends ModelReaderStage {
+
+        /** Constructor. */
+        private MarkerSequenceStage() {
+            super("markersequence", new String[]{QUERY, RESULT},
+                    new String[]{MARKERSEQUENCE});
+        }
+
+        @Override
+        protected void read(final PipelineContext context, final Model model) {
+            final List<MarkerSequence> sequences = newQueryRdf(context.get(
+                    QUERY, Marker2seqQuery.class)).getMarkerSequence(model);
+            Tracer.current().setAttribute("scaffolds", sequences.size());
+            context.put(MARKERSEQUENCE, sequences);
+        }
+    }
+
+    /**
+     * Builds the genetic map table.
+     */
+    private static final class GeneticMapTableStage extends Stage {
+
+        /** Constructor. */
+        private GeneticMapTableStage() {
+            super("geneticmap", new String[]{RESULT},
+                    new String[]{GENETICMAPTABLE});
+        }
+
+        @Override
+        public void run(final PipelineContext context) {
+            final Marker2seqResult result = context.get(RESULT,
+                    Marker2seqResult.class);
+            Object table = null;
+            try {
+                if (!result.getMarkerlist().isEmpty()) {
+                    table = Marker2SeqUtils.TransformGeneticMapToTable(
+                            result.getMarkerlist());
+                }
+            }
+            catch (MobyException ex) {
+                LOG.log(Level.SEVERE, null, ex);
+            }
+            context.put(GENETICMAPTABLE, table);
+        }
+    }
+
+    /**
+     * Draws the picture (or finds it in the RenderCache) and publishes it as
+     * png (see RenderCache.publish).
+     */
+    private static final class PictureStage extends Stage {
+
+        /** Constructor. */
+        private PictureStage() {
+            super("picture", new String[]{QUERY, RESULT, MARKERSEQUENCE},
+                    new String[]{PICTUREFILE, PICTUREMAP, PICTUREKEY});
+        }
+
+        @Override
+        public void run(final PipelineContext context) {
+            final Marker2seqQuery query = context.get(QUERY,
+                    Marker2seqQuery.class);
+            final Marker2seqResult result = context.get(RESULT,
+                    Marker2seqResult.class);
+            final List<MarkerSequence> markersequence =
+                    context.get(MARKERSEQUENCE);
+            String filename = null;
+            List<String> map = null;
+            String key = null;
+            try {
+                final RenderCache.Entry image = RenderCache.getOrRender(
+                        result.getMarkerlist(), markersequence,
+                        Arrays.asList(query.getMarkers()));
+                if (image == null) {
+                    LOG.info("No picture");
+                } else {
+                    filename = RenderCache.publish(image);
+                    map = image.getPicture().getMap();
+                    key = image.getKey();
+                }
+            }
+            catch (Exception e) {
+                LOG.log(Level.SEVERE, null, e);
+            }
+            context.put(PICTUREFILE, filename);
+            context.put(PICTUREMAP, map);
+            context.put(PICTUREKEY, key);
+        }
+    }
+
+    /**
+     * Searches the annotation for the keyword(s) of the query, if any.
+     */
+    private static final class SearchStage extends ModelReaderStage {
+
+        /** Constructor. */
+        private SearchStage() {
+            super("search", new String[]{QUERY, RESULT},
+                    new String[]{SEARCHRESULT});
+        }
+
+        @Override
+        protected void read(final PipelineContext context, final Model model) {
+            final Marker2seqQuery query = context.get(QUERY,
+                    Marker2seqQuery.class);
+            final String keyword = query.getKeyword();
+            List<Annotation> annotationlist = null;
+            if (keyword != null && !keyword.isEmpty()) {
+                final AnnotationSearch search = new AnnotationSearch(
+                        query.getBasegraph());
+                search.setEndpoint(query.getEndpoint());
+                annotationlist = newQueryRdf(query).getAnnotationList(
+                        search.searchModel(model, keyword));
+            }
+            context.put(SEARCHRESULT, annotationlist);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.marker2seq;
+
+/**
+ * Input of one marker2sequence request: the interval to investigate (given
+ * either as markers, as a physical locus or as a genetic locus), the optional
+ * keyword to search in the annotation and where to find the data.
+ * The object is immutable.
+ */
+public final class Marker2seqQuery {
+
+    /** Names of the markers delimiting the interval. */
+    private final String[] markers;
+    /** Physical locus (ie: SL2.31ch06:42289201..42292100). */
+    private final String loci;
+    /** Genetic locus (ie: chr06:10..50). */
+    private final String maploci;
+    /** Keyword(s) to search in the annotation of the interval. */
+    private final String keyword;
+    /** Species investigated (tomato, potato or arabidopsis). */
+    private final String species;
+    /** Url of the sparql endpoint. */
+    private final String endpoint;
+    /** Base graph used in the queries. */
+    private final String basegraph;
+
+    /**
+     * Constructor.
+     * @param markernames names of the markers delimiting the interval (may
+     * be empty)
+     * @param physicallocus physical locus of the interval (may be null)
+     * @param geneticlocus genetic locus of the interval (may be null)
+     * @param kw keyword(s) to search in the annotation (may be null)
+     * @param specie species investigated
+     * @param endp url of the sparql endpoint
+     * @param graph base graph used in the queries
+     */
+    public Marker2seqQuery(final String[] markernames,
+            final String physicallocus, final String geneticlocus,
+            final String kw, final String specie, final String endp,
+            final String graph) {
+        this.markers = markernames == null
+                ? new String[0] : markernames.clone();
+        this.loci = physicallocus;
+        this.maploci = geneticlocus;
+        this.keyword = kw;
+        this.species = specie;
+        this.endpoint = endp;
+        this.basegraph = graph;
+    }
+
+    /**
+     * Return the names of the markers delimiting the interval.
+     * @return a copy of the array of marker names
+     */
+    public String[] getMarkers() {
+        return markers.clone();
+    }
+
+    /**
+     * Return the physical locus of the interval.
+     * @return the physical locus or null
+     */
+    public String getLoci() {
+        return loci;
+    }
+
+    /**
+     * Return the genetic locus of the interval.
+     * @return the genetic locus or null
+     */
+    public String getMaploci() {
+        return maploci;
+    }
+
+    /**
+     * Return the keyword(s) to search in the annotation.
+     * @return the keyword(s) or null
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Return the species investigated.
+     * @return the name of the species
+     */
+    public String getSpecies() {
+        return species;
+    }
+
+    /**
+     * Return the url of the sparql endpoint.
+     * @return the url of the endpoint
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Return the base graph used in the queries.
+     * @return the base graph
+     */
+    public String getBasegraph() {
+        return basegraph;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.marker2seq;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+
+/**
+ * Result of one marker2seq request: the model of the interval completed with
+ * the marker and gene information, and the genetic map of the interval.
+ * The object is created once per request and never modified afterwards so
+ * that it can be shared between threads; the model should be treated as
+ * read-only.
+ */
+public final class Marker2seqResult {
+
+    /** Jena Model of the interval. */
+    private final Model model;
+    /** Genetic map (list of GeneticMarkers) of the interval. */
+    private final List<GeneticMarkers> markerlist;
+
+    /**
+     * Constructor.
+     * @param mod the Jena Model of the interval
+     * @param markers the genetic map of the interval (copied), may be null
+     */
+    public Marker2seqResult(final Model mod,
+            final List<GeneticMarkers> markers) {
+        this.model = mod;
+        if (markers == null) {
+            this.markerlist = Collections.emptyList();
+        } else {
+            this.markerlist = Collections.unmodifiableList(
+                    new ArrayList<GeneticMarkers>(markers));
+        }
+    }
+
+    /**
+     * Return the Jena Model of the interval.
+     * @return the Jena Model
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Return the genetic map of the interval.
+     * @return an unmodifiable list of GeneticMarkers, empty if no genetic
+     * marker was found
+     */
+    public List<GeneticMarkers> getMarkerlist() {
+        return markerlist;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of values (durations, sizes...) counted in fixed buckets.
+ * Recording a value is lock free and does not allocate so that it can be
+ * done on every query; the percentiles returned are the upper bound of the
+ * bucket holding them.
+ */
+public class Histogram {
+
+    /** Upper bounds (in milliseconds) of the buckets of durations. */
+    public static final long[] DURATION_BOUNDS = {1, 2, 5, 10, 20, 50, 100,
+        200, 500, 1000, 2000, 5000, 10000, 20000, 60000};
+    /** Upper bounds of the buckets of numbers of rows or triples. */
+    public static final long[] SIZE_BOUNDS = {0, 1, 10, 100, 1000, 10000,
+        100000, 1000000};
+    /** Upper bounds (inclusive) of the buckets. */
+    private final long[] bounds;
+    /** Number of values per bucket, the last one has no upper bound. */
+    private final AtomicLongArray buckets;
+    /** Number of values recorded. */
+    private final AtomicLong count = new AtomicLong(0);
+    /** Sum of the values recorded. */
+    private final AtomicLong sum = new AtomicLong(0);
+    /** Highest value recorded. */
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     * @param upperbounds the upper bounds (inclusive) of the buckets, sorted
+     */
+    public Histogram(final long[] upperbounds) {
+        this.bounds = upperbounds.clone();
+        this.buckets = new AtomicLongArray(upperbounds.length + 1);
+    }
+
+    /**
+     * Record one value.
+     * @param value the value to record
+     */
+    public final void record(final long value) {
+        int index = Arrays.binarySearch(bounds, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        buckets.incrementAndGet(index);
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Return the upper bounds of the buckets.
+     * @return a copy of the bounds, the last bucket (above the last bound)
+     * is not included
+     */
+    public final long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Return the number of values of each bucket.
+     * @return the counts, one more than the number of bounds
+     */
+    public final long[] getBuckets() {
+        final long[] out = new long[buckets.length()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = buckets.get(i);
+        }
+        return out;
+    }
+
+    /**
+     * Return the number of values recorded.
+     * @return the number of values
+     */
+    public final long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Return the sum of the values recorded.
+     * @return the sum
+     */
+    public final long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Return the highest value recorded.
+     * @return the maximum, 0 if nothing was recorded
+     */
+    public final long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Return the mean of the values recorded.
+     * @return the mean, 0 if nothing was recorded
+     */
+    public final double getMean() {
+        final long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Return an approximation of a percentile: the upper bound of the bucket
+     * holding it (the maximum for the last bucket or if it is lower).
+     * @param percent the percentile, between 0 and 100
+     * @return the approximated percentile, 0 if nothing was recorded
+     */
+    public final long getPercentile(final double percent) {
+        final long[] counts = this.getBuckets();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bounds[i], max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Return the count, mean, median, 90th, 99th percentile and maximum of
+     * the values.
+     * @return a String describing the histogram
+     */
+    @Override
+    public final String toString() {
+        return "count=" + count.get()
+                + " mean=" + Math.round(this.getMean())
+                + " p50=" + this.getPercentile(50)
+                + " p90=" + this.getPercentile(90)
+                + " p99=" + this.getPercentile(99)
+                + " max=" + max.get();
+    }
+}
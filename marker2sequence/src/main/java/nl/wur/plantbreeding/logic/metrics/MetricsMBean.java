@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only MBean giving one attribute per value of the MetricsRegistry.
+ * The attributes are listed again every time the MBeanInfo is asked for, so
+ * that the metrics created after the registration appear once the JMX
+ * client reconnects. The operation reset clears the sparql statistics.
+ */
+public class MetricsMBean implements DynamicMBean {
+
+    @Override
+    public final Object getAttribute(final String attribute)
+            throws AttributeNotFoundException {
+        final Double value = MetricsRegistry.getValues().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public final void setAttribute(final Attribute attribute)
+            throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("The metrics are read-only: "
+                + attribute.getName());
+    }
+
+    @Override
+    public final AttributeList getAttributes(final String[] attributes) {
+        final Map<String, Double> values = MetricsRegistry.getValues();
+        final AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            final Double value = values.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public final AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public final Object invoke(final String action, final Object[] params,
+            final String[] signature)
+            throws MBeanException, ReflectionException {
+        if ("reset".equals(action)) {
+            QueryMetrics.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(action));
+    }
+
+    @Override
+    public final MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributes =
+                new ArrayList<MBeanAttributeInfo>();
+        for (String name : MetricsRegistry.getValues().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name,
+                    Double.class.getName(), name, true, false, false));
+        }
+        return new MBeanInfo(this.getClass().getName(),
+                "Metrics of marker2sequence",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                null,
+                new MBeanOperationInfo[]{new MBeanOperationInfo("reset",
+                    "Forget the statistics of the sparql queries", null,
+                    "void", MBeanOperationInfo.ACTION)},
+                null);
+    }
+}
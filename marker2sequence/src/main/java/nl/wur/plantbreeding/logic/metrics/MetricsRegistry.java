@@ -0,0 +1,537 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the metrics of the application: Timers of the operations
+ * (web-service calls, parsing, drawing...), Gauges read on export (cache
+ * hits, jobs, sessions...) and the QueryStats of the sparql queries.
+ * They are exported in the Prometheus text format and as the attributes of
+ * one MBean (nl.wur.plantbreeding:type=Metrics).
+ */
+public final class MetricsRegistry {
+
+    /** Prefix of the names of the metrics exported to Prometheus. */
+    public static final String PREFIX = "m2s_";
+    /** Name of the MBean of the metrics. */
+    public static final String OBJECT_NAME =
+            "nl.wur.plantbreeding:type=Metrics";
+    /** Timer of the calls to the BioMoby web-services, per service. */
+    public static final String SOAP_CALL = "soap_call";
+    /** Timer of the parsing of the web-service outputs, per parser. */
+    public static final String SAX_PARSE = "sax_parse";
+    /** Timer of the drawing of the alignment picture, per canvas. */
+    public static final String RENDER = "render";
+    /** Name of the metrics of the sparql queries (see QueryMetrics). */
+    public static final String SPARQL_QUERY = "sparql_query";
+
+    /**
+     * A value read when the metrics are exported.
+     */
+    public interface Gauge {
+
+        /**
+         * Return the current value.
+         * @return the value
+         */
+        double getValue();
+    }
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            MetricsRegistry.class.getName());
+    /** Timers per name and labels. */
+    private static final ConcurrentMap<String, Timer> TIMERS =
+            new ConcurrentHashMap<String, Timer>();
+    /** Gauges per name and labels. */
+    private static final ConcurrentMap<String, GaugeEntry> GAUGES =
+            new ConcurrentHashMap<String, GaugeEntry>();
+    /** Description of the metrics, per name. */
+    private static final ConcurrentMap<String, String> HELP =
+            new ConcurrentHashMap<String, String>();
+
+    static {
+        HELP.put(SOAP_CALL, "Calls to the BioMoby web-services");
+        HELP.put(SAX_PARSE, "Parsing of the web-service outputs");
+        HELP.put(RENDER, "Drawing of the alignment picture");
+        HELP.put(SPARQL_QUERY, "Sparql queries per QueryRdf method");
+    }
+
+    /**
+     * Default private constructor.
+     */
+    private MetricsRegistry() { }
+
+    /**
+     * Return the Timer of a name and labels, creating it if needed.
+     * @param name name of the metric, ie: SOAP_CALL
+     * @param labels labels of the metric, as name and value pairs
+     * @return the Timer
+     */
+    public static Timer getTimer(final String name, final String... labels) {
+        final String key = key(name, labels);
+        Timer timer = TIMERS.get(key);
+        if (timer == null) {
+            final Timer created = new Timer(name, labels);
+            timer = TIMERS.putIfAbsent(key, created);
+            if (timer == null) {
+                timer = created;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Register a gauge, a value which can go up and down (ie: the number of
+     * queued jobs). A gauge registered with the same name and labels is
+     * replaced.
+     * @param name name of the metric
+     * @param help description of the metric
+     * @param gauge the Gauge giving the value
+     * @param labels labels of the metric, as name and value pairs
+     */
+    public static void registerGauge(final String name, final String help,
+            final Gauge gauge, final String... labels) {
+        register(name, help, "gauge", gauge, labels);
+    }
+
+    /**
+     * Register a counter, a value which only goes up (ie: the number of
+     * cache hits). A counter registered with the same name and labels is
+     * replaced.
+     * @param name name of the metric, without the _total suffix
+     * @param help description of the metric
+     * @param gauge the Gauge giving the value
+     * @param labels labels of the metric, as name and value pairs
+     */
+    public static void registerCounter(final String name, final String help,
+            final Gauge gauge, final String... labels) {
+        register(name, help, "counter", gauge, labels);
+    }
+
+    /**
+     * Register a gauge or a counter.
+     * @param name name of the metric
+     * @param help description of the metric
+     * @param type the Prometheus type of the metric
+     * @param gauge the Gauge giving the value
+     * @param labels labels of the metric, as name and value pairs
+     */
+    private static void register(final String name, final String help,
+            final String type, final Gauge gauge, final String... labels) {
+        HELP.put(name, help);
+        GAUGES.put(key(name, labels), new GaugeEntry(name, type, labels,
+                gauge));
+    }
+
+    /**
+     * Remove all the gauges and counters of the given name.
+     * @param name name of the metric
+     */
+    public static void unregister(final String name) {
+        for (GaugeEntry entry : GAUGES.values()) {
+            if (entry.name.equals(name)) {
+                GAUGES.remove(key(entry.name, entry.labels));
+            }
+        }
+    }
+
+    /**
+     * Return the timers created so far, ordered by name and labels.
+     * @return a list of Timer
+     */
+    public static List<Timer> getTimers() {
+        final List<Timer> timers = new ArrayList<Timer>(TIMERS.values());
+        Collections.sort(timers, new Comparator<Timer>() {
+
+            @Override
+            public int compare(final Timer t1, final Timer t2) {
+                return key(t1.getName(), t1.getLabels()).compareTo(
+                        key(t2.getName(), t2.getLabels()));
+            }
+        });
+        return timers;
+    }
+
+    /**
+     * Return the current value of every metric, the timers and sparql
+     * queries giving their count, errors, mean, median, 90th and 99th
+     * percentiles and maximum (in milliseconds).
+     * @return the values, per name{labels}.statistic
+     */
+    public static SortedMap<String, Double> getValues() {
+        final SortedMap<String, Double> values = new TreeMap<String, Double>();
+        for (Timer timer : TIMERS.values()) {
+            putHistogram(values, key(timer.getName(), timer.getLabels()),
+                    timer.getDurations(), timer.getErrors());
+        }
+        for (QueryStats stats : QueryMetrics.getStats()) {
+            final String key = key(SPARQL_QUERY, "method", stats.getMethod(),
+                    "endpoint", stats.getEndpoint());
+            putHistogram(values, key, stats.getDurations(), stats.getErrors());
+            values.put(key + ".rows", (double) stats.getRows().getSum());
+            values.put(key + ".slow", (double) stats.getSlow());
+        }
+        for (GaugeEntry entry : GAUGES.values()) {
+            values.put(key(entry.name, entry.labels), entry.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Add the statistics of a histogram to the values.
+     * @param values the values to fill
+     * @param key name and labels of the metric
+     * @param histogram the Histogram of the durations
+     * @param errors the number of failures
+     */
+    private static void putHistogram(final Map<String, Double> values,
+            final String key, final Histogram histogram, final long errors) {
+        values.put(key + ".count", (double) histogram.getCount());
+        values.put(key + ".errors", (double) errors);
+        values.put(key + ".mean", histogram.getMean());
+        values.put(key + ".p50", (double) histogram.getPercentile(50));
+        values.put(key + ".p90", (double) histogram.getPercentile(90));
+        values.put(key + ".p99", (double) histogram.getPercentile(99));
+        values.put(key + ".max", (double) histogram.getMax());
+    }
+
+    /**
+     * Write all the metrics in the Prometheus text format (version 0.0.4).
+     * The durations are exported in seconds.
+     * @param out the Writer to write to
+     * @throws IOException if the metrics can not be written
+     */
+    public static void writePrometheus(final Writer out) throws IOException {
+        String family = null;
+        final List<Timer> failures = new ArrayList<Timer>();
+        for (Timer timer : getTimers()) {
+            if (!timer.getName().equals(family)) {
+                writeErrors(out, failures);
+                family = timer.getName();
+                writeHeader(out, family + "_seconds", "histogram",
+                        HELP.get(family) + " (duration)");
+            }
+            writeHistogram(out, family + "_seconds", timer.getLabels(),
+                    timer.getDurations(), 1000);
+            failures.add(timer);
+        }
+        writeErrors(out, failures);
+
+        final List<QueryStats> queries = QueryMetrics.getStats();
+        if (!queries.isEmpty()) {
+            final String name = SPARQL_QUERY;
+            writeHeader(out, name + "_seconds", "histogram",
+                    HELP.get(name) + " (duration)");
+            for (QueryStats stats : queries) {
+                writeHistogram(out, name + "_seconds", labels(stats),
+                        stats.getDurations(), 1000);
+            }
+            writeHeader(out, name + "_rows", "histogram",
+                    HELP.get(name) + " (rows or triples returned)");
+            for (QueryStats stats : queries) {
+                writeHistogram(out, name + "_rows", labels(stats),
+                        stats.getRows(), 1);
+            }
+            writeHeader(out, name + "_errors_total", "counter",
+                    HELP.get(name) + " (failures)");
+            for (QueryStats stats : queries) {
+                writeSample(out, name + "_errors_total", labels(stats), null,
+                        stats.getErrors());
+            }
+            writeHeader(out, name + "_slow_total", "counter",
+                    HELP.get(name) + " (slower than the threshold)");
+            for (QueryStats stats : queries) {
+                writeSample(out, name + "_slow_total", labels(stats), null,
+                        stats.getSlow());
+            }
+        }
+
+        final List<GaugeEntry> gauges = new ArrayList<GaugeEntry>(
+                GAUGES.values());
+        Collections.sort(gauges);
+        family = null;
+        for (GaugeEntry entry : gauges) {
+            final String name = "counter".equals(entry.type)
+                    ? entry.name + "_total" : entry.name;
+            if (!name.equals(family)) {
+                family = name;
+                writeHeader(out, name, entry.type, HELP.get(entry.name));
+            }
+            writeSample(out, name, entry.labels, null, entry.getValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the failures of the timers of one family, and clear the list.
+     * @param out the Writer to write to
+     * @param timers the timers of the family
+     * @throws IOException if the metrics can not be written
+     */
+    private static void writeErrors(final Writer out,
+            final List<Timer> timers) throws IOException {
+        if (timers.isEmpty()) {
+            return;
+        }
+        final String family = timers.get(0).getName();
+        writeHeader(out, family + "_errors_total", "counter",
+                HELP.get(family) + " (failures)");
+        for (Timer timer : timers) {
+            writeSample(out, family + "_errors_total", timer.getLabels(),
+                    null, timer.getErrors());
+        }
+        timers.clear();
+    }
+
+    /**
+     * Write the HELP and TYPE lines of a metric.
+     * @param out the Writer to write to
+     * @param name name of the metric, without prefix
+     * @param type Prometheus type of the metric
+     * @param help description of the metric
+     * @throws IOException if the metrics can not be written
+     */
+    private static void writeHeader(final Writer out, final String name,
+            final String type, final String help) throws IOException {
+        out.write("# HELP " + PREFIX + name + " "
+                + (help == null ? name : help.replace("\\", "\\\\")
+                .replace("\n", "\\n")) + "\n");
+        out.write("# TYPE " + PREFIX + name + " " + type + "\n");
+    }
+
+    /**
+     * Write the buckets, sum and count of a histogram.
+     * @param out the Writer to write to
+     * @param name name of the metric, without prefix
+     * @param labels labels of the metric, as name and value pairs
+     * @param histogram the Histogram
+     * @param unit the values of the histogram per unit exported (1000 to
+     * export milliseconds as seconds)
+     * @throws IOException if the metrics can not be written
+     */
+    private static void writeHistogram(final Writer out, final String name,
+            final String[] labels, final Histogram histogram,
+            final double unit) throws IOException {
+        final long[] bounds = histogram.getBounds();
+        final long[] buckets = histogram.getBuckets();
+        long cumulated = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulated += buckets[i];
+            writeSample(out, name + "_bucket", labels,
+                    format(bounds[i] / unit), cumulated);
+        }
+        cumulated += buckets[bounds.length];
+        writeSample(out, name + "_bucket", labels, "+Inf", cumulated);
+        writeSample(out, name + "_sum", labels, null,
+                histogram.getSum() / unit);
+        writeSample(out, name + "_count", labels, null, cumulated);
+    }
+
+    /**
+     * Write one sample.
+     * @param out the Writer to write to
+     * @param name name of the metric, without prefix
+     * @param labels labels of the metric, as name and value pairs
+     * @param le upper bound of the bucket, null if the sample is not a bucket
+     * @param value the value of the sample
+     * @throws IOException if the metrics can not be written
+     */
+    private static void writeSample(final Writer out, final String name,
+            final String[] labels, final String le, final double value)
+            throws IOException {
+        final StringBuilder line = new StringBuilder(PREFIX).append(name);
+        if (labels.length > 0 || le != null) {
+            line.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append(labels[i]).append("=\"").append(
+                        escape(labels[i + 1])).append('"');
+            }
+            if (le != null) {
+                if (labels.length > 0) {
+                    line.append(',');
+                }
+                line.append("le=\"").append(le).append('"');
+            }
+            line.append('}');
+        }
+        line.append(' ').append(format(value)).append('\n');
+        out.write(line.toString());
+    }
+
+    /**
+     * Return the labels of the metrics of a QueryStats.
+     * @param stats the QueryStats
+     * @return the method and endpoint labels
+     */
+    private static String[] labels(final QueryStats stats) {
+        return new String[]{"method", stats.getMethod(),
+            "endpoint", stats.getEndpoint()};
+    }
+
+    /**
+     * Format a value, without decimals when it is an integer.
+     * @param value the value
+     * @return the formatted value
+     */
+    private static String format(final double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Escape a label value for the Prometheus text format.
+     * @param value the value
+     * @return the escaped value
+     */
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+
+    /**
+     * Return the key of a metric: its name and its labels.
+     * @param name name of the metric
+     * @param labels labels of the metric, as name and value pairs
+     * @return name{label=value,...}
+     */
+    static String key(final String name, final String... labels) {
+        if (labels.length == 0) {
+            return name;
+        }
+        final StringBuilder key = new StringBuilder(name).append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(labels[i]).append('=').append(labels[i + 1]);
+        }
+        return key.append('}').toString();
+    }
+
+    /**
+     * Register the MBean of the metrics in the platform MBeanServer,
+     * replacing the one of a previous deployment.
+     */
+    public static void registerMBean() {
+        try {
+            final MBeanServer server =
+                    ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new MetricsMBean(), name);
+        }
+        catch (JMException ex) {
+            LOG.log(Level.WARNING, "Could not register the metrics MBean",
+                    ex);
+        }
+    }
+
+    /**
+     * Remove the MBean of the metrics from the platform MBeanServer.
+     */
+    public static void unregisterMBean() {
+        try {
+            final MBeanServer server =
+                    ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (JMException ex) {
+            LOG.log(Level.WARNING, "Could not unregister the metrics MBean",
+                    ex);
+        }
+    }
+
+    /**
+     * A registered gauge or counter.
+     */
+    private static final class GaugeEntry implements Comparable<GaugeEntry> {
+
+        /** Name of the metric. */
+        private final String name;
+        /** Prometheus type of the metric. */
+        private final String type;
+        /** Labels of the metric, as name and value pairs. */
+        private final String[] labels;
+        /** Gauge giving the value. */
+        private final Gauge gauge;
+
+        /**
+         * Constructor.
+         * @param metricname name of the metric
+         * @param metrictype Prometheus type of the metric
+         * @param labelpairs labels of the metric
+         * @param valuegauge Gauge giving the value
+         */
+        private GaugeEntry(final String metricname, final String metrictype,
+                final String[] labelpairs, final Gauge valuegauge) {
+            this.name = metricname;
+            this.type = metrictype;
+            this.labels = labelpairs.clone();
+            this.gauge = valuegauge;
+        }
+
+        /**
+         * Read the value of the gauge.
+         * @return the value, NaN if it can not be read
+         */
+        private double getValue() {
+            try {
+                return gauge.getValue();
+            }
+            catch (RuntimeException ex) {
+                LOG.log(Level.FINE, "Could not read " + name, ex);
+                return Double.NaN;
+            }
+        }
+
+        @Override
+        public int compareTo(final GaugeEntry other) {
+            return key(name, labels).compareTo(key(other.name, other.labels));
+        }
+    }
+}
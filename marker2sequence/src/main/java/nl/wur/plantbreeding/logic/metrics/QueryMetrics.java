@@ -0,0 +1,207 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Collects the QueryStats of every QueryRdf method and endpoint, and logs the
+ * queries slower than a threshold with their full sparql to a dedicated
+ * logger (nl.wur.plantbreeding.logic.metrics.QueryMetrics.slow), which can
+ * also write them to their own file.
+ * Finding the QueryRdf method running a query costs a walk of the stack, it
+ * is skipped when the metrics are disabled.
+ */
+public final class QueryMetrics {
+
+    /** Endpoint name used for the queries run on local models. */
+    public static final String LOCAL = "local";
+    /** Default threshold (in milliseconds) of the slow queries. */
+    public static final long DEFAULT_SLOW_THRESHOLD = 5000;
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            QueryMetrics.class.getName());
+    /** The logger of the slow queries. */
+    private static final Logger SLOW = Logger.getLogger(
+            QueryMetrics.class.getName() + ".slow");
+    /** Statistics per method and endpoint. */
+    private static final ConcurrentMap<String, QueryStats> STATS =
+            new ConcurrentHashMap<String, QueryStats>();
+    /** Whether the queries are recorded. */
+    private static volatile boolean enabled = true;
+    /** Queries slower than this (in milliseconds) are logged, 0 for none. */
+    private static volatile long slowThreshold = DEFAULT_SLOW_THRESHOLD;
+    /** Handler writing the slow queries to their own file. */
+    private static Handler slowFile = null;
+
+    /**
+     * Default private constructor.
+     */
+    private QueryMetrics() { }
+
+    /**
+     * Record one query and log it if it is slow, unless the metrics are
+     * disabled.
+     * @param method name of the QueryRdf method running the query
+     * @param endpoint url of the endpoint, LOCAL for a local model
+     * @param nanos duration of the query in nanoseconds
+     * @param rows number of rows or triples returned, negative if not known
+     * @param query the sparql query
+     * @param failed true if the query failed
+     */
+    public static void record(final String method, final String endpoint,
+            final long nanos, final long rows, final String query,
+            final boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        final long millis = nanos / 1000000;
+        final long threshold = slowThreshold;
+        final boolean slow = threshold > 0 && millis >= threshold;
+        getStats(method, endpoint).record(millis, rows, failed, slow);
+        if (slow) {
+            SLOW.log(Level.WARNING, "{0} on {1}: {2}ms, {3} rows{4}\n{5}",
+                    new Object[]{method, endpoint, Long.toString(millis),
+                        Long.toString(rows), failed ? " (failed)" : "",
+                        query});
+        }
+    }
+
+    /**
+     * Return whether the queries are recorded.
+     * @return true if the metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable the recording of the queries, the slow queries are
+     * not logged either when it is disabled.
+     * @param record true to record the queries
+     */
+    public static void setEnabled(final boolean record) {
+        LOG.log(Level.INFO, "Query metrics {0}",
+                record ? "enabled" : "disabled");
+        enabled = record;
+    }
+
+    /**
+     * Return the statistics of a method and endpoint, creating them if
+     * needed.
+     * @param method name of the QueryRdf method
+     * @param endpoint url of the endpoint, LOCAL for a local model
+     * @return the QueryStats
+     */
+    public static QueryStats getStats(final String method,
+            final String endpoint) {
+        final String key = method + ' ' + endpoint;
+        QueryStats stats = STATS.get(key);
+        if (stats == null) {
+            final QueryStats created = new QueryStats(method, endpoint);
+            stats = STATS.putIfAbsent(key, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Return the statistics recorded so far, the methods which spent the
+     * most time querying first.
+     * @return a list of QueryStats
+     */
+    public static List<QueryStats> getStats() {
+        final List<QueryStats> stats =
+                new ArrayList<QueryStats>(STATS.values());
+        Collections.sort(stats, new Comparator<QueryStats>() {
+
+            @Override
+            public int compare(final QueryStats s1, final QueryStats s2) {
+                final long t1 = s1.getDurations().getSum();
+                final long t2 = s2.getDurations().getSum();
+                if (t1 != t2) {
+                    return t1 > t2 ? -1 : 1;
+                }
+                return s1.getMethod().compareTo(s2.getMethod());
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * Forget the statistics recorded so far.
+     */
+    public static void reset() {
+        STATS.clear();
+    }
+
+    /**
+     * Return the threshold of the slow queries.
+     * @return the threshold in milliseconds, 0 if no query is logged
+     */
+    public static long getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    /**
+     * Set the threshold of the slow queries.
+     * @param millis queries taking this long (in milliseconds) or more are
+     * logged with their sparql, 0 to log none
+     */
+    public static void setSlowThreshold(final long millis) {
+        slowThreshold = millis;
+    }
+
+    /**
+     * Write the slow queries to a file, in addition to the application log.
+     * @param file the file (rotated at 10MB, 5 files kept), null to stop
+     * writing the file
+     * @throws IOException if the file can not be opened
+     */
+    public static synchronized void setSlowLog(final File file)
+            throws IOException {
+        if (slowFile != null) {
+            SLOW.removeHandler(slowFile);
+            slowFile.close();
+            slowFile = null;
+        }
+        if (file != null) {
+            slowFile = new FileHandler(file.getPath(), 10 * 1024 * 1024, 5,
+                    true);
+            slowFile.setFormatter(new SimpleFormatter());
+            SLOW.addHandler(slowFile);
+            LOG.log(Level.INFO, "Slow queries (over {0}ms) logged in {1}",
+                    new Object[]{slowThreshold, file});
+        }
+    }
+}
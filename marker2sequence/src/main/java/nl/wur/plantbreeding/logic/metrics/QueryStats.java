@@ -0,0 +1,136 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the sparql queries run by one method of QueryRdf on one
+ * endpoint (or on local models): durations, rows or triples returned and
+ * failures.
+ */
+public class QueryStats {
+
+    /** Name of the QueryRdf method running the queries. */
+    private final String method;
+    /** Endpoint queried, QueryMetrics.LOCAL for local models. */
+    private final String endpoint;
+    /** Durations (in milliseconds) of the queries. */
+    private final Histogram durations =
+            new Histogram(Histogram.DURATION_BOUNDS);
+    /** Number of rows (select) or triples (construct, describe) returned. */
+    private final Histogram rows = new Histogram(Histogram.SIZE_BOUNDS);
+    /** Number of queries which failed. */
+    private final AtomicLong errors = new AtomicLong(0);
+    /** Number of queries slower than the slow query threshold. */
+    private final AtomicLong slow = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     * @param methodname name of the QueryRdf method running the queries
+     * @param service endpoint queried
+     */
+    public QueryStats(final String methodname, final String service) {
+        this.method = methodname;
+        this.endpoint = service;
+    }
+
+    /**
+     * Record one query.
+     * @param millis the duration of the query in milliseconds
+     * @param count the number of rows or triples returned, negative if not
+     * known
+     * @param failed true if the query failed
+     * @param isslow true if the query was slower than the threshold
+     */
+    final void record(final long millis, final long count,
+            final boolean failed, final boolean isslow) {
+        durations.record(millis);
+        if (count >= 0) {
+            rows.record(count);
+        }
+        if (failed) {
+            errors.incrementAndGet();
+        }
+        if (isslow) {
+            slow.incrementAndGet();
+        }
+    }
+
+    /**
+     * Return the name of the QueryRdf method running the queries.
+     * @return the method name, ie: QueryRdf.getGeneList
+     */
+    public final String getMethod() {
+        return method;
+    }
+
+    /**
+     * Return the endpoint queried.
+     * @return the url of the endpoint, QueryMetrics.LOCAL for local models
+     */
+    public final String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Return the histogram of the durations of the queries.
+     * @return the Histogram, in milliseconds
+     */
+    public final Histogram getDurations() {
+        return durations;
+    }
+
+    /**
+     * Return the histogram of the number of rows or triples returned.
+     * @return the Histogram
+     */
+    public final Histogram getRows() {
+        return rows;
+    }
+
+    /**
+     * Return the number of queries which failed.
+     * @return the number of failures
+     */
+    public final long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Return the number of queries slower than the slow query threshold.
+     * @return the number of slow queries
+     */
+    public final long getSlow() {
+        return slow.get();
+    }
+
+    /**
+     * Return a one line description of the statistics.
+     * @return a String describing the queries of this method
+     */
+    @Override
+    public final String toString() {
+        return method + " endpoint=" + endpoint
+                + " time=" + durations.getSum() + "ms " + durations
+                + " rows=" + rows.getSum()
+                + " errors=" + errors.get()
+                + " slow=" + slow.get();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durations (in milliseconds) and failures of one kind of operation, ie: the
+ * calls to one web-service. Timers are obtained from the MetricsRegistry:
+ * <pre>
+ * final long start = System.nanoTime();
+ * boolean failed = true;
+ * try {
+ *     ...
+ *     failed = false;
+ * } finally {
+ *     timer.record(System.nanoTime() - start, failed);
+ * }
+ * </pre>
+ */
+public class Timer {
+
+    /** Name of the metric. */
+    private final String name;
+    /** Labels of the metric, as name and value pairs. */
+    private final String[] labels;
+    /** Durations (in milliseconds) of the operations. */
+    private final Histogram durations =
+            new Histogram(Histogram.DURATION_BOUNDS);
+    /** Number of operations which failed. */
+    private final AtomicLong errors = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     * @param metricname name of the metric
+     * @param labelpairs labels of the metric, as name and value pairs
+     */
+    Timer(final String metricname, final String[] labelpairs) {
+        this.name = metricname;
+        this.labels = labelpairs.clone();
+    }
+
+    /**
+     * Record one operation.
+     * @param nanos duration of the operation in nanoseconds
+     * @param failed true if the operation failed
+     */
+    public final void record(final long nanos, final boolean failed) {
+        durations.record(nanos / 1000000);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Return the name of the metric.
+     * @return the name
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Return the labels of the metric.
+     * @return the labels, as name and value pairs
+     */
+    public final String[] getLabels() {
+        return labels.clone();
+    }
+
+    /**
+     * Return the histogram of the durations.
+     * @return the Histogram, in milliseconds
+     */
+    public final Histogram getDurations() {
+        return durations;
+    }
+
+    /**
+     * Return the number of operations which failed.
+     * @return the number of failures
+     */
+    public final long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Return a one line description of the timer.
+     * @return a String describing the timer
+     */
+    @Override
+    public final String toString() {
+        return MetricsRegistry.key(name, labels) + " " + durations
+                + " errors=" + errors.get();
+    }
+}
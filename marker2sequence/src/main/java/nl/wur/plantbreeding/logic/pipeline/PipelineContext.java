@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.pipeline;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Values shared by the stages of one run of a pipeline, and the time spent
+ * in each stage. The context can be read and written by several stages at
+ * the same time.
+ */
+public class PipelineContext {
+
+    /** Stands for null values, not accepted by the ConcurrentHashMap. */
+    private static final Object NULL = new Object();
+    /** Values of the run, per key. */
+    private final ConcurrentMap<String, Object> values =
+            new ConcurrentHashMap<String, Object>();
+    /** Time (in milliseconds) spent in each stage, in order of completion. */
+    private final Map<String, Long> timings =
+            Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+    /**
+     * Store a value in the context.
+     * @param key the key of the value
+     * @param value the value (may be null)
+     */
+    public final void put(final String key, final Object value) {
+        values.put(key, value == null ? NULL : value);
+    }
+
+    /**
+     * Return the value stored for a given key.
+     * @param <T> the type of the value
+     * @param key the key of the value
+     * @param type the class of the value
+     * @return the value or null if it is not (or not yet) available
+     */
+    public final <T> T get(final String key, final Class<T> type) {
+        final Object value = values.get(key);
+        if (value == null || value == NULL) {
+            return null;
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * Return the value stored for a given key, without checking its type.
+     * Convenient for the generic collections.
+     * @param <T> the type of the value
+     * @param key the key of the value
+     * @return the value or null if it is not (or not yet) available
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> T get(final String key) {
+        final Object value = values.get(key);
+        if (value == null || value == NULL) {
+            return null;
+        }
+        return (T) value;
+    }
+
+    /**
+     * Return whether a value was stored for the given key (even null).
+     * @param key the key of the value
+     * @return true if the value is available
+     */
+    public final boolean contains(final String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * Record the time spent in a stage.
+     * @param stage the name of the stage
+     * @param millis the time spent in milliseconds
+     */
+    public final void addTiming(final String stage, final long millis) {
+        timings.put(stage, millis);
+    }
+
+    /**
+     * Return the time spent in each stage.
+     * @return a copy of the timings (stage name - milliseconds) in order of
+     * completion
+     */
+    public final Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<String, Long>(timings);
+        }
+    }
+}
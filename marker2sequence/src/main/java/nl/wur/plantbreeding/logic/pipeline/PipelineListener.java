@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.pipeline;
+
+/**
+ * Receives the progress of a pipeline run: it is told each time a stage
+ * completed successfully.
+ */
+public interface PipelineListener {
+
+    /**
+     * Called, from the thread running the pipeline, after a stage
+     * completed successfully.
+     * @param stage the stage which completed
+     * @param done the number of stages completed so far
+     * @param total the number of stages of the pipeline
+     */
+    void stageCompleted(Stage stage, int done, int total);
+}
@@ -0,0 +1,271 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
+
+/**
+ * Runs the stages of a pipeline: each stage is started as soon as all its
+ * inputs are available in the PipelineContext, so that the stages which do
+ * not depend on each other run at the same time.
+ * The first stage failing stops the pipeline, its exception is thrown back
+ * to the caller.
+ */
+public class PipelineScheduler {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            PipelineScheduler.class.getName());
+    /** Executor shared by the pipelines which do not provide their own. */
+    private static ExecutorService defaultExecutor = null;
+    /** Stages of the pipeline. */
+    private final List<Stage> stages;
+    /** Executor running the stages. */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor.
+     * @param pipeline the stages of the pipeline
+     * @param exec the executor running the stages
+     * @throws IllegalArgumentException if two stages write the same output
+     */
+    public PipelineScheduler(final List<Stage> pipeline,
+            final ExecutorService exec) {
+        final Set<String> outputs = new HashSet<String>();
+        for (Stage stage : pipeline) {
+            for (String output : stage.getOutputs()) {
+                if (!outputs.add(output)) {
+                    throw new IllegalArgumentException("Output " + output
+                            + " is written by several stages");
+                }
+            }
+        }
+        this.stages = Collections.unmodifiableList(
+                new ArrayList<Stage>(pipeline));
+        this.executor = exec;
+    }
+
+    /**
+     * Constructor using the default executor.
+     * @param pipeline the stages of the pipeline
+     */
+    public PipelineScheduler(final List<Stage> pipeline) {
+        this(pipeline, PipelineScheduler.getDefaultExecutor());
+    }
+
+    /**
+     * Return the stages of the pipeline.
+     * @return an unmodifiable list of Stage
+     */
+    public final List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Run all the stages of the pipeline.
+     * @param context the context holding the inputs of the pipeline, it
+     * receives the outputs of all the stages
+     * @throws Exception the exception thrown by the first stage failing
+     * @throws IllegalStateException if some stages wait for inputs which
+     * nobody provides
+     */
+    public final void run(final PipelineContext context) throws Exception {
+        this.run(context, null);
+    }
+
+    /**
+     * Run all the stages of the pipeline, reporting the progress to the
+     * given listener.
+     * @param context the context holding the inputs of the pipeline, it
+     * receives the outputs of all the stages
+     * @param listener told each time a stage completes, may be null
+     * @throws Exception the exception thrown by the first stage failing
+     * @throws IllegalStateException if some stages wait for inputs which
+     * nobody provides
+     */
+    public final void run(final PipelineContext context,
+            final PipelineListener listener) throws Exception {
+        final long start = System.currentTimeMillis();
+        final List<Stage> pending = new ArrayList<Stage>(stages);
+        final List<Future<Stage>> futures = new ArrayList<Future<Stage>>();
+        final ExecutorCompletionService<Stage> ecs =
+                new ExecutorCompletionService<Stage>(executor);
+        int running = 0;
+        int completed = 0;
+        try {
+            while (!pending.isEmpty() || running > 0) {
+                final Iterator<Stage> iterator = pending.iterator();
+                while (iterator.hasNext()) {
+                    final Stage stage = iterator.next();
+                    if (this.isReady(stage, context)) {
+                        iterator.remove();
+                        futures.add(ecs.submit(Tracer.wrap(
+                                new StageCall(stage, context))));
+                        running++;
+                    }
+                }
+                if (running == 0) {
+                    throw new IllegalStateException("Stages " + pending
+                            + " wait for inputs which are never produced");
+                }
+                final Future<Stage> done = ecs.take();
+                running--;
+                try {
+                    final Stage stage = done.get();
+                    completed++;
+                    if (listener != null) {
+                        listener.stageCompleted(stage, completed,
+                                stages.size());
+                    }
+                }
+                catch (ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw ex;
+                }
+            }
+        }
+        finally {
+            for (Future<Stage> future : futures) {
+                future.cancel(true);
+            }
+        }
+        LOG.log(Level.INFO, "Pipeline done in {0}ms, stages: {1}",
+                new Object[]{System.currentTimeMillis() - start,
+                    context.getTimings()});
+    }
+
+    /**
+     * Return whether all the inputs of the given stage are available.
+     * @param stage the stage to check
+     * @param context the context of the run
+     * @return true if the stage can be started
+     */
+    private boolean isReady(final Stage stage, final PipelineContext context) {
+        for (String input : stage.getInputs()) {
+            if (!context.contains(input)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the executor shared by the pipelines, creating it if needed.
+     * @return an ExecutorService
+     */
+    public static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            final AtomicInteger count = new AtomicInteger(0);
+            final int threads = Math.max(4,
+                    2 * Runtime.getRuntime().availableProcessors());
+            defaultExecutor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r,
+                                    "m2s-pipeline-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Stop the threads of the shared executor.
+     */
+    public static synchronized void shutdownDefaultExecutor() {
+        if (defaultExecutor != null) {
+            defaultExecutor.shutdownNow();
+            defaultExecutor = null;
+        }
+    }
+
+    /**
+     * Runs one stage in its own Span, records its duration and checks its
+     * outputs.
+     */
+    private static final class StageCall implements Callable<Stage> {
+
+        /** The stage to run. */
+        private final Stage stage;
+        /** The context of the run. */
+        private final PipelineContext context;
+
+        /**
+         * Constructor.
+         * @param st the stage to run
+         * @param ctx the context of the run
+         */
+        private StageCall(final Stage st, final PipelineContext ctx) {
+            this.stage = st;
+            this.context = ctx;
+        }
+
+        @Override
+        public Stage call() throws Exception {
+            final long start = System.currentTimeMillis();
+            final Span span = Tracer.startSpan("stage " + stage.getName());
+            try {
+                stage.run(context);
+            }
+            catch (Exception ex) {
+                span.setError(ex);
+                throw ex;
+            }
+            finally {
+                span.end();
+                context.addTiming(stage.getName(),
+                        System.currentTimeMillis() - start);
+            }
+            for (String output : stage.getOutputs()) {
+                if (!context.contains(output)) {
+                    throw new IllegalStateException("Stage " + stage
+                            + " did not produce " + output);
+                }
+            }
+            return stage;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.pipeline;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One step of a pipeline. A stage declares the values it reads from the
+ * PipelineContext (inputs) and the values it writes into it (outputs); the
+ * PipelineScheduler starts it as soon as all its inputs are available.
+ * A stage must put all its declared outputs in the context (possibly null).
+ */
+public abstract class Stage {
+
+    /** Name of the stage. */
+    private final String name;
+    /** Keys of the values read from the context. */
+    private final List<String> inputs;
+    /** Keys of the values written to the context. */
+    private final List<String> outputs;
+
+    /**
+     * Constructor.
+     * @param stagename name of the stage
+     * @param in keys of the values read from the context
+     * @param out keys of the values written to the context
+     */
+    protected Stage(final String stagename, final String[] in,
+            final String[] out) {
+        this.name = stagename;
+        this.inputs = Collections.unmodifiableList(Arrays.asList(in.clone()));
+        this.outputs = Collections.unmodifiableList(
+                Arrays.asList(out.clone()));
+    }
+
+    /**
+     * Return the name of the stage.
+     * @return the name of the stage
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Return the keys of the values read from the context.
+     * @return an unmodifiable list of keys
+     */
+    public final List<String> getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Return the keys of the values written to the context.
+     * @return an unmodifiable list of keys
+     */
+    public final List<String> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Run the stage: read the inputs from the context and write the outputs
+     * into it.
+     * @param context the PipelineContext of the run
+     * @throws Exception when something goes wrong, the pipeline is then
+     * stopped and the exception given back to its caller
+     */
+    public abstract void run(PipelineContext context) throws Exception;
+
+    /**
+     * Return the name of the stage.
+     * @return the name of the stage
+     */
+    @Override
+    public final String toString() {
+        return name;
+    }
+}
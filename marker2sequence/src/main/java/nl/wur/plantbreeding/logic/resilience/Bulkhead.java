@@ -0,0 +1,126 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent calls made to an external service so that a
+ * hanging service can not hold all the threads of the servlet container.
+ */
+public class Bulkhead {
+
+    /** Semaphore holding the permits. */
+    private final ResizableSemaphore permits;
+    /** Maximum number of concurrent calls. */
+    private int maxConcurrent;
+    /** Time (in milliseconds) a call waits for a permit. */
+    private volatile long maxWait;
+
+    /**
+     * Constructor.
+     * @param concurrent maximum number of concurrent calls
+     * @param wait time (in milliseconds) a call waits for a permit
+     */
+    public Bulkhead(final int concurrent, final long wait) {
+        this.permits = new ResizableSemaphore(concurrent);
+        this.maxConcurrent = concurrent;
+        this.maxWait = wait;
+    }
+
+    /**
+     * Try to obtain a permit to call the service.
+     * @return true if the permit was obtained, false if all the permits are
+     * in use (or the thread was interrupted)
+     */
+    public final boolean tryAcquire() {
+        try {
+            return permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Give back a permit obtained with tryAcquire.
+     */
+    public final void release() {
+        permits.release();
+    }
+
+    /**
+     * Return the number of calls currently running.
+     * @return the number of permits in use
+     */
+    public final synchronized int getActive() {
+        return Math.max(0, maxConcurrent - permits.availablePermits());
+    }
+
+    /**
+     * Return the maximum number of concurrent calls.
+     * @return the number of permits
+     */
+    public final synchronized int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Change the maximum number of concurrent calls.
+     * @param concurrent the new number of permits
+     */
+    public final synchronized void setMaxConcurrent(final int concurrent) {
+        if (concurrent > maxConcurrent) {
+            permits.release(concurrent - maxConcurrent);
+        } else if (concurrent < maxConcurrent) {
+            permits.reducePermits(maxConcurrent - concurrent);
+        }
+        this.maxConcurrent = concurrent;
+    }
+
+    /**
+     * Set the time (in milliseconds) a call waits for a permit.
+     * @param wait the waiting time
+     */
+    public final void setMaxWait(final long wait) {
+        this.maxWait = wait;
+    }
+
+    /**
+     * Semaphore whose number of permits can be reduced.
+     */
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 20121002L;
+
+        /**
+         * Constructor.
+         * @param count the initial number of permits
+         */
+        private ResizableSemaphore(final int count) {
+            super(count, true);
+        }
+
+        @Override
+        protected void reducePermits(final int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
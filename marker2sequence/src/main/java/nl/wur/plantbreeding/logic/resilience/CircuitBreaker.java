@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.resilience;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker of an external service.
+ * After a number of consecutive failures the circuit opens and the calls are
+ * refused straight away. Once the open period is over, a single trial call is
+ * let through (half-open): its success closes the circuit, its failure opens
+ * it again.
+ */
+public class CircuitBreaker {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            CircuitBreaker.class.getName());
+
+    /** The states of the circuit. */
+    public enum State {
+        /** Calls go through. */
+        CLOSED,
+        /** Calls are refused. */
+        OPEN,
+        /** A trial call is running. */
+        HALF_OPEN
+    }
+
+    /** Name of the service protected. */
+    private final String name;
+    /** Number of consecutive failures opening the circuit. */
+    private volatile int failureThreshold;
+    /** Time (in milliseconds) during which the circuit stays open. */
+    private volatile long openMillis;
+    /** Current state of the circuit. */
+    private State state = State.CLOSED;
+    /** Number of consecutive failures. */
+    private int failures = 0;
+    /** Time at which the circuit was opened. */
+    private long openedAt = 0;
+    /** Number of times the circuit was opened. */
+    private long opened = 0;
+
+    /**
+     * Constructor.
+     * @param servicename name of the service protected
+     * @param threshold number of consecutive failures opening the circuit
+     * @param openduration time (in milliseconds) the circuit stays open
+     */
+    public CircuitBreaker(final String servicename, final int threshold,
+            final long openduration) {
+        this.name = servicename;
+        this.failureThreshold = threshold;
+        this.openMillis = openduration;
+    }
+
+    /**
+     * Return whether a call can be made, moves the circuit from open to
+     * half-open once the open period is over.
+     * @return true if the call can be made
+     */
+    public final synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt >= openMillis) {
+                    LOG.log(Level.INFO, "Circuit {0}: half-open", name);
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // A trial call is already running
+                return false;
+        }
+    }
+
+    /**
+     * Record a successful call, closes the circuit.
+     */
+    public final synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            LOG.log(Level.INFO, "Circuit {0}: closed", name);
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    /**
+     * Record a failed call, opens the circuit if the trial call failed or if
+     * there were too many consecutive failures.
+     */
+    public final synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN
+                || (state == State.CLOSED && failures >= failureThreshold)) {
+            LOG.log(Level.WARNING, "Circuit {0}: open after {1} failure(s)",
+                    new Object[]{name, failures});
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            opened++;
+        }
+    }
+
+    /**
+     * Record a call which was allowed but finally not made, so that a
+     * half-open circuit can let another trial call through.
+     */
+    public final synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Return the name of the service protected.
+     * @return the name of the service
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Return the current state of the circuit.
+     * @return the State of the circuit
+     */
+    public final synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Return the number of consecutive failures.
+     * @return the number of failures
+     */
+    public final synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Return the number of times the circuit was opened.
+     * @return the number of openings
+     */
+    public final synchronized long getOpened() {
+        return opened;
+    }
+
+    /**
+     * Set the number of consecutive failures opening the circuit.
+     * @param threshold the number of failures
+     */
+    public final void setFailureThreshold(final int threshold) {
+        this.failureThreshold = threshold;
+    }
+
+    /**
+     * Set the time (in milliseconds) during which the circuit stays open.
+     * @param openduration the open period
+     */
+    public final void setOpenMillis(final long openduration) {
+        this.openMillis = openduration;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.resilience;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds one ServiceGuard per external service (BioMoby web-service or
+ * sparql endpoint) and the settings used to create them.
+ * The settings can be changed once at start-up (see the web.xml of the web
+ * application).
+ */
+public final class ResilienceRegistry {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            ResilienceRegistry.class.getName());
+    /** Guards already created, per service name. */
+    private static final ConcurrentMap<String, ServiceGuard> GUARDS =
+            new ConcurrentHashMap<String, ServiceGuard>();
+    /** Number of consecutive failures opening a circuit. */
+    private static volatile int failureThreshold = 5;
+    /** Time (in milliseconds) during which a circuit stays open. */
+    private static volatile long openMillis = 30000;
+    /** Maximum number of concurrent calls per service. */
+    private static volatile int maxConcurrent = 10;
+    /** Time (in milliseconds) a call waits for a permit. */
+    private static volatile long maxWait = 1000;
+    /** Delay (in milliseconds) before hedging a sparql query, 0 to disable. */
+    private static volatile long hedgeDelay = 0;
+    /** Maximum time (in milliseconds) to wait for a hedged sparql query. */
+    private static volatile long hedgeTimeout = 30000;
+    /** Threads running the hedged calls. */
+    private static ExecutorService executor = null;
+
+    /**
+     * Default private constructor.
+     */
+    private ResilienceRegistry() { }
+
+    /**
+     * Return the guard of the given service, creating it if needed.
+     * @param name the name of the service (web-service name or endpoint url)
+     * @return the ServiceGuard of this service
+     */
+    public static ServiceGuard getGuard(final String name) {
+        ServiceGuard guard = GUARDS.get(name);
+        if (guard == null) {
+            final ServiceGuard created = new ServiceGuard(name,
+                    new CircuitBreaker(name, failureThreshold, openMillis),
+                    new Bulkhead(maxConcurrent, maxWait));
+            guard = GUARDS.putIfAbsent(name, created);
+            if (guard == null) {
+                guard = created;
+            }
+        }
+        return guard;
+    }
+
+    /**
+     * Return all the guards created so far, ordered by name.
+     * @return a list of ServiceGuard
+     */
+    public static List<ServiceGuard> getGuards() {
+        final List<ServiceGuard> guards =
+                new ArrayList<ServiceGuard>(GUARDS.values());
+        Collections.sort(guards, new Comparator<ServiceGuard>() {
+
+            @Override
+            public int compare(final ServiceGuard g1, final ServiceGuard g2) {
+                return g1.getName().compareTo(g2.getName());
+            }
+        });
+        return guards;
+    }
+
+    /**
+     * Change the settings of the guards (existing and future).
+     * @param threshold number of consecutive failures opening a circuit
+     * @param openduration time (in milliseconds) a circuit stays open
+     * @param concurrent maximum number of concurrent calls per service
+     * @param wait time (in milliseconds) a call waits for a permit
+     * @param hedge delay (in milliseconds) before hedging a sparql query, 0
+     * to disable hedging
+     * @param timeout maximum time (in milliseconds) to wait for a hedged
+     * sparql query
+     */
+    public static void configure(final int threshold, final long openduration,
+            final int concurrent, final long wait, final long hedge,
+            final long timeout) {
+        LOG.log(Level.INFO, "Resilience: threshold={0}, open={1}ms, "
+                + "concurrent={2}, wait={3}ms, hedge={4}ms, timeout={5}ms",
+                new Object[]{threshold, openduration, concurrent, wait, hedge,
+                    timeout});
+        failureThreshold = threshold;
+        openMillis = openduration;
+        maxConcurrent = concurrent;
+        maxWait = wait;
+        hedgeDelay = hedge;
+        hedgeTimeout = timeout;
+        for (ServiceGuard guard : GUARDS.values()) {
+            guard.getBreaker().setFailureThreshold(threshold);
+            guard.getBreaker().setOpenMillis(openduration);
+            guard.getBulkhead().setMaxConcurrent(concurrent);
+            guard.getBulkhead().setMaxWait(wait);
+        }
+    }
+
+    /**
+     * Return the delay before hedging a sparql query.
+     * @return the delay in milliseconds, 0 when hedging is disabled
+     */
+    public static long getHedgeDelay() {
+        return hedgeDelay;
+    }
+
+    /**
+     * Return the maximum time to wait for a hedged sparql query.
+     * @return the timeout in milliseconds
+     */
+    public static long getHedgeTimeout() {
+        return hedgeTimeout;
+    }
+
+    /**
+     * Return the executor running the hedged calls. Its number of threads is
+     * bounded: when they are all busy the calls are refused rather than
+     * queued.
+     * @return the ExecutorService
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger(0);
+            executor = new ThreadPoolExecutor(0, 4 * maxConcurrent,
+                    60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                    new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            final Thread thread = new Thread(r,
+                                    "m2s-hedge-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return executor;
+    }
+
+    /**
+     * Stop the threads running the hedged calls.
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
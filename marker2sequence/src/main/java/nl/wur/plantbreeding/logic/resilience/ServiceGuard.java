@@ -0,0 +1,282 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.resilience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.exceptions.ServiceUnavailableException;
+
+/**
+ * Protects the calls made to one external service with a circuit breaker
+ * and a bulkhead. Idempotent calls can also be hedged: if the first attempt
+ * does not answer quickly enough a second one is started and the first
+ * answer is used.
+ */
+public class ServiceGuard {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            ServiceGuard.class.getName());
+    /** Name of the service protected. */
+    private final String name;
+    /** Circuit breaker of the service. */
+    private final CircuitBreaker breaker;
+    /** Bulkhead of the service. */
+    private final Bulkhead bulkhead;
+    /** Number of calls made. */
+    private final AtomicLong calls = new AtomicLong(0);
+    /** Number of calls which failed. */
+    private final AtomicLong failed = new AtomicLong(0);
+    /** Number of calls refused. */
+    private final AtomicLong rejected = new AtomicLong(0);
+    /** Number of hedged attempts started. */
+    private final AtomicLong hedged = new AtomicLong(0);
+
+    /**
+     * Constructor.
+     * @param servicename name of the service protected
+     * @param circuitbreaker circuit breaker of the service
+     * @param concurrentcalls bulkhead of the service
+     */
+    public ServiceGuard(final String servicename,
+            final CircuitBreaker circuitbreaker,
+            final Bulkhead concurrentcalls) {
+        this.name = servicename;
+        this.breaker = circuitbreaker;
+        this.bulkhead = concurrentcalls;
+    }
+
+    /**
+     * Run the given call if the circuit is closed and a permit is available.
+     * @param <T> the type returned by the call
+     * @param task the call to the service
+     * @return the value returned by the call
+     * @throws ServiceUnavailableException if the call was refused
+     * @throws Exception the exception thrown by the call
+     */
+    public final <T> T call(final Callable<T> task) throws Exception {
+        this.enter();
+        try {
+            final T out = task.call();
+            breaker.onSuccess();
+            return out;
+        }
+        catch (Exception ex) {
+            this.onFailure();
+            throw ex;
+        }
+        finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Run the given idempotent call as call() does but start a second
+     * attempt if the first one did not answer after hedgedelay milliseconds.
+     * The first answer is returned, the other attempt is cancelled.
+     * @param <T> the type returned by the call
+     * @param task the call to the service, it must be idempotent
+     * @param executor the executor running the attempts
+     * @param hedgedelay delay (in milliseconds) before starting the second
+     * attempt
+     * @param timeout maximum time (in milliseconds) to wait for an answer
+     * @return the value returned by the first successful attempt
+     * @throws ServiceUnavailableException if the call was refused or timed
+     * out
+     * @throws Exception the exception thrown by the last attempt
+     */
+    public final <T> T callHedged(final Callable<T> task,
+            final ExecutorService executor, final long hedgedelay,
+            final long timeout) throws Exception {
+        this.enter();
+        final List<Future<T>> futures = new ArrayList<Future<T>>(2);
+        try {
+            final ExecutorCompletionService<T> ecs =
+                    new ExecutorCompletionService<T>(executor);
+            final long deadline = System.currentTimeMillis() + timeout;
+            futures.add(ecs.submit(task));
+            Future<T> done = ecs.poll(Math.min(hedgedelay, timeout),
+                    TimeUnit.MILLISECONDS);
+            if (done == null) {
+                try {
+                    futures.add(ecs.submit(task));
+                    hedged.incrementAndGet();
+                    LOG.log(Level.FINE, "Hedged call to {0}", name);
+                }
+                catch (RejectedExecutionException ex) {
+                    LOG.log(Level.FINE, "No thread left to hedge {0}", name);
+                }
+            }
+            Exception last = null;
+            int running = futures.size();
+            while (running > 0) {
+                if (done == null) {
+                    final long left = deadline - System.currentTimeMillis();
+                    done = ecs.poll(Math.max(0, left), TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        break;
+                    }
+                }
+                try {
+                    final T out = done.get();
+                    breaker.onSuccess();
+                    return out;
+                }
+                catch (ExecutionException ex) {
+                    last = ex.getCause() instanceof Exception
+                            ? (Exception) ex.getCause() : ex;
+                }
+                running--;
+                done = null;
+            }
+            this.onFailure();
+            if (last != null) {
+                throw last;
+            }
+            throw new ServiceUnavailableException("Service " + name
+                    + " did not answer within " + timeout + "ms");
+        }
+        catch (RejectedExecutionException ex) {
+            breaker.onCancel();
+            rejected.incrementAndGet();
+            throw new ServiceUnavailableException("No thread available to "
+                    + "call " + name);
+        }
+        catch (InterruptedException ex) {
+            breaker.onCancel();
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while calling "
+                    + name);
+        }
+        finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Check the circuit breaker and obtain a permit from the bulkhead.
+     * @throws ServiceUnavailableException if the call is refused
+     */
+    private void enter() {
+        calls.incrementAndGet();
+        if (!bulkhead.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new ServiceUnavailableException("Too many concurrent calls "
+                    + "to " + name);
+        }
+        if (!breaker.allowRequest()) {
+            bulkhead.release();
+            rejected.incrementAndGet();
+            throw new ServiceUnavailableException("Circuit open for " + name);
+        }
+    }
+
+    /**
+     * Record a failed call.
+     */
+    private void onFailure() {
+        failed.incrementAndGet();
+        breaker.onFailure();
+    }
+
+    /**
+     * Return the name of the service protected.
+     * @return the name of the service
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Return the circuit breaker of the service.
+     * @return the CircuitBreaker
+     */
+    public final CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Return the bulkhead of the service.
+     * @return the Bulkhead
+     */
+    public final Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * Return the number of calls made (including the refused ones).
+     * @return the number of calls
+     */
+    public final long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Return the number of calls which failed.
+     * @return the number of failures
+     */
+    public final long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Return the number of calls refused.
+     * @return the number of refused calls
+     */
+    public final long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Return the number of hedged attempts started.
+     * @return the number of hedged attempts
+     */
+    public final long getHedged() {
+        return hedged.get();
+    }
+
+    /**
+     * Return a one line description of the state of this guard.
+     * @return a String describing the guard
+     */
+    @Override
+    public final String toString() {
+        return name + " state=" + breaker.getState()
+                + " consecutiveFailures=" + breaker.getFailures()
+                + " opened=" + breaker.getOpened()
+                + " active=" + bulkhead.getActive()
+                + "/" + bulkhead.getMaxConcurrent()
+                + " calls=" + calls.get()
+                + " failed=" + failed.get()
+                + " rejected=" + rejected.get()
+                + " hedged=" + hedged.get();
+    }
+}
@@ -23,6 +23,9 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
 import org.biomoby.shared.MobyException;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -58,14 +61,31 @@ public class ParserXML extends DefaultHandler {
     public void parseDocument(final String document)
             throws ParserConfigurationException, SAXException, IOException {
 
-        //get a factory
-        SAXParserFactory spf = SAXParserFactory.newInstance();
-
-        //get a new instance of parser
-        SAXParser sp = spf.newSAXParser();
-
-        //parse the file and also register this class for call backs
-        sp.parse(document, this);
+        final Span span = Tracer.startSpan("parse "
+                + this.getClass().getSimpleName());
+        span.setAttribute("document", document);
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            //get a factory
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+
+            //get a new instance of parser
+            SAXParser sp = spf.newSAXParser();
+
+            //parse the file and also register this class for call backs
+            sp.parse(document, this);
+            failed = false;
+        }
+        finally {
+            MetricsRegistry.getTimer(MetricsRegistry.SAX_PARSE, "parser",
+                    this.getClass().getSimpleName()).record(
+                    System.nanoTime() - start, failed);
+            if (failed) {
+                span.setAttribute("error", "parsing failed");
+            }
+            span.end();
+        }
 
     }
 
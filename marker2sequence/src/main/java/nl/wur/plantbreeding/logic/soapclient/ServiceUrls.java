@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.soapclient;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the base urls of the BioMoby web-services called by the
+ * application, the name of the service is appended to them.
+ * The urls can be changed once at start-up (see the web.xml of the web
+ * application), for instance to call a local copy or a stand-in of the
+ * services.
+ */
+public final class ServiceUrls {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            ServiceUrls.class.getName());
+    /** Default url of the EU-SOL services (markers of an interval). */
+    public static final String DEFAULT_MARKERS =
+            "https://www.eu-sol.wur.nl/axis/services/";
+    /** Default url of the MPIZ services (Sifter annotation). */
+    public static final String DEFAULT_SIFTER =
+            "http://bioinfo.mpiz-koeln.mpg.de/axis/services/";
+    /** Default url of the MIPS services (PlantDB annotation). */
+    public static final String DEFAULT_PLANTDB =
+            "http://mips.gsf.de/proj/plant/webapp/axis/services/";
+    /** Url of the EU-SOL services. */
+    private static volatile String markers = DEFAULT_MARKERS;
+    /** Url of the MPIZ services. */
+    private static volatile String sifter = DEFAULT_SIFTER;
+    /** Url of the MIPS services. */
+    private static volatile String plantdb = DEFAULT_PLANTDB;
+
+    /**
+     * Default private constructor.
+     */
+    private ServiceUrls() { }
+
+    /**
+     * Change the urls of the services, null or empty urls give back the
+     * default ones.
+     * @param markersurl url of the EU-SOL services
+     * @param sifterurl url of the MPIZ services
+     * @param plantdburl url of the MIPS services
+     */
+    public static void configure(final String markersurl,
+            final String sifterurl, final String plantdburl) {
+        markers = orDefault(markersurl, DEFAULT_MARKERS);
+        sifter = orDefault(sifterurl, DEFAULT_SIFTER);
+        plantdb = orDefault(plantdburl, DEFAULT_PLANTDB);
+        LOG.log(Level.INFO, "Web-services: {0}", getStatus());
+    }
+
+    /**
+     * Return the given url, ending with a slash, or the default one.
+     * @param url the url configured, may be null
+     * @param fallback the default url
+     * @return the url to use
+     */
+    private static String orDefault(final String url, final String fallback) {
+        if (url == null || url.trim().isEmpty()) {
+            return fallback;
+        }
+        return url.trim().endsWith("/") ? url.trim() : url.trim() + "/";
+    }
+
+    /**
+     * Return the url of an EU-SOL service.
+     * @param service the name of the service
+     * @return the url of the service
+     */
+    public static String getMarkers(final String service) {
+        return markers + service;
+    }
+
+    /**
+     * Return the url of a MPIZ service.
+     * @param service the name of the service
+     * @return the url of the service
+     */
+    public static String getSifter(final String service) {
+        return sifter + service;
+    }
+
+    /**
+     * Return the url of a MIPS service.
+     * @param service the name of the service
+     * @return the url of the service
+     */
+    public static String getPlantDB(final String service) {
+        return plantdb + service;
+    }
+
+    /**
+     * Return a one line description of the urls used.
+     * @return a String listing the urls
+     */
+    public static String getStatus() {
+        return "markers=" + markers + " sifter=" + sifter
+                + " plantdb=" + plantdb;
+    }
+}
@@ -22,8 +22,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry;
+import nl.wur.plantbreeding.logic.metrics.Timer;
+import nl.wur.plantbreeding.logic.resilience.ResilienceRegistry;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
 import nl.wur.plantbreeding.logic.util.FileOrDirectoryExists;
 
 import org.tulsoft.tools.soap.axis.AxisCall;
@@ -206,6 +212,9 @@ public class SoapClient {
     /**
      * Invoke the service named servicename located at serviceurl
      * with the given input.
+     * The call goes through the ServiceGuard of the web-service: it is
+     * refused straight away (ServiceUnavailableException) when the service
+     * keeps failing or when too many calls to it are already running.
      * @param servicename the name of the web-service
      * @param serviceurl the url of the web-service
      * @param input the xml input
@@ -225,11 +234,18 @@ public class SoapClient {
             LOG.log(Level.INFO, "input: {0}", input);
         }
         final URL target = new URL(serviceurl);
-        final AxisCall call = new AxisCall(target, TIMEOUT);
-        call.getCall().setSOAPActionURI(serviceurl + "#" + servicename);
-        final String out = filterMobyResponseType(call.doCall(serviceurl,
-                servicename, new Object[]{sendingFilter(input, false)}));
-        return out;
+        return this.timed(servicename, new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                final AxisCall call = new AxisCall(target, TIMEOUT);
+                call.getCall().setSOAPActionURI(serviceurl + "#"
+                        + servicename);
+                return filterMobyResponseType(call.doCall(serviceurl,
+                        servicename, new Object[]{sendingFilter(input,
+                            false)}));
+            }
+        });
     }
 
     /**
@@ -252,13 +268,55 @@ public class SoapClient {
             throws Exception {
         System.out.println(servicename);
         final URL target = new URL(serviceurl);
-        final AxisCall call = new AxisCall(target, TIMEOUT);
-        call.getCall().setProperty(Call.USERNAME_PROPERTY, user);
-        call.getCall().setProperty(Call.PASSWORD_PROPERTY, password);
-        call.getCall().setSOAPActionURI(serviceurl + "#" + servicename);
-        final String out = filterMobyResponseType(call.doCall(serviceurl,
-                servicename, new Object[]{sendingFilter(input, false)}));
-        return out;
+        return this.timed(servicename, new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                final AxisCall call = new AxisCall(target, TIMEOUT);
+                call.getCall().setProperty(Call.USERNAME_PROPERTY, user);
+                call.getCall().setProperty(Call.PASSWORD_PROPERTY, password);
+                call.getCall().setSOAPActionURI(serviceurl + "#"
+                        + servicename);
+                return filterMobyResponseType(call.doCall(serviceurl,
+                        servicename, new Object[]{sendingFilter(input,
+                            false)}));
+            }
+        });
+    }
+
+    /**
+     * Run the given web-service call through the ServiceGuard of the
+     * service, recording its duration (refused calls included) in the
+     * Timer of the service and in a Span of the current trace.
+     * @param servicename the name of the web-service
+     * @param task the call to the web-service
+     * @return the output returned by the web-service
+     * @throws Exception when the call fails or is refused
+     */
+    private String timed(final String servicename,
+            final Callable<String> task) throws Exception {
+        final Timer timer = MetricsRegistry.getTimer(
+                MetricsRegistry.SOAP_CALL, "service", servicename);
+        final Span span = Tracer.startSpan("soap " + servicename);
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final String output =
+                    ResilienceRegistry.getGuard(servicename).call(task);
+            failed = false;
+            if (output != null) {
+                span.setAttribute("response.length", output.length());
+            }
+            return output;
+        }
+        catch (Exception ex) {
+            span.setError(ex);
+            throw ex;
+        }
+        finally {
+            timer.record(System.nanoTime() - start, failed);
+            span.end();
+        }
     }
 
     /**
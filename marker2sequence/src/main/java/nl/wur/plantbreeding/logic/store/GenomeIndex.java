@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.logic.swtools.AnnotationIndex;
+
+/**
+ * Holds the annotation index of the whole genome, built once per genome
+ * release with AnnotationIndex.main and loaded at start-up (see the web.xml
+ * of the web application). When it is loaded, the GO distributions of a
+ * result are the sums of the rows of its genes in this index, so the model
+ * of the result is not indexed. It must be built from the release served by
+ * the sparql endpoint.
+ */
+public final class GenomeIndex {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            GenomeIndex.class.getName());
+    /** The index of the genome, null if none is configured. */
+    private static volatile AnnotationIndex index = null;
+
+    /**
+     * Default private constructor.
+     */
+    private GenomeIndex() { }
+
+    /**
+     * Load the index of the genome from the given file.
+     * @param file the file written by AnnotationIndex.main, null to remove
+     * the index
+     * @return true if the index was loaded
+     */
+    public static boolean configure(final File file) {
+        if (file == null) {
+            index = null;
+            return false;
+        }
+        try {
+            index = AnnotationIndex.read(file);
+            LOG.log(Level.INFO, "Genome index loaded from {0}: {1}",
+                    new Object[]{file, index});
+            return true;
+        }
+        catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not read the genome index "
+                    + file, ex);
+            index = null;
+            return false;
+        }
+    }
+
+    /**
+     * Return the index of the whole genome.
+     * @return the AnnotationIndex, null if none is loaded
+     */
+    public static AnnotationIndex get() {
+        return index;
+    }
+
+    /**
+     * Return a one line description of the genome index.
+     * @return a String describing the index
+     */
+    public static String getStatus() {
+        final AnnotationIndex current = index;
+        return "index genome " + (current == null ? "none"
+                : current.toString());
+    }
+}
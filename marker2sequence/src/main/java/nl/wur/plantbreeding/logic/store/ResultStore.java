@@ -0,0 +1,252 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.store;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.datatypes.Markerws;
+import nl.wur.plantbreeding.logic.cache.BinaryModelCodec;
+import nl.wur.plantbreeding.logic.cache.ResultCache;
+import nl.wur.plantbreeding.logic.cache.SerializableCodec;
+import nl.wur.plantbreeding.logic.cache.SharedCodec;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seqPipeline;
+import nl.wur.plantbreeding.logic.marker2seq.Marker2seqResult;
+import nl.wur.plantbreeding.logic.pipeline.PipelineContext;
+import nl.wur.plantbreeding.logic.swtools.AnnotationIndex;
+
+/**
+ * Keeps the marker2seq results out of the http sessions: the session only
+ * holds the identifier of its result while the tables and the model are
+ * written to local disk, the most recently used ones being also kept in
+ * memory. The model is only read back when a page needs it.
+ * The store is shared by the whole application and can be configured once
+ * at start-up (see the web.xml of the web application).
+ */
+public final class ResultStore {
+
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            ResultStore.class.getName());
+    /** Default time-to-live of the results: 6 hours. */
+    public static final long DEFAULT_TTL = 6L * 60 * 60 * 1000;
+    /** Default number of result tables kept in memory. */
+    public static final int DEFAULT_MAX_TABLES = 100;
+    /** Default number of models kept in memory. */
+    public static final int DEFAULT_MAX_MODELS = 10;
+    /** Default maximum number of bytes used on disk: 500MB. */
+    public static final long DEFAULT_MAX_DISK_BYTES = 500L * 1024 * 1024;
+    /** Default directory in which the results are written. */
+    public static final File DEFAULT_DIRECTORY = new File(
+            System.getProperty("java.io.tmpdir"), "m2s-results");
+    /** Tables of the results. */
+    private static final ResultCache<StoredResult> TABLES =
+            new ResultCache<StoredResult>("tables",
+            new SharedCodec<StoredResult>(
+            new SerializableCodec<StoredResult>()),
+            DEFAULT_MAX_TABLES, DEFAULT_TTL,
+            new File(DEFAULT_DIRECTORY, "tables"), DEFAULT_MAX_DISK_BYTES);
+    /** Models of the results. */
+    private static final ResultCache<Model> MODELS =
+            new ResultCache<Model>("models",
+            new SharedCodec<Model>(new BinaryModelCodec()),
+            DEFAULT_MAX_MODELS, DEFAULT_TTL,
+            new File(DEFAULT_DIRECTORY, "models"), DEFAULT_MAX_DISK_BYTES);
+    /** Annotation indexes of the models, built when first needed. */
+    private static final ResultCache<AnnotationIndex> INDEXES =
+            new ResultCache<AnnotationIndex>("indexes",
+            new SharedCodec<AnnotationIndex>(
+            new SerializableCodec<AnnotationIndex>()),
+            DEFAULT_MAX_TABLES, DEFAULT_TTL,
+            new File(DEFAULT_DIRECTORY, "indexes"), DEFAULT_MAX_DISK_BYTES);
+
+    /**
+     * Default private constructor.
+     */
+    private ResultStore() { }
+
+    /**
+     * Return a new result identifier.
+     * @return a random identifier
+     */
+    public static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Store the outputs of a marker2seq pipeline.
+     * @param id the identifier of the result
+     * @param result the PipelineContext returned by the Marker2seqPipeline
+     * @return the StoredResult holding the tables of the result
+     */
+    public static StoredResult put(final String id,
+            final PipelineContext result) {
+        final List<Annotation> annotation =
+                result.get(Marker2seqPipeline.ANNOTATION);
+        final List<Markerws> markers =
+                result.get(Marker2seqPipeline.PHYSICALMAP);
+        final List<HashMap<String, String>> map =
+                result.get(Marker2seqPipeline.GENETICMAPTABLE);
+        final List<String> picturemap =
+                result.get(Marker2seqPipeline.PICTUREMAP);
+        final List<Annotation> search =
+                result.get(Marker2seqPipeline.SEARCHRESULT);
+        final StoredResult stored = new StoredResult(id, annotation, markers,
+                map, result.get(Marker2seqPipeline.PICTUREFILE,
+                String.class), picturemap,
+                result.get(Marker2seqPipeline.PICTUREKEY, String.class),
+                search);
+        TABLES.put(id, stored);
+        MODELS.put(id, result.get(Marker2seqPipeline.RESULT,
+                Marker2seqResult.class).getModel());
+        INDEXES.remove(id);
+        return stored;
+    }
+
+    /**
+     * Replace the tables of a result, keeping its model.
+     * @param stored the new tables, stored under their identifier
+     */
+    public static void update(final StoredResult stored) {
+        TABLES.put(stored.getId(), stored);
+    }
+
+    /**
+     * Return the tables of the given result.
+     * @param id the identifier of the result
+     * @return the StoredResult or null if the result expired or was evicted
+     */
+    public static StoredResult get(final String id) {
+        return TABLES.get(id);
+    }
+
+    /**
+     * Return the model of the given result, reading it back from disk if
+     * needed. The model is shared and must be treated as read-only.
+     * @param id the identifier of the result
+     * @return the Jena Model or null if the result expired or was evicted
+     */
+    public static Model getModel(final String id) {
+        return MODELS.get(id);
+    }
+
+    /**
+     * Return the annotation index of the model of the given result, building
+     * it the first time. The GO distributions of the result are read from
+     * the index rather than queried from the model.
+     * @param id the identifier of the result
+     * @return the AnnotationIndex or null if the result expired or was
+     * evicted
+     */
+    public static AnnotationIndex getIndex(final String id) {
+        AnnotationIndex index = INDEXES.get(id);
+        if (index == null) {
+            final Model model = MODELS.get(id);
+            if (model == null) {
+                return null;
+            }
+            index = AnnotationIndex.build(model);
+            INDEXES.put(id, index);
+        }
+        return index;
+    }
+
+    /**
+     * Remove a result which is not used anymore.
+     * @param id the identifier of the result
+     */
+    public static void remove(final String id) {
+        TABLES.remove(id);
+        MODELS.remove(id);
+        INDEXES.remove(id);
+    }
+
+    /**
+     * Return the cache holding the tables of the results.
+     * @return the ResultCache of the tables
+     */
+    public static ResultCache<StoredResult> getTableCache() {
+        return TABLES;
+    }
+
+    /**
+     * Return the cache holding the models of the results.
+     * @return the ResultCache of the models
+     */
+    public static ResultCache<Model> getModelCache() {
+        return MODELS;
+    }
+
+    /**
+     * Return the cache holding the annotation indexes of the results.
+     * @return the ResultCache of the indexes
+     */
+    public static ResultCache<AnnotationIndex> getIndexCache() {
+        return INDEXES;
+    }
+
+    /**
+     * Configure the store.
+     * @param ttl time-to-live of the results in milliseconds
+     * @param maxtables number of result tables (and annotation indexes)
+     * kept in memory
+     * @param maxmodels number of models kept in memory
+     * @param directory directory in which the results are written, null to
+     * only keep them in memory
+     * @param maxdiskbytes maximum number of bytes used on disk, for the
+     * tables and for the models
+     */
+    public static void configure(final long ttl, final int maxtables,
+            final int maxmodels, final File directory,
+            final long maxdiskbytes) {
+        LOG.log(Level.INFO, "Result store: ttl={0}ms, tables={1}, models={2},"
+                + " directory={3}, disk={4} bytes", new Object[]{ttl,
+                    maxtables, maxmodels, directory, maxdiskbytes});
+        configure(TABLES, ttl, maxtables, directory, maxdiskbytes);
+        configure(MODELS, ttl, maxmodels, directory, maxdiskbytes);
+        configure(INDEXES, ttl, maxtables, directory, maxdiskbytes);
+    }
+
+    /**
+     * Configure one cache.
+     * @param cache the ResultCache to configure
+     * @param ttl time-to-live of the entries in milliseconds
+     * @param maxentries maximum number of entries kept in memory
+     * @param directory parent directory of the cache, null to only keep the
+     * entries in memory
+     * @param maxdiskbytes maximum number of bytes used on disk
+     */
+    private static void configure(final ResultCache<?> cache, final long ttl,
+            final int maxentries, final File directory,
+            final long maxdiskbytes) {
+        cache.setTtl(ttl);
+        cache.setMaxEntries(maxentries);
+        if (directory == null) {
+            cache.setDirectory(null);
+        } else {
+            cache.setDirectory(new File(directory, cache.getName()));
+        }
+        cache.setMaxDiskBytes(maxdiskbytes);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.store;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import nl.wur.plantbreeding.datatypes.AnnotationTable;
+import nl.wur.plantbreeding.datatypes.MarkerTable;
+import nl.wur.plantbreeding.datatypes.Markerws;
+
+/**
+ * The tables of one marker2seq result, as displayed to the user: annotation
+ * list, physical map, genetic map, picture and keyword search result.
+ * The model of the interval is stored apart (see ResultStore) since it is
+ * only needed by some of the pages.
+ * The object is never modified once created. The annotation and the
+ * markers are kept in columnar tables (AnnotationTable, MarkerTable).
+ */
+public final class StoredResult implements Serializable {
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121007L;
+    /** Identifier of the result. */
+    private final String id;
+    /** Annotation list. */
+    private final List<Annotation> annotation;
+    /** Physical map. */
+    private final List<Markerws> markers;
+    /** Genetic map table. */
+    private final List<HashMap<String, String>> map;
+    /** Name of the picture file (see RenderCache.getFile). */
+    private final String picturefile;
+    /** Areas of the picture. */
+    private final List<String> picturemap;
+    /** Key of the picture in the RenderCache. */
+    private final String picturekey;
+    /** Annotation matching the keyword. */
+    private final List<Annotation> searchresult;
+
+    /**
+     * Constructor, the lists are copied.
+     * @param resultid the identifier of the result
+     * @param annotationlist the annotation list, may be null
+     * @param physicalmap the physical map, may be null
+     * @param geneticmap the genetic map table, may be null
+     * @param picture the name of the picture file, may be null
+     * @param pictureareas the areas of the picture, may be null
+     * @param key the key of the picture in the RenderCache, may be null
+     * @param search the annotation matching the keyword, may be null
+     */
+    public StoredResult(final String resultid,
+            final List<Annotation> annotationlist,
+            final List<Markerws> physicalmap,
+            final List<HashMap<String, String>> geneticmap,
+            final String picture, final List<String> pictureareas,
+            final String key, final List<Annotation> search) {
+        this.id = resultid;
+        this.annotation = AnnotationTable.copyOf(annotationlist);
+        this.markers = MarkerTable.copyOf(physicalmap);
+        this.map = copy(geneticmap);
+        this.picturefile = picture;
+        this.picturemap = copy(pictureareas);
+        this.picturekey = key;
+        this.searchresult = AnnotationTable.copyOf(search);
+    }
+
+    /**
+     * Return an unmodifiable copy of the given list.
+     * @param <T> the type of the elements
+     * @param list the list to copy, may be null
+     * @return the copy, null if the list is null
+     */
+    private static <T> List<T> copy(final List<T> list) {
+        if (list == null) {
+            return null;
+        }
+        return Collections.unmodifiableList(new ArrayList<T>(list));
+    }
+
+    /**
+     * Return a copy of this result with another keyword search result.
+     * @param search the annotation matching the new keyword, may be null
+     * @return a new StoredResult with the same identifier
+     */
+    public StoredResult withSearchResult(final List<Annotation> search) {
+        return new StoredResult(id, annotation, markers, map, picturefile,
+                picturemap, picturekey, search);
+    }
+
+    /**
+     * Return the identifier of the result.
+     * @return the identifier
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Return the annotation list.
+     * @return an unmodifiable list of Annotation, may be null
+     */
+    public List<Annotation> getAnnotation() {
+        return annotation;
+    }
+
+    /**
+     * Return the physical map.
+     * @return an unmodifiable list of Markerws, may be null
+     */
+    public List<Markerws> getMarkers() {
+        return markers;
+    }
+
+    /**
+     * Return the genetic map table.
+     * @return an unmodifiable list of rows, may be null
+     */
+    public List<HashMap<String, String>> getMap() {
+        return map;
+    }
+
+    /**
+     * Return the name of the picture file.
+     * @return the name of the file (see RenderCache.getFile), may be null
+     */
+    public String getPicturefile() {
+        return picturefile;
+    }
+
+    /**
+     * Return the areas of the picture.
+     * @return an unmodifiable list of html areas, may be null
+     */
+    public List<String> getPicturemap() {
+        return picturemap;
+    }
+
+    /**
+     * Return the key of the picture in the RenderCache, used to serve it as
+     * SVG.
+     * @return the key, may be null
+     */
+    public String getPicturekey() {
+        return picturekey;
+    }
+
+    /**
+     * Return the annotation matching the keyword.
+     * @return an unmodifiable list of Annotation, may be null
+     */
+    public List<Annotation> getSearchresult() {
+        return searchresult;
+    }
+}
@@ -0,0 +1,692 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Count vectors of the annotations (GO terms, GO namespaces, GO synonyms and
+ * pathways) of each gene of a model, built in a single pass over the model.
+ * The distribution of the whole model is precomputed and the distribution of
+ * any set of genes is the sum of their rows, so the GO charts no longer run
+ * GROUP BY queries over the model. The counts are the ones of the
+ * corresponding queries of QueryRdf (getGoDistribution,
+ * getGoNameSpaceDistribution, getGoSynonymDistribution and
+ * getOrderedPathways).
+ * An index of the whole genome can be built once per release (see main) and
+ * used as baseline. The object is never modified once created.
+ */
+public final class AnnotationIndex implements Serializable {
+
+    /** The annotations indexed. */
+    public enum Category {
+        /** Names of the GO terms. */
+        GO,
+        /** Namespaces of the GO terms. */
+        NAMESPACE,
+        /** Exact synonyms of the GO terms. */
+        SYNONYM,
+        /** Pathways (description and url). */
+        PATHWAY
+    }
+
+    /** Version of the class, used for serialization. */
+    private static final long serialVersionUID = 20121009L;
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            AnnotationIndex.class.getName());
+    /** Namespace of the gene properties. */
+    private static final String GENE = "http://pbr.wur.nl/GENE#";
+    /** Namespace of the GO properties. */
+    private static final String OBO =
+            "http://www.geneontology.org/formats/oboInOwl#";
+    /** Identifiers (uri) of the genes, one per row. */
+    private final String[] genes;
+    /** Row of each gene. */
+    private final HashMap<String, Integer> rows;
+    /** One table per category, in the order of Category. */
+    private final Table[] tables;
+
+    /**
+     * Constructor.
+     * @param geneids identifiers of the genes, one per row
+     * @param categorytables one table per category
+     */
+    private AnnotationIndex(final String[] geneids,
+            final Table[] categorytables) {
+        this.genes = geneids;
+        this.rows = new HashMap<String, Integer>(geneids.length * 2);
+        for (int i = 0; i < geneids.length; i++) {
+            this.rows.put(geneids[i], i);
+        }
+        this.tables = categorytables;
+    }
+
+    /**
+     * Build the index of the given model.
+     * @param model the Jena Model to index
+     * @return the AnnotationIndex of the model
+     */
+    public static AnnotationIndex build(final Model model) {
+        final long start = System.currentTimeMillis();
+        final Builder builder = new Builder();
+        final Property go = model.createProperty(GENE, "Go");
+        final Property pathway = model.createProperty(GENE, "Pathway");
+        final Property namespace =
+                model.createProperty(OBO, "hasOBONamespace");
+        final Property synonym =
+                model.createProperty(OBO, "hasExactSynonym");
+        // The annotations of a GO term are only looked up once
+        final Map<RDFNode, int[][]> goterms = new HashMap<RDFNode, int[][]>();
+        StmtIterator it = model.listStatements(null, go, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                final Statement stmt = it.nextStatement();
+                final RDFNode term = stmt.getObject();
+                int[][] ids = goterms.get(term);
+                if (ids == null) {
+                    ids = builder.lookupGo(model, term, namespace, synonym);
+                    goterms.put(term, ids);
+                }
+                final Row row = builder.row(stmt.getSubject().toString());
+                for (int c = 0; c < ids.length; c++) {
+                    for (int id : ids[c]) {
+                        row.add(c, id);
+                    }
+                }
+            }
+        }
+        finally {
+            it.close();
+        }
+        it = model.listStatements(null, pathway, (RDFNode) null);
+        try {
+            while (it.hasNext()) {
+                final Statement stmt = it.nextStatement();
+                final RDFNode url = stmt.getObject();
+                if (!url.isResource()) {
+                    continue;
+                }
+                final Row row = builder.row(stmt.getSubject().toString());
+                final StmtIterator desc = model.listStatements(
+                        (Resource) url, RDFS.comment, (RDFNode) null);
+                try {
+                    while (desc.hasNext()) {
+                        row.add(Category.PATHWAY.ordinal(),
+                                builder.termId(Category.PATHWAY,
+                                desc.nextStatement().getObject().toString(),
+                                url.toString()));
+                    }
+                }
+                finally {
+                    desc.close();
+                }
+            }
+        }
+        finally {
+            it.close();
+        }
+        final AnnotationIndex index = builder.toIndex();
+        LOG.log(Level.INFO, "Annotation index of {0} genes built in {1}ms",
+                new Object[]{index.getGeneCount(),
+                    System.currentTimeMillis() - start});
+        return index;
+    }
+
+    /**
+     * Return the number of genes indexed.
+     * @return the number of rows
+     */
+    public int getGeneCount() {
+        return genes.length;
+    }
+
+    /**
+     * Return the number of different annotations of the given category.
+     * @param category the Category
+     * @return the number of terms
+     */
+    public int getTermCount(final Category category) {
+        return tables[category.ordinal()].terms.length;
+    }
+
+    /**
+     * Return whether the given gene is indexed.
+     * @param gene the uri of the gene
+     * @return true if the gene has at least one annotation
+     */
+    public boolean contains(final String gene) {
+        return rows.containsKey(gene);
+    }
+
+    /**
+     * Return the distribution of the given category over all the genes.
+     * @param category the Category
+     * @return a hash of "annotation": "count"
+     */
+    public HashMap<String, Integer> getDistribution(final Category category) {
+        final Table table = tables[category.ordinal()];
+        return toMap(table, table.totals);
+    }
+
+    /**
+     * Return the distribution of the given category over the given genes.
+     * Genes which are not indexed are ignored, genes given twice are only
+     * counted once.
+     * @param category the Category
+     * @param geneset the uri of the genes
+     * @return a hash of "annotation": "count"
+     */
+    public HashMap<String, Integer> getDistribution(final Category category,
+            final Collection<String> geneset) {
+        final Table table = tables[category.ordinal()];
+        return toMap(table, sum(table, geneset));
+    }
+
+    /**
+     * Return the pathways of all the genes ordered by decreasing number of
+     * genes, as QueryRdf.getOrderedPathways does.
+     * @return a list of [description, count, url]
+     */
+    public ArrayList<ArrayList<String>> getOrderedPathways() {
+        final Table table = tables[Category.PATHWAY.ordinal()];
+        return toOrderedRows(table, table.totals);
+    }
+
+    /**
+     * Return the pathways of the given genes ordered by decreasing number of
+     * genes.
+     * @param geneset the uri of the genes
+     * @return a list of [description, count, url]
+     */
+    public ArrayList<ArrayList<String>> getOrderedPathways(
+            final Collection<String> geneset) {
+        final Table table = tables[Category.PATHWAY.ordinal()];
+        return toOrderedRows(table, sum(table, geneset));
+    }
+
+    /**
+     * Sum the rows of the given genes.
+     * @param table the Table of the category
+     * @param geneset the uri of the genes
+     * @return the count of each term
+     */
+    private int[] sum(final Table table, final Collection<String> geneset) {
+        final int[] counts = new int[table.terms.length];
+        final boolean[] seen = new boolean[genes.length];
+        for (String gene : geneset) {
+            final Integer row = rows.get(gene);
+            if (row == null || seen[row]) {
+                continue;
+            }
+            seen[row] = true;
+            for (int i = table.offsets[row]; i < table.offsets[row + 1];
+                    i++) {
+                counts[table.ids[i]] += table.counts[i];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Convert a count vector in a distribution.
+     * @param table the Table of the category
+     * @param counts the count of each term
+     * @return a hash of "annotation": "count", without the null counts
+     */
+    private static HashMap<String, Integer> toMap(final Table table,
+            final int[] counts) {
+        final HashMap<String, Integer> distribution =
+                new HashMap<String, Integer>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                final Integer previous = distribution.get(table.terms[i]);
+                distribution.put(table.terms[i], previous == null
+                        ? counts[i] : previous + counts[i]);
+            }
+        }
+        return distribution;
+    }
+
+    /**
+     * Convert a count vector in rows ordered by decreasing count.
+     * @param table the Table of the category
+     * @param counts the count of each term
+     * @return a list of [term, count, link]
+     */
+    private static ArrayList<ArrayList<String>> toOrderedRows(
+            final Table table, final int[] counts) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                ids.add(i);
+            }
+        }
+        Collections.sort(ids, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer i1, final Integer i2) {
+                if (counts[i1] != counts[i2]) {
+                    return counts[i1] > counts[i2] ? -1 : 1;
+                }
+                return i1.compareTo(i2);
+            }
+        });
+        final ArrayList<ArrayList<String>> out =
+                new ArrayList<ArrayList<String>>(ids.size());
+        for (int id : ids) {
+            final ArrayList<String> row = new ArrayList<String>(3);
+            row.add(table.terms[id]);
+            row.add(Integer.toString(counts[id]));
+            row.add(table.links[id]);
+            out.add(row);
+        }
+        return out;
+    }
+
+    /**
+     * Write the index to the given file (gzipped).
+     * @param file the file to write
+     * @throws IOException when the file can not be written
+     */
+    public void write(final File file) throws IOException {
+        final OutputStream out = new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            final ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(this);
+            oos.flush();
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read an index written by write.
+     * @param file the file to read
+     * @return the AnnotationIndex read
+     * @throws IOException when the file can not be read or does not contain
+     * an index
+     */
+    public static AnnotationIndex read(final File file) throws IOException {
+        final InputStream in = new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        try {
+            final Object index = new ObjectInputStream(in).readObject();
+            if (!(index instanceof AnnotationIndex)) {
+                throw new IOException(file + " is not an annotation index");
+            }
+            return (AnnotationIndex) index;
+        }
+        catch (ClassNotFoundException ex) {
+            throw new IOException(file + " is not an annotation index", ex);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Build the index of a genome release from its model and write it.
+     * Usage: AnnotationIndex model.rdf|model.m2sb index.ser.gz
+     * @param args the model file (RDF/XML or binary RDF) and the index file
+     * @throws IOException when a file can not be read or written
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AnnotationIndex <model file> "
+                    + "<index file>");
+            return;
+        }
+        final ModelIO io = new ModelIO();
+        final Model model = isBinary(new File(args[0]))
+                ? io.readBinary(args[0]) : io.readRdf(args[0]);
+        final AnnotationIndex index = build(model);
+        index.write(new File(args[1]));
+        System.out.println(index);
+    }
+
+    /**
+     * Return whether the given file is in the binary RDF format.
+     * @param file the file to check
+     * @return true if the file starts with the magic number of the binary
+     * RDF format
+     * @throws IOException when the file can not be read
+     */
+    private static boolean isBinary(final File file) throws IOException {
+        final byte[] magic = new byte[BinaryRdfFormat.MAGIC.length];
+        final DataInputStream in = new DataInputStream(
+                new FileInputStream(file));
+        try {
+            in.readFully(magic);
+            return Arrays.equals(magic, BinaryRdfFormat.MAGIC);
+        }
+        catch (IOException ex) {
+            return false;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Return a one line description of the index.
+     * @return a String describing the index
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("AnnotationIndex genes=");
+        sb.append(genes.length);
+        for (Category category : Category.values()) {
+            sb.append(' ').append(category.name().toLowerCase()).append('=')
+                    .append(getTermCount(category));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The annotations of one category: the terms and, for each gene, the
+     * identifiers of its terms with their counts (compressed rows).
+     */
+    private static final class Table implements Serializable {
+
+        /** Version of the class, used for serialization. */
+        private static final long serialVersionUID = 20121009L;
+        /** The terms. */
+        private final String[] terms;
+        /** Link of each term (url of the pathways), may be null. */
+        private final String[] links;
+        /** Start of the row of each gene in ids and counts. */
+        private final int[] offsets;
+        /** Term identifiers of each row. */
+        private final int[] ids;
+        /** Count of each term of each row. */
+        private final int[] counts;
+        /** Count of each term over all the genes. */
+        private final int[] totals;
+
+        /**
+         * Constructor.
+         * @param termlist the terms
+         * @param linklist the link of each term
+         * @param rowoffsets start of the row of each gene
+         * @param termids term identifiers of each row
+         * @param termcounts count of each term of each row
+         */
+        private Table(final String[] termlist, final String[] linklist,
+                final int[] rowoffsets, final int[] termids,
+                final int[] termcounts) {
+            this.terms = termlist;
+            this.links = linklist;
+            this.offsets = rowoffsets;
+            this.ids = termids;
+            this.counts = termcounts;
+            this.totals = new int[termlist.length];
+            for (int i = 0; i < termids.length; i++) {
+                this.totals[termids[i]] += termcounts[i];
+            }
+        }
+    }
+
+    /**
+     * The annotations of one gene while the index is built.
+     */
+    private static final class Row {
+
+        /** Count of each term, per category. */
+        private final List<Map<Integer, int[]>> counts;
+
+        /**
+         * Constructor.
+         */
+        private Row() {
+            counts = new ArrayList<Map<Integer, int[]>>();
+            for (int c = 0; c < Category.values().length; c++) {
+                counts.add(new TreeMap<Integer, int[]>());
+            }
+        }
+
+        /**
+         * Count one more occurrence of a term.
+         * @param category ordinal of the Category
+         * @param id identifier of the term
+         */
+        private void add(final int category, final int id) {
+            final int[] count = counts.get(category).get(id);
+            if (count == null) {
+                counts.get(category).put(id, new int[]{1});
+            } else {
+                count[0]++;
+            }
+        }
+    }
+
+    /**
+     * Collects the terms and the rows while the model is read.
+     */
+    private static final class Builder {
+
+        /** Rows of the genes, ordered by gene. */
+        private final Map<String, Row> rowmap = new TreeMap<String, Row>();
+        /** Identifier of each term (and link), per category. */
+        private final List<Map<String, Integer>> dictionaries =
+                new ArrayList<Map<String, Integer>>();
+        /** Terms, per category. */
+        private final List<List<String>> terms = new ArrayList<List<String>>();
+        /** Links of the terms, per category. */
+        private final List<List<String>> links = new ArrayList<List<String>>();
+
+        /**
+         * Constructor.
+         */
+        private Builder() {
+            for (int c = 0; c < Category.values().length; c++) {
+                dictionaries.add(new HashMap<String, Integer>());
+                terms.add(new ArrayList<String>());
+                links.add(new ArrayList<String>());
+            }
+        }
+
+        /**
+         * Return the row of the given gene, creating it if needed.
+         * @param gene the uri of the gene
+         * @return the Row of the gene
+         */
+        private Row row(final String gene) {
+            Row row = rowmap.get(gene);
+            if (row == null) {
+                row = new Row();
+                rowmap.put(gene, row);
+            }
+            return row;
+        }
+
+        /**
+         * Return the identifier of a term, adding it if needed.
+         * @param category the Category of the term
+         * @param term the term
+         * @param link the link of the term, may be null
+         * @return the identifier of the term
+         */
+        private int termId(final Category category, final String term,
+                final String link) {
+            final int c = category.ordinal();
+            final String key = link == null ? term : term + '\n' + link;
+            Integer id = dictionaries.get(c).get(key);
+            if (id == null) {
+                id = terms.get(c).size();
+                dictionaries.get(c).put(key, id);
+                terms.get(c).add(term);
+                links.get(c).add(link);
+            }
+            return id;
+        }
+
+        /**
+         * Look up the name, namespace and synonyms of a GO term.
+         * Names and synonyms lose their language tag as in QueryRdf.
+         * @param model the Jena Model
+         * @param term the GO term
+         * @param namespace the hasOBONamespace property
+         * @param synonym the hasExactSynonym property
+         * @return the identifiers of the annotations of the term, one array
+         * per GO category (one identifier per matching statement)
+         */
+        private int[][] lookupGo(final Model model, final RDFNode term,
+                final Property namespace, final Property synonym) {
+            final int[][] ids = new int[Category.PATHWAY.ordinal()][];
+            if (!term.isResource()) {
+                for (int c = 0; c < ids.length; c++) {
+                    ids[c] = new int[0];
+                }
+                return ids;
+            }
+            final Resource go = (Resource) term;
+            final List<Integer> names = new ArrayList<Integer>();
+            for (RDFNode name : objects(model, go, RDFS.label)) {
+                names.add(termId(Category.GO,
+                        name.toString().split("@")[0], null));
+            }
+            final List<Integer> namespaces = new ArrayList<Integer>();
+            for (RDFNode ns : objects(model, go, namespace)) {
+                namespaces.add(termId(Category.NAMESPACE, ns.toString(),
+                        null));
+            }
+            final List<Integer> synonyms = new ArrayList<Integer>();
+            for (RDFNode syn : objects(model, go, synonym)) {
+                if (syn.isResource()) {
+                    for (RDFNode label : objects(model, (Resource) syn,
+                            RDFS.label)) {
+                        synonyms.add(termId(Category.SYNONYM,
+                                label.toString().split("@")[0], null));
+                    }
+                }
+            }
+            ids[Category.GO.ordinal()] = toArray(names);
+            ids[Category.NAMESPACE.ordinal()] = toArray(namespaces);
+            ids[Category.SYNONYM.ordinal()] = toArray(synonyms);
+            return ids;
+        }
+
+        /**
+         * Return the objects of the given subject and property.
+         * @param model the Jena Model
+         * @param subject the subject
+         * @param property the property
+         * @return the list of objects
+         */
+        private static List<RDFNode> objects(final Model model,
+                final Resource subject, final Property property) {
+            final List<RDFNode> objects = new ArrayList<RDFNode>();
+            final StmtIterator it = model.listStatements(subject, property,
+                    (RDFNode) null);
+            try {
+                while (it.hasNext()) {
+                    objects.add(it.nextStatement().getObject());
+                }
+            }
+            finally {
+                it.close();
+            }
+            return objects;
+        }
+
+        /**
+         * Convert a list of integers.
+         * @param list the list to convert
+         * @return an array of int
+         */
+        private static int[] toArray(final List<Integer> list) {
+            final int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+
+        /**
+         * Freeze the rows in an index.
+         * @return the AnnotationIndex
+         */
+        private AnnotationIndex toIndex() {
+            final String[] geneids =
+                    rowmap.keySet().toArray(new String[rowmap.size()]);
+            final Row[] generows = rowmap.values().toArray(
+                    new Row[rowmap.size()]);
+            final Table[] tables = new Table[Category.values().length];
+            for (int c = 0; c < tables.length; c++) {
+                int size = 0;
+                for (Row row : generows) {
+                    size += row.counts.get(c).size();
+                }
+                final int[] offsets = new int[generows.length + 1];
+                final int[] ids = new int[size];
+                final int[] counts = new int[size];
+                int pos = 0;
+                for (int r = 0; r < generows.length; r++) {
+                    offsets[r] = pos;
+                    for (Map.Entry<Integer, int[]> entry
+                            : generows[r].counts.get(c).entrySet()) {
+                        ids[pos] = entry.getKey();
+                        counts[pos] = entry.getValue()[0];
+                        pos++;
+                    }
+                }
+                offsets[generows.length] = pos;
+                tables[c] = new Table(
+                        terms.get(c).toArray(new String[0]),
+                        links.get(c).toArray(new String[0]), offsets, ids,
+                        counts);
+            }
+            return new AnnotationIndex(geneids, tables);
+        }
+    }
+}
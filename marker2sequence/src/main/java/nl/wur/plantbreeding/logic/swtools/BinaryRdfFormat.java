@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants of the binary RDF format written by BinaryRdfWriter and read by
+ * BinaryRdfReader.
+ * A file starts with a header: the magic bytes, the version and the
+ * namespace prefixes of the model. Follow blocks of triples, each written
+ * as its uncompressed length, its compressed length and the deflated
+ * bytes; a block of length 0 ends the file. The sizes are bounded so that
+ * a corrupted file can not make the reader allocate gigabytes.
+ * In a block each triple is three term references. A reference is the
+ * varint identifier of a term already seen, or 0 followed by the kind and
+ * the value of a new term which receives the next identifier. The
+ * dictionary of terms is thus built while reading, across the blocks.
+ */
+final class BinaryRdfFormat {
+
+    /** Magic bytes starting a binary RDF file. */
+    static final byte[] MAGIC = {'M', '2', 'S', 'B'};
+    /** Version of the format. */
+    static final int VERSION = 1;
+    /** Reference introducing a new term. */
+    static final int NEW_TERM = 0;
+    /** Kind of term: IRI. */
+    static final int IRI = 1;
+    /** Kind of term: blank node. */
+    static final int BLANK = 2;
+    /** Kind of term: literal without language nor datatype. */
+    static final int PLAIN_LITERAL = 3;
+    /** Kind of term: literal with a language. */
+    static final int LANG_LITERAL = 4;
+    /** Kind of term: literal with a datatype. */
+    static final int TYPED_LITERAL = 5;
+    /** Default number of uncompressed bytes per block. */
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    /** Maximum number of uncompressed bytes of a block, a triple with a
+     * longer literal can not be written. */
+    static final int MAX_BLOCK_SIZE = 64 * DEFAULT_BLOCK_SIZE;
+    /** Maximum number of bytes of a namespace prefix or uri. */
+    static final int MAX_PREFIX_SIZE = DEFAULT_BLOCK_SIZE;
+    /** Encoding of the strings. */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Default private constructor.
+     */
+    private BinaryRdfFormat() { }
+}
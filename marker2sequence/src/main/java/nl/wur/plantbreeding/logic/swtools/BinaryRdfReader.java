@@ -0,0 +1,455 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the compact binary RDF format written by BinaryRdfWriter (see
+ * BinaryRdfFormat). The triples are added to the model block by block, the
+ * data is read either from a stream or from a memory-mapped file.
+ */
+public class BinaryRdfReader {
+
+    /** Largest shift of the last byte of a varint of 32 bits. */
+    private static final int MAX_SHIFT = 28;
+    /** Where the bytes come from. */
+    private final Source source;
+    /** Terms already read, the term of identifier i is at index i - 1. */
+    private final List<Node> dictionary = new ArrayList<Node>();
+    /** Inflates the blocks. */
+    private final Inflater inflater = new Inflater();
+    /** Compressed content of the current block. */
+    private byte[] compressed = new byte[0];
+    /** Uncompressed content of the current block. */
+    private byte[] block = new byte[0];
+    /** Number of bytes of the current block. */
+    private int length = 0;
+    /** Position in the current block. */
+    private int position = 0;
+
+    /**
+     * Constructor.
+     * @param input where the bytes come from
+     */
+    private BinaryRdfReader(final Source input) {
+        this.source = input;
+    }
+
+    /**
+     * Read a model from the given stream.
+     * @param in the stream to read from (not closed)
+     * @return a new Jena Model
+     * @throws IOException if the stream is not in the binary RDF format or
+     * can not be read
+     */
+    public static Model read(final InputStream in) throws IOException {
+        final Model model = ModelFactory.createDefaultModel();
+        read(in, model);
+        return model;
+    }
+
+    /**
+     * Read the triples from the given stream into the given model.
+     * @param in the stream to read from (not closed)
+     * @param model the Jena Model receiving the triples and prefixes
+     * @throws IOException if the stream is not in the binary RDF format or
+     * can not be read
+     */
+    public static void read(final InputStream in, final Model model)
+            throws IOException {
+        new BinaryRdfReader(new StreamSource(in)).readInto(model);
+    }
+
+    /**
+     * Read the triples from the given buffer into the given model.
+     * @param buffer the buffer to read from, from its current position
+     * @param model the Jena Model receiving the triples and prefixes
+     * @throws IOException if the buffer is not in the binary RDF format
+     */
+    public static void read(final ByteBuffer buffer, final Model model)
+            throws IOException {
+        try {
+            new BinaryRdfReader(new BufferSource(buffer)).readInto(model);
+        }
+        catch (BufferUnderflowException ex) {
+            throw new EOFException("Truncated binary RDF data");
+        }
+    }
+
+    /**
+     * Read a model from the given file, which is memory-mapped.
+     * @param file the file to read
+     * @return a new Jena Model
+     * @throws IOException if the file is not in the binary RDF format or can
+     * not be read
+     */
+    public static Model read(final File file) throws IOException {
+        final Model model = ModelFactory.createDefaultModel();
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()), model);
+        }
+        finally {
+            raf.close();
+        }
+        return model;
+    }
+
+    /**
+     * Read the header then all the blocks.
+     * @param model the Jena Model receiving the triples and prefixes
+     * @throws IOException if the data is not in the binary RDF format
+     */
+    private void readInto(final Model model) throws IOException {
+        final byte[] magic = new byte[BinaryRdfFormat.MAGIC.length];
+        source.readFully(magic, magic.length);
+        if (!Arrays.equals(magic, BinaryRdfFormat.MAGIC)) {
+            throw new IOException("Not a binary RDF stream");
+        }
+        final int version = source.readVarint();
+        if (version != BinaryRdfFormat.VERSION) {
+            throw new IOException("Unsupported binary RDF version "
+                    + version);
+        }
+        final int prefixes = source.readVarint();
+        for (int i = 0; i < prefixes; i++) {
+            final String prefix = this.readSourceString();
+            model.setNsPrefix(prefix, this.readSourceString());
+        }
+
+        final Graph graph = model.getGraph();
+        try {
+            while (this.nextBlock()) {
+                while (position < length) {
+                    graph.add(Triple.create(this.readTerm(),
+                            this.readTerm(), this.readTerm()));
+                }
+            }
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Read a string of the header, directly from the source.
+     * @return the string read
+     * @throws IOException if the string can not be read
+     */
+    private String readSourceString() throws IOException {
+        final int size = checkSize(source.readVarint(),
+                BinaryRdfFormat.MAX_PREFIX_SIZE);
+        source.checkRemaining(size);
+        final byte[] bytes = new byte[size];
+        source.readFully(bytes, size);
+        return new String(bytes, BinaryRdfFormat.UTF8);
+    }
+
+    /**
+     * Read and inflate the next block.
+     * @return false once the end marker is reached
+     * @throws IOException if the block can not be read or inflated
+     */
+    private boolean nextBlock() throws IOException {
+        final int raw = checkSize(source.readVarint(),
+                BinaryRdfFormat.MAX_BLOCK_SIZE);
+        if (raw == 0) {
+            return false;
+        }
+        final int size = checkSize(source.readVarint(),
+                raw + (raw >> 8) + 64);
+        source.checkRemaining(size);
+        if (compressed.length < size) {
+            compressed = new byte[size];
+        }
+        if (block.length < raw) {
+            block = new byte[raw];
+        }
+        source.readFully(compressed, size);
+        inflater.reset();
+        inflater.setInput(compressed, 0, size);
+        try {
+            int done = 0;
+            while (done < raw && !inflater.finished()) {
+                final int count = inflater.inflate(block, done, raw - done);
+                if (count == 0 && inflater.needsInput()) {
+                    break;
+                }
+                done += count;
+            }
+            if (done != raw) {
+                throw new IOException("Corrupted binary RDF block");
+            }
+        }
+        catch (DataFormatException ex) {
+            throw new IOException("Corrupted binary RDF block: "
+                    + ex.getMessage());
+        }
+        length = raw;
+        position = 0;
+        return true;
+    }
+
+    /**
+     * Read a term reference from the current block, defining the term if it
+     * is new.
+     * @return the term
+     * @throws IOException if the reference is invalid
+     */
+    private Node readTerm() throws IOException {
+        final int id = this.readVarint();
+        if (id != BinaryRdfFormat.NEW_TERM) {
+            if (id < 0 || id > dictionary.size()) {
+                throw new IOException("Unknown term " + id);
+            }
+            return dictionary.get(id - 1);
+        }
+        final int kind = this.readVarint();
+        final Node node;
+        switch (kind) {
+            case BinaryRdfFormat.IRI:
+                node = Node.createURI(this.readString());
+                break;
+            case BinaryRdfFormat.BLANK:
+                node = Node.createAnon(AnonId.create(this.readString()));
+                break;
+            case BinaryRdfFormat.PLAIN_LITERAL:
+                node = Node.createLiteral(this.readString());
+                break;
+            case BinaryRdfFormat.LANG_LITERAL:
+                final String text = this.readString();
+                node = Node.createLiteral(text, this.readString(), false);
+                break;
+            case BinaryRdfFormat.TYPED_LITERAL:
+                final String lexical = this.readString();
+                final RDFDatatype datatype = TypeMapper.getInstance()
+                        .getSafeTypeByName(this.readString());
+                node = Node.createLiteral(lexical, null, datatype);
+                break;
+            default:
+                throw new IOException("Unknown kind of term " + kind);
+        }
+        dictionary.add(node);
+        return node;
+    }
+
+    /**
+     * Read a string from the current block.
+     * @return the string read
+     * @throws IOException if the block is too short
+     */
+    private String readString() throws IOException {
+        final int size = checkSize(this.readVarint(), length - position);
+        final String value = new String(block, position, size,
+                BinaryRdfFormat.UTF8);
+        position += size;
+        return value;
+    }
+
+    /**
+     * Read an unsigned varint from the current block.
+     * @return the value read
+     * @throws IOException if the block is too short
+     */
+    private int readVarint() throws IOException {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            if (position >= length) {
+                throw new EOFException("Truncated binary RDF block");
+            }
+            final int b = block[position++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > MAX_SHIFT) {
+                throw new IOException("Corrupted binary RDF varint");
+            }
+        }
+    }
+
+    /**
+     * Check a size read from the data, before anything is allocated for it.
+     * @param size the size read
+     * @param max the largest size allowed
+     * @return the size
+     * @throws IOException if the size is negative or above max, the data is
+     * corrupted
+     */
+    private static int checkSize(final int size, final int max)
+            throws IOException {
+        if (size < 0 || size > max) {
+            throw new IOException("Corrupted binary RDF size " + size);
+        }
+        return size;
+    }
+
+    /**
+     * Where the bytes come from.
+     */
+    private abstract static class Source {
+
+        /**
+         * Read one byte.
+         * @return the byte, from 0 to 255
+         * @throws IOException at the end of the data
+         */
+        abstract int read() throws IOException;
+
+        /**
+         * Read the given number of bytes.
+         * @param buffer the array receiving the bytes
+         * @param size the number of bytes to read
+         * @throws IOException at the end of the data
+         */
+        abstract void readFully(byte[] buffer, int size) throws IOException;
+
+        /**
+         * Check, when it is known, that there are enough bytes left.
+         * @param size the number of bytes about to be read
+         * @throws IOException if the data is shorter
+         */
+        void checkRemaining(final int size) throws IOException {
+        }
+
+        /**
+         * Read an unsigned varint.
+         * @return the value read
+         * @throws IOException at the end of the data
+         */
+        final int readVarint() throws IOException {
+            int value = 0;
+            int shift = 0;
+            while (true) {
+                final int b = this.read();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift > MAX_SHIFT) {
+                    throw new IOException("Corrupted binary RDF varint");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes from a stream.
+     */
+    private static final class StreamSource extends Source {
+
+        /** The stream. */
+        private final InputStream in;
+
+        /**
+         * Constructor.
+         * @param stream the stream to read from
+         */
+        private StreamSource(final InputStream stream) {
+            this.in = stream;
+        }
+
+        @Override
+        int read() throws IOException {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated binary RDF stream");
+            }
+            return b;
+        }
+
+        @Override
+        void readFully(final byte[] buffer, final int size)
+                throws IOException {
+            int done = 0;
+            while (done < size) {
+                final int count = in.read(buffer, done, size - done);
+                if (count < 0) {
+                    throw new EOFException("Truncated binary RDF stream");
+                }
+                done += count;
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes from a buffer, typically a memory-mapped file.
+     */
+    private static final class BufferSource extends Source {
+
+        /** The buffer. */
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructor.
+         * @param bytes the buffer to read from
+         */
+        private BufferSource(final ByteBuffer bytes) {
+            this.buffer = bytes;
+        }
+
+        @Override
+        int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException("Truncated binary RDF buffer");
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        void readFully(final byte[] bytes, final int size)
+                throws IOException {
+            this.checkRemaining(size);
+            buffer.get(bytes, 0, size);
+        }
+
+        @Override
+        void checkRemaining(final int size) throws IOException {
+            if (size > buffer.remaining()) {
+                throw new EOFException("Truncated binary RDF buffer");
+            }
+        }
+    }
+}
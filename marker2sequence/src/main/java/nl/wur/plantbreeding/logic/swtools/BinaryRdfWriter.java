@@ -0,0 +1,298 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes triples in the compact binary RDF format (see BinaryRdfFormat).
+ * The triples are written as they come, one compressed block at a time, so
+ * that a model never needs to be held twice in memory.
+ * Call finish() once all the triples are written.
+ */
+public class BinaryRdfWriter {
+
+    /** The stream written into. */
+    private final OutputStream out;
+    /** Compresses the blocks. */
+    private final Deflater deflater;
+    /** Number of uncompressed bytes per block. */
+    private final int blockSize;
+    /** Identifiers of the terms already written. */
+    private final Map<Node, Integer> dictionary = new HashMap<Node, Integer>();
+    /** Uncompressed content of the current block. */
+    private byte[] block;
+    /** Number of bytes used in the current block. */
+    private int length = 0;
+    /** Buffer receiving the compressed blocks. */
+    private byte[] compressed;
+    /** Whether finish() was called. */
+    private boolean finished = false;
+
+    /**
+     * Constructor using the default block size and compression.
+     * @param stream the stream to write into
+     * @param prefixes the namespace prefixes to write, may be null
+     * @throws IOException when the header can not be written
+     */
+    public BinaryRdfWriter(final OutputStream stream,
+            final Map<String, String> prefixes) throws IOException {
+        this(stream, prefixes, BinaryRdfFormat.DEFAULT_BLOCK_SIZE,
+                Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Constructor.
+     * @param stream the stream to write into
+     * @param prefixes the namespace prefixes to write, may be null
+     * @param size the number of uncompressed bytes per block, at most
+     * BinaryRdfFormat.MAX_BLOCK_SIZE
+     * @param level the compression level of the blocks (see Deflater), use
+     * Deflater.NO_COMPRESSION when the stream is already compressed
+     * @throws IOException when the header can not be written
+     */
+    public BinaryRdfWriter(final OutputStream stream,
+            final Map<String, String> prefixes, final int size,
+            final int level) throws IOException {
+        this.out = stream;
+        this.blockSize = Math.min(size, BinaryRdfFormat.MAX_BLOCK_SIZE);
+        this.deflater = new Deflater(level);
+        this.block = new byte[blockSize + 1024];
+        this.compressed = new byte[blockSize + 1024];
+
+        final Map<String, String> header = prefixes == null
+                ? Collections.<String, String>emptyMap() : prefixes;
+        out.write(BinaryRdfFormat.MAGIC);
+        this.writeVarint(BinaryRdfFormat.VERSION);
+        this.writeVarint(header.size());
+        for (Map.Entry<String, String> prefix : header.entrySet()) {
+            if (this.writeString(prefix.getKey())
+                    > BinaryRdfFormat.MAX_PREFIX_SIZE
+                    || this.writeString(prefix.getValue())
+                    > BinaryRdfFormat.MAX_PREFIX_SIZE) {
+                throw new IOException("Namespace prefix too long: "
+                        + prefix.getKey());
+            }
+        }
+        this.writeRaw();
+    }
+
+    /**
+     * Write all the triples of the given model, with its prefixes, to the
+     * given stream.
+     * @param model the Jena Model to write
+     * @param stream the stream to write into (not closed)
+     * @param level the compression level of the blocks (see Deflater)
+     * @throws IOException when something goes wrong while writing
+     */
+    public static void write(final Model model, final OutputStream stream,
+            final int level) throws IOException {
+        final BinaryRdfWriter writer = new BinaryRdfWriter(stream,
+                model.getNsPrefixMap(), BinaryRdfFormat.DEFAULT_BLOCK_SIZE,
+                level);
+        writer.write(model.getGraph());
+        writer.finish();
+    }
+
+    /**
+     * Write all the triples of the given graph.
+     * @param graph the graph to write
+     * @throws IOException when something goes wrong while writing
+     */
+    public final void write(final Graph graph) throws IOException {
+        final ExtendedIterator<Triple> triples = graph.find(Node.ANY,
+                Node.ANY, Node.ANY);
+        try {
+            while (triples.hasNext()) {
+                this.write(triples.next());
+            }
+        }
+        finally {
+            triples.close();
+        }
+    }
+
+    /**
+     * Write one triple.
+     * @param triple the triple to write
+     * @throws IOException when something goes wrong while writing or if
+     * the triple does not fit in a block of BinaryRdfFormat.MAX_BLOCK_SIZE
+     * bytes
+     */
+    public final void write(final Triple triple) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The writer is finished");
+        }
+        this.writeTerm(triple.getSubject());
+        this.writeTerm(triple.getPredicate());
+        this.writeTerm(triple.getObject());
+        if (length > BinaryRdfFormat.MAX_BLOCK_SIZE) {
+            throw new IOException("Triple too large for a binary RDF block");
+        }
+        if (length >= blockSize) {
+            this.writeBlock();
+        }
+    }
+
+    /**
+     * Write the last block and the end of the data, the underlying stream is
+     * flushed but not closed.
+     * @throws IOException when something goes wrong while writing
+     */
+    public final void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (length > 0) {
+            this.writeBlock();
+        }
+        this.writeVarint(0);
+        this.writeRaw();
+        out.flush();
+        deflater.end();
+        finished = true;
+    }
+
+    /**
+     * Write a reference to the given term, defining it if it is new.
+     * @param node the term to write
+     * @throws IOException if the term can not be written
+     */
+    private void writeTerm(final Node node) throws IOException {
+        final Integer id = dictionary.get(node);
+        if (id != null) {
+            this.writeVarint(id);
+            return;
+        }
+        dictionary.put(node, dictionary.size() + 1);
+        this.writeVarint(BinaryRdfFormat.NEW_TERM);
+        if (node.isURI()) {
+            this.writeVarint(BinaryRdfFormat.IRI);
+            this.writeString(node.getURI());
+        } else if (node.isBlank()) {
+            this.writeVarint(BinaryRdfFormat.BLANK);
+            this.writeString(node.getBlankNodeLabel());
+        } else if (node.isLiteral()) {
+            final String lang = node.getLiteralLanguage();
+            final String datatype = node.getLiteralDatatypeURI();
+            if (datatype != null) {
+                this.writeVarint(BinaryRdfFormat.TYPED_LITERAL);
+                this.writeString(node.getLiteralLexicalForm());
+                this.writeString(datatype);
+            } else if (lang != null && !lang.isEmpty()) {
+                this.writeVarint(BinaryRdfFormat.LANG_LITERAL);
+                this.writeString(node.getLiteralLexicalForm());
+                this.writeString(lang);
+            } else {
+                this.writeVarint(BinaryRdfFormat.PLAIN_LITERAL);
+                this.writeString(node.getLiteralLexicalForm());
+            }
+        } else {
+            throw new IOException("Can not write the term " + node);
+        }
+    }
+
+    /**
+     * Append a string (length then UTF-8 bytes) to the current block.
+     * @param value the string to write
+     * @return the number of bytes of the string
+     */
+    private int writeString(final String value) {
+        final byte[] bytes = value.getBytes(BinaryRdfFormat.UTF8);
+        this.writeVarint(bytes.length);
+        this.ensure(bytes.length);
+        System.arraycopy(bytes, 0, block, length, bytes.length);
+        length += bytes.length;
+        return bytes.length;
+    }
+
+    /**
+     * Append an unsigned varint to the current block.
+     * @param value the positive value to write
+     */
+    private void writeVarint(final int value) {
+        this.ensure(5);
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            block[length++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        block[length++] = (byte) remaining;
+    }
+
+    /**
+     * Make sure the current block can receive the given number of bytes.
+     * @param needed the number of bytes to append
+     */
+    private void ensure(final int needed) {
+        if (length + needed > block.length) {
+            final byte[] bigger = new byte[Math.max(block.length * 2,
+                    length + needed)];
+            System.arraycopy(block, 0, bigger, 0, length);
+            block = bigger;
+        }
+    }
+
+    /**
+     * Write the current content of the block to the stream as is, used for
+     * the header and the end marker.
+     * @throws IOException when something goes wrong while writing
+     */
+    private void writeRaw() throws IOException {
+        out.write(block, 0, length);
+        length = 0;
+    }
+
+    /**
+     * Deflate the current block and write it to the stream, preceded by its
+     * uncompressed and compressed lengths.
+     * @throws IOException when something goes wrong while writing
+     */
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressed.length) {
+                final byte[] bigger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, bigger, 0, size);
+                compressed = bigger;
+            }
+            size += deflater.deflate(compressed, size,
+                    compressed.length - size);
+        }
+        final int raw = length;
+        length = 0;
+        this.writeVarint(raw);
+        this.writeVarint(size);
+        this.writeRaw();
+        out.write(compressed, 0, size);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Profiles of the queries run by one QueryRdf method: their number, their
+ * total and maximal duration and the profiles of the slowest ones.
+ */
+public class MethodProfile {
+
+    /** Name of the QueryRdf method, ie: QueryRdf.getGeneList. */
+    private final String method;
+    /** Number of queries run. */
+    private long count = 0;
+    /** Number of queries which failed. */
+    private long errors = 0;
+    /** Total duration of the queries in nanoseconds. */
+    private long nanos = 0;
+    /** Profiles of the slowest queries, the slowest first. */
+    private final List<QueryProfile> slowest = new ArrayList<QueryProfile>();
+
+    /**
+     * Constructor.
+     * @param methodname name of the QueryRdf method
+     */
+    public MethodProfile(final String methodname) {
+        this.method = methodname;
+    }
+
+    /**
+     * Count one query of the method.
+     * @param duration duration of the query in nanoseconds
+     * @param failed true if the query failed
+     */
+    final synchronized void count(final long duration, final boolean failed) {
+        count++;
+        nanos += duration;
+        if (failed) {
+            errors++;
+        }
+    }
+
+    /**
+     * Return whether a query of the given duration would be one of the
+     * slowest ones.
+     * @param duration duration of the query in nanoseconds
+     * @param kept number of profiles kept
+     * @return true if its profile should be kept
+     */
+    final synchronized boolean isSlowest(final long duration,
+            final int kept) {
+        return slowest.size() < kept
+                || slowest.get(slowest.size() - 1).getNanos() < duration;
+    }
+
+    /**
+     * Keep the given profile if it is one of the slowest ones.
+     * @param profile the profile of a query of the method
+     * @param kept number of profiles kept
+     */
+    final synchronized void keep(final QueryProfile profile, final int kept) {
+        int index = 0;
+        while (index < slowest.size()
+                && slowest.get(index).getNanos() >= profile.getNanos()) {
+            index++;
+        }
+        slowest.add(index, profile);
+        while (slowest.size() > kept) {
+            slowest.remove(slowest.size() - 1);
+        }
+    }
+
+    /**
+     * Return the name of the QueryRdf method.
+     * @return the name of the method
+     */
+    public final String getMethod() {
+        return method;
+    }
+
+    /**
+     * Return the number of queries run by the method.
+     * @return the number of queries
+     */
+    public final synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Return the number of queries which failed.
+     * @return the number of failed queries
+     */
+    public final synchronized long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Return the total duration of the queries.
+     * @return the duration in nanoseconds
+     */
+    public final synchronized long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Return the profiles of the slowest queries.
+     * @return a new list of QueryProfile, the slowest first
+     */
+    public final synchronized List<QueryProfile> getSlowest() {
+        return new ArrayList<QueryProfile>(slowest);
+    }
+}
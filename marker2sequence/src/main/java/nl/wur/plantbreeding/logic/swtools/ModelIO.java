@@ -20,10 +20,14 @@ package nl.wur.plantbreeding.logic.swtools;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.util.FileManager;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.zip.Deflater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +70,36 @@ public class ModelIO {
 
     }
 
+    /**
+     * Reads a model written in the binary RDF format (see BinaryRdfWriter)
+     * from the given file. The file is memory-mapped rather than streamed.
+     * @param filename string of the file to read
+     * @return the Jena Model contained in the given file
+     * @throws IOException if the file can not be read or is not in the binary
+     * RDF format
+     */
+    public final Model readBinary(final String filename) throws IOException {
+        log.log(Level.INFO, "Read binary model from: {0}", filename);
+        final File file = new File(filename);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException(
+                    "File: " + filename + " not found");
+        }
+        return BinaryRdfReader.read(file);
+    }
+
+    /**
+     * Reads a model written in the binary RDF format from the given stream.
+     * @param instream the stream to read from (not closed)
+     * @return the Jena Model read
+     * @throws IOException if the stream can not be read or is not in the
+     * binary RDF format
+     */
+    public final Model readBinary(final InputStream instream)
+            throws IOException {
+        return BinaryRdfReader.read(instream);
+    }
+
     /**
      *
      * Write Model (to stdout or file)
@@ -123,6 +157,37 @@ public class ModelIO {
         log.log(Level.INFO, "Write model in RDF in: {0}", filename);
     }
 
+    /**
+     * Write to a file with the given filename the binary RDF representation
+     * of the model (see BinaryRdfWriter).
+     * @param model a Jena Model to write to a file
+     * @param filename the name of the file to write into
+     * @throws IOException when something goes wrong while writting
+     */
+    public final void printModelToBinaryFile(final Model model,
+            final String filename) throws IOException {
+        final OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(filename));
+        try {
+            this.writeBinary(model, out);
+        }
+        finally {
+            out.close();
+        }
+        log.log(Level.INFO, "Write model in binary RDF in: {0}", filename);
+    }
+
+    /**
+     * Write the binary RDF representation of the model to the given stream.
+     * @param model the Jena Model to output
+     * @param out the stream to write into (flushed but not closed)
+     * @throws IOException when something goes wrong while writting
+     */
+    public final void writeBinary(final Model model, final OutputStream out)
+            throws IOException {
+        BinaryRdfWriter.write(model, out, Deflater.BEST_SPEED);
+    }
+
     /**
      * Print the given Model in N3 format.
      * @param out the stream in which outputing the model
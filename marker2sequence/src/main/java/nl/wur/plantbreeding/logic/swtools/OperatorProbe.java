@@ -0,0 +1,364 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.op.Op0;
+import com.hp.hpl.jena.sparql.algebra.op.Op1;
+import com.hp.hpl.jena.sparql.algebra.op.Op2;
+import com.hp.hpl.jena.sparql.algebra.op.OpConditional;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.algebra.op.OpN;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject;
+import com.hp.hpl.jena.sparql.algebra.op.OpUnion;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterConcat;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterDefaulting;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterRepeatApply;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterSingleton;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIteratorWrapper;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutor;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the operators of the ARQ algebra while a local query runs: it
+ * is set as the OpExecutorFactory of the QueryExecution (see
+ * QueryProfiler) and wraps the iterator of every operator to count its
+ * executions, the rows it returns and the time spent in it.
+ * The times are inclusive (an operator pulls the rows of its children).
+ * The OPTIONAL and UNION applied to each row are run on a copy of the
+ * operator where the values of the row are substituted: the copy is
+ * measured as the operator it comes from.
+ */
+final class OperatorProbe implements OpExecutorFactory {
+
+    /** Maximum length of the description of an operator in the plan. */
+    private static final int MAX_LABEL = 200;
+    /** Statistics (executions, rows, nanoseconds) of the operators. */
+    private final Map<Op, long[]> stats = new IdentityHashMap<Op, long[]>();
+    /** Operators being run with substituted values, and their original. */
+    private final Map<Op, Op> aliases = new IdentityHashMap<Op, Op>();
+    /** First operator executed: the root of the algebra as executed. */
+    private Op root = null;
+
+    @Override
+    public OpExecutor create(final ExecutionContext execCxt) {
+        return new ProfilingExecutor(execCxt, this);
+    }
+
+    /**
+     * Return the operator of the algebra the given operator comes from.
+     * @param op an operator being executed
+     * @return its original, or the operator itself
+     */
+    private synchronized Op resolve(final Op op) {
+        final Op original = aliases.get(op);
+        return original == null ? op : original;
+    }
+
+    /**
+     * Return the statistics of an operator, creating them if needed.
+     * @param op the operator
+     * @return an array of executions, rows and nanoseconds
+     */
+    private synchronized long[] getStats(final Op op) {
+        final Op original = this.resolve(op);
+        if (root == null) {
+            root = original;
+        }
+        long[] values = stats.get(original);
+        if (values == null) {
+            values = new long[3];
+            stats.put(original, values);
+        }
+        return values;
+    }
+
+    /**
+     * Add the given values to the statistics of an operator.
+     * @param values the statistics of the operator
+     * @param executions number of executions to add
+     * @param rows number of rows to add
+     * @param nanos time to add, in nanoseconds
+     */
+    private synchronized void add(final long[] values, final long executions,
+            final long rows, final long nanos) {
+        values[0] += executions;
+        values[1] += rows;
+        values[2] += nanos;
+    }
+
+    /**
+     * Run an operator for one row, the values of the row being substituted
+     * in the operator as ARQ does for the OPTIONAL and UNION.
+     * @param op the operator of the algebra
+     * @param binding the row
+     * @param execCxt the context of the execution
+     * @return the iterator of the substituted operator
+     */
+    private QueryIterator execute(final Op op, final Binding binding,
+            final ExecutionContext execCxt) {
+        final Op substituted = QC.substitute(op, binding);
+        synchronized (this) {
+            this.alias(substituted, op);
+        }
+        try {
+            return QC.execute(substituted,
+                    QueryIterSingleton.create(binding, execCxt), execCxt);
+        }
+        finally {
+            synchronized (this) {
+                this.unalias(substituted);
+            }
+        }
+    }
+
+    /**
+     * Map a substituted operator, and its children, to their original.
+     * @param substituted the substituted operator
+     * @param original the operator it comes from
+     */
+    private void alias(final Op substituted, final Op original) {
+        if (substituted == original) {
+            return;
+        }
+        aliases.put(substituted, this.resolve(original));
+        final List<Op> copies = children(substituted);
+        final List<Op> originals = children(original);
+        if (copies.size() == originals.size()) {
+            for (int i = 0; i < copies.size(); i++) {
+                this.alias(copies.get(i), originals.get(i));
+            }
+        }
+    }
+
+    /**
+     * Forget the mapping of a substituted operator and of its children.
+     * @param substituted the substituted operator
+     */
+    private void unalias(final Op substituted) {
+        if (aliases.remove(substituted) != null) {
+            for (Op child : children(substituted)) {
+                this.unalias(child);
+            }
+        }
+    }
+
+    /**
+     * Return the algebra executed, one operator per line, with the
+     * executions, rows and time (in milliseconds) of each operator.
+     * @return the annotated plan, null if the query did not run
+     */
+    synchronized String getPlan() {
+        if (root == null) {
+            return null;
+        }
+        final StringBuilder out = new StringBuilder();
+        this.print(out, root, "");
+        return out.toString();
+    }
+
+    /**
+     * Print an operator and its children.
+     * @param out where the plan is written
+     * @param op the operator to print
+     * @param indent the indentation of the operator
+     */
+    private void print(final StringBuilder out, final Op op,
+            final String indent) {
+        final long[] values = stats.get(op);
+        out.append(indent).append(label(op));
+        if (values != null) {
+            out.append("  [").append(values[0]).append(" exec, ")
+                    .append(values[1]).append(" rows, ")
+                    .append(values[2] / 1000000).append("ms]");
+        }
+        out.append('\n');
+        for (Op child : children(op)) {
+            this.print(out, child, indent + "  ");
+        }
+    }
+
+    /**
+     * Return the children of an operator.
+     * @param op the operator
+     * @return the list of its sub-operators
+     */
+    private static List<Op> children(final Op op) {
+        final List<Op> children = new ArrayList<Op>();
+        if (op instanceof Op1) {
+            children.add(((Op1) op).getSubOp());
+        } else if (op instanceof Op2) {
+            children.add(((Op2) op).getLeft());
+            children.add(((Op2) op).getRight());
+        } else if (op instanceof OpN) {
+            children.addAll(((OpN) op).getElements());
+        }
+        return children;
+    }
+
+    /**
+     * Return a one line description of an operator: the operator itself for
+     * the leaves (ie: the triple patterns), its name and arguments for the
+     * others.
+     * @param op the operator
+     * @return the description of the operator
+     */
+    private static String label(final Op op) {
+        String label;
+        if (op instanceof Op0) {
+            label = op.toString();
+        } else if (op instanceof OpFilter) {
+            label = op.getName() + " " + ((OpFilter) op).getExprs();
+        } else if (op instanceof OpProject) {
+            label = op.getName() + " " + ((OpProject) op).getVars();
+        } else {
+            label = op.getName();
+        }
+        label = label.replaceAll("\\s+", " ").trim();
+        if (label.length() > MAX_LABEL) {
+            label = label.substring(0, MAX_LABEL) + "...";
+        }
+        return label;
+    }
+
+    /**
+     * Executes the operators as the standard OpExecutor, measuring them.
+     */
+    private static final class ProfilingExecutor extends OpExecutor {
+
+        /** The probe collecting the measures. */
+        private final OperatorProbe probe;
+
+        /**
+         * Constructor.
+         * @param execCxt the context of the execution
+         * @param operatorprobe the probe collecting the measures
+         */
+        private ProfilingExecutor(final ExecutionContext execCxt,
+                final OperatorProbe operatorprobe) {
+            super(execCxt);
+            this.probe = operatorprobe;
+        }
+
+        @Override
+        public QueryIterator executeOp(final Op op,
+                final QueryIterator input) {
+            final long[] values = probe.getStats(op);
+            final long start = System.nanoTime();
+            final QueryIterator iterator = super.executeOp(op, input);
+            probe.add(values, 1, 0, System.nanoTime() - start);
+            return new TimedIterator(iterator, probe, values);
+        }
+
+        @Override
+        protected QueryIterator execute(final OpConditional opCondition,
+                final QueryIterator input) {
+            final QueryIterator left = this.executeOp(opCondition.getLeft(),
+                    input);
+            final Op right = probe.resolve(opCondition.getRight());
+            return new QueryIterRepeatApply(left, execCxt) {
+
+                @Override
+                protected QueryIterator nextStage(final Binding binding) {
+                    return new QueryIterDefaulting(probe.execute(right,
+                            binding, getExecContext()), binding,
+                            getExecContext());
+                }
+            };
+        }
+
+        @Override
+        protected QueryIterator execute(final OpUnion opUnion,
+                final QueryIterator input) {
+            final List<Op> branches = new ArrayList<Op>();
+            for (Op branch : this.flattenUnion(opUnion)) {
+                branches.add(probe.resolve(branch));
+            }
+            return new QueryIterRepeatApply(input, execCxt) {
+
+                @Override
+                protected QueryIterator nextStage(final Binding binding) {
+                    final QueryIterConcat concat =
+                            new QueryIterConcat(getExecContext());
+                    for (Op branch : branches) {
+                        concat.add(probe.execute(branch, binding,
+                                getExecContext()));
+                    }
+                    return concat;
+                }
+            };
+        }
+    }
+
+    /**
+     * Counts the rows returned by an operator and the time spent to get
+     * them.
+     */
+    private static final class TimedIterator extends QueryIteratorWrapper {
+
+        /** The probe collecting the measures. */
+        private final OperatorProbe probe;
+        /** The statistics of the operator. */
+        private final long[] values;
+
+        /**
+         * Constructor.
+         * @param iterator the iterator of the operator
+         * @param operatorprobe the probe collecting the measures
+         * @param operatorstats the statistics of the operator
+         */
+        private TimedIterator(final QueryIterator iterator,
+                final OperatorProbe operatorprobe,
+                final long[] operatorstats) {
+            super(iterator);
+            this.probe = operatorprobe;
+            this.values = operatorstats;
+        }
+
+        @Override
+        protected boolean hasNextBinding() {
+            final long start = System.nanoTime();
+            try {
+                return super.hasNextBinding();
+            }
+            finally {
+                probe.add(values, 0, 0, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        protected Binding moveToNextBinding() {
+            final long start = System.nanoTime();
+            try {
+                return super.moveToNextBinding();
+            }
+            finally {
+                probe.add(values, 0, 1, System.nanoTime() - start);
+            }
+        }
+    }
+}
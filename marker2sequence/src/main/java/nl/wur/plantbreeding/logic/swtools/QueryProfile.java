@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+/**
+ * Profile of one query run by QueryRdf while the QueryProfiler is enabled:
+ * its sparql, its duration and its plan (the ARQ algebra with the measures
+ * of its operators for a local query, the explanation of the endpoint for
+ * a remote one).
+ */
+public class QueryProfile {
+
+    /** Url of the endpoint, QueryMetrics.LOCAL for a local model. */
+    private final String endpoint;
+    /** The sparql query. */
+    private final String query;
+    /** Duration of the query in nanoseconds. */
+    private final long nanos;
+    /** Number of rows or triples returned, negative if not known. */
+    private final long rows;
+    /** Whether the query failed. */
+    private final boolean failed;
+    /** The ARQ algebra of the query, annotated for local queries. */
+    private final String plan;
+    /** The explanation of the endpoint, null for local queries. */
+    private String explain;
+
+    /**
+     * Constructor.
+     * @param service url of the endpoint, QueryMetrics.LOCAL for a local
+     * model
+     * @param querystring the sparql query
+     * @param duration duration of the query in nanoseconds
+     * @param count number of rows or triples returned, negative if not known
+     * @param error whether the query failed
+     * @param algebra the ARQ algebra of the query
+     */
+    public QueryProfile(final String service, final String querystring,
+            final long duration, final long count, final boolean error,
+            final String algebra) {
+        this.endpoint = service;
+        this.query = querystring;
+        this.nanos = duration;
+        this.rows = count;
+        this.failed = error;
+        this.plan = algebra;
+    }
+
+    /**
+     * Return the url of the endpoint.
+     * @return the url, QueryMetrics.LOCAL for a local model
+     */
+    public final String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Return the sparql query.
+     * @return the query
+     */
+    public final String getQuery() {
+        return query;
+    }
+
+    /**
+     * Return the duration of the query.
+     * @return the duration in nanoseconds
+     */
+    public final long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Return the number of rows or triples returned.
+     * @return the number of rows, negative if not known
+     */
+    public final long getRows() {
+        return rows;
+    }
+
+    /**
+     * Return whether the query failed.
+     * @return true if the query failed
+     */
+    public final boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Return the ARQ algebra of the query. For a local query it is the
+     * algebra executed (after the optimizations of ARQ), one operator per
+     * line with its executions, rows and inclusive time.
+     * @return the algebra, null if the query could not be parsed by ARQ
+     */
+    public final String getPlan() {
+        return plan;
+    }
+
+    /**
+     * Return the explanation of the query given by the endpoint.
+     * @return the explanation, "pending" while the endpoint is asked for
+     * it, null for a local query or if the endpoint was not asked
+     */
+    public final synchronized String getExplain() {
+        return explain;
+    }
+
+    /**
+     * Set the explanation of the query given by the endpoint.
+     * @param text the explanation
+     */
+    final synchronized void setExplain(final String text) {
+        this.explain = text;
+    }
+}
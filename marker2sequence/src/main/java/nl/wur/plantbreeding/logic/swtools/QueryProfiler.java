@@ -0,0 +1,392 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.Syntax;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import com.hp.hpl.jena.sparql.util.Symbol;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.logic.metrics.QueryMetrics;
+import nl.wur.plantbreeding.logic.resilience.ResilienceRegistry;
+
+/**
+ * Opt-in profiling of the queries run by QueryRdf, to find the queries to
+ * restructure or to index.
+ * When enabled, the local queries run with an OperatorProbe which measures
+ * every operator of their ARQ algebra, and the remote queries are parsed by
+ * ARQ to give their algebra and sent a second time to the endpoint, asking
+ * for its plan (explain=on, understood by Virtuoso). Only the profiles of
+ * the slowest queries of each QueryRdf method are kept, and the remote plan
+ * is only asked for them, in the background and through the ServiceGuard of
+ * the endpoint.
+ * The profiling slows the queries down and should not stay enabled.
+ */
+public final class QueryProfiler {
+
+    /** Default number of profiles kept per method. */
+    public static final int DEFAULT_KEPT = 3;
+    /** Maximum length of the explanation kept. */
+    private static final int MAX_EXPLAIN = 20000;
+    /** Explanation of a query while the endpoint is being asked for it. */
+    static final String PENDING = "pending";
+    /** Connection and read timeout (in milliseconds) of the explanation. */
+    private static final int TIMEOUT = 30000;
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            QueryProfiler.class.getName());
+    /** Key of the OperatorProbe in the context of a QueryExecution. */
+    private static final Symbol PROBE = Symbol.create(
+            "http://pbr.wur.nl/marker2seq#operatorProbe");
+    /** Profiles per QueryRdf method. */
+    private static final ConcurrentMap<String, MethodProfile> METHODS =
+            new ConcurrentHashMap<String, MethodProfile>();
+    /** Whether the queries are profiled. */
+    private static volatile boolean enabled = false;
+    /** Whether the endpoints are asked for the plan of the queries. */
+    private static volatile boolean explainRemote = true;
+    /** Number of profiles kept per method. */
+    private static volatile int kept = DEFAULT_KEPT;
+
+    /**
+     * Default private constructor.
+     */
+    private QueryProfiler() { }
+
+    /**
+     * Enable or disable the profiling.
+     * @param profile true to profile the queries
+     * @param explain true to ask the endpoints for the plan of the remote
+     * queries
+     * @param slowest number of profiles kept per method
+     */
+    public static void configure(final boolean profile, final boolean explain,
+            final int slowest) {
+        LOG.log(Level.INFO, "Query profiling: enabled={0}, explain={1}, "
+                + "kept={2}", new Object[]{profile, explain, slowest});
+        explainRemote = explain;
+        kept = Math.max(1, slowest);
+        enabled = profile;
+    }
+
+    /**
+     * Return whether the queries are profiled.
+     * @return true if the profiling is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forget all the profiles.
+     */
+    public static void reset() {
+        METHODS.clear();
+    }
+
+    /**
+     * Set an OperatorProbe on a local query if the profiling is enabled.
+     * @param qexec the QueryExecution of the local query, may be null
+     */
+    static void attach(final QueryExecution qexec) {
+        if (enabled && qexec != null) {
+            final OperatorProbe probe = new OperatorProbe();
+            qexec.getContext().set(PROBE, probe);
+            QC.setFactory(qexec.getContext(), probe);
+        }
+    }
+
+    /**
+     * Record the profile of a query if the profiling is enabled.
+     * @param method name of the QueryRdf method running the query
+     * @param endpoint url of the endpoint, QueryMetrics.LOCAL for a local
+     * model
+     * @param query the sparql query
+     * @param nanos duration of the query in nanoseconds
+     * @param rows number of rows or triples returned, negative if not known
+     * @param failed true if the query failed
+     * @param qexec the QueryExecution of a local query, null for a remote
+     * one
+     */
+    static void record(final String method, final String endpoint,
+            final String query, final long nanos, final long rows,
+            final boolean failed, final QueryExecution qexec) {
+        if (!enabled) {
+            return;
+        }
+        MethodProfile profile = METHODS.get(method);
+        if (profile == null) {
+            final MethodProfile created = new MethodProfile(method);
+            profile = METHODS.putIfAbsent(method, created);
+            if (profile == null) {
+                profile = created;
+            }
+        }
+        profile.count(nanos, failed);
+        if (!profile.isSlowest(nanos, kept)) {
+            return;
+        }
+        String plan = null;
+        if (qexec != null && qexec.getContext().get(PROBE) != null) {
+            plan = ((OperatorProbe) qexec.getContext().get(PROBE)).getPlan();
+        }
+        if (plan == null) {
+            plan = compile(query);
+        }
+        final QueryProfile queryprofile = new QueryProfile(endpoint, query,
+                nanos, rows, failed, plan);
+        if (explainRemote && !QueryMetrics.LOCAL.equals(endpoint)) {
+            explain(queryprofile, profile.getSlowest());
+        }
+        profile.keep(queryprofile, kept);
+    }
+
+    /**
+     * Set the plan of a remote query, reusing the one of an identical query
+     * already profiled or asking the endpoint for it in the background.
+     * @param queryprofile the profile of the remote query
+     * @param profiles the profiles already kept for the method
+     */
+    private static void explain(final QueryProfile queryprofile,
+            final List<QueryProfile> profiles) {
+        final String endpoint = queryprofile.getEndpoint();
+        final String query = queryprofile.getQuery();
+        for (QueryProfile profile : profiles) {
+            final String explain = profile.getExplain();
+            if (explain != null && !PENDING.equals(explain)
+                    && profile.getEndpoint().equals(endpoint)
+                    && profile.getQuery().equals(query)) {
+                queryprofile.setExplain(explain);
+                return;
+            }
+        }
+        queryprofile.setExplain(PENDING);
+        try {
+            ResilienceRegistry.getExecutor().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        queryprofile.setExplain(ResilienceRegistry
+                                .getGuard(endpoint).call(
+                                new Callable<String>() {
+
+                                    @Override
+                                    public String call() throws IOException {
+                                        return explain(endpoint, query);
+                                    }
+                                }));
+                    }
+                    catch (Exception ex) {
+                        queryprofile.setExplain("not available ("
+                                + ex.getMessage() + ")");
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            queryprofile.setExplain("not available (no free thread)");
+        }
+    }
+
+    /**
+     * Return the algebra of a query, optimized by ARQ.
+     * @param query the sparql query
+     * @return the algebra, null if ARQ can not parse the query (ie: it uses
+     * an extension of Virtuoso)
+     */
+    private static String compile(final String query) {
+        try {
+            return Algebra.optimize(Algebra.compile(QueryFactory.create(
+                    query, Syntax.syntaxARQ))).toString();
+        }
+        catch (RuntimeException ex) {
+            LOG.log(Level.FINE, "Can not compile the query: {0}",
+                    ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ask the endpoint for the plan of a query.
+     * @param endpoint url of the endpoint
+     * @param query the sparql query
+     * @return the plan, or the reason why it is not available
+     * @throws IOException if the endpoint can not be reached
+     */
+    private static String explain(final String endpoint, final String query)
+            throws IOException {
+        final URL url = new URL(endpoint + (endpoint.contains("?")
+                ? "&" : "?") + "query=" + URLEncoder.encode(query,
+                "UTF-8") + "&explain=on");
+        final HttpURLConnection conn =
+                (HttpURLConnection) url.openConnection();
+        try {
+            conn.setConnectTimeout(TIMEOUT);
+            conn.setReadTimeout(TIMEOUT);
+            conn.setRequestProperty("Accept", "text/html, text/plain");
+            final int code = conn.getResponseCode();
+            final String type = conn.getContentType();
+            if (code != HttpURLConnection.HTTP_OK || type == null
+                    || !(type.startsWith("text/html")
+                    || type.startsWith("text/plain"))) {
+                return "not available (HTTP " + code + ", " + type + ")";
+            }
+            return read(conn);
+        }
+        finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Read the plan returned by the endpoint, without its html tags.
+     * @param conn the connection to the endpoint
+     * @return the text of the plan
+     * @throws IOException if the answer can not be read
+     */
+    private static String read(final HttpURLConnection conn)
+            throws IOException {
+        final StringBuilder text = new StringBuilder();
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(conn.getInputStream(), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            while (line != null && text.length() < MAX_EXPLAIN) {
+                text.append(line.replaceAll("<[^>]*>", "")
+                        .replace("&lt;", "<").replace("&gt;", ">")
+                        .replace("&quot;", "\"").replace("&amp;", "&"))
+                        .append('\n');
+                line = reader.readLine();
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Return the profile of a QueryRdf method.
+     * @param method name of the method, ie: QueryRdf.getGeneList
+     * @return the MethodProfile, null if none of its queries was profiled
+     */
+    public static MethodProfile getProfile(final String method) {
+        return METHODS.get(method);
+    }
+
+    /**
+     * Return the profiles of all the methods, the ones which took the most
+     * time first.
+     * @return a list of MethodProfile
+     */
+    public static List<MethodProfile> getProfiles() {
+        final List<MethodProfile> profiles =
+                new ArrayList<MethodProfile>(METHODS.values());
+        Collections.sort(profiles, new Comparator<MethodProfile>() {
+
+            @Override
+            public int compare(final MethodProfile p1,
+                    final MethodProfile p2) {
+                return Long.valueOf(p2.getNanos()).compareTo(p1.getNanos());
+            }
+        });
+        return profiles;
+    }
+
+    /**
+     * Write the report of the profiling: for each QueryRdf method, the ones
+     * which took the most time first, the number and duration of its
+     * queries then the query, the plan and the explanation of the slowest
+     * ones.
+     * @param writer where the report is written
+     */
+    public static void writeReport(final Writer writer) {
+        final PrintWriter out = new PrintWriter(writer);
+        for (MethodProfile method : getProfiles()) {
+            final long count = method.getCount();
+            out.println(method.getMethod() + ": " + count + " queries, "
+                    + method.getErrors() + " failed, "
+                    + method.getNanos() / 1000000 + "ms total, "
+                    + method.getNanos() / Math.max(1, count) / 1000000
+                    + "ms mean");
+            for (QueryProfile profile : method.getSlowest()) {
+                out.println();
+                out.println("  " + profile.getNanos() / 1000000 + "ms, "
+                        + profile.getRows() + " rows, "
+                        + profile.getEndpoint()
+                        + (profile.isFailed() ? ", failed" : ""));
+                print(out, "query", profile.getQuery());
+                print(out, "plan", profile.getPlan());
+                print(out, "explain", profile.getExplain());
+            }
+            out.println();
+        }
+        out.flush();
+    }
+
+    /**
+     * Return the report of the profiling (see writeReport).
+     * @return the report
+     */
+    public static String getReport() {
+        final StringWriter out = new StringWriter();
+        writeReport(out);
+        return out.toString();
+    }
+
+    /**
+     * Print one section of a profile, indented.
+     * @param out where the section is written
+     * @param title title of the section
+     * @param text content of the section, nothing is printed if null
+     */
+    private static void print(final PrintWriter out, final String title,
+            final String text) {
+        if (text == null) {
+            return;
+        }
+        out.println("  " + title + ":");
+        for (String line : text.split("\n")) {
+            if (!line.trim().isEmpty()) {
+                out.println("    " + line);
+            }
+        }
+    }
+}
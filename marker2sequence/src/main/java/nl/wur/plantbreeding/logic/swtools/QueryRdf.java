@@ -116,8 +116,8 @@ public class QueryRdf extends QueryRdfEngine {
             Annotation gene = new Annotation();
             gene.setName(rows.get(0).trim());
             gene.setScafoldname(scaffold);
-            gene.setSeq_position_start(new Integer(rows.get(2).trim()));
-            gene.setSeq_position_end(new Integer(rows.get(3).trim()));
+            gene.setSeqPosition(Integer.parseInt(rows.get(2).trim()),
+                    Integer.parseInt(rows.get(3).trim()));
             gene.setType(rows.get(4).trim());
             geneslist.add(gene);
         }
@@ -175,8 +175,8 @@ public class QueryRdf extends QueryRdfEngine {
             Annotation annot = new Annotation();
             annot.setName(rows.get(0).trim());
             annot.setScafoldname(scaffold);
-            annot.setSeq_position_start(new Integer(rows.get(2).trim()));
-            annot.setSeq_position_end(new Integer(rows.get(3).trim()));
+            annot.setSeqPosition(Integer.parseInt(rows.get(2).trim()),
+                    Integer.parseInt(rows.get(3).trim()));
             annot.setType(rows.get(4).trim());
             if (rows.size() == 6) {
                 annot.setDescription(rows.get(5).trim());
@@ -229,8 +229,8 @@ public class QueryRdf extends QueryRdfEngine {
                 scaffold = rows.get(3);
             }
             marker.setName(rows.get(0).trim());
-            marker.setSeq_position_start(new Integer(rows.get(1).trim()));
-            marker.setSeq_position_end(new Integer(rows.get(2).trim()));
+            marker.setSeqPosition(Integer.parseInt(rows.get(1).trim()),
+                    Integer.parseInt(rows.get(2).trim()));
             marker.setScafoldname(scaffold);
             String chr = null;
             if (scaffold.contains("chr")) { // At
@@ -384,8 +384,8 @@ public class QueryRdf extends QueryRdfEngine {
             marker.setName(rows.get(0));
             marker.setChromosome(Long.parseLong(rows.get(1).trim()));
             marker.setMap_position(Float.parseFloat(rows.get(2).trim()));
-            marker.setSeq_position_start(new Integer(rows.get(3).trim()));
-            marker.setSeq_position_end(new Integer(rows.get(4).trim()));
+            marker.setSeqPosition(Integer.parseInt(rows.get(3).trim()),
+                    Integer.parseInt(rows.get(4).trim()));
             markers.add(marker);
         }
 //        System.out.println("sca: " + scaffoldname + " markers : "
@@ -1517,8 +1517,8 @@ public class QueryRdf extends QueryRdfEngine {
             if (row.size() > 1) {
                 annot.setName(geneid);
                 annot.setDescription(row.get(0));
-                annot.setSeq_position_start(new Integer(row.get(1)));
-                annot.setSeq_position_end(new Integer(row.get(2)));
+                annot.setSeqPosition(Integer.parseInt(row.get(1)),
+                        Integer.parseInt(row.get(2)));
                 if (row.get(3).contains("#")) {
                     annot.setScafoldname(row.get(3).split("#")[1]);
                 } else {
@@ -2027,8 +2027,8 @@ public class QueryRdf extends QueryRdfEngine {
             Annotation annot = new Annotation();
             annot.setName(rows.get(0).trim());
             annot.setScafoldname(scaffold);
-            annot.setSeq_position_start(new Integer(rows.get(2).trim()));
-            annot.setSeq_position_end(new Integer(rows.get(3).trim()));
+            annot.setSeqPosition(Integer.parseInt(rows.get(2).trim()),
+                    Integer.parseInt(rows.get(3).trim()));
             annot.setType(rows.get(4).trim());
             if (rows.size() == 6) {
                 annot.setDescription(rows.get(5).trim());
@@ -2092,8 +2092,8 @@ public class QueryRdf extends QueryRdfEngine {
             Annotation annot = new Annotation();
             annot.setName(rows.get(0).trim());
             annot.setScafoldname(scaffold);
-            annot.setSeq_position_start(new Integer(rows.get(2).trim()));
-            annot.setSeq_position_end(new Integer(rows.get(3).trim()));
+            annot.setSeqPosition(Integer.parseInt(rows.get(2).trim()),
+                    Integer.parseInt(rows.get(3).trim()));
             annot.setType(rows.get(4).trim());
             if (rows.size() == 6) {
                 annot.setDescription(rows.get(5).trim());
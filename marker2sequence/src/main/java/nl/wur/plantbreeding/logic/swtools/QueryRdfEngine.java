@@ -21,19 +21,30 @@ import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.QuerySolution;
 import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.query.ResultSetFactory;
+import com.hp.hpl.jena.query.ResultSetRewindable;
 import com.hp.hpl.jena.query.Syntax;
 import com.hp.hpl.jena.rdf.model.Model;
-import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.sparql.engine.http.QueryEngineHTTP;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import nl.wur.plantbreeding.exceptions.ServiceUnavailableException;
+import nl.wur.plantbreeding.logic.metrics.QueryMetrics;
+import nl.wur.plantbreeding.logic.resilience.ResilienceRegistry;
+import nl.wur.plantbreeding.logic.resilience.ServiceGuard;
+import nl.wur.plantbreeding.logic.trace.Span;
+import nl.wur.plantbreeding.logic.trace.Tracer;
 
 /**
  * The QueryRdfEngine class handles the querying logic.
  * This class runs the given sparql query either on a given (loca) model
  * or against a remote model available in a virtuoso.
+ * Every query is recorded in the QueryMetrics, in a Span of the current
+ * trace and, when it is enabled, in the QueryProfiler under the name of the
+ * QueryRdf method which ran it.
  *
  * @author Pierre-Yves Chibon -- py@chibon.fr
  */
@@ -48,6 +59,8 @@ class QueryRdfEngine {
     /** logger. */
     private static final Logger LOG = Logger.getLogger(
             QueryRdfEngine.class.getName());
+    /** Name given to the queries whose caller is not looked up. */
+    private static final String UNKNOWN_CALLER = "QueryRdf";
 
     /**
      * Default constructor.
@@ -128,7 +141,7 @@ class QueryRdfEngine {
         QueryExecution qexec = null;
         try {
 //            qexec = QueryExecutionFactory.sparqlService(endpoint, querystring);
-            qexec = new QueryEngineHTTP(endpoint, querystring);
+            qexec = new QueryEngineHTTP(service, querystring);
         }
         catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage());
@@ -157,6 +170,7 @@ class QueryRdfEngine {
         try {
             qexec = QueryExecutionFactory.create(querystring,
                     Syntax.syntaxARQ, model);
+            QueryProfiler.attach(qexec);
         }
         catch (Exception ex) {
             LOG.warning(ex.getMessage());
@@ -169,60 +183,281 @@ class QueryRdfEngine {
     }
 
     /**
-     * Performs a given construct query to a given sparql endpoint.
-     * Returns the graph generated.
+     * Run the given task (a remote query) through the ServiceGuard of the
+     * endpoint it queries. When hedging is enabled in the ResilienceRegistry,
+     * a second attempt is started if the first one is too slow: this is only
+     * done for read queries which is all this class runs remotely.
+     * @param <T> the type returned by the query
+     * @param service url of the endpoint queried by the task
+     * @param task the query to run
+     * @return the output of the query
+     * @throws ServiceUnavailableException if the endpoint keeps failing or
+     * if too many queries are already running against it
+     */
+    private <T> T runRemote(final String service, final Callable<T> task) {
+        final ServiceGuard guard = ResilienceRegistry.getGuard(service);
+        final long hedge = ResilienceRegistry.getHedgeDelay();
+        try {
+            if (hedge > 0) {
+                return guard.callHedged(Tracer.wrap(task),
+                        ResilienceRegistry.getExecutor(),
+                        hedge, ResilienceRegistry.getHedgeTimeout());
+            }
+            return guard.call(task);
+        }
+        catch (RuntimeException ex) {
+            throw ex;
+        }
+        catch (Exception ex) {
+            throw new ServiceUnavailableException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Runs a construct query against the sparql endpoint.
      * @param service url of the endpoint to query
      * @param querystring sparql query
      * @return Model the model generated by the query
      */
-    public Model remoteConstructQuery(final String service,
+    private Model runRemoteConstruct(final String service,
             final String querystring) {
-        Model model = ModelFactory.createDefaultModel();
-        final QueryExecution qexec = this.generateQuery(service, querystring);
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            model = qexec.execConstruct();
+            final long start = System.nanoTime();
+            Model model = null;
+            try {
+                model = this.runRemote(service, new Callable<Model>() {
+
+                    @Override
+                    public Model call() {
+                        final QueryExecution qexec = generateQuery(service,
+                                querystring);
+                        try {
+                            return qexec.execConstruct();
+                        }
+                        finally {
+                            qexec.close();
+                        }
+                    }
+                });
+                return model;
+            }
+            finally {
+                recordModel(caller, span, service, start, model, querystring);
+            }
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return model;
     }
 
     /**
-     * Performs a given construct query to the default sparql endpoint.
-     * Returns the graph generated.
+     * Runs a select query against the sparql endpoint.
+     * The results are read completely before the connection is closed.
+     * @param service url of the endpoint to query
      * @param querystring sparql query
-     * @return Model the model generated by the query
+     * @return a ResultSet object
      */
-    public Model remoteConstructQuery(final String querystring) {
-        Model model = ModelFactory.createDefaultModel();
-        final QueryExecution qexec = this.generateQuery(endpoint, querystring);
+    private ResultSet runRemoteSelect(final String service,
+            final String querystring) {
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            model = qexec.execConstruct();
+            final long start = System.nanoTime();
+            ResultSetRewindable results = null;
+            try {
+                results = this.runRemote(service,
+                        new Callable<ResultSetRewindable>() {
+
+                            @Override
+                            public ResultSetRewindable call() {
+                                final QueryExecution qexec = generateQuery(
+                                        service, querystring);
+                                try {
+                                    return ResultSetFactory.copyResults(
+                                            qexec.execSelect());
+                                }
+                                finally {
+                                    qexec.close();
+                                }
+                            }
+                        });
+                return results;
+            }
+            finally {
+                record(caller, span, service, System.nanoTime() - start,
+                        results == null ? -1 : results.size(), querystring,
+                        results == null, null);
+            }
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return model;
     }
 
     /**
-     * Runs a remote Select Query on a given remote sparql endpoint.
+     * Runs a describe query against the sparql endpoint.
      * @param service url of the endpoint to query
      * @param querystring sparql query
-     * @return a ResultSet object
+     * @return Model a jena model containing the result of the describe
      */
-    public ResultSet remoteSelectQuery(final String service,
+    private Model runRemoteDescribe(final String service,
             final String querystring) {
-        final QueryExecution qexec = this.generateQuery(service, querystring);
-        ResultSet results;
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            results = qexec.execSelect();
+            final long start = System.nanoTime();
+            Model model = null;
+            try {
+                model = this.runRemote(service, new Callable<Model>() {
+
+                    @Override
+                    public Model call() {
+                        final QueryExecution qexec = generateQuery(service,
+                                querystring);
+                        try {
+                            return qexec.execDescribe();
+                        }
+                        finally {
+                            qexec.close();
+                        }
+                    }
+                });
+                return model;
+            }
+            finally {
+                recordModel(caller, span, service, start, model, querystring);
+            }
         }
         finally {
-            qexec.close();
+            span.end();
+        }
+    }
+
+    /**
+     * Record a remote construct or describe query in the QueryMetrics.
+     * @param caller the QueryRdf method which ran the query
+     * @param span the Span of the query
+     * @param service url of the endpoint queried
+     * @param start the System.nanoTime() at which the query started
+     * @param model the model returned, null if the query failed
+     * @param querystring sparql query
+     */
+    private static void recordModel(final String caller, final Span span,
+            final String service, final long start, final Model model,
+            final String querystring) {
+        record(caller, span, service, System.nanoTime() - start,
+                model == null ? -1 : model.size(), querystring,
+                model == null, null);
+    }
+
+    /**
+     * Record a local query in the QueryMetrics.
+     * @param caller the QueryRdf method which ran the query
+     * @param span the Span of the query
+     * @param qexec the QueryExecution of the query
+     * @param start the System.nanoTime() at which the query started
+     * @param rows number of rows or triples returned, negative if not known
+     * @param querystring sparql query
+     * @param failed true if the query failed
+     */
+    private static void recordLocal(final String caller, final Span span,
+            final QueryExecution qexec, final long start, final long rows,
+            final String querystring, final boolean failed) {
+        record(caller, span, QueryMetrics.LOCAL, System.nanoTime() - start,
+                rows, querystring, failed, qexec);
+    }
+
+    /**
+     * Record a query in the QueryMetrics, in the QueryProfiler and in its
+     * Span. The Span is ended by the caller, whether the query could be
+     * recorded or not.
+     * @param caller the QueryRdf method which ran the query
+     * @param span the Span of the query
+     * @param service url of the endpoint queried, QueryMetrics.LOCAL for a
+     * local model
+     * @param nanos duration of the query in nanoseconds
+     * @param rows number of rows or triples returned, negative if not known
+     * @param querystring sparql query
+     * @param failed true if the query failed
+     * @param qexec the QueryExecution of a local query, null for a remote
+     * one
+     */
+    private static void record(final String caller, final Span span,
+            final String service, final long nanos, final long rows,
+            final String querystring, final boolean failed,
+            final QueryExecution qexec) {
+        QueryMetrics.record(caller, service, nanos, rows, querystring,
+                failed);
+        QueryProfiler.record(caller, service, querystring, nanos, rows,
+                failed, qexec);
+        span.setAttribute("endpoint", service).setAttribute("rows", rows);
+        if (failed) {
+            span.setAttribute("error", "query failed");
         }
-        return results;
+    }
+
+    /**
+     * Return the name of the method which called this engine, the QueryRdf
+     * method running the query.
+     * As this class is not public, the compiler adds to QueryRdf bridge
+     * methods named as the methods of this class: they are skipped.
+     * The stack is only walked when the name is used: by the QueryMetrics,
+     * by the QueryProfiler or by a traced request.
+     * @return the simple class name and method name, ie:
+     * QueryRdf.getGeneList, or UNKNOWN_CALLER if the name is not used
+     */
+    private static String getCaller() {
+        if (!QueryMetrics.isEnabled() && !QueryProfiler.isEnabled()
+                && Tracer.current() == Span.NOOP) {
+            return UNKNOWN_CALLER;
+        }
+        final String engine = QueryRdfEngine.class.getName();
+        String entry = null;
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            final String name = frame.getClassName();
+            if (name.equals(engine) || name.startsWith(engine + "$")) {
+                entry = frame.getMethodName();
+            } else if (!frame.getMethodName().equals(entry)) {
+                return name.substring(name.lastIndexOf('.') + 1) + "."
+                        + frame.getMethodName();
+            }
+        }
+        return UNKNOWN_CALLER;
+    }
+
+    /**
+     * Performs a given construct query to a given sparql endpoint.
+     * Returns the graph generated.
+     * @param service url of the endpoint to query
+     * @param querystring sparql query
+     * @return Model the model generated by the query
+     */
+    public Model remoteConstructQuery(final String service,
+            final String querystring) {
+        return this.runRemoteConstruct(service, querystring);
+    }
+
+    /**
+     * Performs a given construct query to the default sparql endpoint.
+     * Returns the graph generated.
+     * @param querystring sparql query
+     * @return Model the model generated by the query
+     */
+    public Model remoteConstructQuery(final String querystring) {
+        return this.runRemoteConstruct(endpoint, querystring);
+    }
+
+    /**
+     * Runs a remote Select Query on a given remote sparql endpoint.
+     * @param service url of the endpoint to query
+     * @param querystring sparql query
+     * @return a ResultSet object
+     */
+    public ResultSet remoteSelectQuery(final String service,
+            final String querystring) {
+        return this.runRemoteSelect(service, querystring);
     }
 
     /**
@@ -231,15 +466,7 @@ class QueryRdfEngine {
      * @return a ResultSet object
      */
     public ResultSet remoteSelectQuery(final String querystring) {
-        final QueryExecution qexec = this.generateQuery(endpoint, querystring);
-        ResultSet results;
-        try {
-            results = qexec.execSelect();
-        }
-        finally {
-            qexec.close();
-        }
-        return results;
+        return this.runRemoteSelect(endpoint, querystring);
     }
 
     /**
@@ -250,15 +477,7 @@ class QueryRdfEngine {
      */
     public Model remoteDescribeQuery(final String service,
             final String querystring) {
-        final QueryExecution qexec = this.generateQuery(service, querystring);
-        Model model;
-        try {
-            model = qexec.execDescribe();
-        }
-        finally {
-            qexec.close();
-        }
-        return model;
+        return this.runRemoteDescribe(service, querystring);
     }
 
     /**
@@ -267,15 +486,7 @@ class QueryRdfEngine {
      * @return Model a Jena model against which the query will be executed
      */
     public Model remoteDescribeQuery(final String querystring) {
-        final QueryExecution qexec = this.generateQuery(endpoint, querystring);
-        Model model;
-        try {
-            model = qexec.execDescribe();
-        }
-        finally {
-            qexec.close();
-        }
-        return model;
+        return this.runRemoteDescribe(endpoint, querystring);
     }
 
     /**
@@ -292,16 +503,8 @@ class QueryRdfEngine {
             final String querystring,
             final ArrayList<String> arraylist,
             final String key) {
-        final QueryExecution qexec = this.generateQuery(service, querystring);
-        ResultSet results;
-        try {
-            results = qexec.execSelect();
-            this.getResults(results, key, arraylist);
-        }
-        finally {
-            qexec.close();
-        }
-        return arraylist;
+        return this.getResults(this.runRemoteSelect(service, querystring),
+                key, arraylist);
     }
 
     /**
@@ -315,16 +518,8 @@ class QueryRdfEngine {
     public ArrayList<String> remoteSelectQuery(final String querystring,
             final ArrayList<String> arraylist,
             final String key) {
-        final QueryExecution qexec = this.generateQuery(endpoint, querystring);
-        ResultSet results;
-        try {
-            results = qexec.execSelect();
-            this.getResults(results, key, arraylist);
-        }
-        finally {
-            qexec.close();
-        }
-        return arraylist;
+        return this.getResults(this.runRemoteSelect(endpoint, querystring),
+                key, arraylist);
     }
 
     /**
@@ -338,16 +533,8 @@ class QueryRdfEngine {
     public ArrayList<ArrayList<String>> remoteSelectQuery(
             final String querystring,
             final ArrayList<ArrayList<String>> arraylist, final String[] keys) {
-        final QueryExecution qexec = this.generateQuery(endpoint, querystring);
-        ResultSet results;
-        try {
-            results = qexec.execSelect();
-            this.getResults(results, keys, arraylist);
-        }
-        finally {
-            qexec.close();
-        }
-        return arraylist;
+        return this.getResults(this.runRemoteSelect(endpoint, querystring),
+                keys, arraylist);
     }
 
     /**
@@ -362,16 +549,8 @@ class QueryRdfEngine {
     public ArrayList<ArrayList<String>> remoteSelectQuery(final String service,
             final String querystring,
             final ArrayList<ArrayList<String>> arraylist, final String[] keys) {
-        final QueryExecution qexec = this.generateQuery(service, querystring);
-        ResultSet results;
-        try {
-            results = qexec.execSelect();
-            this.getResults(results, keys, arraylist);
-        }
-        finally {
-            qexec.close();
-        }
-        return arraylist;
+        return this.getResults(this.runRemoteSelect(service, querystring),
+                keys, arraylist);
     }
 
     /**
@@ -382,16 +561,27 @@ class QueryRdfEngine {
      */
     public ResultSet localSelectQuery(final Model model,
             final String querystring) {
-        final QueryExecution qexec =
-                this.generateLocalQuery(querystring, model);
-        ResultSet results;
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            results = qexec.execSelect();
+            final long start = System.nanoTime();
+            final QueryExecution qexec =
+                    this.generateLocalQuery(querystring, model);
+            ResultSet results = null;
+            try {
+                results = qexec.execSelect();
+            }
+            finally {
+                qexec.close();
+                // The rows are read by the caller: they are not counted
+                recordLocal(caller, span, qexec, start, -1, querystring,
+                        results == null);
+            }
+            return results;
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return results;
     }
 
     /**
@@ -401,16 +591,27 @@ class QueryRdfEngine {
      * @return boolean answering the ask question.
      */
     public boolean localAskQuery(final Model model, final String querystring) {
-        final QueryExecution qexec =
-                this.generateLocalQuery(querystring, model);
-        boolean results;
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            results = qexec.execAsk();
+            final long start = System.nanoTime();
+            final QueryExecution qexec =
+                    this.generateLocalQuery(querystring, model);
+            boolean results;
+            boolean failed = true;
+            try {
+                results = qexec.execAsk();
+                failed = false;
+            }
+            finally {
+                qexec.close();
+                recordLocal(caller, span, qexec, start, 1, querystring, failed);
+            }
+            return results;
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return results;
     }
 
     /**
@@ -421,17 +622,28 @@ class QueryRdfEngine {
      */
     public Model localConstructQuery(final Model model,
             final String querystring) {
-        final QueryExecution qexec =
-                this.generateLocalQuery(querystring, model);
-        Model mod;
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            mod = qexec.execConstruct();
-//            this.printResults(results, "o");
+            final long start = System.nanoTime();
+            final QueryExecution qexec =
+                    this.generateLocalQuery(querystring, model);
+            Model mod = null;
+            try {
+                mod = qexec.execConstruct();
+    //            this.printResults(results, "o");
+            }
+            finally {
+                qexec.close();
+                recordLocal(caller, span, qexec, start,
+                        mod == null ? -1 : mod.size(), querystring,
+                        mod == null);
+            }
+            return mod;
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return mod;
     }
 
     /**
@@ -442,16 +654,27 @@ class QueryRdfEngine {
      */
     public Model localDescribeQuery(final Model model,
             final String querystring) {
-        final QueryExecution qexec =
-                this.generateLocalQuery(querystring, model);
-        Model mod;
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            mod = qexec.execDescribe();
+            final long start = System.nanoTime();
+            final QueryExecution qexec =
+                    this.generateLocalQuery(querystring, model);
+            Model mod = null;
+            try {
+                mod = qexec.execDescribe();
+            }
+            finally {
+                qexec.close();
+                recordLocal(caller, span, qexec, start,
+                        mod == null ? -1 : mod.size(), querystring,
+                        mod == null);
+            }
+            return mod;
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return mod;
     }
 
     /**
@@ -467,17 +690,30 @@ class QueryRdfEngine {
             final String querystring,
             final ArrayList<String> arraylist,
             final String key) {
-        final QueryExecution qexec =
-                this.generateLocalQuery(querystring, model);
-        ResultSet results;
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            results = qexec.execSelect();
-            this.getResults(results, key, arraylist);
+            final long start = System.nanoTime();
+            final int before = arraylist.size();
+            final QueryExecution qexec =
+                    this.generateLocalQuery(querystring, model);
+            ResultSet results;
+            boolean failed = true;
+            try {
+                results = qexec.execSelect();
+                this.getResults(results, key, arraylist);
+                failed = false;
+            }
+            finally {
+                qexec.close();
+                recordLocal(caller, span, qexec, start,
+                        arraylist.size() - before, querystring, failed);
+            }
+            return arraylist;
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return arraylist;
     }
 
     /**
@@ -493,17 +729,30 @@ class QueryRdfEngine {
             final String querystring,
             final ArrayList<ArrayList<String>> arraylist,
             final String[] keys) {
-        final QueryExecution qexec =
-                this.generateLocalQuery(querystring, model);
-        ResultSet results;
+        final String caller = getCaller();
+        final Span span = Tracer.startSpan(caller);
         try {
-            results = qexec.execSelect();
-            this.getResults(results, keys, arraylist);
+            final long start = System.nanoTime();
+            final int before = arraylist.size();
+            final QueryExecution qexec =
+                    this.generateLocalQuery(querystring, model);
+            ResultSet results;
+            boolean failed = true;
+            try {
+                results = qexec.execSelect();
+                this.getResults(results, keys, arraylist);
+                failed = false;
+            }
+            finally {
+                qexec.close();
+                recordLocal(caller, span, qexec, start,
+                        arraylist.size() - before, querystring, failed);
+            }
+            return arraylist;
         }
         finally {
-            qexec.close();
+            span.end();
         }
-        return arraylist;
     }
 
     /**
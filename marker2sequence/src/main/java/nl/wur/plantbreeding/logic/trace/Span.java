@@ -0,0 +1,282 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed operation of a request (a stage of the pipeline, a web-service
+ * call, a sparql query...), with its attributes. Spans are created by the
+ * Tracer and must be ended in the thread which started them:
+ * <pre>
+ * final Span span = Tracer.startSpan("name");
+ * try {
+ *     ...
+ *     span.setAttribute("markers", markers.length);
+ * } catch (Exception ex) {
+ *     span.setError(ex);
+ *     throw ex;
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ * When the request is not traced the Tracer returns the NOOP span on which
+ * all the methods do nothing.
+ */
+public final class Span {
+
+    /** Span returned when the request is not traced, it records nothing. */
+    public static final Span NOOP = new Span(null, null, null, "noop");
+    /** Trace the span belongs to, null for NOOP. */
+    private final Trace trace;
+    /** Identifier of the span. */
+    private final String id;
+    /** Identifier of the parent span, null for a root span. */
+    private final String parentId;
+    /** Name of the operation. */
+    private final String name;
+    /** Start of the span, in microseconds since the epoch. */
+    private final long timestamp;
+    /** Start of the span, as System.nanoTime(). */
+    private final long start;
+    /** Duration of the span in nanoseconds, negative until it ends. */
+    private volatile long duration = -1;
+    /** Attributes of the span. */
+    private final Map<String, String> attributes;
+    /** Span current in the thread before this one started. */
+    private Span previous;
+
+    /**
+     * Constructor.
+     * @param spantrace the trace the span belongs to, null for NOOP
+     * @param spanid identifier of the span
+     * @param parentid identifier of the parent span, null for a root span
+     * @param spanname name of the operation
+     */
+    Span(final Trace spantrace, final String spanid, final String parentid,
+            final String spanname) {
+        this.trace = spantrace;
+        this.id = spanid;
+        this.parentId = parentid;
+        this.name = spanname;
+        this.start = System.nanoTime();
+        this.timestamp = System.currentTimeMillis() * 1000;
+        if (spantrace == null) {
+            this.attributes = null;
+        } else {
+            this.attributes = new LinkedHashMap<String, String>();
+        }
+    }
+
+    /**
+     * Return whether this span records anything.
+     * @return false for the NOOP span
+     */
+    public boolean isRecording() {
+        return trace != null;
+    }
+
+    /**
+     * Set an attribute of the span, ie: the number of markers of the query.
+     * @param key name of the attribute
+     * @param value value of the attribute, converted to a String
+     * @return this span
+     */
+    public Span setAttribute(final String key, final Object value) {
+        if (attributes != null) {
+            synchronized (attributes) {
+                attributes.put(key, String.valueOf(value));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Mark the span as failed.
+     * @param error the exception which made the operation fail
+     * @return this span
+     */
+    public Span setError(final Throwable error) {
+        return this.setAttribute("error", error.getClass().getSimpleName()
+                + (error.getMessage() == null ? ""
+                : ": " + error.getMessage()));
+    }
+
+    /**
+     * End the span: its parent becomes the current span of the thread again
+     * and, if it is the root span, the trace is exported when it was
+     * sampled or slow. Ending a span twice has no effect.
+     */
+    public void end() {
+        if (trace != null && duration < 0) {
+            duration = Math.max(0, System.nanoTime() - start);
+            Tracer.ended(this);
+        }
+    }
+
+    /**
+     * Return the trace the span belongs to.
+     * @return the Trace, null for NOOP
+     */
+    Trace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Return the span current in the thread before this one started.
+     * @return the previous Span, null if there was none
+     */
+    Span getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Set the span current in the thread before this one started.
+     * @param span the previous Span, may be null
+     */
+    void setPrevious(final Span span) {
+        this.previous = span;
+    }
+
+    /**
+     * Return the identifier of the trace of this span.
+     * @return the trace identifier, null for NOOP
+     */
+    public String getTraceId() {
+        return trace == null ? null : trace.getId();
+    }
+
+    /**
+     * Return the identifier of the span.
+     * @return the span identifier, null for NOOP
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Return the identifier of the parent span.
+     * @return the parent identifier, null for a root span
+     */
+    public String getParentId() {
+        return parentId;
+    }
+
+    /**
+     * Return the name of the operation.
+     * @return the name of the span
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the start of the span.
+     * @return the start in microseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Return the duration of the span.
+     * @return the duration in microseconds, negative until the span ends
+     */
+    public long getDuration() {
+        return duration < 0 ? -1 : duration / 1000;
+    }
+
+    /**
+     * Return a copy of the attributes of the span.
+     * @return a map of the attributes, in the order they were set
+     */
+    public Map<String, String> getAttributes() {
+        if (attributes == null) {
+            return new LinkedHashMap<String, String>();
+        }
+        synchronized (attributes) {
+            return new LinkedHashMap<String, String>(attributes);
+        }
+    }
+
+    /**
+     * Return the span in the JSON format of Zipkin (v2), the attributes
+     * being the tags of the span.
+     * @return the span as a JSON object on one line
+     */
+    public String toJson() {
+        final StringBuilder out = new StringBuilder(256);
+        out.append("{\"traceId\":\"").append(this.getTraceId())
+                .append("\",\"id\":\"").append(id).append('"');
+        if (parentId != null) {
+            out.append(",\"parentId\":\"").append(parentId).append('"');
+        }
+        out.append(",\"name\":\"").append(escape(name))
+                .append("\",\"timestamp\":").append(timestamp)
+                .append(",\"duration\":").append(Math.max(1,
+                this.getDuration()))
+                .append(",\"localEndpoint\":{\"serviceName\":\"")
+                .append(Tracer.SERVICE_NAME).append("\"}");
+        final Map<String, String> tags = this.getAttributes();
+        if (!tags.isEmpty()) {
+            out.append(",\"tags\":{");
+            boolean first = true;
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                out.append('"').append(escape(tag.getKey())).append("\":\"")
+                        .append(escape(tag.getValue())).append('"');
+                first = false;
+            }
+            out.append('}');
+        }
+        return out.append('}').toString();
+    }
+
+    /**
+     * Escape a string to be written in a JSON string.
+     * @param value the string to escape
+     * @return the escaped string
+     */
+    private static String escape(final String value) {
+        final StringBuilder out = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Return a one line description of the span.
+     * @return the name, duration and attributes of the span
+     */
+    @Override
+    public String toString() {
+        return name + " " + (this.getDuration() / 1000) + "ms "
+                + this.getAttributes();
+    }
+}
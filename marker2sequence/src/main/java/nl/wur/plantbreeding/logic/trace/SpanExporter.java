@@ -0,0 +1,272 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Exports the traces in the background, in the JSON format of Zipkin (v2):
+ * to a file (one span per line, rotated as the log files) and/or to a
+ * collector accepting the spans as a JSON array (ie: the /api/v2/spans of
+ * a Zipkin or Jaeger server).
+ * The traces wait in a bounded queue: when the exporter can not keep up
+ * they are dropped rather than slowing the requests down.
+ */
+public class SpanExporter {
+
+    /** Maximum number of traces waiting to be exported. */
+    public static final int QUEUE_SIZE = 1000;
+    /** Maximum number of traces exported at once. */
+    private static final int BATCH_SIZE = 100;
+    /** Connection and read timeout (in milliseconds) of the collector. */
+    private static final int TIMEOUT = 5000;
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            SpanExporter.class.getName());
+    /** Traces waiting to be exported. */
+    private final BlockingQueue<List<Span>> queue =
+            new ArrayBlockingQueue<List<Span>>(QUEUE_SIZE);
+    /** Handler writing the spans to the file, null if none. */
+    private final Handler file;
+    /** Url of the collector, null if none. */
+    private final URL collector;
+    /** Number of spans exported. */
+    private final AtomicLong exported = new AtomicLong(0);
+    /** Number of spans dropped as the queue was full. */
+    private final AtomicLong dropped = new AtomicLong(0);
+    /** Number of spans the collector did not accept. */
+    private final AtomicLong failed = new AtomicLong(0);
+    /** Thread exporting the traces. */
+    private final Thread thread;
+
+    /**
+     * Constructor, starts the thread exporting the traces.
+     * @param tracefile file to which the spans are appended, null for none
+     * @param collectorurl url to which the spans are posted, null for none
+     * @throws IOException if the file can not be opened
+     */
+    public SpanExporter(final File tracefile, final URL collectorurl)
+            throws IOException {
+        this.collector = collectorurl;
+        if (tracefile == null) {
+            this.file = null;
+        } else {
+            this.file = new FileHandler(tracefile.getPath(),
+                    10 * 1024 * 1024, 5, true);
+            this.file.setFormatter(new Formatter() {
+
+                @Override
+                public String format(final LogRecord record) {
+                    return record.getMessage() + "\n";
+                }
+            });
+        }
+        LOG.log(Level.INFO, "Traces exported to file={0}, collector={1}",
+                new Object[]{tracefile, collectorurl});
+        this.thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                exportLoop();
+            }
+        }, "m2s-trace-exporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue the spans of a trace to be exported.
+     * @param spans the spans of the trace
+     * @return false if the queue was full and the trace was dropped
+     */
+    public final boolean export(final List<Span> spans) {
+        if (!queue.offer(spans)) {
+            dropped.addAndGet(spans.size());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Export the traces queued until the exporter is closed, then the ones
+     * left in the queue.
+     */
+    private void exportLoop() {
+        final List<List<Span>> batch = new ArrayList<List<Span>>(BATCH_SIZE);
+        boolean running = true;
+        while (running) {
+            try {
+                final List<Span> first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            }
+            catch (InterruptedException ex) {
+                running = false;
+            }
+            queue.drainTo(batch, BATCH_SIZE - batch.size());
+            while (!batch.isEmpty()) {
+                this.write(batch);
+                batch.clear();
+                if (!running) {
+                    queue.drainTo(batch, BATCH_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a batch of traces to the file and to the collector.
+     * @param batch the traces to write
+     */
+    private void write(final List<List<Span>> batch) {
+        int count = 0;
+        final StringBuilder json = new StringBuilder(1024 * batch.size());
+        json.append('[');
+        for (List<Span> spans : batch) {
+            for (Span span : spans) {
+                final String line = span.toJson();
+                if (file != null) {
+                    file.publish(new LogRecord(Level.INFO, line));
+                }
+                if (count > 0) {
+                    json.append(',');
+                }
+                json.append(line);
+                count++;
+            }
+        }
+        json.append(']');
+        if (file != null) {
+            file.flush();
+        }
+        if (collector != null && count > 0) {
+            try {
+                this.post(json.toString());
+            }
+            catch (IOException ex) {
+                failed.addAndGet(count);
+                LOG.log(Level.WARNING, "Could not send {0} spans to {1}: {2}",
+                        new Object[]{count, collector, ex.getMessage()});
+            }
+        }
+        exported.addAndGet(count);
+    }
+
+    /**
+     * Post the given JSON array of spans to the collector.
+     * @param json the spans as a JSON array
+     * @throws IOException if the collector can not be reached or refuses
+     * the spans
+     */
+    private void post(final String json) throws IOException {
+        final HttpURLConnection conn =
+                (HttpURLConnection) collector.openConnection();
+        try {
+            conn.setConnectTimeout(TIMEOUT);
+            conn.setReadTimeout(TIMEOUT);
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/json");
+            final Writer out = new OutputStreamWriter(conn.getOutputStream(),
+                    "UTF-8");
+            try {
+                out.write(json);
+            }
+            finally {
+                out.close();
+            }
+            final int code = conn.getResponseCode();
+            if (code >= HttpURLConnection.HTTP_MULT_CHOICE) {
+                throw new IOException("HTTP " + code);
+            }
+        }
+        finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Stop the exporter, the traces already queued are still exported.
+     */
+    public final void close() {
+        thread.interrupt();
+        try {
+            thread.join(2 * TIMEOUT);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * Return the number of spans exported.
+     * @return the number of spans written (or posted)
+     */
+    public final long getExported() {
+        return exported.get();
+    }
+
+    /**
+     * Return the number of spans dropped as the queue was full.
+     * @return the number of spans dropped
+     */
+    public final long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Return the number of spans the collector did not accept.
+     * @return the number of spans which could not be posted
+     */
+    public final long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Return a one line description of the state of the exporter.
+     * @return a String describing the exporter
+     */
+    @Override
+    public final String toString() {
+        return "exported=" + exported.get() + " dropped=" + dropped.get()
+                + " failed=" + failed.get() + " queued=" + queue.size();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The spans of one request. They are kept until the root span ends, the
+ * whole trace is then exported if it was sampled or if it was slow.
+ * The number of spans kept is bounded so that a request running thousands
+ * of queries does not keep them all in memory.
+ */
+final class Trace {
+
+    /** Maximum number of spans kept per trace, the others are counted. */
+    static final int MAX_SPANS = 1000;
+    /** Identifier of the trace. */
+    private final String id;
+    /** Whether the trace was sampled when it started. */
+    private final boolean sampled;
+    /** Spans ended so far. */
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<Span>();
+    /** Number of spans ended so far. */
+    private final AtomicInteger count = new AtomicInteger(0);
+    /** Root span of the trace. */
+    private Span root;
+
+    /**
+     * Constructor.
+     * @param traceid identifier of the trace
+     * @param issampled whether the trace is exported whatever its duration
+     */
+    Trace(final String traceid, final boolean issampled) {
+        this.id = traceid;
+        this.sampled = issampled;
+    }
+
+    /**
+     * Return the identifier of the trace.
+     * @return a 16 characters hexadecimal identifier
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Return whether the trace was sampled when it started.
+     * @return true if the trace is exported whatever its duration
+     */
+    boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Return the root span of the trace.
+     * @return the root Span
+     */
+    Span getRoot() {
+        return root;
+    }
+
+    /**
+     * Set the root span of the trace.
+     * @param span the root Span
+     */
+    void setRoot(final Span span) {
+        this.root = span;
+    }
+
+    /**
+     * Add an ended span to the trace, unless it already holds MAX_SPANS.
+     * @param span the Span which ended
+     */
+    void add(final Span span) {
+        if (count.incrementAndGet() <= MAX_SPANS) {
+            spans.add(span);
+        }
+    }
+
+    /**
+     * Return the number of spans ended but not kept.
+     * @return the number of spans dropped
+     */
+    int getDropped() {
+        return Math.max(0, count.get() - MAX_SPANS);
+    }
+
+    /**
+     * Return the spans ended so far.
+     * @return a new list of Span
+     */
+    List<Span> getSpans() {
+        return new ArrayList<Span>(spans);
+    }
+}
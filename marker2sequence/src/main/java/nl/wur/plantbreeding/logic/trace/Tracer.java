@@ -0,0 +1,252 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.trace;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lightweight request tracing: each request is a tree of Spans sharing a
+ * trace identifier, the current span of a thread being the parent of the
+ * spans it starts. Spans given to other threads (the stages of the
+ * pipeline, the hedged sparql queries) follow the tasks wrapped with
+ * wrap().
+ * A fraction of the requests (the sample rate) is exported, plus the
+ * requests slower than the slow threshold, to the SpanExporter. When no
+ * exporter is set, or when the request is neither sampled nor watched for
+ * slowness, the NOOP span is returned and tracing costs a ThreadLocal
+ * lookup per span.
+ * The settings can be changed at start-up (see the web.xml of the web
+ * application).
+ */
+public final class Tracer {
+
+    /** Service name of the spans exported. */
+    public static final String SERVICE_NAME = "marker2sequence";
+    /** The logger. */
+    private static final Logger LOG = Logger.getLogger(
+            Tracer.class.getName());
+    /** Current span of each thread. */
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<Span>();
+    /** Generator of the identifiers and of the sampling decisions. */
+    private static final Random RANDOM = new Random();
+    /** Fraction (0 to 1) of the requests exported. */
+    private static volatile double sampleRate = 0;
+    /** Requests slower than this (in milliseconds) are exported, 0 for none. */
+    private static volatile long slowThreshold = 0;
+    /** Exporter of the traces, null when tracing is off. */
+    private static volatile SpanExporter exporter = null;
+
+    /**
+     * Default private constructor.
+     */
+    private Tracer() { }
+
+    /**
+     * Change the sampling of the traces.
+     * @param rate fraction (0 to 1) of the requests exported
+     * @param threshold requests slower than this (in milliseconds) are
+     * exported whatever the sampling, 0 to disable
+     */
+    public static void configure(final double rate, final long threshold) {
+        LOG.log(Level.INFO, "Tracing: sample rate={0}, slow threshold={1}ms",
+                new Object[]{rate, threshold});
+        sampleRate = Math.max(0, Math.min(1, rate));
+        slowThreshold = Math.max(0, threshold);
+    }
+
+    /**
+     * Return the fraction of the requests exported.
+     * @return the sample rate, from 0 to 1
+     */
+    public static double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Return the duration above which a request is always exported.
+     * @return the threshold in milliseconds, 0 if disabled
+     */
+    public static long getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    /**
+     * Set the exporter of the traces, closing the previous one.
+     * @param spanexporter the SpanExporter, null to stop tracing
+     */
+    public static synchronized void setExporter(
+            final SpanExporter spanexporter) {
+        if (exporter != null) {
+            exporter.close();
+        }
+        exporter = spanexporter;
+    }
+
+    /**
+     * Return the exporter of the traces.
+     * @return the SpanExporter, null when tracing is off
+     */
+    public static SpanExporter getExporter() {
+        return exporter;
+    }
+
+    /**
+     * Start a new trace, or a child of the current span if the thread is
+     * already traced.
+     * @param name name of the root span
+     * @return the root Span, or NOOP if the request is not traced
+     */
+    public static Span startTrace(final String name) {
+        return startTrace(name, null, null, false);
+    }
+
+    /**
+     * Start a new trace continuing the one of a caller, ie: the B3 headers
+     * of a HTTP request. If the thread is already traced a child of the
+     * current span is started instead.
+     * @param name name of the root span
+     * @param traceid identifier of the trace of the caller, ignored if null
+     * or not hexadecimal
+     * @param parentid identifier of the span of the caller, may be null
+     * @param sampled whether the caller asks the trace to be exported
+     * @return the root Span, or NOOP if the request is not traced
+     */
+    public static Span startTrace(final String name, final String traceid,
+            final String parentid, final boolean sampled) {
+        if (CURRENT.get() != null) {
+            return startSpan(name);
+        }
+        if (exporter == null) {
+            return Span.NOOP;
+        }
+        final double rate = sampleRate;
+        final boolean keep = sampled
+                || (rate > 0 && RANDOM.nextDouble() < rate);
+        if (!keep && slowThreshold <= 0) {
+            return Span.NOOP;
+        }
+        final boolean valid = traceid != null
+                && traceid.matches("[0-9a-fA-F]{16}|[0-9a-fA-F]{32}");
+        final Trace trace = new Trace(
+                valid ? traceid.toLowerCase() : newId(), keep);
+        final Span root = new Span(trace, newId(),
+                valid ? parentid : null, name);
+        trace.setRoot(root);
+        CURRENT.set(root);
+        return root;
+    }
+
+    /**
+     * Start a child of the current span of the thread.
+     * @param name name of the span
+     * @return the new Span, or NOOP if the thread is not traced
+     */
+    public static Span startSpan(final String name) {
+        final Span parent = CURRENT.get();
+        if (parent == null) {
+            return Span.NOOP;
+        }
+        final Span span = new Span(parent.getTrace(), newId(), parent.getId(),
+                name);
+        span.setPrevious(parent);
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * Return the current span of the thread.
+     * @return the current Span, NOOP if the thread is not traced
+     */
+    public static Span current() {
+        final Span span = CURRENT.get();
+        return span == null ? Span.NOOP : span;
+    }
+
+    /**
+     * Wrap a task given to another thread so that the spans it starts are
+     * children of the current span of this thread.
+     * @param <T> the type returned by the task
+     * @param task the task to run in another thread
+     * @return the wrapped task, or the task itself if the thread is not
+     * traced
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final Span parent = CURRENT.get();
+        if (parent == null) {
+            return task;
+        }
+        return new Callable<T>() {
+
+            @Override
+            public T call() throws Exception {
+                final Span previous = CURRENT.get();
+                CURRENT.set(parent);
+                try {
+                    return task.call();
+                }
+                finally {
+                    if (previous == null) {
+                        CURRENT.remove();
+                    } else {
+                        CURRENT.set(previous);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Called by Span.end(): make the previous span current again and export
+     * the trace when its root span ends.
+     * @param span the Span which ended
+     */
+    static void ended(final Span span) {
+        if (CURRENT.get() == span) {
+            if (span.getPrevious() == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(span.getPrevious());
+            }
+        }
+        final Trace trace = span.getTrace();
+        trace.add(span);
+        if (trace.getRoot() == span) {
+            final SpanExporter out = exporter;
+            final long threshold = slowThreshold;
+            if (out != null && (trace.isSampled() || (threshold > 0
+                    && span.getDuration() >= threshold * 1000))) {
+                if (trace.getDropped() > 0) {
+                    span.setAttribute("spans.dropped", trace.getDropped());
+                }
+                out.export(trace.getSpans());
+            }
+        }
+    }
+
+    /**
+     * Return a new random identifier.
+     * @return a 16 characters hexadecimal identifier
+     */
+    private static String newId() {
+        return String.format("%016x", RANDOM.nextLong());
+    }
+}
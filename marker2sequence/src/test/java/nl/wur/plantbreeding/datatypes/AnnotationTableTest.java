@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.datatypes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AnnotationTableTest {
+
+    /**
+     * Return an annotation with the given values.
+     */
+    private Annotation annotation(String name, Integer start, String type) {
+        Annotation annotation = new Annotation();
+        annotation.setName(name);
+        annotation.setScafoldname(new String("SL2.40ch06"));
+        annotation.setType(type);
+        annotation.setSeq_position_start(start);
+        annotation.setSeq_position_end(start == null ? null : start + 100);
+        annotation.setFactor(0.5);
+        return annotation;
+    }
+
+    @Test
+    public void testPositions() {
+        Annotation annotation = new Annotation();
+        assertNull(annotation.getSeq_position_start());
+        assertEquals(Annotation.NO_POSITION, annotation.getStartPosition());
+        annotation.setSeqPosition(12, 42);
+        assertEquals(Integer.valueOf(12), annotation.getSeq_position_start());
+        assertEquals(42, annotation.getEndPosition());
+
+        Markerws marker = new Markerws();
+        assertNull(marker.getMap_position());
+        assertNull(marker.getChromosome());
+        marker.setMapLocation(6, 12.5f);
+        assertEquals(Long.valueOf(6), marker.getChromosome());
+        assertEquals(Float.valueOf(12.5f), marker.getMap_position());
+    }
+
+    @Test
+    public void testAnnotationTable() {
+        List<Annotation> list = new ArrayList<Annotation>();
+        list.add(this.annotation("gene1", 1000, "mRNA"));
+        list.add(this.annotation("gene2", null, null));
+        list.add(this.annotation("gene3", 3000, "mRNA"));
+
+        AnnotationTable table = AnnotationTable.copyOf(list);
+        assertSame(table, AnnotationTable.copyOf(table));
+        assertEquals(3, table.size());
+        assertEquals("gene1", table.get(0).getName());
+        assertEquals(Integer.valueOf(1100), table.get(0).getSeq_position_end());
+        assertNull(table.get(1).getSeq_position_start());
+        assertNull(table.get(1).getType());
+        assertEquals(0.5, table.get(2).getFactor(), 0);
+        assertSame(table.get(0).getScafoldname(), table.getScafoldname(2));
+        assertEquals(2, table.page(1, 10).size());
+        assertEquals("gene3", table.page(1, 10).get(1).getName());
+        try {
+            table.add(new Annotation());
+            fail("The table should be read-only");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMarkerTableSerialization() throws Exception {
+        List<Markerws> list = new ArrayList<Markerws>();
+        Markerws marker = new Markerws();
+        marker.setName("TG123");
+        marker.setSgnID("SGN-M123");
+        marker.setScafoldname("SL2.40ch06");
+        marker.setSeqPosition(10, 20);
+        marker.setMapLocation(6, 42.5f);
+        list.add(marker);
+        list.add(new Markerws());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(MarkerTable.copyOf(list));
+        out.close();
+        MarkerTable table = (MarkerTable) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(2, table.size());
+        assertEquals("TG123", table.get(0).getName());
+        assertEquals("SGN-M123", table.get(0).getSgnID());
+        assertEquals(Long.valueOf(6), table.get(0).getChromosome());
+        assertEquals(42.5f, table.getMapPosition(0), 0);
+        assertEquals(Integer.valueOf(20), table.get(0).getSeq_position_end());
+        assertNull(table.get(1).getMap_position());
+        assertNull(table.get(1).getChromosome());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import nl.wur.plantbreeding.datatypes.Annotation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+
+    /** Directory used by the cache during the tests. */
+    private File directory;
+    /** The cache tested. */
+    private ResultCache<ArrayList<Annotation>> cache;
+
+    @Before
+    public void setUp() {
+        directory = new File(System.getProperty("java.io.tmpdir"),
+                "m2s-cache-test-" + System.nanoTime());
+        cache = new ResultCache<ArrayList<Annotation>>("test",
+                new SerializableCodec<ArrayList<Annotation>>(),
+                2, 60000, directory, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        directory.delete();
+    }
+
+    /**
+     * Build a list with a single annotation of the given name.
+     */
+    private ArrayList<Annotation> list(final String name) {
+        final Annotation annotation = new Annotation();
+        annotation.setName(name);
+        final ArrayList<Annotation> list = new ArrayList<Annotation>();
+        list.add(annotation);
+        return list;
+    }
+
+    /**
+     * Test of the CacheKey, the white spaces between the tags should not
+     * change the key.
+     */
+    @Test
+    public void testCacheKey() {
+        final String key1 = CacheKey.forService("service",
+                "<a>\n    <b id=\"1\" />\n</a>");
+        final String key2 = CacheKey.forService("service",
+                "<a><b id=\"1\"/></a>");
+        assertEquals(key1, key2);
+        assertFalse(key1.equals(CacheKey.forService("other",
+                "<a><b id=\"1\"/></a>")));
+        assertFalse(key1.equals(CacheKey.forService("service",
+                "<a><b id=\"2\"/></a>")));
+    }
+
+    /**
+     * Test of get and put, the values returned are copies.
+     */
+    @Test
+    public void testGetPut() {
+        assertNull(cache.get("k1"));
+        cache.put("k1", list("gene1"));
+        final ArrayList<Annotation> value = cache.get("k1");
+        assertEquals("gene1", value.get(0).getName());
+        value.clear();
+        assertEquals(1, cache.get("k1").size());
+        assertEquals(2, cache.getMemoryHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Test that the entries evicted from memory are read back from disk.
+     */
+    @Test
+    public void testDisk() {
+        cache.put("k1", list("gene1"));
+        cache.put("k2", list("gene2"));
+        cache.put("k3", list("gene3"));
+        assertEquals(2, cache.size());
+        assertTrue(cache.getDiskBytes() > 0);
+        assertEquals("gene1", cache.get("k1").get(0).getName());
+        assertEquals(1, cache.getDiskHits());
+    }
+
+    /**
+     * Test that the entries older than the time-to-live are dropped.
+     */
+    @Test
+    public void testTtl() {
+        cache.put("k1", list("gene1"));
+        cache.setTtl(-1);
+        assertNull(cache.get("k1"));
+        assertFalse(new File(directory, "k1.cache.gz").exists());
+    }
+
+    /**
+     * Test that a SharedCodec gives back the stored instance from memory
+     * and an equal one once evicted to disk.
+     */
+    @Test
+    public void testSharedCodec() {
+        final ResultCache<ArrayList<Annotation>> shared =
+                new ResultCache<ArrayList<Annotation>>("shared",
+                new SharedCodec<ArrayList<Annotation>>(
+                new SerializableCodec<ArrayList<Annotation>>()),
+                1, 60000, directory, 1024 * 1024);
+        try {
+            final ArrayList<Annotation> value = list("gene1");
+            shared.put("k1", value);
+            assertSame(value, shared.get("k1"));
+            shared.put("k2", list("gene2"));
+            final ArrayList<Annotation> reloaded = shared.get("k1");
+            assertNotSame(value, reloaded);
+            assertEquals("gene1", reloaded.get(0).getName());
+        }
+        finally {
+            shared.clear();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.jfreechart;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.jfree.chart.JFreeChart;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ChartCacheTest {
+
+    /** Directory used by the cache during the tests. */
+    private File directory;
+    /** Number of charts drawn. */
+    private int drawn;
+
+    @Before
+    public void setUp() {
+        directory = new File(System.getProperty("java.io.tmpdir"),
+                "m2s-chart-test-" + System.nanoTime());
+        ChartCache.configure(60000, 2, directory);
+        drawn = 0;
+    }
+
+    @After
+    public void tearDown() {
+        ChartCache.configure(ChartCache.DEFAULT_TTL,
+                ChartCache.DEFAULT_MAX_ENTRIES, directory);
+        directory.delete();
+    }
+
+    /**
+     * Return a source drawing a pie of the given distribution.
+     */
+    private ChartCache.ChartSource source(
+            final HashMap<String, Integer> distrib) {
+        return new ChartCache.ChartSource() {
+
+            @Override
+            public JFreeChart createChart() {
+                drawn++;
+                PieChart piec = new PieChart();
+                return piec.createChart(piec.createDataset(distrib));
+            }
+        };
+    }
+
+    @Test
+    public void testKey() {
+        Map<String, Integer> m1 = new TreeMap<String, Integer>();
+        m1.put("a, b", 1);
+        m1.put("c", 2);
+        Map<String, Integer> m2 = new TreeMap<String, Integer>();
+        m2.put("c", 2);
+        m2.put("a, b", 1);
+        assertEquals(ChartCache.key(m1, "title", true),
+                ChartCache.key(m2, "title", true));
+        assertFalse(ChartCache.key(m1, "title", true).equals(
+                ChartCache.key(m1, "title", false)));
+        Map<String, Integer> m3 = new TreeMap<String, Integer>();
+        m3.put("a", 1);
+        m3.put("b=1, c", 2);
+        assertFalse(ChartCache.key(m1).equals(ChartCache.key(m3)));
+    }
+
+    @Test
+    public void testGetOrCreate() throws Exception {
+        HashMap<String, Integer> distrib = new HashMap<String, Integer>();
+        distrib.put("binding", 3);
+        distrib.put("transport", 5);
+        String key = ChartCache.key(distrib);
+        String[] first = ChartCache.getOrCreate(key, source(distrib), 200,
+                100);
+        String[] second = ChartCache.getOrCreate(key, source(distrib), 200,
+                100);
+        assertEquals(1, drawn);
+        assertEquals(first[0], second[0]);
+        assertEquals(first[1], second[1]);
+        assertEquals(ChartCache.PREFIX + key + ".png", first[0]);
+        assertTrue(first[1].contains(first[0]));
+        File file = ChartCache.getFile(first[0]);
+        assertTrue(file.exists());
+
+        // Only two charts are kept, the file of the evicted one is deleted
+        ChartCache.getOrCreate(ChartCache.key("b"), source(distrib), 200,
+                100);
+        ChartCache.getOrCreate(ChartCache.key("c"), source(distrib), 200,
+                100);
+        assertEquals(3, drawn);
+        assertFalse(file.exists());
+        ChartCache.getOrCreate(key, source(distrib), 200, 100);
+        assertEquals(4, drawn);
+    }
+
+    @Test
+    public void testGetFile() {
+        assertNull(ChartCache.getFile("../etc/passwd"));
+        assertNull(ChartCache.getFile(ChartCache.PREFIX + "../x.png"));
+        assertNull(ChartCache.getFile("jfreechart-123.png"));
+        String name = ChartCache.PREFIX + ChartCache.key("x") + ".png";
+        assertEquals(new File(directory, name), ChartCache.getFile(name));
+    }
+}
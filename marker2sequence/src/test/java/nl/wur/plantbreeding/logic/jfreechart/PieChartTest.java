@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.jfreechart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.jfree.data.general.PieDataset;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PieChartTest {
+
+    @Test
+    public void testCreateDatasetFromList() {
+        PieDataset dataset = new PieChart().createDataset(
+                Arrays.asList("b", "a", "b", "c", "b", "a"));
+        assertEquals(3, dataset.getItemCount());
+        assertEquals("b", dataset.getKey(0));
+        assertEquals("a", dataset.getKey(1));
+        assertEquals("c", dataset.getKey(2));
+        assertEquals(3.0, dataset.getValue("b").doubleValue(), 0);
+        assertEquals(2.0, dataset.getValue("a").doubleValue(), 0);
+        assertEquals(1.0, dataset.getValue("c").doubleValue(), 0);
+    }
+
+    @Test
+    public void testTopSections() {
+        HashMap<String, Integer> distrib = new HashMap<String, Integer>();
+        distrib.put("binding", 10);
+        distrib.put("transport", 7);
+        distrib.put("kinase", 7);
+        distrib.put("membrane", 2);
+        distrib.put("nucleus", 1);
+        PieDataset dataset = new PieChart().createDataset(distrib, 3);
+        assertEquals(4, dataset.getItemCount());
+        assertEquals("binding", dataset.getKey(0));
+        assertEquals("kinase", dataset.getKey(1));
+        assertEquals("transport", dataset.getKey(2));
+        assertEquals(PieChart.OTHER, dataset.getKey(3));
+        assertEquals(3.0, dataset.getValue(PieChart.OTHER).doubleValue(), 0);
+
+        // No Other section when everything fits
+        dataset = new PieChart().createDataset(distrib, 5);
+        assertEquals(5, dataset.getItemCount());
+        assertEquals(-1, dataset.getIndex(PieChart.OTHER));
+    }
+
+    @Test
+    public void testLargeList() {
+        List<String> terms = new ArrayList<String>();
+        for (int i = 0; i < 200000; i++) {
+            terms.add("GO:" + (i % 5000));
+        }
+        PieDataset dataset = new PieChart().createDataset(terms, 10);
+        assertEquals(11, dataset.getItemCount());
+        double total = 0;
+        for (int i = 0; i < dataset.getItemCount(); i++) {
+            total += dataset.getValue(i).doubleValue();
+        }
+        assertEquals(200000.0, total, 0);
+        assertEquals(5000, new PieChart().createDataset(terms)
+                .getItemCount());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.job;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JobManagerTest {
+
+    /** Manager with a single worker used by the tests. */
+    private JobManager manager;
+    /** Released to let the blocking job finish. */
+    private CountDownLatch release;
+    /** Counted down once the blocking job is running. */
+    private CountDownLatch started;
+
+    @Before
+    public void setUp() {
+        manager = new JobManager(1, 2, 0);
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        manager.shutdown();
+    }
+
+    /**
+     * Task occupying the single worker until the latch is released.
+     */
+    private JobTask<String> blocking() {
+        return new JobTask<String>() {
+
+            @Override
+            public String run(Job<String> job) throws Exception {
+                job.setProgress(50, "blocked");
+                started.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+                return "blocking";
+            }
+        };
+    }
+
+    /**
+     * Task recording its name.
+     */
+    private JobTask<String> recording(final String name,
+            final List<String> order) {
+        return new JobTask<String>() {
+
+            @Override
+            public String run(Job<String> job) {
+                order.add(name);
+                return name;
+            }
+        };
+    }
+
+    /**
+     * Wait for a job to finish.
+     */
+    private void await(Job<?> job) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while (!job.getStatus().isFinished()
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.getStatus().isFinished());
+    }
+
+    /**
+     * Test that the queued jobs run by priority, then in submission order,
+     * and that the progress is reported.
+     */
+    @Test
+    public void testPriority() throws Exception {
+        final List<String> order = new CopyOnWriteArrayList<String>();
+        final List<Integer> progress = new CopyOnWriteArrayList<Integer>();
+        final Job<String> first = manager.submit(blocking(),
+                JobManager.NORMAL_PRIORITY, new JobListener() {
+
+                    @Override
+                    public void jobChanged(Job<?> job) {
+                        progress.add(job.getProgress());
+                    }
+                });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(JobStatus.RUNNING, first.getStatus());
+        assertEquals(50, first.getProgress());
+        final Job<String> low = manager.submit(recording("low", order),
+                JobManager.LOW_PRIORITY, null);
+        final Job<String> high = manager.submit(recording("high", order),
+                JobManager.HIGH_PRIORITY, null);
+        assertEquals(1, manager.getQueuePosition(low));
+        assertEquals(0, manager.getQueuePosition(high));
+        release.countDown();
+        await(first);
+        await(low);
+        assertEquals("high", order.get(0));
+        assertEquals("low", order.get(1));
+        assertEquals(JobStatus.DONE, first.getStatus());
+        assertEquals("blocking", first.getResult());
+        assertEquals(100, first.getProgress());
+        assertEquals(Integer.valueOf(100),
+                progress.get(progress.size() - 1));
+    }
+
+    /**
+     * Test that jobs are refused once the queue is full and that a queued
+     * job can be cancelled.
+     */
+    @Test
+    public void testQueueLimitAndCancel() throws Exception {
+        final List<String> order = new CopyOnWriteArrayList<String>();
+        manager.submit(blocking(), JobManager.NORMAL_PRIORITY, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        final Job<String> a = manager.submit(recording("a", order),
+                JobManager.NORMAL_PRIORITY, null);
+        manager.submit(recording("b", order), JobManager.NORMAL_PRIORITY,
+                null);
+        try {
+            manager.submit(recording("c", order), JobManager.NORMAL_PRIORITY,
+                    null);
+            fail("The queue is full");
+        }
+        catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertTrue(manager.cancel(a.getId()));
+        assertEquals(JobStatus.CANCELLED, a.getStatus());
+        assertEquals(1, manager.getQueued());
+        final Job<String> c = manager.submit(recording("c", order),
+                JobManager.NORMAL_PRIORITY, null);
+        release.countDown();
+        await(c);
+        assertFalse(order.contains("a"));
+    }
+
+    /**
+     * Test that failed jobs keep their error and that finished jobs are
+     * forgotten after the retention time.
+     */
+    @Test
+    public void testFailureAndPurge() throws Exception {
+        final Job<String> job = manager.submit(new JobTask<String>() {
+
+            @Override
+            public String run(Job<String> job) throws Exception {
+                throw new IllegalStateException("broken");
+            }
+        }, JobManager.NORMAL_PRIORITY, null);
+        await(job);
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals("broken", job.getError().getMessage());
+        Thread.sleep(5);
+        assertEquals(1, manager.purge());
+        assertNull(manager.getJob(job.getId()));
+    }
+}
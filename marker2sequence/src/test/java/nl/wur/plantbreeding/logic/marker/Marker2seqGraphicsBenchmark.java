@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import nl.wur.plantbreeding.datatypes.Markerws;
+
+/**
+ * Times the drawing of the alignment picture for genetic maps of 10, 1 000
+ * and 10 000 markers (or the sizes given as arguments). It is not run by the
+ * test suite, start it with its main method. The checksum printed for each
+ * size allows to check that a change of the drawing code does not change
+ * the picture.
+ */
+public class Marker2seqGraphicsBenchmark {
+
+    /** Number of markers placed on each sequence. */
+    private static final int MARKERS_PER_SEQUENCE = 10;
+
+    /**
+     * Build a genetic map of the given number of markers, several markers
+     * sharing the same position as on real maps.
+     */
+    static List<GeneticMarkers> geneticMap(int size) {
+        List<GeneticMarkers> markers = new ArrayList<GeneticMarkers>(size);
+        for (int i = 0; i < size; i++) {
+            GeneticMarkers marker = new GeneticMarkers();
+            marker.setName("TG" + i);
+            marker.setId(String.valueOf(i));
+            marker.set_Chromosome(6);
+            marker.set_position(Math.round(i * 100.0 / size * 4) / 4.0);
+            markers.add(marker);
+        }
+        return markers;
+    }
+
+    /**
+     * Build sequences holding the markers of the given genetic map.
+     */
+    static List<MarkerSequence> sequences(List<GeneticMarkers> map)
+            throws Exception {
+        List<MarkerSequence> sequences = new ArrayList<MarkerSequence>();
+        List<Markerws> current = null;
+        for (int i = 0; i < map.size(); i++) {
+            if (i % MARKERS_PER_SEQUENCE == 0) {
+                current = new ArrayList<Markerws>();
+                MarkerSequence sequence = new MarkerSequence(null, null,
+                        current);
+                sequence.setName("SL2.40sc" + (i / MARKERS_PER_SEQUENCE));
+                sequences.add(sequence);
+            }
+            Markerws marker = new Markerws();
+            marker.setName(map.get(i).getName());
+            marker.setMapLocation(6, (float) map.get(i).get_position());
+            marker.setSeqPosition(i * 1000, i * 1000 + 500);
+            current.add(marker);
+        }
+        return sequences;
+    }
+
+    /**
+     * Return the checksum of the pixels of the picture.
+     */
+    static long checksum(BufferedImage image) {
+        CRC32 crc = new CRC32();
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int pixel : row) {
+                crc.update(pixel);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Run the benchmark.
+     * @param args the sizes of the genetic maps, 10 1000 10000 by default
+     */
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10, 1000, 10000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int size : sizes) {
+            List<GeneticMarkers> map = geneticMap(size);
+            List<MarkerSequence> sequences = sequences(map);
+            List<String> entries = new ArrayList<String>();
+            entries.add(map.get(size / 2).getName());
+            AlignmentRenderer renderer = new AlignmentRenderer();
+            AlignmentImage image = renderer.render(map, sequences, entries);
+            int iterations = Math.max(3, 20000 / size);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                image = renderer.render(map, sequences, entries);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%6d markers: %10.2f ms/picture "
+                    + "(%d iterations) checksum=%x areas=%d%n", size,
+                    elapsed / 1e6 / iterations, iterations,
+                    checksum(image.getImage()), image.getMap().size());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import static org.junit.Assert.*;
+
+public class SvgCanvasTest {
+
+    @Test
+    public void testEscape() {
+        assertEquals("a&lt;b&gt; &amp; &quot;c&quot;",
+                SvgCanvas.escape("a<b> & \"c\""));
+    }
+
+    @Test
+    public void testRenderSvg() throws Exception {
+        List<GeneticMarkers> map =
+                Marker2seqGraphicsBenchmark.geneticMap(50);
+        List<MarkerSequence> sequences =
+                Marker2seqGraphicsBenchmark.sequences(map);
+        List<String> entry = Arrays.asList("TG1");
+        AlignmentData data = AlignmentData.of(map, sequences, entry);
+
+        StringWriter out = new StringWriter();
+        assertTrue(new AlignmentRenderer().renderSvg(map, sequences, entry,
+                out));
+        String svg = out.toString();
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document doc = factory.newDocumentBuilder().parse(
+                new InputSource(new StringReader(svg)));
+        assertEquals("svg", doc.getDocumentElement().getLocalName());
+        assertTrue(doc.getElementsByTagName("a").getLength() > 0);
+        assertTrue(svg.contains("w822_marker_name=TG1"));
+        assertTrue(svg.contains("name=SL2.40sc0"));
+
+        // Drawn again from the serialized snapshot: same picture
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(data);
+        oos.close();
+        AlignmentData copy = (AlignmentData) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        StringWriter again = new StringWriter();
+        assertTrue(new AlignmentRenderer().renderSvg(copy.getGeneticMap(),
+                copy.getSequences(), copy.getEntryMarkers(), again));
+        assertEquals(svg, again.toString());
+
+        assertFalse(new AlignmentRenderer().renderSvg(map,
+                Arrays.<MarkerSequence>asList(), entry, new StringWriter()));
+    }
+}
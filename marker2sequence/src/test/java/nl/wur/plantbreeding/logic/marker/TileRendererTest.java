@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.marker;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import nl.wur.plantbreeding.datatypes.GeneticMarkers;
+import nl.wur.plantbreeding.datatypes.MarkerSequence;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TileRendererTest {
+
+    @Test
+    public void testTilesMatchPicture() throws Exception {
+        List<GeneticMarkers> map =
+                Marker2seqGraphicsBenchmark.geneticMap(200);
+        List<MarkerSequence> sequences =
+                Marker2seqGraphicsBenchmark.sequences(map);
+        List<String> entry = Arrays.asList("TG1", "TG100");
+        AlignmentData data = AlignmentData.of(map, sequences, entry);
+        BufferedImage picture = new AlignmentRenderer().render(map,
+                sequences, entry).getImage();
+
+        TileRenderer tiles = new TileRenderer(data);
+        assertEquals(picture.getHeight(), tiles.getHeigth());
+        assertEquals(picture.getWidth(), TileRenderer.getWidth(0));
+        assertEquals(3, TileRenderer.getColumns(0));
+        assertFalse(tiles.isTile(0, 3, 0));
+        assertFalse(tiles.isTile(0, 0, tiles.getRows()));
+        assertFalse(tiles.isTile(TileRenderer.MAX_ZOOM + 1, 0, 0));
+        assertEquals(6, TileRenderer.getColumns(1));
+
+        // At zoom 0 the tiles put together give the picture
+        for (int row = 0; row < tiles.getRows(); row++) {
+            for (int column = 0; column < TileRenderer.getColumns(0);
+                    column++) {
+                BufferedImage tile = tiles.render(0, column, row);
+                assertEquals(TileRenderer.TILE_SIZE, tile.getWidth());
+                for (int y = 0; y < TileRenderer.TILE_SIZE; y++) {
+                    int py = row * TileRenderer.TILE_SIZE + y;
+                    for (int x = 0; x < TileRenderer.TILE_SIZE; x++) {
+                        int px = column * TileRenderer.TILE_SIZE + x;
+                        if (px < picture.getWidth()
+                                && py < picture.getHeight()) {
+                            assertEquals("Pixel " + px + "," + py,
+                                    picture.getRGB(px, py),
+                                    tile.getRGB(x, y));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
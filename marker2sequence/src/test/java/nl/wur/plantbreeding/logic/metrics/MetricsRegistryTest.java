@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import nl.wur.plantbreeding.logic.metrics.MetricsRegistry.Gauge;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    /**
+     * Test the export of timers and gauges in the Prometheus text format.
+     */
+    @Test
+    public void testPrometheus() throws Exception {
+        final Timer timer = MetricsRegistry.getTimer("test_call", "service",
+                "getMarkers");
+        assertSame(timer, MetricsRegistry.getTimer("test_call", "service",
+                "getMarkers"));
+        timer.record(3000000L, false);
+        timer.record(1500000000L, true);
+        MetricsRegistry.registerGauge("test_queued", "Queued \"jobs\"",
+                new Gauge() {
+
+            @Override
+            public double getValue() {
+                return 4;
+            }
+        });
+        MetricsRegistry.registerCounter("test_hits", "Hits", new Gauge() {
+
+            @Override
+            public double getValue() {
+                return 12;
+            }
+        }, "cache", "markers", "level", "memory");
+
+        final StringWriter out = new StringWriter();
+        MetricsRegistry.writePrometheus(out);
+        final String text = out.toString();
+        assertTrue(text.contains("# TYPE m2s_test_call_seconds histogram\n"));
+        assertTrue(text.contains("m2s_test_call_seconds_bucket{service="
+                + "\"getMarkers\",le=\"0.005\"} 1\n"));
+        assertTrue(text.contains("m2s_test_call_seconds_bucket{service="
+                + "\"getMarkers\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("m2s_test_call_seconds_sum{service="
+                + "\"getMarkers\"} 1.503\n"));
+        assertTrue(text.contains("m2s_test_call_errors_total{service="
+                + "\"getMarkers\"} 1\n"));
+        assertTrue(text.contains("# TYPE m2s_test_queued gauge\n"
+                + "m2s_test_queued 4\n"));
+        assertTrue(text.contains("m2s_test_hits_total{cache=\"markers\","
+                + "level=\"memory\"} 12\n"));
+
+        MetricsRegistry.unregister("test_queued");
+        assertNull(MetricsRegistry.getValues().get("test_queued"));
+        assertEquals(Double.valueOf(2), MetricsRegistry.getValues().get(
+                "test_call{service=getMarkers}.count"));
+    }
+
+    /**
+     * Test that the metrics are readable over JMX.
+     */
+    @Test
+    public void testMBean() throws Exception {
+        MetricsRegistry.getTimer("test_parse", "parser", "ParserXML")
+                .record(2000000L, false);
+        MetricsRegistry.registerMBean();
+        try {
+            final MBeanServer server =
+                    ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(
+                    MetricsRegistry.OBJECT_NAME);
+            assertEquals(1.0, (Double) server.getAttribute(name,
+                    "test_parse{parser=ParserXML}.count"), 1e-9);
+            assertEquals(2.0, (Double) server.getAttribute(name,
+                    "test_parse{parser=ParserXML}.max"), 1e-9);
+            assertTrue(server.getMBeanInfo(name).getAttributes().length > 0);
+        }
+        finally {
+            MetricsRegistry.unregisterMBean();
+        }
+    }
+}
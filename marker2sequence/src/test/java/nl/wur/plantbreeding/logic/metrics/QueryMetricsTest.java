@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.metrics;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import nl.wur.plantbreeding.logic.swtools.QueryRdf;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class QueryMetricsTest {
+
+    /**
+     * Test the buckets and percentiles of the Histogram.
+     */
+    @Test
+    public void testHistogram() {
+        final Histogram histogram = new Histogram(Histogram.DURATION_BOUNDS);
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+        histogram.record(120000);
+        assertEquals(120000, histogram.getPercentile(100));
+        final long[] buckets = histogram.getBuckets();
+        assertEquals(Histogram.DURATION_BOUNDS.length + 1, buckets.length);
+        assertEquals(1, buckets[0]);
+        assertEquals(1, buckets[buckets.length - 1]);
+    }
+
+    /**
+     * Test that the local queries are recorded under the name of the
+     * QueryRdf method and that the slow ones are logged with their sparql.
+     */
+    @Test
+    public void testLocalQueries() {
+        QueryMetrics.reset();
+        final Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource("http://pbr.wur.nl/GENE#g1"),
+                model.createProperty("http://pbr.wur.nl/GENE#FeatureName"),
+                "g1");
+        final QueryRdf query = new QueryRdf();
+        query.getGeneList(model);
+        final ArrayList<String> names = query.localSelectQuery(model,
+                "SELECT ?o WHERE { ?s ?p ?o }", new ArrayList<String>(), "o");
+        assertEquals(1, names.size());
+
+        final QueryStats genes = QueryMetrics.getStats(
+                "QueryRdf.getGeneList", QueryMetrics.LOCAL);
+        assertEquals(1, genes.getDurations().getCount());
+        assertEquals(0, genes.getRows().getSum());
+        final QueryStats test = QueryMetrics.getStats(
+                "QueryMetricsTest.testLocalQueries", QueryMetrics.LOCAL);
+        assertEquals(1, test.getDurations().getCount());
+        assertEquals(1, test.getRows().getSum());
+        assertEquals(0, test.getErrors());
+        assertEquals(2, QueryMetrics.getStats().size());
+
+        final List<String> logged = new ArrayList<String>();
+        final Handler handler = new Handler() {
+
+            @Override
+            public void publish(final LogRecord record) {
+                logged.add(String.valueOf(record.getParameters()[5]));
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final Logger slow = Logger.getLogger(
+                QueryMetrics.class.getName() + ".slow");
+        slow.addHandler(handler);
+        final long threshold = QueryMetrics.getSlowThreshold();
+        try {
+            QueryMetrics.record("QueryRdf.slow", "http://localhost/sparql",
+                    10000000000L, 3, "SELECT * WHERE {?s ?p ?o}", false);
+            QueryMetrics.setSlowThreshold(0);
+            QueryMetrics.record("QueryRdf.slow", "http://localhost/sparql",
+                    10000000000L, 3, "SELECT * WHERE {?s ?p ?o}", false);
+        }
+        finally {
+            QueryMetrics.setSlowThreshold(threshold);
+            slow.removeHandler(handler);
+        }
+        assertEquals(1, logged.size());
+        assertEquals("SELECT * WHERE {?s ?p ?o}", logged.get(0));
+        final QueryStats remote = QueryMetrics.getStats("QueryRdf.slow",
+                "http://localhost/sparql");
+        assertEquals(1, remote.getSlow());
+        assertEquals(6, remote.getRows().getSum());
+        assertEquals("QueryRdf.slow", QueryMetrics.getStats().get(0)
+                .getMethod());
+    }
+
+    /**
+     * Test that nothing is recorded when the metrics are disabled.
+     */
+    @Test
+    public void testDisabled() {
+        QueryMetrics.reset();
+        QueryMetrics.setEnabled(false);
+        try {
+            final Model model = ModelFactory.createDefaultModel();
+            new QueryRdf().getGeneList(model);
+            QueryMetrics.record("QueryRdf.slow", "http://localhost/sparql",
+                    10000000000L, 3, "SELECT * WHERE {?s ?p ?o}", false);
+        }
+        finally {
+            QueryMetrics.setEnabled(true);
+        }
+        assertTrue(QueryMetrics.getStats().isEmpty());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PipelineSchedulerTest {
+
+    /** Executor used by the tests. */
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stage adding a suffix to its input, optionally waiting on a latch.
+     */
+    private static class AppendStage extends Stage {
+
+        private final String suffix;
+        private final CountDownLatch latch;
+
+        AppendStage(String in, String out, String suffix,
+                CountDownLatch latch) {
+            super(out, new String[]{in}, new String[]{out});
+            this.suffix = suffix;
+            this.latch = latch;
+        }
+
+        @Override
+        public void run(PipelineContext context) throws Exception {
+            if (latch != null) {
+                // Both parallel stages must be running to go through
+                latch.countDown();
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+            }
+            context.put(getOutputs().get(0),
+                    context.get(getInputs().get(0), String.class) + suffix);
+        }
+    }
+
+    /**
+     * Test that independent stages run at the same time and that the
+     * outputs and timings are in the context.
+     */
+    @Test
+    public void testRun() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<Stage> stages = new ArrayList<Stage>();
+        stages.add(new AppendStage("b", "c", "c", latch));
+        stages.add(new AppendStage("a", "b", "b", null));
+        stages.add(new AppendStage("b", "d", "d", latch));
+        final PipelineContext context = new PipelineContext();
+        context.put("a", "a");
+        new PipelineScheduler(stages, executor).run(context);
+        assertEquals("abc", context.get("c", String.class));
+        assertEquals("abd", context.get("d", String.class));
+        assertEquals(3, context.getTimings().size());
+    }
+
+    /**
+     * Test that the exception of a stage is given back to the caller.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFailure() throws Exception {
+        final List<Stage> stages = new ArrayList<Stage>();
+        stages.add(new Stage("fail", new String[]{}, new String[]{"x"}) {
+
+            @Override
+            public void run(PipelineContext context) {
+                throw new IllegalArgumentException("fail");
+            }
+        });
+        new PipelineScheduler(stages, executor).run(new PipelineContext());
+    }
+
+    /**
+     * Test that missing inputs are detected.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testMissingInput() throws Exception {
+        final List<Stage> stages = new ArrayList<Stage>();
+        stages.add(new AppendStage("missing", "b", "b", null));
+        new PipelineScheduler(stages, executor).run(new PipelineContext());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.resilience;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import nl.wur.plantbreeding.exceptions.ServiceUnavailableException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ServiceGuardTest {
+
+    /** A call which always fails. */
+    private final Callable<String> failing = new Callable<String>() {
+
+        @Override
+        public String call() throws Exception {
+            throw new Exception("down");
+        }
+    };
+
+    /** A call which always succeeds. */
+    private final Callable<String> working = new Callable<String>() {
+
+        @Override
+        public String call() {
+            return "ok";
+        }
+    };
+
+    /**
+     * Run the given call and return whether it was refused by the guard.
+     */
+    private boolean refused(final ServiceGuard guard,
+            final Callable<String> task) {
+        try {
+            guard.call(task);
+            return false;
+        }
+        catch (ServiceUnavailableException ex) {
+            return true;
+        }
+        catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Test that the circuit opens after the threshold, refuses the calls and
+     * closes again after a successful trial call.
+     */
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        final ServiceGuard guard = new ServiceGuard("test",
+                new CircuitBreaker("test", 2, 50), new Bulkhead(1, 0));
+        assertFalse(refused(guard, failing));
+        assertFalse(refused(guard, failing));
+        assertEquals(CircuitBreaker.State.OPEN, guard.getBreaker().getState());
+        assertTrue(refused(guard, working));
+        Thread.sleep(60);
+        assertEquals("ok", guard.call(working));
+        assertEquals(CircuitBreaker.State.CLOSED,
+                guard.getBreaker().getState());
+        assertEquals(0, guard.getBulkhead().getActive());
+    }
+
+    /**
+     * Test that a slow call is hedged and the fast answer used.
+     */
+    @Test
+    public void testHedged() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger(0);
+        final Callable<String> slowfirst = new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                if (attempts.incrementAndGet() == 1) {
+                    Thread.sleep(5000);
+                    return "slow";
+                }
+                return "fast";
+            }
+        };
+        final ServiceGuard guard = new ServiceGuard("hedge",
+                new CircuitBreaker("hedge", 2, 50), new Bulkhead(1, 0));
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            assertEquals("fast", guard.callHedged(slowfirst, executor, 20,
+                    2000));
+            assertEquals(1, guard.getHedged());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
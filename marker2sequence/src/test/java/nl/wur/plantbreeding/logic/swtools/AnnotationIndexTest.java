@@ -0,0 +1,182 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AnnotationIndexTest {
+
+    /** Namespace of the gene properties. */
+    private static final String GENE = "http://pbr.wur.nl/GENE#";
+    /** Namespace of the GO properties. */
+    private static final String OBO =
+            "http://www.geneontology.org/formats/oboInOwl#";
+
+    /**
+     * Build a small model: three genes sharing some GO terms and pathways.
+     * @return the Jena Model
+     */
+    private Model generateModel() {
+        final Model model = ModelFactory.createDefaultModel();
+        final Property go = model.createProperty(GENE, "Go");
+        final Property pathway = model.createProperty(GENE, "Pathway");
+        final Property ns = model.createProperty(OBO, "hasOBONamespace");
+        final Property syn = model.createProperty(OBO, "hasExactSynonym");
+        final Resource[] terms = new Resource[3];
+        final String[] names = {"binding", "transport", "binding"};
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = model.createResource("http://purl.org/obo/owl/GO#GO_"
+                    + i);
+            terms[i].addProperty(RDFS.label, names[i], "en");
+            terms[i].addProperty(ns, i == 1 ? "biological_process"
+                    : "molecular_function");
+            final Resource synonym = model.createResource();
+            synonym.addProperty(RDFS.label, "synonym " + (i % 2), "en");
+            terms[i].addProperty(syn, synonym);
+        }
+        final Resource[] pathways = new Resource[2];
+        for (int i = 0; i < pathways.length; i++) {
+            pathways[i] = model.createResource("http://pathway.org/" + i);
+            pathways[i].addProperty(RDFS.comment, "pathway " + i);
+        }
+        for (int g = 0; g < 3; g++) {
+            final Resource gene = model.createResource(
+                    "http://pbr.wur.nl/GENE#Solyc0" + g);
+            for (int i = 0; i <= g; i++) {
+                gene.addProperty(go, terms[i]);
+            }
+            gene.addProperty(pathway, pathways[g % 2]);
+        }
+        return model;
+    }
+
+    /**
+     * Test the distributions over all the genes.
+     */
+    @Test
+    public final void testGetDistribution() {
+        System.out.println("getDistribution");
+        final AnnotationIndex index =
+                AnnotationIndex.build(this.generateModel());
+        assertEquals(3, index.getGeneCount());
+
+        final HashMap<String, Integer> expgo = new HashMap<String, Integer>();
+        // GO_0 on 3 genes, GO_2 (same name) on 1 gene
+        expgo.put("binding", 4);
+        expgo.put("transport", 2);
+        assertEquals(expgo, index.getDistribution(
+                AnnotationIndex.Category.GO));
+
+        final HashMap<String, Integer> expns = new HashMap<String, Integer>();
+        expns.put("molecular_function", 4);
+        expns.put("biological_process", 2);
+        assertEquals(expns, index.getDistribution(
+                AnnotationIndex.Category.NAMESPACE));
+
+        final HashMap<String, Integer> expsyn =
+                new HashMap<String, Integer>();
+        expsyn.put("synonym 0", 4);
+        expsyn.put("synonym 1", 2);
+        assertEquals(expsyn, index.getDistribution(
+                AnnotationIndex.Category.SYNONYM));
+
+        final ArrayList<ArrayList<String>> pathways =
+                index.getOrderedPathways();
+        assertEquals(2, pathways.size());
+        assertEquals(Arrays.asList("pathway 0", "2", "http://pathway.org/0"),
+                pathways.get(0));
+        assertEquals(Arrays.asList("pathway 1", "1", "http://pathway.org/1"),
+                pathways.get(1));
+    }
+
+    /**
+     * Test that the index gives the counts of the QueryRdf queries.
+     */
+    @Test
+    public final void testSameAsQueryRdf() {
+        System.out.println("same as QueryRdf");
+        final Model model = this.generateModel();
+        final AnnotationIndex index = AnnotationIndex.build(model);
+        final QueryRdf query = new QueryRdf();
+        assertEquals(query.getGoDistribution(model),
+                index.getDistribution(AnnotationIndex.Category.GO));
+        assertEquals(query.getGoNameSpaceDistribution(model),
+                index.getDistribution(AnnotationIndex.Category.NAMESPACE));
+        assertEquals(query.getGoSynonymDistribution(model),
+                index.getDistribution(AnnotationIndex.Category.SYNONYM));
+        assertEquals(query.getOrderedPathways(model),
+                index.getOrderedPathways());
+    }
+
+    /**
+     * Test the distributions over a set of genes.
+     */
+    @Test
+    public final void testGetDistributionGeneSet() {
+        System.out.println("getDistribution (gene set)");
+        final AnnotationIndex index =
+                AnnotationIndex.build(this.generateModel());
+        final HashMap<String, Integer> expgo = new HashMap<String, Integer>();
+        expgo.put("binding", 2);
+        expgo.put("transport", 1);
+        // Unknown and duplicated genes are ignored
+        assertEquals(expgo, index.getDistribution(
+                AnnotationIndex.Category.GO, Arrays.asList(
+                GENE + "Solyc01", GENE + "Solyc00", GENE + "Solyc00",
+                GENE + "unknown")));
+        assertTrue(index.getDistribution(AnnotationIndex.Category.GO,
+                new ArrayList<String>()).isEmpty());
+        assertEquals(1, index.getOrderedPathways(
+                Arrays.asList(GENE + "Solyc01")).size());
+    }
+
+    /**
+     * Test that the index can be written and read back.
+     * @throws IOException if the index can not be written
+     */
+    @Test
+    public final void testWriteRead() throws IOException {
+        System.out.println("write/read");
+        final AnnotationIndex index =
+                AnnotationIndex.build(this.generateModel());
+        final File file = File.createTempFile("m2s-index", ".ser.gz");
+        try {
+            index.write(file);
+            final AnnotationIndex read = AnnotationIndex.read(file);
+            assertEquals(index.toString(), read.toString());
+            assertEquals(index.getDistribution(
+                    AnnotationIndex.Category.SYNONYM),
+                    read.getDistribution(AnnotationIndex.Category.SYNONYM));
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BinaryRdfTest {
+
+    /** Namespace of the test model. */
+    private static final String NS = "http://pbr.wur.nl/TEST#";
+
+    /**
+     * Model with every kind of term, large enough to span several blocks.
+     */
+    private Model sampleModel() {
+        final Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("test", NS);
+        final Property name = model.createProperty(NS, "name");
+        final Property position = model.createProperty(NS, "position");
+        final Property link = model.createProperty(NS, "link");
+        for (int i = 0; i < 500; i++) {
+            final Resource gene = model.createResource(NS + "gene" + i);
+            gene.addProperty(name, "gene " + i);
+            gene.addProperty(name, model.createLiteral("gène " + i, "fr"));
+            gene.addLiteral(position, model.createTypedLiteral(
+                    String.valueOf(i * 1000), XSDDatatype.XSDinteger));
+            final Resource anon = model.createResource();
+            gene.addProperty(link, anon);
+            anon.addProperty(name, "anonymous " + i);
+        }
+        return model;
+    }
+
+    @Test
+    public void testStreamRoundTrip() throws IOException {
+        final Model model = this.sampleModel();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BinaryRdfWriter writer = new BinaryRdfWriter(out,
+                model.getNsPrefixMap(), 1024, Deflater.BEST_SPEED);
+        writer.write(model.getGraph());
+        writer.finish();
+
+        final Model read = BinaryRdfReader.read(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(model.size(), read.size());
+        assertTrue(model.isIsomorphicWith(read));
+        assertEquals(NS, read.getNsPrefixURI("test"));
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        final Model model = this.sampleModel();
+        final File file = File.createTempFile("m2s-binary", ".rdfb");
+        try {
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                BinaryRdfWriter.write(model, out, Deflater.NO_COMPRESSION);
+            }
+            finally {
+                out.close();
+            }
+            final Model read = BinaryRdfReader.read(file);
+            assertTrue(model.isIsomorphicWith(read));
+        }
+        finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotBinary() throws IOException {
+        BinaryRdfReader.read(new ByteArrayInputStream(
+                "<a> <b> <c> .".getBytes("UTF-8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeSize() throws IOException {
+        // One prefix whose size is the varint of -1
+        final byte[] data = {'M', '2', 'S', 'B', 1, 1,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        BinaryRdfReader.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IOException.class)
+    public void testVarintTooLong() throws IOException {
+        final byte[] data = {'M', '2', 'S', 'B', 1, (byte) 0x80, (byte) 0x80,
+            (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0};
+        BinaryRdfReader.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IOException.class)
+    public void testHugeBlock() throws IOException {
+        // No prefix then a block of 2^31 - 1 uncompressed bytes
+        final byte[] data = {'M', '2', 'S', 'B', 1, 0,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 10};
+        BinaryRdfReader.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IOException.class)
+    public void testHugeCompressedBlock() throws IOException {
+        // A block of 10 bytes compressed in 2^31 - 1 bytes
+        final byte[] data = {'M', '2', 'S', 'B', 1, 0, 10,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        BinaryRdfReader.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IOException.class)
+    public void testHugeString() throws IOException {
+        // One prefix of 2^31 - 16 bytes
+        final byte[] data = {'M', '2', 'S', 'B', 1, 1,
+            (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        BinaryRdfReader.read(new ByteArrayInputStream(data));
+    }
+
+    @Test(expected = IOException.class)
+    public void testStringBeyondBuffer() throws IOException {
+        // One prefix of 1000 bytes, which the buffer does not hold
+        final byte[] data = {'M', '2', 'S', 'B', 1, 1, (byte) 0xE8, 0x07};
+        BinaryRdfReader.read(ByteBuffer.wrap(data),
+                ModelFactory.createDefaultModel());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTripleTooLarge() throws IOException {
+        final Model model = ModelFactory.createDefaultModel();
+        final char[] text = new char[BinaryRdfFormat.MAX_BLOCK_SIZE + 1];
+        Arrays.fill(text, 'a');
+        model.createResource(NS + "gene").addProperty(
+                model.createProperty(NS, "name"), new String(text));
+        BinaryRdfWriter.write(model, new ByteArrayOutputStream(),
+                Deflater.BEST_SPEED);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.swtools;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import java.util.ArrayList;
+import nl.wur.plantbreeding.logic.metrics.QueryMetrics;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class QueryProfilerTest {
+
+    /**
+     * Disable the profiling.
+     */
+    @After
+    public void tearDown() {
+        QueryProfiler.configure(false, true, QueryProfiler.DEFAULT_KEPT);
+        QueryProfiler.reset();
+    }
+
+    /**
+     * Test the plan of a local query with an OPTIONAL and a UNION: the
+     * OPTIONAL is run once per row and its rows are counted.
+     */
+    @Test
+    public void testLocalPlan() {
+        final Model model = ModelFactory.createDefaultModel();
+        final Property name = model.createProperty(
+                "http://pbr.wur.nl/GENE#FeatureName");
+        final Property desc = model.createProperty(
+                "http://pbr.wur.nl/GENE#Description");
+        for (int i = 0; i < 10; i++) {
+            final Resource gene = model.createResource(
+                    "http://pbr.wur.nl/GENE#g" + i);
+            gene.addProperty(name, "g" + i);
+            if (i % 2 == 0) {
+                gene.addProperty(desc, "kinase " + i);
+            }
+        }
+        final String sparql = "PREFIX gene:<http://pbr.wur.nl/GENE#> "
+                + "SELECT ?n WHERE { { ?s gene:FeatureName ?n "
+                + "OPTIONAL { ?s gene:Description ?d } } "
+                + "UNION { ?s gene:Description ?n } }";
+        final QueryRdf query = new QueryRdf();
+
+        query.localSelectQuery(model, sparql, new ArrayList<String>(), "n");
+        assertNull(QueryProfiler.getProfile(
+                "QueryProfilerTest.testLocalPlan"));
+
+        QueryProfiler.configure(true, true, 2);
+        for (int i = 0; i < 3; i++) {
+            final ArrayList<String> names = query.localSelectQuery(model,
+                    sparql, new ArrayList<String>(), "n");
+            assertEquals(15, names.size());
+        }
+        final MethodProfile profile = QueryProfiler.getProfile(
+                "QueryProfilerTest.testLocalPlan");
+        assertEquals(3, profile.getCount());
+        assertEquals(0, profile.getErrors());
+        assertEquals(2, profile.getSlowest().size());
+        final QueryProfile slowest = profile.getSlowest().get(0);
+        assertEquals(QueryMetrics.LOCAL, slowest.getEndpoint());
+        assertEquals(15, slowest.getRows());
+        assertNull(slowest.getExplain());
+        final String plan = slowest.getPlan();
+        assertTrue(plan, plan.startsWith("project [?n]  [1 exec, 15 rows, "));
+        assertTrue(plan, plan.contains("Description> ?d))  [10 exec, "
+                + "5 rows, "));
+        assertTrue(plan, plan.contains("Description> ?n))  [1 exec, "
+                + "5 rows, "));
+        assertTrue(QueryProfiler.getReport().startsWith(
+                "QueryProfilerTest.testLocalPlan: 3 queries, 0 failed"));
+    }
+
+    /**
+     * Test that the plan of a remote query is asked in the background and
+     * its failure reported in the profile.
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testRemoteExplain() throws InterruptedException {
+        QueryProfiler.configure(true, true, 2);
+        final String endpoint = "http://localhost:1/sparql";
+        QueryProfiler.record("QueryProfilerTest.testRemoteExplain", endpoint,
+                "SELECT ?s WHERE { ?s ?p ?o }", 1000000, 1, false, null);
+        final QueryProfile profile = QueryProfiler.getProfile(
+                "QueryProfilerTest.testRemoteExplain").getSlowest().get(0);
+        assertEquals(endpoint, profile.getEndpoint());
+        final long end = System.currentTimeMillis() + 10000;
+        while (QueryProfiler.PENDING.equals(profile.getExplain())
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(profile.getExplain(),
+                profile.getExplain().startsWith("not available ("));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2011, 2012 Plant Breeding, Wageningen UR.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+
+package nl.wur.plantbreeding.logic.trace;
+
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import nl.wur.plantbreeding.logic.swtools.QueryRdf;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TracerTest {
+
+    /**
+     * Stop the exporter started by the tests.
+     */
+    @After
+    public void tearDown() {
+        Tracer.setExporter(null);
+        Tracer.configure(0, 0);
+    }
+
+    /**
+     * Without exporter nothing is recorded.
+     */
+    @Test
+    public void testNoop() {
+        Tracer.configure(1, 0);
+        final Span span = Tracer.startTrace("root");
+        assertSame(Span.NOOP, span);
+        assertFalse(span.isRecording());
+        assertSame(Span.NOOP, Tracer.startSpan("child"));
+        span.setAttribute("markers", 2);
+        span.end();
+        assertTrue(span.getAttributes().isEmpty());
+    }
+
+    /**
+     * Test the span tree of a sampled request, across threads, and its
+     * export to a file.
+     * @throws Exception when something goes wrong
+     */
+    @Test
+    public void testExport() throws Exception {
+        final File file = File.createTempFile("m2s-trace", ".json");
+        Tracer.configure(1, 0);
+        Tracer.setExporter(new SpanExporter(file, null));
+
+        final Span root = Tracer.startTrace("root");
+        assertTrue(root.isRecording());
+        assertSame(root, Tracer.current());
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Span child;
+        try {
+            child = executor.submit(Tracer.wrap(new Callable<Span>() {
+
+                @Override
+                public Span call() {
+                    final Span span = Tracer.startSpan("stage");
+                    span.setAttribute("scaffolds", 3);
+                    span.end();
+                    return span;
+                }
+            })).get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(root.getTraceId(), child.getTraceId());
+        assertEquals(root.getId(), child.getParentId());
+        assertSame(root, Tracer.current());
+        root.setAttribute("markers", 2);
+        root.end();
+        assertSame(Span.NOOP, Tracer.current());
+
+        // Closing the exporter writes the spans queued
+        Tracer.setExporter(null);
+        final File out = new File(file.getPath() + ".0");
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new FileReader(out));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                lines.add(line);
+                line = reader.readLine();
+            }
+        }
+        finally {
+            reader.close();
+        }
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"name\":\"stage\""));
+        assertTrue(lines.get(0).contains("\"parentId\":\"" + root.getId()));
+        assertTrue(lines.get(0).contains("\"scaffolds\":\"3\""));
+        assertTrue(lines.get(1).contains("\"traceId\":\""
+                + root.getTraceId()));
+        assertTrue(lines.get(1).contains("\"markers\":\"2\""));
+        out.delete();
+        new File(out.getPath() + ".lck").delete();
+        file.delete();
+    }
+
+    /**
+     * A request which is not sampled is only exported if it is slow.
+     * @throws Exception when something goes wrong
+     */
+    @Test
+    public void testSlowThreshold() throws Exception {
+        final SpanExporter exporter = new SpanExporter(null, null);
+        Tracer.setExporter(exporter);
+        Tracer.configure(0, 50);
+        final Span fast = Tracer.startTrace("fast");
+        assertTrue(fast.isRecording());
+        fast.end();
+        final Span slow = Tracer.startTrace("slow");
+        Thread.sleep(60);
+        slow.end();
+        Tracer.setExporter(null);
+        assertEquals(1, exporter.getExported());
+        assertEquals(0, exporter.getDropped());
+    }
+
+    /**
+     * The span of a query which fails is ended and the current span of the
+     * thread is restored.
+     */
+    @Test
+    public void testFailedQuery() {
+        Tracer.setExporter(new SpanExporter(null, null));
+        Tracer.configure(1, 0);
+        final Span root = Tracer.startTrace("root");
+        try {
+            new QueryRdf().localSelectQuery(
+                    ModelFactory.createDefaultModel(), "not a sparql query",
+                    new ArrayList<String>(), "o");
+            fail("The query can not be run");
+        }
+        catch (RuntimeException ex) {
+            assertSame(root, Tracer.current());
+        }
+        root.end();
+        assertSame(Span.NOOP, Tracer.current());
+    }
+}